@@ -0,0 +1,202 @@
+package de.geeksfactory.opacclient.gateway;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.objects.Library;
+
+/**
+ * Keeps a bounded number of warm {@link OpacApi} instances per library, so that consecutive
+ * requests can reuse the HTTP connections and the OPAC session of an instance instead of starting
+ * from scratch.
+ *
+ * {@link OpacApi} implementations are not thread-safe, so every instance is leased to one request
+ * at a time. The number of instances per library doubles as that library's concurrency limit: if
+ * all of them are in use, {@link #acquire(Library, String, long)} waits for one to be returned and
+ * eventually gives up with an {@link OverloadedException}. Instances that have not been used for
+ * longer than the idle timeout are dropped by {@link #evictIdle()}.
+ */
+public class ApiPool {
+    public interface Factory {
+        OpacApi create(Library library);
+    }
+
+    private final Factory factory;
+    private final int maxInstances;
+    private final long idleTimeoutMillis;
+    private final Map<String, LibraryPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory           creates new instances, e.g. using
+     *                          {@link de.geeksfactory.opacclient.OpacApiFactory}
+     * @param maxInstances      the maximum number of instances, and therefore concurrent
+     *                          requests, per library
+     * @param idleTimeoutMillis time after which unused instances are evicted
+     */
+    public ApiPool(Factory factory, int maxInstances, long idleTimeoutMillis) {
+        this.factory = factory;
+        this.maxInstances = maxInstances;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Leases an instance for the given library. The lease must be closed after use.
+     *
+     * @param affinity      only an idle instance that was last used with the same affinity key
+     *                      is reused, otherwise a new one is created. This keeps account requests
+     *                      of the same user on the same instance and OPAC session, and makes sure
+     *                      that no request ever gets an instance that is logged in as another
+     *                      user. Anonymous requests use <code>null</code>.
+     * @param timeoutMillis how long to wait if all instances of this library are in use
+     * @throws OverloadedException if no instance became available in time
+     */
+    public Lease acquire(Library library, String affinity, long timeoutMillis)
+            throws InterruptedException, OverloadedException {
+        LibraryPool pool = pools.computeIfAbsent(library.getIdent(), k -> new LibraryPool());
+        if (!pool.permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new OverloadedException(
+                    "All " + maxInstances + " instances for " + library.getIdent() + " are busy");
+        }
+        Entry entry;
+        try {
+            entry = pool.take(affinity);
+            if (entry == null) {
+                entry = new Entry(factory.create(library));
+            }
+        } catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+        entry.affinity = affinity;
+        return new Lease(pool, entry);
+    }
+
+    /**
+     * Drops all instances that have been idle for longer than the idle timeout.
+     *
+     * @return the number of evicted instances
+     */
+    public int evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+        int evicted = 0;
+        for (LibraryPool pool : pools.values()) {
+            evicted += pool.evictIdle(deadline);
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the number of idle instances of the given library
+     */
+    public int getIdleCount(String ident) {
+        LibraryPool pool = pools.get(ident);
+        return pool != null ? pool.idleCount() : 0;
+    }
+
+    /**
+     * @return the number of instances of the given library that are currently leased
+     */
+    public int getActiveCount(String ident) {
+        LibraryPool pool = pools.get(ident);
+        return pool != null ? maxInstances - pool.permits.availablePermits() : 0;
+    }
+
+    public Iterable<String> getLibraries() {
+        return pools.keySet();
+    }
+
+    private static class Entry {
+        final OpacApi api;
+        String affinity;
+        long lastUsed;
+
+        Entry(OpacApi api) {
+            this.api = api;
+        }
+    }
+
+    private class LibraryPool {
+        final Semaphore permits = new Semaphore(maxInstances, true);
+        // most recently used instances first, they are the most likely to still have a session
+        private final Deque<Entry> idle = new ArrayDeque<>();
+
+        synchronized Entry take(String affinity) {
+            for (Iterator<Entry> it = idle.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (Objects.equals(affinity, entry.affinity)) {
+                    it.remove();
+                    return entry;
+                }
+            }
+            // a new instance will be created, make room for it by dropping the least recently
+            // used one of another user
+            int active = maxInstances - permits.availablePermits();
+            if (!idle.isEmpty() && idle.size() + active > maxInstances) {
+                idle.pollLast();
+            }
+            return null;
+        }
+
+        synchronized void giveBack(Entry entry) {
+            entry.lastUsed = System.currentTimeMillis();
+            idle.addFirst(entry);
+        }
+
+        synchronized int evictIdle(long deadline) {
+            int evicted = 0;
+            while (!idle.isEmpty() && idle.peekLast().lastUsed < deadline) {
+                idle.pollLast();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+    }
+
+    /**
+     * An instance leased from the pool. Closing the lease returns the instance to the pool.
+     */
+    public static class Lease implements AutoCloseable {
+        private final LibraryPool pool;
+        private final Entry entry;
+        private boolean discard;
+        private boolean closed;
+
+        private Lease(LibraryPool pool, Entry entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        public OpacApi getApi() {
+            return entry.api;
+        }
+
+        /**
+         * Marks the instance as unusable, e.g. because its session might be broken. It will not
+         * be returned to the pool when the lease is closed.
+         */
+        public void discard() {
+            discard = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (!discard) {
+                pool.giveBack(entry);
+            }
+            pool.permits.release();
+        }
+    }
+}
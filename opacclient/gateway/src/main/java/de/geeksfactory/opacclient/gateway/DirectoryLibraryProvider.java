@@ -0,0 +1,49 @@
+package de.geeksfactory.opacclient.gateway;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.geeksfactory.opacclient.objects.Library;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Reads library configurations from a directory containing one <code>&lt;ident&gt;.json</code>
+ * file per library, in the same format as the files bundled with the app. Configurations are
+ * read once and then kept in memory.
+ */
+public class DirectoryLibraryProvider implements LibraryProvider {
+    private final File dir;
+    private final Map<String, Library> libraries = new ConcurrentHashMap<>();
+
+    public DirectoryLibraryProvider(File dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public Library getLibrary(String ident) throws IOException {
+        Library library = libraries.get(ident);
+        if (library != null) return library;
+
+        // identifiers are used as file names, don't allow escaping the directory
+        if (!ident.matches("[A-Za-z0-9_\\-.]+") || ident.startsWith(".")) return null;
+        File file = new File(dir, ident + ".json");
+        if (!file.isFile()) return null;
+
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            library = Library.fromJSON(ident, new JSONObject(source.readUtf8()));
+        } catch (JSONException e) {
+            throw new IOException("Invalid configuration for " + ident, e);
+        } finally {
+            source.close();
+        }
+        libraries.put(ident, library);
+        return library;
+    }
+}
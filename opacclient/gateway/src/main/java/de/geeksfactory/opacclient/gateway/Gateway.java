@@ -0,0 +1,505 @@
+package de.geeksfactory.opacclient.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.geeksfactory.opacclient.CoverDownloadStrategy;
+import de.geeksfactory.opacclient.OpacApiFactory;
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.i18n.DummyStringProvider;
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.searchfields.SearchQuery;
+import okio.Okio;
+
+/**
+ * An embeddable HTTP service that makes libopac available to non-Java clients. All responses are
+ * JSON. The following endpoints are available:
+ *
+ * <ul>
+ * <li><code>GET /libraries/&lt;ident&gt;/searchfields</code></li>
+ * <li><code>GET /libraries/&lt;ident&gt;/search?&lt;field id&gt;=&lt;value&gt;&amp;...</code></li>
+ * <li><code>GET /libraries/&lt;ident&gt;/detail?id=...</code></li>
+ * <li><code>POST /libraries/&lt;ident&gt;/account</code> with <code>username</code> and
+ * <code>password</code></li>
+ * <li><code>POST /libraries/&lt;ident&gt;/prolong</code> with <code>username</code>,
+ * <code>password</code>, <code>media</code> and optionally <code>useraction</code> and
+ * <code>selection</code></li>
+ * <li><code>POST /libraries/&lt;ident&gt;/reserve</code> with <code>username</code>,
+ * <code>password</code>, <code>id</code> and optionally <code>useraction</code>,
+ * <code>selection</code> and <code>homebranch</code>, which is chosen as the pickup branch
+ * without a selection step if possible</li>
+ * <li><code>GET /metrics</code></li>
+ * </ul>
+ *
+ * POST parameters are sent form-encoded, so that credentials do not end up in URLs and logs.
+ *
+ * {@link OpacApi} instances are kept in an {@link ApiPool}, which also limits the number of
+ * concurrent requests per library. Search fields and details are cached. Requests that would have
+ * to wait for a worker thread for longer than the configured queue timeout are answered with
+ * status 503 right away instead of piling up.
+ */
+public class Gateway {
+    public static final String USER_AGENT = "libopac-gateway";
+
+    private final LibraryProvider libraries;
+    private final HttpClientFactory httpClientFactory;
+    private final GatewayMetrics metrics = new GatewayMetrics();
+
+    private int threads = 32;
+    private int instancesPerLibrary = 4;
+    private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    private long acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+    private long maxQueueMillis = TimeUnit.SECONDS.toMillis(5);
+    private int maxQueued = 256;
+    private long searchFieldsTtlMillis = TimeUnit.HOURS.toMillis(24);
+    private long detailTtlMillis = TimeUnit.MINUTES.toMillis(15);
+    private int detailCacheSize = 1000;
+
+    private ApiPool pool;
+    private TtlCache<String, List<SearchField>> searchFieldsCache;
+    private TtlCache<String, String> detailCache;
+    private HttpServer server;
+    private ExecutorService workers;
+    private ScheduledExecutorService housekeeping;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ThreadLocal<Boolean> shedCurrent = new ThreadLocal<>();
+
+    public Gateway(LibraryProvider libraries, HttpClientFactory httpClientFactory) {
+        this.libraries = libraries;
+        this.httpClientFactory = httpClientFactory;
+    }
+
+    /**
+     * Starts serving on the given address. Settings have to be changed before calling this.
+     */
+    public void start(InetSocketAddress address) throws IOException {
+        pool = new ApiPool(this::createApi, instancesPerLibrary, idleTimeoutMillis);
+        searchFieldsCache = new TtlCache<>(1000, searchFieldsTtlMillis);
+        detailCache = new TtlCache<>(detailCacheSize, detailTtlMillis);
+
+        workers = Executors.newFixedThreadPool(threads);
+        housekeeping = Executors.newSingleThreadScheduledExecutor();
+        long evictionInterval = Math.max(idleTimeoutMillis / 2, 1000);
+        housekeeping.scheduleWithFixedDelay(pool::evictIdle, evictionInterval, evictionInterval,
+                TimeUnit.MILLISECONDS);
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(new SheddingExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        if (workers != null) workers.shutdownNow();
+        if (housekeeping != null) housekeeping.shutdownNow();
+    }
+
+    /**
+     * @return the port the gateway listens on, useful if it was started on port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public GatewayMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ApiPool getPool() {
+        return pool;
+    }
+
+    protected OpacApi createApi(Library library) {
+        OpacApi api = OpacApiFactory.create(library, new DummyStringProvider(), httpClientFactory,
+                null, null, false, CoverDownloadStrategy.SYNCHRONOUS, metrics);
+        if (api == null) {
+            throw new IllegalArgumentException("Unsupported API " + library.getApi());
+        }
+        return api;
+    }
+
+    /**
+     * Passes requests on to the worker threads and remembers when they were queued, so that
+     * requests that waited too long can be rejected once a worker picks them up.
+     */
+    private class SheddingExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            final long enqueued = System.currentTimeMillis();
+            final boolean full = queued.incrementAndGet() > maxQueued;
+            workers.execute(() -> {
+                queued.decrementAndGet();
+                shedCurrent.set(full || System.currentTimeMillis() - enqueued > maxQueueMillis);
+                try {
+                    command.run();
+                } finally {
+                    shedCurrent.remove();
+                }
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.currentTimeMillis();
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            boolean library = path.length == 4 && path[1].equals("libraries");
+            if (Boolean.TRUE.equals(shedCurrent.get())) {
+                metrics.requestShed();
+                sendError(exchange, 503, "Too many requests, try again later");
+                if (library) {
+                    metrics.requestFinished(path[3], 503, System.currentTimeMillis() - start);
+                }
+                return;
+            }
+
+            if (path.length == 2 && path[1].equals("metrics")) {
+                send(exchange, 200, metricsJSON().toString());
+                return;
+            }
+            if (!library) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+
+            String endpoint = path[3];
+            int status;
+            try {
+                status = handleLibrary(exchange, path[2], endpoint);
+            } catch (Exception e) {
+                status = 500;
+                sendError(exchange, status, e.getClass().getSimpleName());
+            }
+            metrics.requestFinished(endpoint, status, System.currentTimeMillis() - start);
+        } catch (JSONException e) {
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private int handleLibrary(HttpExchange exchange, String ident, String endpoint)
+            throws Exception {
+        boolean post;
+        switch (endpoint) {
+            case "searchfields":
+            case "search":
+            case "detail":
+                post = false;
+                break;
+            case "account":
+            case "prolong":
+            case "reserve":
+                post = true;
+                break;
+            default:
+                return sendError(exchange, 404, "Unknown endpoint " + endpoint);
+        }
+        if (!exchange.getRequestMethod().equals(post ? "POST" : "GET")) {
+            return sendError(exchange, 405, "Method not allowed");
+        }
+
+        Library library = libraries.getLibrary(ident);
+        if (library == null) {
+            return sendError(exchange, 404, "Unknown library " + ident);
+        }
+
+        Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+        if (post) {
+            params.putAll(parseParams(
+                    Okio.buffer(Okio.source(exchange.getRequestBody())).readUtf8()));
+        }
+
+        if (endpoint.equals("detail")) {
+            String id = params.get("id");
+            if (id == null) return sendError(exchange, 400, "Missing parameter id");
+            String cached = detailCache.get(detailKey(ident, params));
+            if (cached != null) return send(exchange, 200, cached);
+        } else if (endpoint.equals("searchfields")) {
+            List<SearchField> cached = searchFieldsCache.get(ident);
+            if (cached != null) {
+                return send(exchange, 200, Serializer.searchFields(cached).toString());
+            }
+        } else if (post && (params.get("username") == null || params.get("password") == null)) {
+            return sendError(exchange, 400, "Missing credentials");
+        }
+
+        // account requests of the same user should end up on the same instance, so that
+        // multi-step actions and sessions are preserved. Instances logged in as one user are
+        // never handed to another one.
+        String affinity = post ? accountKey(ident, params).toString() : null;
+        ApiPool.Lease lease;
+        try {
+            lease = pool.acquire(library, affinity, acquireTimeoutMillis);
+        } catch (OverloadedException e) {
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            return sendError(exchange, 503, e.getMessage());
+        }
+        try {
+            return call(exchange, lease.getApi(), library, endpoint, params);
+        } catch (OpacApi.OpacErrorException e) {
+            return sendError(exchange, 422, e.getMessage());
+        } catch (IOException e) {
+            // the session might be in an unknown state now
+            lease.discard();
+            return sendError(exchange, 502, "Library not reachable");
+        } catch (Exception e) {
+            lease.discard();
+            throw e;
+        } finally {
+            lease.close();
+        }
+    }
+
+    private int call(HttpExchange exchange, OpacApi api, Library library, String endpoint,
+            Map<String, String> params) throws Exception {
+        String ident = library.getIdent();
+        switch (endpoint) {
+            case "searchfields":
+                return send(exchange, 200,
+                        Serializer.searchFields(getSearchFields(api, ident)).toString());
+            case "search": {
+                List<SearchQuery> query = new ArrayList<>();
+                for (SearchField field : getSearchFields(api, ident)) {
+                    String value = params.get(field.getId());
+                    if (value != null) query.add(new SearchQuery(field, value));
+                }
+                if (query.isEmpty()) return sendError(exchange, 400, "No search query");
+                return send(exchange, 200, Serializer.searchResult(api.search(query)).toString());
+            }
+            case "detail": {
+                String id = params.get("id");
+                DetailedItem item = api.getResultById(id, params.get("homebranch"));
+                if (item == null) return sendError(exchange, 404, "Unknown item " + id);
+                String json = Serializer.detailedItem(item).toString();
+                detailCache.put(detailKey(ident, params), json);
+                return send(exchange, 200, json);
+            }
+            case "account":
+                return send(exchange, 200,
+                        Serializer.accountData(api.account(account(ident, params))).toString());
+            case "prolong": {
+                String media = params.get("media");
+                if (media == null) return sendError(exchange, 400, "Missing parameter media");
+                OpacApi.ProlongResult result = api.prolong(media, account(ident, params),
+                        parseInt(params.get("useraction")), params.get("selection"));
+                return send(exchange, 200, Serializer.multiStepResult(result).toString());
+            }
+            case "reserve": {
+                String id = params.get("id");
+                if (id == null) return sendError(exchange, 400, "Missing parameter id");
+                DetailedItem item = api.getResultById(id, params.get("homebranch"));
+                if (item == null) return sendError(exchange, 404, "Unknown item " + id);
+                // pooled instances are shared, so always reset the preferred branch
+                api.setPreferredBranch(
+                        homeBranchName(getSearchFields(api, ident), params.get("homebranch")));
+                OpacApi.ReservationResult result = api.reservation(item, account(ident, params),
+                        parseInt(params.get("useraction")), params.get("selection"));
+                return send(exchange, 200, Serializer.multiStepResult(result).toString());
+            }
+            default:
+                return sendError(exchange, 404, "Unknown endpoint " + endpoint);
+        }
+    }
+
+    /**
+     * The details of an item depend on the home branch, e.g. for the order of the copies, so it is
+     * part of the key.
+     */
+    private static String detailKey(String ident, Map<String, String> params) {
+        String homebranch = params.get("homebranch");
+        return ident + "\n" + params.get("id") + "\n" + (homebranch != null ? homebranch : "");
+    }
+
+    private List<SearchField> getSearchFields(OpacApi api, String ident) throws Exception {
+        List<SearchField> fields = searchFieldsCache.get(ident);
+        if (fields == null) {
+            fields = api.getSearchFields();
+            searchFieldsCache.put(ident, fields);
+        }
+        return fields;
+    }
+
+    /**
+     * The home branch is given as a key of the search form's branch field, but reservation forms
+     * use different keys for the same branches, so they can only be matched by name.
+     */
+    private static String homeBranchName(List<SearchField> fields, String key) {
+        if (key == null) return null;
+        for (SearchField field : fields) {
+            if (field.getMeaning() == SearchField.Meaning.HOME_BRANCH
+                    && field instanceof DropdownSearchField) {
+                return ((DropdownSearchField) field).getDropdownValue(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The APIs skip the login if they are already logged in with an account of the same id, so
+     * every combination of library, user name and password gets its own stable key.
+     */
+    private static UUID accountKey(String ident, Map<String, String> params) {
+        return UUID.nameUUIDFromBytes((ident + "\n" + params.get("username") + "\n" +
+                params.get("password")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Account account(String ident, Map<String, String> params) {
+        Account account = new Account();
+        account.setId(accountKey(ident, params).getMostSignificantBits());
+        account.setLibrary(ident);
+        account.setName(params.get("username"));
+        account.setPassword(params.get("password"));
+        return account;
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static Map<String, String> parseParams(String encoded) {
+        Map<String, String> params = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) return params;
+        try {
+            for (String pair : encoded.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq < 0) continue;
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            // ignore malformed parameters
+        }
+        return params;
+    }
+
+    private JSONObject metricsJSON() throws JSONException {
+        JSONObject json = metrics.toJSON();
+        JSONObject pools = new JSONObject();
+        for (String ident : pool.getLibraries()) {
+            JSONObject p = new JSONObject();
+            p.put("active", pool.getActiveCount(ident));
+            p.put("idle", pool.getIdleCount(ident));
+            pools.put(ident, p);
+        }
+        json.put("pools", pools);
+        JSONObject caches = new JSONObject();
+        caches.put("searchfields", cacheJSON(searchFieldsCache));
+        caches.put("detail", cacheJSON(detailCache));
+        json.put("caches", caches);
+        json.put("queued", queued.get());
+        return json;
+    }
+
+    private static JSONObject cacheJSON(TtlCache<?, ?> cache) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("size", cache.size());
+        json.put("hits", cache.getHits());
+        json.put("misses", cache.getMisses());
+        return json;
+    }
+
+    private static int sendError(HttpExchange exchange, int status, String message)
+            throws IOException {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("error", message != null ? message : "");
+            return send(exchange, status, json.toString());
+        } catch (JSONException e) {
+            return send(exchange, status, "{}");
+        }
+    }
+
+    private static int send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+        return status;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setInstancesPerLibrary(int instancesPerLibrary) {
+        this.instancesPerLibrary = instancesPerLibrary;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public void setMaxQueueMillis(long maxQueueMillis) {
+        this.maxQueueMillis = maxQueueMillis;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public void setSearchFieldsTtlMillis(long searchFieldsTtlMillis) {
+        this.searchFieldsTtlMillis = searchFieldsTtlMillis;
+    }
+
+    public void setDetailTtlMillis(long detailTtlMillis) {
+        this.detailTtlMillis = detailTtlMillis;
+    }
+
+    public void setDetailCacheSize(int detailCacheSize) {
+        this.detailCacheSize = detailCacheSize;
+    }
+
+    /**
+     * Usage: <code>Gateway &lt;port&gt; &lt;directory with library configurations&gt;</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Gateway <port> <directory with library configurations>");
+            System.exit(1);
+        }
+        Gateway gateway = new Gateway(new DirectoryLibraryProvider(new File(args[1])),
+                new HttpClientFactory(USER_AGENT));
+        gateway.start(new InetSocketAddress(Integer.parseInt(args[0])));
+        System.out.println("Listening on port " + gateway.getPort());
+    }
+}
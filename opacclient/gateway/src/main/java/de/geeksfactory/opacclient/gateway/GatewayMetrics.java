@@ -0,0 +1,106 @@
+package de.geeksfactory.opacclient.gateway;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
+import de.geeksfactory.opacclient.reporting.OperationMetrics;
+import de.geeksfactory.opacclient.reporting.RequestMetrics;
+
+/**
+ * Counts requests to the gateway per endpoint, and the HTTP requests the pooled API instances
+ * send to the OPACs per library, as reported through {@link MetricsHandler}.
+ */
+public class GatewayMetrics implements MetricsHandler {
+    private final Map<String, Counter> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Counter> upstream = new ConcurrentHashMap<>();
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * Records a finished request to the given endpoint.
+     *
+     * @param status the HTTP status code sent to the client
+     */
+    public void requestFinished(String endpoint, int status, long durationMillis) {
+        Counter counter = endpoints.computeIfAbsent(endpoint, k -> new Counter());
+        counter.add(durationMillis, status >= 500 && status != 503);
+        if (status == 503) counter.rejected.incrementAndGet();
+    }
+
+    /**
+     * Records a request that was rejected because the gateway was overloaded. Requests to an
+     * endpoint are additionally recorded with {@link #requestFinished(String, int, long)}.
+     */
+    public void requestShed() {
+        shed.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestFinished(RequestMetrics metrics) {
+        upstream.computeIfAbsent(String.valueOf(metrics.getLibrary()), k -> new Counter())
+                .add(metrics.getTotalMillis(), metrics.isFailed() || metrics.getStatusCode() >= 500);
+    }
+
+    @Override
+    public void onOperationFinished(OperationMetrics metrics) {
+        // individual requests are already counted
+    }
+
+    public long getCount(String endpoint) {
+        Counter counter = endpoints.get(endpoint);
+        return counter != null ? counter.count.get() : 0;
+    }
+
+    public long getRejected(String endpoint) {
+        Counter counter = endpoints.get(endpoint);
+        return counter != null ? counter.rejected.get() : 0;
+    }
+
+    public long getShed() {
+        return shed.get();
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("endpoints", toJSON(endpoints));
+        json.put("upstream", toJSON(upstream));
+        json.put("shed", shed.get());
+        return json;
+    }
+
+    private static JSONObject toJSON(Map<String, Counter> counters) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            Counter counter = entry.getValue();
+            JSONObject item = new JSONObject();
+            long count = counter.count.get();
+            item.put("count", count);
+            item.put("errors", counter.errors.get());
+            item.put("rejected", counter.rejected.get());
+            item.put("avg_millis", count > 0 ? counter.totalMillis.get() / count : 0);
+            item.put("max_millis", counter.maxMillis.get());
+            json.put(entry.getKey(), item);
+        }
+        return json;
+    }
+
+    private static class Counter {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        final AtomicLong maxMillis = new AtomicLong();
+
+        void add(long millis, boolean error) {
+            count.incrementAndGet();
+            if (error) errors.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.geeksfactory.opacclient.gateway;
+
+import java.io.IOException;
+
+import de.geeksfactory.opacclient.objects.Library;
+
+/**
+ * Looks up the configuration of the libraries the gateway serves.
+ */
+public interface LibraryProvider {
+    /**
+     * @return the library with the given identifier, or <code>null</code> if it is unknown
+     */
+    Library getLibrary(String ident) throws IOException;
+}
@@ -0,0 +1,13 @@
+package de.geeksfactory.opacclient.gateway;
+
+/**
+ * Thrown if a request is rejected because the gateway or the library it is meant for is too busy
+ * to handle it in time. Clients receive HTTP status 503 and should retry later.
+ */
+public class OverloadedException extends Exception {
+    private static final long serialVersionUID = 3519437346028145371L;
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,180 @@
+package de.geeksfactory.opacclient.gateway;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.objects.AccountData;
+import de.geeksfactory.opacclient.objects.Copy;
+import de.geeksfactory.opacclient.objects.Detail;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+import de.geeksfactory.opacclient.objects.LentItem;
+import de.geeksfactory.opacclient.objects.ReservedItem;
+import de.geeksfactory.opacclient.objects.SearchRequestResult;
+import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.objects.Volume;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+
+/**
+ * Converts the results of {@link OpacApi} calls to the JSON returned by the gateway. Properties
+ * that are <code>null</code> are left out.
+ */
+public class Serializer {
+    private Serializer() {
+    }
+
+    public static JSONArray searchFields(List<SearchField> fields) throws JSONException {
+        JSONArray json = new JSONArray();
+        for (SearchField field : fields) {
+            json.put(field.toJSON());
+        }
+        return json;
+    }
+
+    public static JSONObject searchResult(SearchRequestResult result) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("total_result_count", result.getTotal_result_count());
+        json.put("page_count", result.getPage_count());
+        json.put("page_index", result.getPage_index());
+        JSONArray results = new JSONArray();
+        for (SearchResult item : result.getResults()) {
+            JSONObject r = new JSONObject();
+            r.put("id", item.getId());
+            r.put("nr", item.getNr());
+            r.put("type", item.getType() != null ? item.getType().name() : null);
+            r.put("status", item.getStatus() != null ? item.getStatus().name() : null);
+            r.put("title", item.getTitle());
+            r.put("subtitle", item.getSubtitle());
+            if (item.getAuthors() != null && !item.getAuthors().isEmpty()) {
+                r.put("authors", new JSONArray(item.getAuthors()));
+            }
+            r.put("year", item.getYear());
+            r.put("publisher", item.getPublisher());
+            r.put("series", item.getSeries());
+            r.put("availability", item.getAvailability());
+            r.put("cover", item.getCover());
+            r.put("html", item.getInnerhtml());
+            results.put(r);
+        }
+        json.put("results", results);
+        return json;
+    }
+
+    public static JSONObject detailedItem(DetailedItem item) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", item.getId());
+        json.put("title", item.getTitle());
+        json.put("cover", item.getCover());
+        json.put("reservable", item.isReservable());
+        json.put("media_type", item.getMediaType() != null ? item.getMediaType().name() : null);
+        JSONArray details = new JSONArray();
+        for (Detail detail : item.getDetails()) {
+            JSONObject d = new JSONObject();
+            d.put("desc", detail.getDesc());
+            d.put("content", detail.getContent());
+            details.put(d);
+        }
+        json.put("details", details);
+        JSONArray copies = new JSONArray();
+        for (Copy copy : item.getCopies()) {
+            JSONObject c = new JSONObject();
+            c.put("barcode", copy.getBarcode());
+            c.put("location", copy.getLocation());
+            c.put("department", copy.getDepartment());
+            c.put("branch", copy.getBranch());
+            c.put("issue", copy.getIssue());
+            c.put("status", copy.getStatus());
+            c.put("return_date",
+                    copy.getReturnDate() != null ? copy.getReturnDate().toString() : null);
+            c.put("reservations", copy.getReservations());
+            c.put("shelfmark", copy.getShelfmark());
+            c.put("url", copy.getUrl());
+            copies.put(c);
+        }
+        json.put("copies", copies);
+        JSONArray volumes = new JSONArray();
+        for (Volume volume : item.getVolumes()) {
+            JSONObject v = new JSONObject();
+            v.put("id", volume.getId());
+            v.put("title", volume.getTitle());
+            volumes.put(v);
+        }
+        json.put("volumes", volumes);
+        return json;
+    }
+
+    public static JSONObject accountData(AccountData data) throws JSONException {
+        JSONObject json = new JSONObject();
+        JSONArray lent = new JSONArray();
+        for (LentItem item : data.getLent()) {
+            JSONObject l = new JSONObject();
+            l.put("id", item.getId());
+            l.put("title", item.getTitle());
+            l.put("author", item.getAuthor());
+            l.put("format", item.getFormat());
+            l.put("status", item.getStatus());
+            l.put("barcode", item.getBarcode());
+            l.put("deadline", item.getDeadline() != null ? item.getDeadline().toString() : null);
+            l.put("home_branch", item.getHomeBranch());
+            l.put("lending_branch", item.getLendingBranch());
+            l.put("prolong_data", item.getProlongData());
+            l.put("renewable", item.isRenewable());
+            l.put("download_data", item.getDownloadData());
+            lent.put(l);
+        }
+        json.put("lent", lent);
+        JSONArray reservations = new JSONArray();
+        for (ReservedItem item : data.getReservations()) {
+            JSONObject r = new JSONObject();
+            r.put("id", item.getId());
+            r.put("title", item.getTitle());
+            r.put("author", item.getAuthor());
+            r.put("format", item.getFormat());
+            r.put("status", item.getStatus());
+            r.put("ready_date",
+                    item.getReadyDate() != null ? item.getReadyDate().toString() : null);
+            r.put("expiration_date", item.getExpirationDate() != null ?
+                    item.getExpirationDate().toString() : null);
+            r.put("branch", item.getBranch());
+            r.put("cancel_data", item.getCancelData());
+            r.put("booking_data", item.getBookingData());
+            reservations.put(r);
+        }
+        json.put("reservations", reservations);
+        json.put("pending_fees", data.getPendingFees());
+        json.put("valid_until", data.getValidUntil());
+        json.put("warning", data.getWarning());
+        return json;
+    }
+
+    public static JSONObject multiStepResult(OpacApi.MultiStepResult result)
+            throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("status", result.getStatus().name());
+        json.put("message", result.getMessage());
+        json.put("action_identifier", result.getActionIdentifier());
+        if (result.getSelection() != null) {
+            JSONArray selection = new JSONArray();
+            for (Map<String, String> option : result.getSelection()) {
+                selection.put(new JSONObject(option));
+            }
+            json.put("selection", selection);
+        }
+        if (result.getDetails() != null) {
+            JSONArray details = new JSONArray();
+            for (String[] detail : result.getDetails()) {
+                JSONArray d = new JSONArray();
+                for (String part : detail) {
+                    d.put(part);
+                }
+                details.put(d);
+            }
+            json.put("details", details);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,112 @@
+package de.geeksfactory.opacclient.gateway;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.apis.TestApi;
+import de.geeksfactory.opacclient.objects.Library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ApiPoolTest {
+    private Library library;
+    private AtomicInteger created;
+    private ApiPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        library = Library.fromJSON("Test", new JSONObject(
+                "{\"api\": \"test\", \"city\": \"Test\", \"title\": \"Test\", " +
+                        "\"country\": \"Deutschland\", \"state\": \"Test\", \"data\": {}}"));
+        created = new AtomicInteger();
+        pool = new ApiPool(lib -> {
+            created.incrementAndGet();
+            return new TestApi();
+        }, 2, 60000);
+    }
+
+    @Test
+    public void reusesInstances() throws Exception {
+        OpacApi first;
+        try (ApiPool.Lease lease = pool.acquire(library, null, 0)) {
+            first = lease.getApi();
+        }
+        try (ApiPool.Lease lease = pool.acquire(library, null, 0)) {
+            assertSame(first, lease.getApi());
+        }
+        assertEquals(1, created.get());
+        assertEquals(1, pool.getIdleCount("Test"));
+    }
+
+    @Test
+    public void prefersAffinity() throws Exception {
+        ApiPool.Lease a = pool.acquire(library, "alice", 0);
+        ApiPool.Lease b = pool.acquire(library, "bob", 0);
+        OpacApi alice = a.getApi();
+        a.close();
+        b.close();
+        // bob's instance is the most recently used one, but alice should get hers back
+        try (ApiPool.Lease lease = pool.acquire(library, "alice", 0)) {
+            assertSame(alice, lease.getApi());
+        }
+    }
+
+    @Test
+    public void doesNotShareInstancesBetweenUsers() throws Exception {
+        OpacApi alice;
+        try (ApiPool.Lease lease = pool.acquire(library, "alice", 0)) {
+            alice = lease.getApi();
+        }
+        try (ApiPool.Lease lease = pool.acquire(library, "bob", 0)) {
+            assertNotSame(alice, lease.getApi());
+        }
+        try (ApiPool.Lease lease = pool.acquire(library, null, 0)) {
+            assertNotSame(alice, lease.getApi());
+        }
+        // the least recently used instance made room for the new ones
+        assertEquals(3, created.get());
+        assertEquals(2, pool.getIdleCount("Test"));
+    }
+
+    @Test
+    public void limitsConcurrency() throws Exception {
+        ApiPool.Lease a = pool.acquire(library, null, 0);
+        ApiPool.Lease b = pool.acquire(library, null, 0);
+        assertNotSame(a.getApi(), b.getApi());
+        assertEquals(2, pool.getActiveCount("Test"));
+        try {
+            pool.acquire(library, null, 10);
+            fail();
+        } catch (OverloadedException e) {
+            // expected
+        }
+        a.close();
+        pool.acquire(library, null, 0).close();
+        b.close();
+    }
+
+    @Test
+    public void discardedInstancesAreNotReused() throws Exception {
+        try (ApiPool.Lease lease = pool.acquire(library, null, 0)) {
+            lease.discard();
+        }
+        assertEquals(0, pool.getIdleCount("Test"));
+        assertEquals(0, pool.getActiveCount("Test"));
+    }
+
+    @Test
+    public void evictsIdleInstances() throws Exception {
+        pool = new ApiPool(lib -> new TestApi(), 2, 0);
+        pool.acquire(library, null, 0).close();
+        Thread.sleep(5);
+        assertEquals(1, pool.evictIdle());
+        assertEquals(0, pool.getIdleCount("Test"));
+    }
+}
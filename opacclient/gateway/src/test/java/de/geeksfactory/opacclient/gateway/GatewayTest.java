@@ -0,0 +1,163 @@
+package de.geeksfactory.opacclient.gateway;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.apis.OpacApi.OpacErrorException;
+import de.geeksfactory.opacclient.apis.TestApi;
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.AccountData;
+import de.geeksfactory.opacclient.objects.Library;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the gateway against the offline {@link de.geeksfactory.opacclient.apis.TestApi}.
+ */
+public class GatewayTest {
+    private Gateway gateway;
+    private final List<String> sessions = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        final Library library = Library.fromJSON("Test", new JSONObject(
+                "{\"api\": \"test\", \"city\": \"Test\", \"title\": \"Test\", " +
+                        "\"country\": \"Deutschland\", \"state\": \"Test\", " +
+                        "\"data\": {\"url\": \"http://127.0.0.1:1/\"}}"));
+        gateway = new Gateway(ident -> ident.equals("Test") ? library : null,
+                new HttpClientFactory(Gateway.USER_AGENT)) {
+            @Override
+            protected OpacApi createApi(Library library) {
+                OpacApi api = new SessionTestApi();
+                api.init(library, new HttpClientFactory(Gateway.USER_AGENT), false);
+                return api;
+            }
+        };
+        gateway.setInstancesPerLibrary(1);
+        gateway.start(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @After
+    public void tearDown() {
+        gateway.stop();
+    }
+
+    @Test
+    public void searchFieldsAreCached() throws Exception {
+        assertEquals(200, request("GET", "/libraries/Test/searchfields", null).code);
+        assertEquals(200, request("GET", "/libraries/Test/searchfields", null).code);
+        JSONObject caches = new JSONObject(request("GET", "/metrics", null).body)
+                .getJSONObject("caches").getJSONObject("searchfields");
+        assertEquals(1, caches.getLong("hits"));
+        assertEquals(1, gateway.getPool().getIdleCount("Test"));
+    }
+
+    @Test
+    public void search() throws Exception {
+        Response response = request("GET", "/libraries/Test/search?free=Kurz", null);
+        assertEquals(200, response.code);
+        assertTrue(new JSONObject(response.body).getJSONArray("results").length() > 0);
+    }
+
+    @Test
+    public void account() throws Exception {
+        Response response = request("POST", "/libraries/Test/account",
+                "username=test&password=secret");
+        assertEquals(200, response.code);
+        assertTrue(new JSONObject(response.body).has("lent"));
+        assertEquals(1, gateway.getMetrics().getCount("account"));
+    }
+
+    @Test
+    public void sessionsAreNotShared() throws Exception {
+        assertEquals(200, request("POST", "/libraries/Test/account",
+                "username=alice&password=secret").code);
+        assertEquals(200, request("POST", "/libraries/Test/account",
+                "username=bob&password=hunter2").code);
+        assertEquals(200, request("POST", "/libraries/Test/account",
+                "username=alice&password=secret").code);
+        assertEquals(200, request("POST", "/libraries/Test/account",
+                "username=alice&password=wrong").code);
+        assertEquals(Arrays.asList("alice/secret", "bob/hunter2", "alice/secret", "alice/wrong"),
+                sessions);
+    }
+
+    @Test
+    public void errors() throws Exception {
+        assertEquals(404, request("GET", "/libraries/Unknown/searchfields", null).code);
+        assertEquals(404, request("GET", "/libraries/Test/unknown", null).code);
+        assertEquals(405, request("GET", "/libraries/Test/account", null).code);
+        assertEquals(400, request("POST", "/libraries/Test/account", "username=test").code);
+        assertEquals(404, request("GET", "/libraries/Test/detail?id=1", null).code);
+    }
+
+    @Test
+    public void shedRequestsAreCounted() throws Exception {
+        gateway.setMaxQueued(0);
+        assertEquals(503, request("GET", "/libraries/Test/search?free=Kurz", null).code);
+        assertEquals(1, gateway.getMetrics().getShed());
+        assertEquals(1, gateway.getMetrics().getCount("search"));
+        assertEquals(1, gateway.getMetrics().getRejected("search"));
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + gateway.getPort() + path).openConnection();
+        conn.setRequestMethod(method);
+        if (body != null) {
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Response response = new Response();
+        response.code = conn.getResponseCode();
+        InputStream is = response.code < 400 ? conn.getInputStream() : conn.getErrorStream();
+        response.body = is != null ? Okio.buffer(Okio.source(is)).readUtf8() : "";
+        conn.disconnect();
+        return response;
+    }
+
+    /**
+     * Like the real APIs, only logs in again if the account id differs from the one of the
+     * current session, and remembers which session answered each request.
+     */
+    private class SessionTestApi extends TestApi {
+        private Account loggedInAs;
+
+        @Override
+        public AccountData account(Account account)
+                throws IOException, JSONException, OpacErrorException {
+            if (loggedInAs == null || loggedInAs.getId() != account.getId()) {
+                loggedInAs = account;
+            }
+            sessions.add(loggedInAs.getName() + "/" + loggedInAs.getPassword());
+            return super.account(account);
+        }
+    }
+
+    private static class Response {
+        int code;
+        String body;
+    }
+}
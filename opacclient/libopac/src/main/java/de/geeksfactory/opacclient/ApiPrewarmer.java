@@ -0,0 +1,179 @@
+package de.geeksfactory.opacclient;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.geeksfactory.opacclient.apis.BaseApi;
+import de.geeksfactory.opacclient.apis.OpacApi;
+
+/**
+ * Prepares an {@link OpacApi} instance in the background right after a library has been selected,
+ * so that the user's first search does not need to wait for DNS resolution, connection setup and
+ * the session bootstrap performed by {@link OpacApi#start()}.
+ *
+ * {@link OpacApi#start()} implementations are not safe to run concurrently with other requests on
+ * the same instance, so {@link BaseApi} instances hold back their first requests until the
+ * pre-warm has finished, see {@link BaseApi#setPrewarmHandle(Handle)}.
+ */
+public class ApiPrewarmer {
+    private static ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a pre-warmer running on a shared pool of daemon threads.
+     */
+    public ApiPrewarmer() {
+        this(getDefaultExecutor());
+    }
+
+    public ApiPrewarmer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ApiPrewarmer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Starts pre-warming the given API instance: opens a pooled connection to the OPAC server and
+     * runs {@link OpacApi#start()} if the instance is not initialised yet.
+     *
+     * @param api the API instance to prepare, as returned by {@link OpacApiFactory}
+     * @return a handle to wait for or cancel the pre-warm
+     */
+    public Handle prewarm(final OpacApi api) {
+        return prewarm(api, null, true);
+    }
+
+    /**
+     * Starts pre-warming the given API instance like {@link #prewarm(OpacApi)}, but runs the given
+     * step first, e.g. to restore a saved session from disk without blocking the calling thread.
+     *
+     * @param api     the API instance to prepare, as returned by {@link OpacApiFactory}
+     * @param prepare runs on the pre-warm thread before connecting, may be null
+     * @param connect whether to connect and run {@link OpacApi#start()}, false if the device is
+     *                offline
+     * @return a handle to wait for or cancel the pre-warm
+     */
+    public Handle prewarm(final OpacApi api, final Runnable prepare, final boolean connect) {
+        final Handle handle = new Handle();
+        if (api instanceof BaseApi) {
+            ((BaseApi) api).setPrewarmHandle(handle);
+        }
+        Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                handle.thread = Thread.currentThread();
+                try {
+                    if (handle.isCancelled()) {
+                        return;
+                    }
+                    if (prepare != null) {
+                        prepare.run();
+                    }
+                    if (!connect || handle.isCancelled()) {
+                        return;
+                    }
+                    if (api instanceof BaseApi) {
+                        BaseApi baseApi = (BaseApi) api;
+                        try {
+                            baseApi.prewarmConnection();
+                        } catch (IOException e) {
+                            // not fatal, start() will try again on its own
+                        }
+                        if (handle.isCancelled() || baseApi.isInitialised()) {
+                            return;
+                        }
+                    }
+                    api.start();
+                } catch (IOException e) {
+                    // The API will call start() again itself when it is needed
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    handle.thread = null;
+                    handle.done.countDown();
+                }
+            }
+        });
+        handle.setFuture(future);
+        return handle;
+    }
+
+    public static class Handle {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        private volatile Thread thread;
+
+        private void setFuture(Future<?> future) {
+            this.future = future;
+            // cancel() might have been called before the future was known
+            if (cancelled) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Cancels the pre-warm, e.g. because the user switched to a different library. Steps that
+         * have not started yet are skipped and a running step is interrupted. Threads waiting in
+         * {@link #await(long, TimeUnit)} are released immediately, so only cancel if the API
+         * instance is not going to be used anymore.
+         */
+        public void cancel() {
+            cancelled = true;
+            Future<?> future = this.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+            // if the task never ran, nobody else will count down
+            done.countDown();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * @return whether the calling thread is the one running the pre-warm, which must not wait
+         * for itself
+         */
+        public boolean isRunningOnCurrentThread() {
+            return thread == Thread.currentThread();
+        }
+
+        /**
+         * Blocks until the pre-warm has finished or the timeout has elapsed.
+         *
+         * @return true if the pre-warm has finished
+         */
+        public boolean await(long timeout, TimeUnit unit) {
+            try {
+                return done.await(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
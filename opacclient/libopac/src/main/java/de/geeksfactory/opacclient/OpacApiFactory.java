@@ -49,6 +49,7 @@ import de.geeksfactory.opacclient.i18n.DummyStringProvider;
 import de.geeksfactory.opacclient.i18n.StringProvider;
 import de.geeksfactory.opacclient.networking.HttpClientFactory;
 import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
 import de.geeksfactory.opacclient.reporting.ReportHandler;
 
 /**
@@ -91,6 +92,12 @@ public class OpacApiFactory {
         return create(lib, sp, hcf, lang, reportHandler, debug, CoverDownloadStrategy.SYNCHRONOUS);
     }
 
+    public static OpacApi create(Library lib, StringProvider sp, HttpClientFactory hcf,
+            String lang, ReportHandler reportHandler, boolean debug,
+            CoverDownloadStrategy coverDownloadStrategy) {
+        return create(lib, sp, hcf, lang, reportHandler, debug, coverDownloadStrategy, null);
+    }
+
     /**
      * Creates an {@link OpacApi} instance for accessing the given {@link Library}
      *
@@ -101,11 +108,13 @@ public class OpacApiFactory {
      * {@link OpacApi#setLanguage(String)}
      * @param debug turn on debug mode (if supported by library system)
      * @param coverDownloadStrategy how to download covers (if supported by library system)
+     * @param metricsHandler receives HTTP request metrics, see
+     * {@link OpacApi#setMetricsHandler(MetricsHandler)}. May be null.
      * @return a new {@link OpacApi} instance
      */
     public static OpacApi create(Library lib, StringProvider sp, HttpClientFactory hcf,
             String lang, ReportHandler reportHandler, boolean debug,
-            CoverDownloadStrategy coverDownloadStrategy) {
+            CoverDownloadStrategy coverDownloadStrategy, MetricsHandler metricsHandler) {
         OpacApi newApiInstance;
         if (lib.getApi().equals("bibliotheca")) {
             newApiInstance = new Bibliotheca();
@@ -175,6 +184,7 @@ public class OpacApiFactory {
         newApiInstance.init(lib, hcf, debug);
         newApiInstance.setStringProvider(sp);
         newApiInstance.setReportHandler(reportHandler);
+        newApiInstance.setMetricsHandler(metricsHandler);
         if (lang != null) newApiInstance.setLanguage(lang);
         return newApiInstance;
     }
@@ -0,0 +1,37 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+
+import de.geeksfactory.opacclient.apis.OpacApi.OpacErrorException;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.AccountData;
+
+/**
+ * If an {@link OpacApi} implementation also implements this interface, background account
+ * synchronisation can skip parsing and storing the account data if it did not change since the
+ * last synchronisation.
+ *
+ * Implementations compute a cheap fingerprint of the account pages (HTTP validators where
+ * available, otherwise a digest of the relevant HTML, see {@link
+ * de.geeksfactory.opacclient.utils.Fingerprint}) before parsing them. They should also set the
+ * fingerprint on the result of {@link OpacApi#account(Account)}, so that data loaded in the
+ * foreground can be reused as well.
+ */
+public interface AccountFingerprintApi {
+
+    /**
+     * Like {@link OpacApi#account(Account)}, but does not parse the account pages if their
+     * fingerprint equals the given one.
+     *
+     * @param account     The account to load
+     * @param fingerprint The value of {@link AccountData#getFingerprint()} of the data stored
+     *                    last time, or <code>null</code>
+     * @return <code>null</code> if the login failed, an object for which {@link
+     * AccountData#isUnchanged()} returns <code>true</code> and which contains no items if the
+     * fingerprint matched, or the full account data including its new fingerprint otherwise.
+     */
+    public AccountData account(Account account, String fingerprint)
+            throws IOException, JSONException, OpacErrorException;
+}
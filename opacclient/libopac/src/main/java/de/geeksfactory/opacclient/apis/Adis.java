@@ -4,6 +4,7 @@ import org.apache.http.NameValuePair;
 import org.apache.http.message.BasicNameValuePair;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
@@ -12,8 +13,6 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,6 +47,7 @@ import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
+import de.geeksfactory.opacclient.utils.UrlUtils;
 import okhttp3.FormBody;
 
 public class Adis extends OkHttpBaseApi implements OpacApi {
@@ -84,10 +84,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
     protected String opac_url = "";
     protected JSONObject data;
     protected Library library;
-    protected int s_requestCount = 0;
-    protected String s_service;
-    protected String s_sid;
-    protected List<String> s_exts;
+    protected AdisSession session = new AdisSession();
     protected String s_alink;
     protected List<NameValuePair> s_pageform;
     protected int s_lastpage;
@@ -99,51 +96,20 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
     protected List<NameValuePair> accountFormBody = null;
 
     public static Map<String, List<String>> getQueryParams(String url) {
-        try {
-            Map<String, List<String>> params = new HashMap<>();
-            String[] urlParts = url.split("\\?");
-            if (urlParts.length > 1) {
-                String query = urlParts[1];
-                for (String param : query.split("&")) {
-                    String[] pair = param.split("=");
-                    String key = URLDecoder.decode(pair[0], "UTF-8");
-                    String value = "";
-                    if (pair.length > 1) {
-                        value = URLDecoder.decode(pair[1], "UTF-8");
-                    }
-
-                    List<String> values = params.get(key);
-                    if (values == null) {
-                        values = new ArrayList<>();
-                        params.put(key, values);
-                    }
-                    values.add(value);
-                }
-            }
-
-            return params;
-        } catch (UnsupportedEncodingException ex) {
-            throw new AssertionError(ex);
-        }
+        return UrlUtils.getQueryParams(url);
     }
 
     public Document htmlGet(String url) throws
             IOException {
 
-        if (!url.contains("requestCount") && s_requestCount >= 0) {
+        if (!url.contains("requestCount") && session.getRequestCount() >= 0) {
             url = url + (url.contains("?") ? "&" : "?") + "requestCount="
-                    + s_requestCount;
+                    + session.getRequestCount();
         }
 
         String html = httpGet(url, getDefaultEncoding());
         Document doc = Jsoup.parse(html);
-        Pattern patRequestCount = Pattern.compile("requestCount=([0-9]+)");
-        for (Element a : doc.select("a")) {
-            Matcher objid_matcher = patRequestCount.matcher(a.attr("href"));
-            if (objid_matcher.matches()) {
-                s_requestCount = Integer.parseInt(objid_matcher.group(1));
-            }
-        }
+        session.update(doc);
         doc.setBaseUri(url);
         return doc;
     }
@@ -158,7 +124,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
             }
         }
         if (!rcf) {
-            data.add(new BasicNameValuePair("requestCount", s_requestCount + ""));
+            data.add(new BasicNameValuePair("requestCount", session.getRequestCount() + ""));
         }
 
         FormBody.Builder builder = new FormBody.Builder();
@@ -168,46 +134,28 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
 
         String html = httpPost(url, builder.build(), getDefaultEncoding());
         Document doc = Jsoup.parse(html);
-        Pattern patRequestCount = Pattern
-                .compile(".*requestCount=([0-9]+)[^0-9].*");
-        for (Element a : doc.select("a")) {
-            Matcher objid_matcher = patRequestCount.matcher(a.attr("href"));
-            if (objid_matcher.matches()) {
-                s_requestCount = Integer.parseInt(objid_matcher.group(1));
-            }
-        }
+        session.update(doc);
         doc.setBaseUri(url);
         return doc;
     }
 
     private void _start() throws IOException, OpacErrorException {
         try {
-            s_requestCount = -1;
-            s_exts = null;
-            s_service = null;
+            session.reset();
             Document doc = htmlGet(opac_url + "?" + data.getString("startparams"));
 
             if (doc.select(".msgpage").size() > 0) {
                 throw new OpacErrorException(doc.select(".msgpage").text());
             }
 
-            Pattern padSid = Pattern
-                    .compile(".*;jsessionid=([0-9A-Fa-f]+)[^0-9A-Fa-f].*");
             for (Element navitem : doc
                     .select("#unav li a, #hnav li a, .tree_ul li a, a.search-adv")) {
                 // Düsseldorf uses a custom layout where the navbar is .tree_ul
                 // in Stuttgart, the navbar is #hnav and advanced search is linked outside the
                 // navbar as .search-adv-repeat
-                if (navitem.attr("href").contains("service=")) {
-                    s_service = getQueryParams(navitem.attr("href")).get(
-                            "service").get(0);
-                }
+                AdisSession.Link link = session.update(navitem.attr("href"));
                 if (navitem.text().contains("Erweiterte Suche")) {
-                    s_exts = getQueryParams(navitem.attr("href")).get("sp");
-                }
-                Matcher objid_matcher = padSid.matcher(navitem.attr("href"));
-                if (objid_matcher.matches()) {
-                    s_sid = objid_matcher.group(1);
+                    session.setExts(link.sp.isEmpty() ? null : link.sp);
                 }
             }
 
@@ -227,13 +175,14 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 accountFormBody = nvpairs_a;
             }
 
-            if (s_exts == null && doc.select("input.search-adv").size() > 0) {
-                // Advanced search does not exist in menu, use account menu item to get s_exts.
+            if (session.getExts() == null && doc.select("input.search-adv").size() > 0) {
+                // Advanced search does not exist in menu, use account menu item to get the sp parameters.
                 // advanced search is accessed through a HTTP POST.
                 // example: HfM Karlsruhe.
                 for (Element navitem : doc.select("#unav li a, #hnav li a, .tree_ul li a")) {
                     if (navitem.text().contains("Konto")) {
-                        s_exts = getQueryParams(navitem.attr("href")).get("sp");
+                        List<String> sp = AdisSession.parseLink(navitem.attr("href")).sp;
+                        session.setExts(sp.isEmpty() ? null : sp);
                         break;
                     }
                 }
@@ -244,8 +193,8 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 advancedSearchFormBody = nvpairs;
             }
             s_pageform = null;
-            if (s_exts == null) {
-                s_exts = Collections.singletonList("SS6");
+            if (session.getExts() == null) {
+                session.setExts(Collections.singletonList("SS6"));
             }
 
         } catch (JSONException e) {
@@ -263,12 +212,53 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         }
     }
 
+    @Override
+    protected void saveSessionState(JSONObject state) throws JSONException {
+        super.saveSessionState(state);
+        session.save(state);
+        state.put("alink", s_alink);
+        state.put("lastpage", s_lastpage);
+        if (s_pageform != null) state.put("pageform", formToJson(s_pageform));
+        if (advancedSearchFormBody != null) {
+            state.put("advancedSearchForm", formToJson(advancedSearchFormBody));
+        }
+    }
+
+    @Override
+    protected void restoreSessionState(JSONObject state) throws JSONException {
+        super.restoreSessionState(state);
+        session.restore(state);
+        s_alink = state.optString("alink", null);
+        s_lastpage = state.getInt("lastpage");
+        if (state.has("pageform")) s_pageform = formFromJson(state.getJSONArray("pageform"));
+        if (state.has("advancedSearchForm")) {
+            advancedSearchFormBody = formFromJson(state.getJSONArray("advancedSearchForm"));
+        }
+    }
+
+    private static JSONArray formToJson(List<NameValuePair> form) {
+        JSONArray array = new JSONArray();
+        for (NameValuePair pair : form) {
+            array.put(new JSONArray(Arrays.asList(pair.getName(), pair.getValue())));
+        }
+        return array;
+    }
+
+    private static List<NameValuePair> formFromJson(JSONArray array) throws JSONException {
+        List<NameValuePair> form = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONArray pair = array.getJSONArray(i);
+            form.add(new BasicNameValuePair(pair.getString(0), pair.optString(1, null)));
+        }
+        return form;
+    }
+
     private Document getAdvancedSearchDoc() throws IOException {
         if (advancedSearchFormBody != null) {
-            return htmlPost(opac_url + ";jsessionid=" + s_sid, advancedSearchFormBody);
+            return htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), advancedSearchFormBody);
         } else {
-            return htmlGet(opac_url + ";jsessionid=" + s_sid + "?service="
-                    + s_service + getSpParams());
+            return htmlGet(opac_url + ";jsessionid=" + session.getSessionId() + "?service="
+                    + session.getService() + getSpParams());
         }
     }
 
@@ -282,7 +272,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
             throws IOException, OpacErrorException {
         _start();
         // TODO: There are also libraries with a different search form,
-        // s_exts=SS2 instead of s_exts=SS6
+        // sp=SS2 instead of sp=SS6
         // e.g. munich. Treat them differently!
         Document doc = getAdvancedSearchDoc();
 
@@ -326,7 +316,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
 
                 dropdownTextCount++;
 
-                if (s_exts.get(0).equals("SS2") || (field.getData() != null &&
+                if (session.getExts().get(0).equals("SS2") || (field.getData() != null &&
                         !field.getData().optBoolean("selectable", true))) {
                     doc.select("input#" + query.getKey()).val(query.getValue());
                 } else {
@@ -368,7 +358,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                     stringProvider.getString(StringProvider.NO_CRITERIA_INPUT));
         }
 
-        Document docresults = htmlPost(opac_url + ";jsessionid=" + s_sid,
+        Document docresults = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(),
                 nvpairs);
 
         return parse_search_wrapped(docresults, 1);
@@ -379,13 +369,13 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
     }
 
     private String getSpParams(String overrideSecond) {
-        if (overrideSecond != null && s_exts.size() == 1) {
+        if (overrideSecond != null && session.getExts().size() == 1) {
             return "&sp=" + overrideSecond;
         }
 
         StringBuilder builder = new StringBuilder();
         int i = 0;
-        for (String sp : s_exts) {
+        for (String sp : session.getExts()) {
             builder.append("&sp=");
             if (i == 1 && overrideSecond != null) {
                 builder.append(overrideSecond);
@@ -419,7 +409,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
             nvpairs.add(new BasicNameValuePair(name + ".x", "1"));
             nvpairs.add(new BasicNameValuePair(name + ".y", "1"));
 
-            doc  = htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs);
+            doc  = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs);
 
             try {
                 return parse_search(doc, page);
@@ -618,7 +608,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 p = s_lastpage - 1;
             }
 
-            Document docresults = htmlPost(opac_url + ";jsessionid=" + s_sid,
+            Document docresults = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(),
                     nvpairs);
             res = parse_search_wrapped(docresults, p);
         }
@@ -659,8 +649,8 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 nvpairs.remove((int) indexes.get(j));
             }
             nvpairs.add(new BasicNameValuePair("selected", "ZTEXT       " + id));
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs);
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs);
             // Yep, two times.
         }
 
@@ -680,14 +670,14 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         String name = getNameToolbarTrefferListe(doc);
         nvpairs.add(new BasicNameValuePair(name + ".x", "1"));
         nvpairs.add(new BasicNameValuePair(name + ".y", "1"));
-        parse_search_wrapped(htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs), 1);
+        parse_search_wrapped(htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs), 1);
 
         // Reset step 2: go back to first page
         nvpairs = s_pageform;
         name = getNameToolbarFirstPage(doc);
         nvpairs.add(new BasicNameValuePair(name + ".x", "1"));
         nvpairs.add(new BasicNameValuePair(name + ".y", "1"));
-        parse_search_wrapped(htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs), 1);
+        parse_search_wrapped(htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs), 1);
     }
 
     DetailedItem parseResult(String id, Document doc)
@@ -805,6 +795,15 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
     }
 
     private String reservation_selection = null;
+    // pickup branch chosen without asking the user, see choosePreferredBranch
+    private String reservation_auto_branch = null;
+    private List<Map<String, String>> reservation_branches = null;
+
+    @Override
+    protected List<String> getBranchErrorPhrases() {
+        return Arrays.asList("abholort nicht möglich", "abholort ist nicht zulässig",
+                "ausgabeort nicht möglich");
+    }
 
     @Override
     public ReservationResult reservation(DetailedItem item, Account account,
@@ -820,6 +819,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
 
         if (!"confirmed".equals(selection)) {
             reservation_selection = selection;
+            reservation_auto_branch = null;
         }
 
         if (s_pageform == null) {
@@ -842,8 +842,8 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         }
         nvpairs.add(new BasicNameValuePair("selected", "ZTEXT       "
                 + item.getReservation_info()));
-        htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs);
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, nvpairs); // Yep, two
+        htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), nvpairs); // Yep, two
         // times.
 
         List<NameValuePair> form = new ArrayList<>();
@@ -859,7 +859,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                         .attr("value")));
             }
         }
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
         if (doc.select(".message h1, .msgpage h1").size() > 0) {
             String msg = doc.select(".message h1, .msgpage h1").text().trim();
             res = new ReservationResult(MultiStepResult.Status.ERROR, msg);
@@ -872,7 +872,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                             .attr("value")));
                 }
             }
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
         } else {
             try {
                 doc = handleLoginForm(doc, account);
@@ -881,6 +881,21 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                         e1.getMessage());
             }
 
+            if (doc.select("#AUSGAB_1").size() > 0 && reservation_selection == null) {
+                reservation_branches = new ArrayList<>();
+                for (Element opt : doc.select("#AUSGAB_1 option")) {
+                    if (opt.text().trim().length() > 0) {
+                        Map<String, String> selopt = new HashMap<>();
+                        selopt.put("key", opt.val());
+                        selopt.put("value", opt.text());
+                        reservation_branches.add(selopt);
+                    }
+                }
+                // if the preferred branch is available, skip the selection
+                reservation_auto_branch = choosePreferredBranch(reservation_branches);
+                reservation_selection = reservation_auto_branch;
+            }
+
             if (useraction == 0 && selection == null && doc.select("#F23 .klein").size() > 0) {
                 // fee warning (old versions)
                 // in new versions, #F23 is a selection if you want a notification when the
@@ -891,19 +906,10 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 details.add(new String[]{doc.select("#F23").text()});
                 res.setDetails(details);
             } else if (doc.select("#AUSGAB_1").size() > 0 && reservation_selection == null) {
-                List<Map<String, String>> sel = new ArrayList<>();
-                for (Element opt : doc.select("#AUSGAB_1 option")) {
-                    if (opt.text().trim().length() > 0) {
-                        Map<String, String> selopt = new HashMap<>();
-                        selopt.put("key", opt.val());
-                        selopt.put("value", opt.text());
-                        sel.add(selopt);
-                    }
-                }
                 res = new ReservationResult(
                         MultiStepResult.Status.SELECTION_NEEDED, doc.select(
                         "#AUSGAB_1").first().parent().select("span").text());
-                res.setSelection(sel);
+                res.setSelection(reservation_branches);
             } else if (doc.select("#FSET01 select[name=select$0]").size() > 0 &&
                     (reservation_selection == null || !reservation_selection.contains("_SEP_"))) {
                 // Munich: "Benachrichtigung mit E-Mail"
@@ -963,7 +969,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                                     input.attr("value")));
                         }
                     }
-                    doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                    doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                     if (!msg.contains("Reservation ist erfolgt")) {
                         res = new ReservationResult(
                                 MultiStepResult.Status.ERROR, msg);
@@ -985,7 +991,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                     form.add(new BasicNameValuePair("textButton",
                             "Reservation abschicken"));
                     res = new ReservationResult(MultiStepResult.Status.OK);
-                    doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                    doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
                     String buttonText = doc.select("input[name=textButton]")
                             .attr("value");
@@ -1012,7 +1018,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                             }
                             form.add(new BasicNameValuePair("textButton",
                                     doc.select("input[name=textButton]").first().attr("value")));
-                            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                         }
                     }
 
@@ -1034,7 +1040,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                                         .attr("name"), input.attr("value")));
                             }
                         }
-                        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                         // Reservation || Der Bestellwunsch (Munich)
                         if (!msg.contains(" ist erfolgt")) {
                             res = new ReservationResult(
@@ -1055,7 +1061,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                                         .attr("name"), input.attr("value")));
                             }
                         }
-                        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                         if (!msg.contains("Reservation ist erfolgt")) {
                             res = new ReservationResult(
                                     MultiStepResult.Status.ERROR, msg);
@@ -1075,6 +1081,18 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
             }
         }
 
+        if (res != null && res.getStatus() == MultiStepResult.Status.ERROR
+                && reservation_auto_branch != null
+                && isPreferredBranchError(reservation_auto_branch, res.getMessage())) {
+            // the server did not accept the preferred branch, let the user choose
+            rejectPreferredBranch(reservation_auto_branch);
+            res = new ReservationResult(MultiStepResult.Status.SELECTION_NEEDED,
+                    res.getMessage());
+            res.setSelection(reservation_branches);
+            reservation_auto_branch = null;
+            reservation_selection = null;
+        }
+
         if (res == null
                 || res.getStatus() == MultiStepResult.Status.SELECTION_NEEDED
                 || res.getStatus() == MultiStepResult.Status.CONFIRMATION_NEEDED) {
@@ -1112,7 +1130,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 return doc;
             }
             form.add(new BasicNameValuePair(button.attr("name"), button.attr("value")));
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
             max_steps--;
         }
         return doc;
@@ -1187,7 +1205,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 if (disabled) {
                     form.add(new BasicNameValuePair("$Toolbar_0.x", "1"));
                     form.add(new BasicNameValuePair("$Toolbar_0.y", "1"));
-                    htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                    htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                     return new ProlongResult(Status.ERROR, tr.child(4).text().trim());
                 }
             }
@@ -1197,7 +1215,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         String buttonName = doc.select("input[value=Markierte Titel verlängern]").attr("name");
         form.add(new BasicNameValuePair(!"".equals(buttonName) ? buttonName : "textButton$1",
                 "Markierte Titel verlängern"));
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         form = new ArrayList<>();
         for (Element input : doc.select("input, select")) {
@@ -1211,7 +1229,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         }
         form.add(new BasicNameValuePair("$Toolbar_0.x", "1"));
         form.add(new BasicNameValuePair("$Toolbar_0.y", "1"));
-        htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         return new ProlongResult(Status.OK);
     }
@@ -1263,7 +1281,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         String buttonName = doc.select("input[value=Markierte Titel verlängern]").attr("name");
         form.add(new BasicNameValuePair(!"".equals(buttonName) ? buttonName : "textButton$1",
                 "Markierte Titel verlängern"));
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         List<Map<String, String>> result = new ArrayList<>();
         for (Element tr : doc.select(".rTable_div tbody tr")) {
@@ -1288,7 +1306,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         }
         form.add(new BasicNameValuePair("$Toolbar_0.x", "1"));
         form.add(new BasicNameValuePair("$Toolbar_0.y", "1"));
-        htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         return new ProlongAllResult(Status.OK, result);
     }
@@ -1352,7 +1370,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         String buttonName = doc.select("input[value=Markierte Titel löschen]").attr("name");
         form.add(new BasicNameValuePair(!"".equals(buttonName) ? buttonName : "textButton$0",
                 "Markierte Titel löschen"));
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         form = new ArrayList<>();
         for (Element input : doc.select("input, select")) {
@@ -1366,7 +1384,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         }
         form.add(new BasicNameValuePair("$Toolbar_0.x", "1"));
         form.add(new BasicNameValuePair("$Toolbar_0.y", "1"));
-        htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         return new CancelResult(Status.OK);
     }
@@ -1374,10 +1392,10 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
     private Document login(Account account) throws IOException, OpacErrorException {
         Document doc;
         if (accountFormOldstyle) {
-            doc = htmlGet(opac_url + ";jsessionid=" + s_sid + "?service="
-                    + s_service + getSpParams("SBK"));
+            doc = htmlGet(opac_url + ";jsessionid=" + session.getSessionId() + "?service="
+                    + session.getService() + getSpParams("SBK"));
         } else {
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, accountFormBody);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), accountFormBody);
         }
         doc = handleLoginForm(doc, account);
         return doc;
@@ -1440,7 +1458,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
             if (prolongTest != null) {
                 form.add(new BasicNameValuePair(prolongTest,
                         "Markierte Titel verlängerbar?"));
-                Document adoc_new = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+                Document adoc_new = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
                 if (adoc_new.select(".message h1, .msgpage h1").size() == 0) {
                     adoc = adoc_new;
                 }
@@ -1468,7 +1486,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 form.add(new BasicNameValuePair("$Toolbar_0.x", "1"));
                 form.add(new BasicNameValuePair("$Toolbar_0.y", "1"));
             }
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
         } else {
             assert (anum == 0);
         }
@@ -1524,7 +1542,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                 Element button = rdoc.select("input[value=Abbrechen], input[value*=Übersicht]").first();
                 form.add(new BasicNameValuePair(button.attr("name"), button.attr("value")));
             }
-            htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+            htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
         }
 
         assert (res.size() == rnum);
@@ -1769,7 +1787,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
         form.add(new BasicNameValuePair(inputSend.attr("name"), inputSend
                 .attr("value")));
 
-        doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+        doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
 
         if (doc.select(".message h1, .alert, .msgpage h1").size() > 0) {
             String msg = doc.select(".message h1, .alert, .msgpage h1").text().trim();
@@ -1782,7 +1800,7 @@ public class Adis extends OkHttpBaseApi implements OpacApi {
                             .attr("value")));
                 }
             }
-            doc = htmlPost(opac_url + ";jsessionid=" + s_sid, form);
+            doc = htmlPost(opac_url + ";jsessionid=" + session.getSessionId(), form);
             if (!msg.contains("Sie sind angemeldet") && !msg.contains("jetzt angemeldet")) {
                 throw new OpacErrorException(msg);
             }
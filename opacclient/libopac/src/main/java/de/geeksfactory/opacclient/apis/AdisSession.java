@@ -0,0 +1,225 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session state of an aDIS OPAC. aDIS keeps the session in the URL instead of cookies: every link
+ * contains the session ID (<code>;jsessionid=</code>), a <code>service</code> parameter and a
+ * <code>requestCount</code> that needs to be sent along with the next request.
+ *
+ * All tokens are read from a link with a single scan of its <code>href</code>, see {@link
+ * #parseLink(String)}.
+ */
+public class AdisSession {
+    private static final String SESSION_ID = ";jsessionid=";
+    private static final String REQUEST_COUNT = "requestCount=";
+
+    private int requestCount = 0;
+    private String sessionId;
+    private String service;
+    private List<String> exts;
+
+    /**
+     * Tokens found in a single link
+     */
+    public static class Link {
+        /**
+         * <code>requestCount</code> value, or -1 if the link doesn't contain one
+         */
+        public int requestCount = -1;
+        public String sessionId;
+        /**
+         * Value of the first <code>service</code> query parameter
+         */
+        public String service;
+        /**
+         * Values of all <code>sp</code> query parameters, in the order they appear in
+         */
+        public List<String> sp = new ArrayList<>();
+    }
+
+    /**
+     * Forget everything but the session ID, used before starting a new session.
+     */
+    public void reset() {
+        requestCount = -1;
+        service = null;
+        exts = null;
+    }
+
+    /**
+     * Update the request count from the links in a page. If links contain different values, the
+     * last one wins.
+     */
+    public void update(Document doc) {
+        for (Element a : doc.getElementsByTag("a")) {
+            int count = parseRequestCount(a.attr("href"));
+            if (count >= 0) requestCount = count;
+        }
+    }
+
+    /**
+     * Update the session ID and service from a navigation link of the start page.
+     *
+     * @return the tokens found in the link, e.g. to read its <code>sp</code> parameters
+     */
+    public Link update(String href) {
+        Link link = parseLink(href);
+        if (link.service != null) service = link.service;
+        if (link.sessionId != null) sessionId = link.sessionId;
+        return link;
+    }
+
+    /**
+     * Reads the <code>requestCount</code>, <code>;jsessionid=</code>, <code>service</code> and
+     * <code>sp</code> tokens from a link in one scan. Like the regular expressions used before,
+     * session ID and request count are only recognized if followed by another character, and the
+     * last occurrence is used. Query parameters are decoded like {@link
+     * BaseApi#getQueryParams(String)} does, but only for the two parameters needed here.
+     */
+    public static Link parseLink(String href) {
+        Link link = new Link();
+        int len = href.length();
+        int query = href.indexOf('?');
+        int queryEnd = query < 0 ? -1 : href.indexOf('?', query + 1);
+        if (queryEnd < 0) queryEnd = len;
+        int pairStart = query + 1;
+
+        for (int i = 0; i < len; i++) {
+            char c = href.charAt(i);
+            if (c == ';' && href.startsWith(SESSION_ID, i)) {
+                int start = i + SESSION_ID.length();
+                int end = start;
+                while (end < len && Character.digit(href.charAt(end), 16) >= 0) end++;
+                if (end > start && end < len) link.sessionId = href.substring(start, end);
+            } else if (c == 'r' && href.startsWith(REQUEST_COUNT, i)) {
+                int start = i + REQUEST_COUNT.length();
+                int end = skipDigits(href, start);
+                if (end > start && end < len) {
+                    link.requestCount = Integer.parseInt(href.substring(start, end));
+                }
+            } else if (query >= 0 && i > query && i <= queryEnd && (c == '&' || i == queryEnd)) {
+                readPair(link, href, pairStart, i);
+                pairStart = i + 1;
+            }
+        }
+        if (query >= 0 && queryEnd == len) readPair(link, href, pairStart, len);
+        return link;
+    }
+
+    /**
+     * Only reads the request count, see {@link #parseLink(String)}.
+     *
+     * @return the last request count in the link or -1
+     */
+    public static int parseRequestCount(String href) {
+        int len = href.length();
+        int i = href.lastIndexOf(REQUEST_COUNT);
+        while (i >= 0) {
+            int start = i + REQUEST_COUNT.length();
+            int end = skipDigits(href, start);
+            if (end > start && end < len) return Integer.parseInt(href.substring(start, end));
+            i = href.lastIndexOf(REQUEST_COUNT, i - 1);
+        }
+        return -1;
+    }
+
+    private static int skipDigits(String s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        return i;
+    }
+
+    private static void readPair(Link link, String href, int start, int end) {
+        int eq = href.indexOf('=', start);
+        if (eq < 0 || eq >= end) {
+            if (decode(href.substring(start, end)).equals("sp")) link.sp.add("");
+            return;
+        }
+        String key = decode(href.substring(start, eq));
+        boolean isService = key.equals("service");
+        if (!isService && !key.equals("sp")) return;
+
+        int valueEnd = href.indexOf('=', eq + 1);
+        if (valueEnd < 0 || valueEnd > end) valueEnd = end;
+        String value = decode(href.substring(eq + 1, valueEnd));
+        if (!isService) {
+            link.sp.add(value);
+        } else if (link.service == null) {
+            link.service = value;
+        }
+    }
+
+    private static String decode(String s) {
+        if (s.indexOf('%') < 0 && s.indexOf('+') < 0) return s;
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public void save(JSONObject state) throws JSONException {
+        state.put("requestCount", requestCount);
+        state.put("service", service);
+        state.put("sid", sessionId);
+        if (exts != null) state.put("exts", new JSONArray(exts));
+    }
+
+    public void restore(JSONObject state) throws JSONException {
+        requestCount = state.getInt("requestCount");
+        service = state.optString("service", null);
+        sessionId = state.optString("sid", null);
+        exts = null;
+        if (state.has("exts")) {
+            JSONArray array = state.getJSONArray("exts");
+            exts = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                exts.add(array.getString(i));
+            }
+        }
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(int requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    /**
+     * @return <code>sp</code> parameters needed to open the advanced search form
+     */
+    public List<String> getExts() {
+        return exts;
+    }
+
+    public void setExts(List<String> exts) {
+        this.exts = exts;
+    }
+}
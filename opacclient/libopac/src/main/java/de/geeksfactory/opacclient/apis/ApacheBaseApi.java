@@ -1,16 +1,10 @@
 package de.geeksfactory.opacclient.apis;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.CookieStore;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.protocol.BasicHttpContext;
-import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -20,32 +14,27 @@ import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.List;
 
-import de.geeksfactory.opacclient.i18n.DummyStringProvider;
-import de.geeksfactory.opacclient.networking.HttpClientFactory;
-import de.geeksfactory.opacclient.networking.HttpUtils;
+import de.geeksfactory.opacclient.networking.CookieStoreCookieJar;
 import de.geeksfactory.opacclient.networking.NotReachableException;
 import de.geeksfactory.opacclient.networking.SSLSecurityException;
-import de.geeksfactory.opacclient.objects.CoverHolder;
-import de.geeksfactory.opacclient.objects.Library;
-
-public abstract class ApacheBaseApi extends BaseApi {
-    public HttpClient http_client;
-    protected boolean httpLoggingEnabled = true;
-
-    /**
-     * Initializes HTTP client and String Provider
-     */
-    @Override
-    public void init(Library library, HttpClientFactory http_client_factory, boolean debug) {
-        http_client = http_client_factory.getNewApacheHttpClient(
-                library.getData().optBoolean("customssl", false),
-                library.getData().optBoolean("customssl_tls_only", true),
-                library.getData().optBoolean("customssl_all_ciphersuites", false),
-                library.getData().optBoolean("disguise", false));
-        this.library = library;
-        this.debug = debug;
-        stringProvider = new DummyStringProvider();
-    }
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Base class for APIs written against the request methods of Apache HttpClient, taking {@link
+ * HttpEntity} POST data and optional {@link CookieStore}s. Requests are performed using the same
+ * OkHttp client as in {@link OkHttpBaseApi}, so these APIs share its connection pool, HTTP/2
+ * support and instrumentation. Response bodies are always decoded using the given encoding,
+ * regardless of the charset the server announces, just like Apache HttpClient did.
+ *
+ * Since libopac 7.0.0, {@link #http_client} is the {@link OkHttpClient} inherited from {@link
+ * OkHttpBaseApi} and no longer an Apache {@code HttpClient}. Redirects of POST requests are
+ * followed like before: 301, 302 and 303 with a GET, 307 with the original POST.
+ */
+public abstract class ApacheBaseApi extends OkHttpBaseApi {
 
     /**
      * Perform a HTTP GET request to a given URL
@@ -61,108 +50,31 @@ public abstract class ApacheBaseApi extends BaseApi {
     public String httpGet(String url, String encoding, boolean ignore_errors,
             CookieStore cookieStore) throws
             IOException {
-
-        HttpGet httpget = new HttpGet(cleanUrl(url));
-        HttpResponse response;
-        String html;
-        httpget.setHeader("Accept", "*/*");
-
-        try {
-            if (cookieStore != null) {
-                // Create local HTTP context
-                HttpContext localContext = new BasicHttpContext();
-                // Bind custom cookie store to the local context
-                localContext.setAttribute(HttpClientContext.COOKIE_STORE,
-                        cookieStore);
-
-                response = http_client.execute(httpget, localContext);
-            } else {
-                response = http_client.execute(httpget);
-            }
-
-            if (!ignore_errors && response.getStatusLine().getStatusCode() >= 400) {
-                HttpUtils.consume(response.getEntity());
-                throw new NotReachableException(response.getStatusLine().getReasonPhrase());
-            }
-
-            html = convertStreamToString(response.getEntity().getContent(),
-                    encoding);
-            HttpUtils.consume(response.getEntity());
-        } catch (javax.net.ssl.SSLPeerUnverifiedException e) {
-            logHttpError(e);
-            throw new SSLSecurityException(e.getMessage());
-        } catch (javax.net.ssl.SSLException e) {
-            // Can be "Not trusted server certificate" or can be a
-            // aborted/interrupted handshake/connection
-            if (e.getMessage().contains("timed out")
-                    || e.getMessage().contains("reset by")) {
-                logHttpError(e);
-                throw new NotReachableException(e.getMessage());
-            } else {
-                logHttpError(e);
-                throw new SSLSecurityException(e.getMessage());
-            }
-        } catch (InterruptedIOException e) {
-            logHttpError(e);
-            throw new NotReachableException(e.getMessage());
-        } catch (UnknownHostException e) {
-            throw new NotReachableException(e.getMessage());
-        } catch (IOException e) {
-            if (e.getMessage() != null
-                    && e.getMessage().contains("Request aborted")) {
-                logHttpError(e);
-                throw new NotReachableException(e.getMessage());
-            } else {
-                throw e;
-            }
-        }
-        return html;
+        Request request = new Request.Builder()
+                .url(cleanUrl(url))
+                .header("Accept", "*/*")
+                .header("User-Agent", getUserAgent())
+                .build();
+        return execute(request, encoding, ignore_errors, cookieStore);
     }
 
+    @Override
     public String httpGet(String url, String encoding, boolean ignore_errors)
             throws IOException {
-        return httpGet(url, encoding, ignore_errors, null);
+        return httpGet(url, encoding, ignore_errors, (CookieStore) null);
     }
 
+    @Override
     public String httpGet(String url, String encoding)
             throws IOException {
-        return httpGet(url, encoding, false, null);
+        return httpGet(url, encoding, false, (CookieStore) null);
     }
 
     @Deprecated
+    @Override
     public String httpGet(String url) throws
             IOException {
-        return httpGet(url, getDefaultEncoding(), false, null);
-    }
-
-    /**
-     * Downloads a cover to a CoverHolder. You only need to use this if the covers are only
-     * available with e.g. Session cookies. Otherwise, it is sufficient to specify the URL of the
-     * cover.
-     *
-     * @param item CoverHolder to download the cover for
-     */
-    protected void downloadCover(CoverHolder item) {
-        if (item.getCover() == null) {
-            return;
-        }
-        HttpGet httpget = new HttpGet(cleanUrl(item.getCover()));
-        HttpResponse response;
-
-        try {
-            response = http_client.execute(httpget);
-
-            if (response.getStatusLine().getStatusCode() >= 400) {
-                return;
-            }
-            HttpEntity entity = response.getEntity();
-            byte[] bytes = EntityUtils.toByteArray(entity);
-
-            item.setCoverBitmap(bytes);
-
-        } catch (IOException e) {
-            logHttpError(e);
-        }
+        return httpGet(url, getDefaultEncoding(), false, (CookieStore) null);
     }
 
     /**
@@ -180,31 +92,58 @@ public abstract class ApacheBaseApi extends BaseApi {
     public String httpPost(String url, HttpEntity data,
             String encoding, boolean ignore_errors, CookieStore cookieStore)
             throws IOException {
-        HttpPost httppost = new HttpPost(cleanUrl(url));
-        httppost.setEntity(data);
-        httppost.setHeader("Accept", "*/*");
+        Request request = new Request.Builder()
+                .url(cleanUrl(url))
+                .header("Accept", "*/*")
+                .header("User-Agent", getUserAgent())
+                .post(toRequestBody(data))
+                .build();
+        return execute(request, encoding, ignore_errors, cookieStore);
+    }
+
+    public String httpPost(String url, HttpEntity data,
+            String encoding, boolean ignore_errors)
+            throws IOException {
+        return httpPost(url, data, encoding, ignore_errors, null);
+    }
+
+    public String httpPost(String url, HttpEntity data,
+            String encoding) throws IOException {
+        return httpPost(url, data, encoding, false, null);
+    }
+
+    @Deprecated
+    public String httpPost(String url, HttpEntity data)
+            throws IOException {
+        return httpPost(url, data, getDefaultEncoding(), false, null);
+    }
+
+    /**
+     * Converts an Apache {@link HttpEntity} to an OkHttp {@link RequestBody}, keeping its content
+     * type.
+     */
+    protected static RequestBody toRequestBody(HttpEntity entity) throws IOException {
+        Header contentType = entity.getContentType();
+        MediaType mediaType = contentType != null ? MediaType.parse(contentType.getValue()) : null;
+        return RequestBody.create(EntityUtils.toByteArray(entity), mediaType);
+    }
 
-        HttpResponse response;
-        String html;
+    private String execute(Request request, String encoding, boolean ignore_errors,
+            CookieStore cookieStore) throws IOException {
+        // A client derived with newBuilder() shares connection pool and dispatcher, only the
+        // cookie jar is replaced.
+        OkHttpClient client = cookieStore != null ? http_client.newBuilder()
+                .cookieJar(new CookieStoreCookieJar(cookieStore))
+                .build() : http_client;
         try {
-            if (cookieStore != null) {
-                // Create local HTTP context
-                HttpContext localContext = new BasicHttpContext();
-                // Bind custom cookie store to the local context
-                localContext.setAttribute(HttpClientContext.COOKIE_STORE,
-                        cookieStore);
+            Response response = client.newCall(request).execute();
 
-                response = http_client.execute(httppost, localContext);
-            } else {
-                response = http_client.execute(httppost);
+            if (!ignore_errors && response.code() >= 400) {
+                response.close();
+                throw new NotReachableException(response.message());
             }
 
-            if (!ignore_errors && response.getStatusLine().getStatusCode() >= 400) {
-                throw new NotReachableException(response.getStatusLine().getReasonPhrase());
-            }
-            html = convertStreamToString(response.getEntity().getContent(),
-                    encoding);
-            HttpUtils.consume(response.getEntity());
+            return convertStreamToString(response.body().byteStream(), encoding);
         } catch (javax.net.ssl.SSLPeerUnverifiedException e) {
             logHttpError(e);
             throw new SSLSecurityException(e.getMessage());
@@ -233,33 +172,8 @@ public abstract class ApacheBaseApi extends BaseApi {
                 throw e;
             }
         }
-        return html;
-    }
-
-    protected void logHttpError(Throwable e) {
-        if (httpLoggingEnabled) {
-            e.printStackTrace();
-        }
     }
 
-    public String httpPost(String url, HttpEntity data,
-            String encoding, boolean ignore_errors)
-            throws IOException {
-        return httpPost(url, data, encoding, ignore_errors, null);
-    }
-
-    public String httpPost(String url, HttpEntity data,
-            String encoding) throws IOException {
-        return httpPost(url, data, encoding, false, null);
-    }
-
-    @Deprecated
-    public String httpPost(String url, HttpEntity data)
-            throws IOException {
-        return httpPost(url, data, getDefaultEncoding(), false, null);
-    }
-
-
     public static String buildHttpGetParams(List<NameValuePair> params)
             throws UnsupportedEncodingException {
         try {
@@ -268,8 +182,4 @@ public abstract class ApacheBaseApi extends BaseApi {
             throw new RuntimeException(e);
         }
     }
-
-    public void setHttpLoggingEnabled(boolean httpLoggingEnabled) {
-        this.httpLoggingEnabled = httpLoggingEnabled;
-    }
 }
@@ -21,9 +21,8 @@
  */
 package de.geeksfactory.opacclient.apis;
 
-import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.message.BasicNameValuePair;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -31,28 +30,49 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.geeksfactory.opacclient.ApiPrewarmer;
 import de.geeksfactory.opacclient.i18n.DummyStringProvider;
 import de.geeksfactory.opacclient.i18n.StringProvider;
 import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
+import de.geeksfactory.opacclient.networking.SingleFlight;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.AccountData;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.objects.SearchRequestResult;
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
 import de.geeksfactory.opacclient.reporting.ReportHandler;
 import de.geeksfactory.opacclient.searchfields.MeaningDetector;
 import de.geeksfactory.opacclient.searchfields.MeaningDetectorImpl;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
+import de.geeksfactory.opacclient.utils.IOUtils;
+import de.geeksfactory.opacclient.utils.UrlUtils;
 
 /**
  * Abstract Base class for OpacApi implementations providing some helper methods for HTTP
@@ -64,6 +84,38 @@ public abstract class BaseApi implements OpacApi {
     protected Set<String> supportedLanguages;
     protected boolean initialised;
     protected ReportHandler reportHandler;
+    protected final MetricsRecorder metricsRecorder = new MetricsRecorder();
+    private volatile ApiPrewarmer.Handle prewarmHandle;
+
+    /**
+     * Requests wait at most this many seconds for a running pre-warm, see {@link
+     * #awaitPrewarm()}.
+     */
+    private static final int PREWARM_WAIT = 20;
+
+    /**
+     * Saved sessions older than this are not restored, see {@link #getSessionLifetime()}
+     */
+    protected static final long SESSION_LIFETIME = 20 * 60 * 1000;
+    private static final Charset SNAPSHOT_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Results of {@link #discoverLanguages(Collection, LanguageProbe)} are cached this long, as
+     * libraries rarely add or remove translations.
+     */
+    protected static final long LANGUAGE_CACHE_TTL = 7 * 24 * 60 * 60 * 1000L;
+    private static final int LANGUAGE_PROBE_THREADS = 4;
+    private static final Map<String, CachedLanguages> languageCache = new HashMap<>();
+    private static final SingleFlight<Set<String>> languageDiscovery = new SingleFlight<>();
+    private static ExecutorService languageProbeExecutor;
+
+    /**
+     * Branches rejected by the server are not chosen automatically for this long, see {@link
+     * #rejectPreferredBranch(String)}.
+     */
+    protected static final long BRANCH_CACHE_TTL = 24 * 60 * 60 * 1000L;
+    private static final Map<String, CachedBranches> branchCache = new HashMap<>();
+    protected String preferredBranch;
 
     /**
      * Keywords to do a free search. Some APIs do support this, some don't. If supported, it must at
@@ -290,32 +342,7 @@ public abstract class BaseApi implements OpacApi {
      * Gets all values of all query parameters in an URL.
      */
     public static Map<String, List<String>> getQueryParams(String url) {
-        try {
-            Map<String, List<String>> params = new HashMap<>();
-            String[] urlParts = url.split("\\?");
-            if (urlParts.length > 1) {
-                String query = urlParts[1];
-                for (String param : query.split("&")) {
-                    String[] pair = param.split("=");
-                    String key = URLDecoder.decode(pair[0], "UTF-8");
-                    String value = "";
-                    if (pair.length > 1) {
-                        value = URLDecoder.decode(pair[1], "UTF-8");
-                    }
-
-                    List<String> values = params.get(key);
-                    if (values == null) {
-                        values = new ArrayList<>();
-                        params.put(key, values);
-                    }
-                    values.add(value);
-                }
-            }
-
-            return params;
-        } catch (UnsupportedEncodingException ex) {
-            throw new AssertionError(ex);
-        }
+        return UrlUtils.getQueryParams(url);
     }
 
     /*
@@ -324,30 +351,7 @@ public abstract class BaseApi implements OpacApi {
      * method
      */
     public static Map<String, String> getQueryParamsFirst(String url) {
-        try {
-            Map<String, String> params = new HashMap<>();
-            String[] urlParts = url.split("\\?");
-            if (urlParts.length > 1) {
-                String query = urlParts[1];
-                for (String param : query.split("&")) {
-                    String[] pair = param.split("=");
-                    String key = URLDecoder.decode(pair[0], "UTF-8");
-                    String value = "";
-                    if (pair.length > 1) {
-                        value = URLDecoder.decode(pair[1], "UTF-8");
-                    }
-
-                    String values = params.get(key);
-                    if (values == null) {
-                        params.put(key, value);
-                    }
-                }
-            }
-
-            return params;
-        } catch (UnsupportedEncodingException ex) {
-            throw new AssertionError(ex);
-        }
+        return UrlUtils.getQueryParamsFirst(url);
     }
 
     /**
@@ -357,6 +361,7 @@ public abstract class BaseApi implements OpacApi {
     public void init(Library library, HttpClientFactory http_client_factory, boolean debug) {
         this.library = library;
         this.debug = debug;
+        metricsRecorder.setLibrary(library);
         stringProvider = new DummyStringProvider();
     }
 
@@ -365,6 +370,55 @@ public abstract class BaseApi implements OpacApi {
         initialised = true;
     }
 
+    @Override
+    public void setPreferredBranch(String branch) {
+        preferredBranch = branch;
+    }
+
+    /**
+     * Opens a connection to the OPAC server so that it is kept in the connection pool and the
+     * first real request does not need to wait for DNS resolution, TCP and TLS handshakes. The
+     * default implementation does nothing.
+     *
+     * This is a blocking call that should be made from a background thread, see {@link
+     * de.geeksfactory.opacclient.ApiPrewarmer}.
+     */
+    public void prewarmConnection() throws IOException {
+    }
+
+    /**
+     * @return the URL to connect to in {@link #prewarmConnection()}, or null if unknown
+     */
+    protected String getPrewarmUrl() {
+        if (library == null) return null;
+        String url = library.getData().optString("baseurl", "");
+        return url.startsWith("http") ? url : null;
+    }
+
+    public boolean isInitialised() {
+        return initialised;
+    }
+
+    /**
+     * Called by {@link ApiPrewarmer} for the pre-warm running on this instance. Until it has
+     * finished, requests from other threads are held back in {@link #awaitPrewarm()}.
+     */
+    public void setPrewarmHandle(ApiPrewarmer.Handle handle) {
+        prewarmHandle = handle;
+    }
+
+    /**
+     * Blocks until a running pre-warm of this instance has finished, as {@link #start()} must
+     * not overlap with other requests. Implementations call this before each HTTP request.
+     * Requests made by the pre-warm itself do not wait, so {@link #start()} must make its
+     * requests on the calling thread.
+     */
+    protected void awaitPrewarm() {
+        ApiPrewarmer.Handle handle = prewarmHandle;
+        if (handle == null || handle.isDone() || handle.isRunningOnCurrentThread()) return;
+        handle.await(PREWARM_WAIT, TimeUnit.SECONDS);
+    }
+
     protected String getDefaultEncoding() {
         return "ISO-8859-1";
     }
@@ -405,6 +459,340 @@ public abstract class BaseApi implements OpacApi {
         this.reportHandler = reportHandler;
     }
 
+    @Override
+    public void setMetricsHandler(MetricsHandler metricsHandler) {
+        metricsRecorder.setHandler(metricsHandler);
+    }
+
+    public MetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    @Override
+    public byte[] saveSession() {
+        if (!initialised || library == null) return null;
+        try {
+            JSONObject state = new JSONObject();
+            saveSessionState(state);
+            JSONObject snapshot = new JSONObject();
+            snapshot.put("library", library.getIdent());
+            snapshot.put("api", getClass().getName());
+            snapshot.put("time", System.currentTimeMillis());
+            snapshot.put("state", state);
+            return snapshot.toString().getBytes(SNAPSHOT_CHARSET);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean restoreSession(byte[] snapshot) {
+        if (snapshot == null || library == null) return false;
+        try {
+            JSONObject json = new JSONObject(new String(snapshot, SNAPSHOT_CHARSET));
+            long age = System.currentTimeMillis() - json.getLong("time");
+            if (!library.getIdent().equals(json.getString("library"))
+                    || !getClass().getName().equals(json.getString("api"))
+                    || age < 0 || age > getSessionLifetime()) {
+                return false;
+            }
+            restoreSessionState(json.getJSONObject("state"));
+            initialised = true;
+            return true;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Adds everything needed to continue the current server session to a session snapshot.
+     * Implementations keeping session state in fields should override this and call the super
+     * implementation.
+     *
+     * @param state JSON object to add the session state to
+     */
+    protected void saveSessionState(JSONObject state) throws JSONException {
+        if (supportedLanguages != null) {
+            state.put("languages", new JSONArray(supportedLanguages));
+        }
+    }
+
+    /**
+     * Restores session state written by {@link #saveSessionState(JSONObject)}. Implementations
+     * overriding this should call the super implementation.
+     *
+     * @param state JSON object holding the session state
+     */
+    protected void restoreSessionState(JSONObject state) throws JSONException {
+        if (state.has("languages")) {
+            supportedLanguages = new HashSet<>();
+            JSONArray languages = state.getJSONArray("languages");
+            for (int i = 0; i < languages.length(); i++) {
+                supportedLanguages.add(languages.getString(i));
+            }
+        }
+    }
+
+    /**
+     * @return Time in milliseconds after which a saved session is expected to have expired on the
+     * server and should not be restored anymore.
+     */
+    protected long getSessionLifetime() {
+        return SESSION_LIFETIME;
+    }
+
+    /**
+     * Checks for a single language whether the library's OPAC is available in it, see {@link
+     * #discoverLanguages(Collection, LanguageProbe)}.
+     */
+    protected interface LanguageProbe {
+        /**
+         * Called concurrently for different languages. Should use a HEAD request or a GET
+         * request for a small page if possible. If the request changes the language of the
+         * session, it needs to be sent from a separate instance, see {@link
+         * OkHttpBaseApi#createSeparateInstance()}.
+         */
+        boolean isSupported(String language) throws IOException;
+    }
+
+    /**
+     * Helper for implementations of {@link #getSupportedLanguages()} that need one request per
+     * candidate language. The probes run concurrently; as soon as one of them fails, the
+     * remaining ones are aborted and the exception is thrown. The result is cached per library
+     * and configuration for {@link #LANGUAGE_CACHE_TTL} and concurrent calls for the same library
+     * share the same probes.
+     *
+     * @param candidates languages to check
+     * @param probe      checks a single language
+     * @return the subset of candidates for which the probe returned <code>true</code>
+     */
+    protected Set<String> discoverLanguages(final Collection<String> candidates,
+            final LanguageProbe probe) throws IOException {
+        if (library == null || library.getIdent() == null) {
+            return probeLanguages(candidates, probe);
+        }
+        // a changed configuration, e.g. a new URL, might support other languages
+        final String key = library.getIdent() + "\n" + IOUtils.sha1(
+                library.getData() != null ? library.getData().toString() : "");
+        synchronized (languageCache) {
+            CachedLanguages cached = languageCache.get(key);
+            if (cached != null && System.currentTimeMillis() - cached.timestamp < LANGUAGE_CACHE_TTL
+                    && cached.candidates.equals(new HashSet<>(candidates))) {
+                return new HashSet<>(cached.languages);
+            }
+        }
+        SingleFlight.Loader<Set<String>> loader = new SingleFlight.Loader<Set<String>>() {
+            @Override
+            public Set<String> load() throws IOException {
+                Set<String> languages = probeLanguages(candidates, probe);
+                synchronized (languageCache) {
+                    languageCache.put(key, new CachedLanguages(candidates, languages));
+                }
+                return languages;
+            }
+        };
+        return new HashSet<>(languageDiscovery.execute(key, loader));
+    }
+
+    /**
+     * Removes all results of {@link #discoverLanguages(Collection, LanguageProbe)} from the cache.
+     */
+    public static void clearLanguageCache() {
+        synchronized (languageCache) {
+            languageCache.clear();
+        }
+    }
+
+    private static Set<String> probeLanguages(Collection<String> candidates,
+            final LanguageProbe probe) throws IOException {
+        // probes are made on behalf of the calling thread, so they get its priority
+        final RequestScheduler.Priority priority = RequestScheduler.currentPriority();
+        CompletionService<String> completion =
+                new ExecutorCompletionService<>(getLanguageProbeExecutor());
+        List<Future<String>> futures = new ArrayList<>();
+        for (final String language : candidates) {
+            futures.add(completion.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    try (RequestScheduler.Scope ignored = RequestScheduler.enter(priority)) {
+                        return probe.isSupported(language) ? language : null;
+                    }
+                }
+            }));
+        }
+
+        Set<String> languages = new HashSet<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                String language = completion.take().get();
+                if (language != null) languages.add(language);
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return languages;
+    }
+
+    private static synchronized ExecutorService getLanguageProbeExecutor() {
+        if (languageProbeExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(LANGUAGE_PROBE_THREADS,
+                    LANGUAGE_PROBE_THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "language-probe");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            languageProbeExecutor = executor;
+        }
+        return languageProbeExecutor;
+    }
+
+    /**
+     * Helper for implementations of {@link #reservation} that ask the user for a branch. Stores
+     * the branch list in a per-library cache and returns the key of the {@link
+     * #setPreferredBranch(String) preferred branch} if it is one of the options, so that the
+     * selection step can be skipped. The preferred branch is matched against the names of the
+     * options only, as their keys are specific to the reservation form.
+     *
+     * @param branches the options, maps with the entries <code>key</code> and
+     *                 <code>value</code>
+     * @return the key of the preferred branch, or <code>null</code> if there is none, it is not
+     * one of the options or the server has rejected it before, see {@link
+     * #rejectPreferredBranch(String)}
+     */
+    protected String choosePreferredBranch(List<Map<String, String>> branches) {
+        if (branches == null || library == null || library.getIdent() == null) return null;
+        Set<String> rejected;
+        synchronized (branchCache) {
+            CachedBranches cached = branchCache.get(library.getIdent());
+            // rejections are forgotten once the library changes its branches or they expire
+            Map<String, Long> stillRejected = new HashMap<>();
+            if (cached != null && cached.branches.equals(branches)) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, Long> entry : cached.rejected.entrySet()) {
+                    if (now - entry.getValue() < BRANCH_CACHE_TTL) {
+                        stillRejected.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            branchCache.put(library.getIdent(), new CachedBranches(branches, stillRejected));
+            rejected = new HashSet<>(stillRejected.keySet());
+        }
+        if (preferredBranch == null || preferredBranch.trim().isEmpty()) return null;
+        for (Map<String, String> branch : branches) {
+            if (branch == null || branch.get("key") == null) continue;
+            String value = branch.get("value");
+            if (value != null && preferredBranch.trim().equalsIgnoreCase(value.trim())) {
+                return rejected.contains(branch.get("key")) ? null : branch.get("key");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decides whether an error returned by the server after submitting a branch chosen by {@link
+     * #choosePreferredBranch(List)} is about that branch. Errors that are not, e.g. because the
+     * item is already reserved or the account is blocked, should be returned to the user as they
+     * are and must not lead to {@link #rejectPreferredBranch(String)}.
+     *
+     * @param key   the key of the chosen branch
+     * @param error the error message shown by the server, may be <code>null</code>
+     * @return whether the error names the branch or contains one of the {@link
+     * #getBranchErrorPhrases() messages} the server uses to reject a pickup branch
+     */
+    protected boolean isPreferredBranchError(String key, String error) {
+        if (error == null || error.trim().isEmpty()) return false;
+        String message = error.toLowerCase(Locale.GERMAN);
+        for (String phrase : getBranchErrorPhrases()) {
+            if (message.contains(phrase)) return true;
+        }
+        if (library == null || library.getIdent() == null) return false;
+        synchronized (branchCache) {
+            CachedBranches cached = branchCache.get(library.getIdent());
+            if (cached == null) return false;
+            for (Map<String, String> branch : cached.branches) {
+                if (branch == null || !key.equals(branch.get("key"))) continue;
+                String value = branch.get("value");
+                return value != null && !value.trim().isEmpty()
+                        && message.contains(value.trim().toLowerCase(Locale.GERMAN));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return parts of the error messages, in lower case, with which the server of this API
+     * rejects a pickup branch, see {@link #isPreferredBranchError(String, String)}. These should
+     * be specific enough not to match other errors that merely mention a location.
+     */
+    protected List<String> getBranchErrorPhrases() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * To be called if the server did not accept a branch returned by {@link
+     * #choosePreferredBranch(List)}, see {@link #isPreferredBranchError(String, String)}. The
+     * branch is not chosen automatically again until
+     * the library's branch list changes or {@link #BRANCH_CACHE_TTL} has passed. Implementations
+     * should then let the user choose a branch.
+     */
+    protected void rejectPreferredBranch(String key) {
+        if (library == null || library.getIdent() == null) return;
+        synchronized (branchCache) {
+            CachedBranches cached = branchCache.get(library.getIdent());
+            if (cached != null) {
+                cached.rejected.put(key, System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Removes all branch lists stored by {@link #choosePreferredBranch(List)} from the cache.
+     */
+    public static void clearBranchCache() {
+        synchronized (branchCache) {
+            branchCache.clear();
+        }
+    }
+
+    private static class CachedBranches {
+        final List<Map<String, String>> branches;
+        // keys of rejected branches and when they were rejected
+        final Map<String, Long> rejected;
+
+        CachedBranches(List<Map<String, String>> branches, Map<String, Long> rejected) {
+            this.branches = new ArrayList<>(branches);
+            this.rejected = rejected;
+        }
+    }
+
+    private static class CachedLanguages {
+        final Set<String> candidates;
+        final Set<String> languages;
+        final long timestamp = System.currentTimeMillis();
+
+        CachedLanguages(Collection<String> candidates, Set<String> languages) {
+            this.candidates = new HashSet<>(candidates);
+            this.languages = languages;
+        }
+    }
+
     @Override
     public String getPendingAccountFees(Account account)
             throws IOException, JSONException, OpacErrorException {
@@ -457,42 +845,13 @@ public abstract class BaseApi implements OpacApi {
 
 
     /**
-     * Cleans the parameters of a URL by parsing it manually and reformatting it using {@link
-     * URLEncodedUtils#format(java.util.List, String)}
+     * Cleans the parameters of a URL by decoding them and encoding them again like {@link
+     * URLEncodedUtils#format(java.util.List, String)} does, see {@link UrlUtils#cleanUrl(String)}
      *
      * @param myURL the URL to clean
      * @return cleaned URL
      */
     public String cleanUrl(String myURL) {
-        String[] parts = myURL.split("\\?");
-        String url = parts[0];
-        try {
-            if (parts.length > 1) {
-                url += "?";
-                List<NameValuePair> params = new ArrayList<>();
-                String[] pairs = parts[1].split("&");
-                for (String pair : pairs) {
-                    String[] kv = pair.split("=");
-                    if (kv.length > 1) {
-                        StringBuilder join = new StringBuilder();
-                        for (int i = 1; i < kv.length; i++) {
-                            if (i > 1) join.append("=");
-                            join.append(kv[i]);
-                        }
-                        params.add(new BasicNameValuePair(URLDecoder.decode(
-                                kv[0], "UTF-8"), URLDecoder.decode(join.toString(),
-                                "UTF-8")));
-                    } else {
-                        params.add(new BasicNameValuePair(URLDecoder.decode(
-                                kv[0], "UTF-8"), ""));
-                    }
-                }
-                url += URLEncodedUtils.format(params, "UTF-8");
-            }
-            return url;
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return myURL;
-        }
+        return UrlUtils.cleanUrl(myURL);
     }
 }
@@ -19,8 +19,6 @@
 package de.geeksfactory.opacclient.apis;
 
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -34,7 +32,6 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -64,6 +61,7 @@ import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
+import de.geeksfactory.opacclient.utils.DateParser;
 import okhttp3.FormBody;
 
 /**
@@ -602,7 +600,7 @@ public class BiBer1992 extends OkHttpBaseApi {
             // "copiestable" is optional
         }
 
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
 
         // go through all rows
         for (Element row : rows) {
@@ -690,7 +688,7 @@ public class BiBer1992 extends OkHttpBaseApi {
                                            .replace("Vorbestellt: ", "");
                             }
                             try {
-                                copy.set(copy_keys[j], text, fmt);
+                                copy.set(copy_keys[j], text, dateParser);
                             } catch (IllegalArgumentException e) {
                                 e.printStackTrace();
                             }
@@ -1062,7 +1060,7 @@ public class BiBer1992 extends OkHttpBaseApi {
                 res.setPendingFees(text);
             }
         }
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
         Elements rowElements = doc.select("form[name=medkl] table tr");
 
         // rows: skip 1st row -> title row
@@ -1105,11 +1103,8 @@ public class BiBer1992 extends OkHttpBaseApi {
                         item.setAuthor(findTitleAndAuthor(value)[1]);
                         continue;
                     case "returndate":
-                        try {
-                            value = fmt.parseLocalDate(value).toString();
-                        } catch (IllegalArgumentException e1) {
-                            e1.printStackTrace();
-                        }
+                        String date = dateParser.parseToIso(value);
+                        if (date != null) value = date;
                         break;
                     case "renewals_number":
                     case "status":
@@ -1205,7 +1200,7 @@ public class BiBer1992 extends OkHttpBaseApi {
             copymap = jsonToMap(reservationtable);
         }
 
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
         Elements rowElements = doc.select("form[name=vorml] table tr");
 
         // rows: skip 1st row -> title row
@@ -1236,16 +1231,11 @@ public class BiBer1992 extends OkHttpBaseApi {
                         item.setAuthor(findTitleAndAuthor(value)[1]);
                         continue;
                     case "availability":
-                        try {
-                            value = fmt.parseLocalDate(value).toString();
-                        } catch (IllegalArgumentException e1) {
-                            key = "status";
-                        }
-                        break;
                     case "expirationdate":
-                        try {
-                            value = fmt.parseLocalDate(value).toString();
-                        } catch (IllegalArgumentException e1) {
+                        String date = dateParser.parseToIso(value);
+                        if (date != null) {
+                            value = date;
+                        } else {
                             key = "status";
                         }
                         break;
@@ -29,8 +29,7 @@ import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicNameValuePair;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.LocalDate;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
@@ -46,7 +45,6 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -70,6 +68,7 @@ import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
+import de.geeksfactory.opacclient.utils.DateParser;
 
 public class Heidi extends ApacheBaseApi implements OpacApi {
 
@@ -400,8 +399,7 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
 
         if (doc.select(".ex table tr").size() > 0) {
             table = doc.select(".ex table tr");
-            DateTimeFormatter
-                    fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+            DateParser dateParser = new DateParser();
             for (Element tr : table) {
                 if (tr.hasClass("exueber") || tr.select(".exsig").size() == 0
                         || tr.select(".exso").size() == 0
@@ -413,7 +411,7 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
                 copy.setBranch(tr.select(".exso").first().text());
                 String status = tr.select(".exstatus").first().text();
                 if (status.contains("entliehen bis")) {
-                    copy.setReturnDate(fmt.parseLocalDate(
+                    copy.setReturnDate(dateParser.parse(
                             status.replaceAll("entliehen bis ([0-9.]+) .*", "$1")));
                     copy.setReservations(
                             status.replaceAll(".*\\(.*Vormerkungen: ([0-9]+)\\)", "$1"));
@@ -718,7 +716,7 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
         String html;
         Document doc;
         AccountData adata = new AccountData(account.getId());
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
 
         html = httpGet(opac_url + "/konto.cgi?sess=" + sessid,
                 getDefaultEncoding());
@@ -778,10 +776,8 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
                 String[] datesplit = todate.split("-");
                 todate = datesplit[1].trim();
             }
-            try {
-                item.setDeadline(fmt.parseLocalDate(todate.substring(0, 10)));
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
+            if (todate.length() >= 10) {
+                item.setDeadline(dateParser.parse(todate.substring(0, 10)));
             }
 
             lent.add(item);
@@ -804,7 +800,7 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
     protected List<ReservedItem> parse_reservations(String html) {
         Document doc = Jsoup.parse(html);
         List<ReservedItem> reservations = new ArrayList<>();
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
 
         for (Element tr : doc.select("table.kontopos tr")) {
             ReservedItem item = new ReservedItem();
@@ -836,9 +832,10 @@ public class Heidi extends ApacheBaseApi implements OpacApi {
                 if (node instanceof TextNode) {
                     String text = ((TextNode) node).text().trim();
                     if (i == 0 && text.contains("")) {
-                        try {
-                            item.setReadyDate(fmt.parseLocalDate(text));
-                        } catch (IllegalArgumentException e) {
+                        LocalDate readyDate = dateParser.parse(text);
+                        if (readyDate != null) {
+                            item.setReadyDate(readyDate);
+                        } else {
                             item.setStatus(text);
                         }
                     } else if (i == 1) {
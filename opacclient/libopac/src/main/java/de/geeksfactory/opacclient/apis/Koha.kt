@@ -4,6 +4,7 @@ import de.geeksfactory.opacclient.i18n.StringProvider
 import de.geeksfactory.opacclient.networking.HttpClientFactory
 import de.geeksfactory.opacclient.objects.*
 import de.geeksfactory.opacclient.searchfields.*
+import de.geeksfactory.opacclient.utils.DateParser
 import de.geeksfactory.opacclient.utils.get
 import de.geeksfactory.opacclient.utils.html
 import de.geeksfactory.opacclient.utils.text
@@ -12,8 +13,6 @@ import okhttp3.HttpUrl
 import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import org.joda.time.LocalDate
-import org.joda.time.LocalDateTime
-import org.joda.time.format.DateTimeFormat
 import org.json.JSONObject
 import org.jsoup.Jsoup
 import org.jsoup.nodes.Document
@@ -33,12 +32,17 @@ open class Koha : OkHttpBaseApi() {
     protected val NOT_RENEWABLE = "NOT_RENEWABLE"
     protected val ENCODING = "UTF-8"
     protected var searchQuery: List<SearchQuery>? = null
+    private val dateParser = DateParser()
 
     override fun init(library: Library, factory: HttpClientFactory, debug: Boolean) {
         super.init(library, factory, debug)
         baseurl = library.data.getString("baseurl")
     }
 
+    override fun getBranchErrorPhrases(): List<String> = listOf(
+            "pickup location is not allowed", "invalid pickup location",
+            "not a valid pickup location")
+
     override fun search(query: List<SearchQuery>): SearchRequestResult {
         this.searchQuery = query
         val builder = searchUrl(query)
@@ -326,7 +330,6 @@ open class Koha : OkHttpBaseApi() {
                 !it.parent().parent().hasClass("contentsamplelink")
             }?.attr("src")
 
-            val df = DateTimeFormat.forPattern("dd.MM.yyyy")
             copies = doc.select(".holdingst > tbody > tr, #holdingst > tbody > tr").map { row ->
                 Copy().apply {
                     for (td in row.select("td")) {
@@ -360,7 +363,7 @@ open class Koha : OkHttpBaseApi() {
                             td.classNames().contains("date_due") ->
                                 if (text != null) {
                                     val dateText = text.removeSuffix(" 00:00") // seen with Onleihe items
-                                    returnDate = df.parseLocalDate(dateText)
+                                    returnDate = dateParser.parse(dateText)
                                 }
                             td.classNames().contains("holds_count") -> reservations = text
                         }
@@ -380,6 +383,8 @@ open class Koha : OkHttpBaseApi() {
     var reservationFeeConfirmed = false
     var selectedCopy: String? = null
     var selectedBranch: String? = null
+    // pickup branch chosen without asking the user, see choosePreferredBranch
+    private var autoBranch: String? = null
     val ACTION_ITEM = 101
     val ACTION_BRANCH = 102
 
@@ -399,6 +404,7 @@ open class Koha : OkHttpBaseApi() {
             ACTION_ITEM -> selectedCopy = selection
             ACTION_BRANCH -> selectedBranch = selection
         }
+        if (useraction != OpacApi.MultiStepResult.ACTION_CONFIRMATION) autoBranch = null
 
         var doc = httpGet("$baseurl/cgi-bin/koha/opac-reserve.pl?biblionumber=${item.id}", ENCODING).html
 
@@ -410,19 +416,25 @@ open class Koha : OkHttpBaseApi() {
             }
         }
 
+        val branches = doc.select("select[name=branch] option").map { opt ->
+            HashMap<String, String>().apply {
+                put("key", opt.`val`())
+                put("value", opt.text())
+            }
+        }
         if (doc.select("select[name=branch]").size > 0) {
             if (selectedBranch == null && doc.select("select[name=branch] option").size > 1) {
-                return OpacApi.ReservationResult(
-                    OpacApi.MultiStepResult.Status.SELECTION_NEEDED,
-                    doc.select(".branch label").text).apply {
-                    actionIdentifier = ACTION_BRANCH
-                    setSelection(doc.select("select[name=branch] option").map { opt ->
-                        HashMap<String, String>().apply {
-                            put("key", opt.`val`())
-                            put("value", opt.text())
-                        }
-                    })
+                // if the preferred branch is available, skip the selection
+                autoBranch = choosePreferredBranch(branches)
+                if (autoBranch == null) {
+                    return OpacApi.ReservationResult(
+                        OpacApi.MultiStepResult.Status.SELECTION_NEEDED,
+                        doc.select(".branch label").text).apply {
+                        actionIdentifier = ACTION_BRANCH
+                        setSelection(branches)
+                    }
                 }
+                selectedBranch = autoBranch
             } else if (doc.select("select[name=branch] option").size == 1) {
                 selectedBranch = doc.select("select[name=branch] option").first().`val`()
             }
@@ -510,6 +522,17 @@ open class Koha : OkHttpBaseApi() {
 
         if (doc.select("input[type=hidden][name=biblionumber][value=${item.id}]").size > 0) {
             return OpacApi.ReservationResult(OpacApi.MultiStepResult.Status.OK)
+        } else if (autoBranch != null
+                && isPreferredBranchError(autoBranch, doc.select(".alert").text())) {
+            // the server did not accept the preferred branch, let the user choose
+            rejectPreferredBranch(autoBranch)
+            autoBranch = null
+            selectedBranch = null
+            return OpacApi.ReservationResult(
+                OpacApi.MultiStepResult.Status.SELECTION_NEEDED).apply {
+                actionIdentifier = ACTION_BRANCH
+                setSelection(branches)
+            }
         } else {
             return OpacApi.ReservationResult(OpacApi.MultiStepResult.Status.ERROR)
         }
@@ -661,20 +684,11 @@ open class Koha : OkHttpBaseApi() {
         if (select != null) {
             // example: <span title="2018-11-02T23:59:00">
             // or <span title="2018-11-02 23:59:00">
-            val isoformat = select.attr("title").replace(" ", "T")
-            if (isoformat.isBlank() || isoformat.startsWith("0000-00-00")) {
-                return null
-            } else {
-                return LocalDateTime(isoformat).toLocalDate()
-            }
+            // "0000-00-00" is not a valid date and results in null
+            return dateParser.parse(select.attr("title"))
         } else if (col.hasAttr("data-order")) {
             // example: <td class="date_due sorting_1" data-order="2022-05-07 23:59:00">
-            val isoformat = col.attr("data-order").replace(" ", "T")
-            if (isoformat.isBlank() || isoformat.startsWith("0000-00-00")) {
-                return null
-            } else {
-                return LocalDateTime(isoformat).toLocalDate()
-            }
+            return dateParser.parse(col.attr("data-order"))
         }
         return null
     }
@@ -1,5 +1,8 @@
 package de.geeksfactory.opacclient.apis;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.UnknownHostException;
@@ -7,14 +10,21 @@ import java.nio.charset.Charset;
 import java.util.concurrent.TimeUnit;
 
 import de.geeksfactory.opacclient.i18n.DummyStringProvider;
+import de.geeksfactory.opacclient.networking.BufferedResponse;
 import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.networking.MetricsEventListener;
 import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
 import de.geeksfactory.opacclient.networking.SSLSecurityException;
+import de.geeksfactory.opacclient.networking.SingleFlight;
+import de.geeksfactory.opacclient.networking.SnapshotCookieJar;
 import de.geeksfactory.opacclient.objects.CoverHolder;
 import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.utils.JsonReader;
 import java8.util.concurrent.CompletableFuture;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -31,6 +41,9 @@ public abstract class OkHttpBaseApi extends BaseApi {
     public OkHttpClient http_client;
     public HttpClientFactory http_client_factory;
     protected boolean httpLoggingEnabled = true;
+    protected SnapshotCookieJar cookieJar;
+    private final SingleFlight<BufferedResponse> inFlight = new SingleFlight<>();
+    private static final int PREWARM_TIMEOUT = 10;
 
     /**
      * Initializes HTTP client and String Provider
@@ -38,17 +51,50 @@ public abstract class OkHttpBaseApi extends BaseApi {
     @Override
     public void init(Library library, HttpClientFactory http_client_factory, boolean debug) {
         this.http_client_factory = http_client_factory;
-        http_client = http_client_factory.getNewOkHttpClient(
+        OkHttpClient client = http_client_factory.getNewOkHttpClient(
                 library.getData().optBoolean("customssl", false),
                 library.getData().optBoolean("customssl_tls_only", true),
                 library.getData().optBoolean("customssl_all_ciphersuites", false)
         );
+        // newBuilder() shares the connection pool and dispatcher with the original client
+        cookieJar = new SnapshotCookieJar(client.cookieJar());
+        http_client = client.newBuilder()
+                .cookieJar(cookieJar)
+                .eventListenerFactory(new MetricsEventListener.Factory(metricsRecorder))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        // wait before taking a slot in the scheduler
+                        awaitPrewarm();
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .addInterceptor(RequestScheduler.getInstance().interceptor())
+                .build();
+        // per-host limits by priority are enforced by the RequestScheduler, which also covers
+        // synchronous calls
         http_client.dispatcher().setMaxRequestsPerHost(10);
         this.library = library;
         this.debug = debug;
+        metricsRecorder.setLibrary(library);
         stringProvider = new DummyStringProvider();
     }
 
+    /**
+     * Creates another instance of this API for the same library. It has its own cookies and
+     * session, so requests sent from it do not change the state of this instance.
+     */
+    protected OkHttpBaseApi createSeparateInstance() {
+        try {
+            OkHttpBaseApi api = getClass().newInstance();
+            api.init(library, http_client_factory, debug);
+            api.setStringProvider(stringProvider);
+            return api;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private String readBody(Response response, String encoding) throws IOException {
         ResponseBody body = response.body();
         BufferedSource source = body.source();
@@ -63,6 +109,44 @@ public abstract class OkHttpBaseApi extends BaseApi {
         }
     }
 
+    private static String decodeBody(BufferedResponse response, String encoding) {
+        MediaType contentType = response.contentType();
+        Charset charset = contentType != null ? contentType.charset(Charset.forName(encoding)) :
+                Charset.forName(encoding);
+        return new String(response.body(), charset);
+    }
+
+    /**
+     * Executes an idempotent GET or HEAD request and reads its body. If the same request is
+     * already in flight, e.g. because a cover URL appears in several search results, the caller
+     * waits for that response instead. This must not be used for requests that depend on or
+     * change the server-side session, as two callers would share one state transition.
+     *
+     * @param client the client to use, must not differ in its cookies from {@link #http_client}
+     */
+    protected BufferedResponse executeCoalesced(final OkHttpClient client, final Request request)
+            throws IOException {
+        return inFlight.execute(getCoalescingKey(request),
+                new SingleFlight.Loader<BufferedResponse>() {
+                    @Override
+                    public BufferedResponse load() throws IOException {
+                        return new BufferedResponse(client.newCall(request).execute());
+                    }
+                });
+    }
+
+    private static String getCoalescingKey(Request request) {
+        return request.method() + " " + request.url() + "\n" + request.headers();
+    }
+
+    /**
+     * @return the number of GET and HEAD requests of this instance that were not sent because
+     * the same request was already in flight
+     */
+    public long getCoalescedRequestCount() {
+        return inFlight.getCoalescedCount();
+    }
+
     /**
      * Perform a HTTP GET request to a given URL
      *
@@ -80,6 +164,20 @@ public abstract class OkHttpBaseApi extends BaseApi {
 
     public String httpGet(String url, String encoding, boolean ignore_errors, String accept) throws
             IOException {
+        return httpGet(url, encoding, ignore_errors, accept, false);
+    }
+
+    /**
+     * Perform a HTTP GET request to a given URL
+     *
+     * @param coalesce Whether the request may share the response of an identical request that is
+     *                 already in flight, see {@link #executeCoalesced(OkHttpClient, Request)}.
+     *                 Most OPAC pages depend on or change the server-side session, e.g. result
+     *                 pages, so this may only be used for resources that don't, e.g. images.
+     * @see #httpGet(String, String, boolean, String)
+     */
+    public String httpGet(String url, String encoding, boolean ignore_errors, String accept,
+            boolean coalesce) throws IOException {
         Request request = new Request.Builder()
                 .url(cleanUrl(url))
                 .header("Accept", accept != null ? accept : "*/*")
@@ -88,9 +186,18 @@ public abstract class OkHttpBaseApi extends BaseApi {
                 .build();
 
         try {
+            if (coalesce) {
+                BufferedResponse response = executeCoalesced(http_client, request);
+                if (!ignore_errors && response.code() >= 400) {
+                    throw new NotReachableException(response.message());
+                }
+                return decodeBody(response, encoding);
+            }
+
             Response response = http_client.newCall(request).execute();
 
             if (!ignore_errors && response.code() >= 400) {
+                response.close();
                 throw new NotReachableException(response.message());
             }
 
@@ -154,14 +261,14 @@ public abstract class OkHttpBaseApi extends BaseApi {
                 .header("User-Agent", getUserAgent())
                 .build();
         try {
-            Response response = http_client.newCall(request).execute();
+            // downloads run on the caller's thread, so they keep the caller's priority
+            BufferedResponse response = executeCoalesced(http_client, request);
 
             if (response.code() >= 400) {
-                response.close();
                 return;
             }
 
-            item.setCoverBitmap(response.body().bytes());
+            item.setCoverBitmap(response.body());
         } catch (IOException e) {
             logHttpError(e);
         }
@@ -235,6 +342,87 @@ public abstract class OkHttpBaseApi extends BaseApi {
         }
     }
 
+    /**
+     * Decodes a JSON response while it is received, see {@link #httpGetJson(String,
+     * JsonHandler)}.
+     */
+    public interface JsonHandler<T> {
+        T handle(JsonReader reader) throws IOException, JSONException;
+    }
+
+    /**
+     * Perform a HTTP GET request to a given URL and decode the JSON response using a {@link
+     * JsonReader}. Unlike <code>new JSONObject(httpGet(url))</code>, this neither buffers the
+     * response as a string nor builds a tree of the whole document, so it should be preferred
+     * for large responses of which only some fields are needed.
+     *
+     * @param url     URL to fetch
+     * @param handler reads the response, it must not keep a reference to the reader
+     * @return the result of the handler
+     * @throws NotReachableException Thrown when server returns a HTTP status code greater or equal
+     *                               than 400.
+     * @throws JSONException         Thrown when the response is not valid JSON
+     */
+    public <T> T httpGetJson(String url, JsonHandler<T> handler)
+            throws IOException, JSONException {
+        Request request = new Request.Builder()
+                .url(cleanUrl(url))
+                .header("Accept", "*/*")
+                .header("User-Agent", getUserAgent())
+                .header("Accept-Language", "*")
+                .build();
+        return executeJson(request, handler);
+    }
+
+    /**
+     * Perform a HTTP POST request to a given URL and decode the JSON response using a {@link
+     * JsonReader}, see {@link #httpGetJson(String, JsonHandler)}.
+     */
+    public <T> T httpPostJson(String url, RequestBody data, JsonHandler<T> handler)
+            throws IOException, JSONException {
+        Request.Builder requestbuilder = new Request.Builder()
+                .url(cleanUrl(url))
+                .header("Accept", "*/*")
+                .header("User-Agent", getUserAgent());
+        if (data.contentType() != null) {
+            requestbuilder = requestbuilder.header("Content-Type", data.contentType().toString());
+        }
+        return executeJson(requestbuilder.post(data).build(), handler);
+    }
+
+    private <T> T executeJson(Request request, JsonHandler<T> handler)
+            throws IOException, JSONException {
+        // the body is read while the connection is open, so network errors can also occur
+        // inside the handler
+        try (Response response = http_client.newCall(request).execute()) {
+            if (response.code() >= 400) {
+                throw new NotReachableException(response.message());
+            }
+            return handler.handle(new JsonReader(response.body().source()));
+        } catch (javax.net.ssl.SSLPeerUnverifiedException e) {
+            logHttpError(e);
+            throw new SSLSecurityException(e.getMessage());
+        } catch (javax.net.ssl.SSLException e) {
+            logHttpError(e);
+            if (e.getMessage().contains("timed out") || e.getMessage().contains("reset by")) {
+                throw new NotReachableException(e.getMessage());
+            } else {
+                throw new SSLSecurityException(e.getMessage());
+            }
+        } catch (InterruptedIOException | UnknownHostException e) {
+            logHttpError(e);
+            throw new NotReachableException(e.getMessage());
+        } catch (IOException e) {
+            if (e.getMessage() != null
+                    && e.getMessage().contains("Request aborted")) {
+                logHttpError(e);
+                throw new NotReachableException(e.getMessage());
+            } else {
+                throw e;
+            }
+        }
+    }
+
     /**
      * Perform a HTTP HEAD request to a given URL. Falls back to GET if HEAD is unsupported.
      *
@@ -245,7 +433,7 @@ public abstract class OkHttpBaseApi extends BaseApi {
      *                               than 400.
      */
     public Response httpHead(String url, boolean ignore_errors) throws IOException {
-        Request request = new Request.Builder()
+        final Request request = new Request.Builder()
                 .url(cleanUrl(url))
                 .header("Accept", "*/*")
                 .header("User-Agent", getUserAgent())
@@ -253,12 +441,22 @@ public abstract class OkHttpBaseApi extends BaseApi {
                 .build();
 
         try {
-            Response response = http_client.newCall(request).execute();
+            Response response = inFlight.execute(getCoalescingKey(request),
+                    new SingleFlight.Loader<BufferedResponse>() {
+                        @Override
+                        public BufferedResponse load() throws IOException {
+                            Response response = http_client.newCall(request).execute();
+                            if (response.code() == 405) {
+                                response.close();
+                                response = http_client.newCall(request.newBuilder().get().build())
+                                                      .execute();
+                                // only the headers are needed, don't download e.g. a whole page
+                                return BufferedResponse.withoutBody(response);
+                            }
+                            return new BufferedResponse(response);
+                        }
+                    }).toResponse();
 
-            if (response.code() == 405) {
-                request = request.newBuilder().get().build();
-                response = http_client.newCall(request).execute();
-            }
             if (!ignore_errors && response.code() >= 400) {
                 throw new NotReachableException(response.message());
             }
@@ -294,12 +492,46 @@ public abstract class OkHttpBaseApi extends BaseApi {
         }
     }
 
+    @Override
+    public void prewarmConnection() throws IOException {
+        String url = getPrewarmUrl();
+        if (url == null) return;
+        Request request = new Request.Builder()
+                .url(cleanUrl(url))
+                .header("Accept", "*/*")
+                .header("User-Agent", getUserAgent())
+                .head()
+                .tag(RequestScheduler.Priority.class, RequestScheduler.Priority.PREFETCH)
+                .build();
+        // the derived client shares the connection pool, so the connection stays available
+        OkHttpClient client = http_client.newBuilder()
+                .callTimeout(PREWARM_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+        client.newCall(request).execute().close();
+    }
+
+    @Override
+    protected void saveSessionState(JSONObject state) throws JSONException {
+        super.saveSessionState(state);
+        if (cookieJar != null) state.put("cookies", cookieJar.toJSON());
+    }
+
+    @Override
+    protected void restoreSessionState(JSONObject state) throws JSONException {
+        super.restoreSessionState(state);
+        if (cookieJar != null && state.has("cookies")) {
+            cookieJar.restore(state.getJSONArray("cookies"));
+        }
+    }
+
     public CompletableFuture<Response> asyncPost(String url, RequestBody data,
             final boolean ignore_errors) {
         Request request = new Request.Builder()
                 .url(cleanUrl(url))
                 .header("Accept", "*/*")
                 .header("User-Agent", getUserAgent())
+                // async calls are executed on OkHttp's threads, so keep the caller's priority
+                .tag(RequestScheduler.Priority.class, RequestScheduler.currentPriority())
                 .post(data)
                 .build();
 
@@ -311,6 +543,7 @@ public abstract class OkHttpBaseApi extends BaseApi {
                 .url(cleanUrl(url))
                 .header("Accept", "*/*")
                 .header("User-Agent", getUserAgent())
+                .tag(RequestScheduler.Priority.class, RequestScheduler.currentPriority())
                 .build();
 
         return adapt(http_client.newCall(request), ignore_errors);
@@ -321,6 +554,7 @@ public abstract class OkHttpBaseApi extends BaseApi {
                 .url(cleanUrl(url))
                 .header("Accept", "*/*")
                 .header("User-Agent", getUserAgent())
+                .tag(RequestScheduler.Priority.class, RequestScheduler.currentPriority())
                 .head()
                 .build();
 
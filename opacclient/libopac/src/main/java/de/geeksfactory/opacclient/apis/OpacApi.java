@@ -37,6 +37,7 @@ import de.geeksfactory.opacclient.objects.DetailedItem;
 import de.geeksfactory.opacclient.objects.Filter;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.objects.SearchRequestResult;
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
 import de.geeksfactory.opacclient.reporting.ReportHandler;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
@@ -450,6 +451,16 @@ public interface OpacApi {
      */
     void setLanguage(String language);
 
+    /**
+     * Sets the branch the user prefers, usually their home branch. If a reservation asks for a
+     * branch and this one is among the options, the API may choose it without returning {@link
+     * MultiStepResult.Status#SELECTION_NEEDED}. If the server rejects it, the API asks for a
+     * branch as usual and does not choose it automatically again.
+     *
+     * @param branch name of the branch as displayed to the user, may be <code>null</code>
+     */
+    void setPreferredBranch(String branch);
+
     /**
      * Sets the report handler to use.
      *
@@ -462,6 +473,39 @@ public interface OpacApi {
      */
     void setReportHandler(ReportHandler reportHandler);
 
+    /**
+     * Sets the metrics handler to use.
+     *
+     * If set, the API reports timings and transferred bytes of every HTTP request it makes to the
+     * handler, tagged with the library and the current logical operation. Operations can be
+     * started using {@link de.geeksfactory.opacclient.reporting.MetricsRecorder#beginOperation(OpacApi,
+     * String)}.
+     *
+     * @param metricsHandler the metrics handler to use, or null to disable metrics
+     */
+    void setMetricsHandler(MetricsHandler metricsHandler);
+
+    /**
+     * Saves the current server session (cookies and any session state kept by the API
+     * implementation) to a compact blob, so that it can be restored with {@link
+     * #restoreSession(byte[])} after the app process has been killed.
+     *
+     * @return The snapshot or null if there is no session to save
+     */
+    byte[] saveSession();
+
+    /**
+     * Restores a server session saved using {@link #saveSession()} on a freshly initialized
+     * instance for the same library. No requests are made. If this returns false, the API
+     * implementation will start a new session on the next request, just as it would without a
+     * snapshot.
+     *
+     * @param snapshot The snapshot, as returned by {@link #saveSession()}
+     * @return whether the session has been restored. Snapshots of other libraries or older than
+     * the typical server session lifetime are not restored.
+     */
+    boolean restoreSession(byte[] snapshot);
+
     /**
      * A general exception containing a human-readable error message
      */
@@ -50,6 +50,7 @@ import de.geeksfactory.opacclient.CoverDownloadStrategy;
 import de.geeksfactory.opacclient.i18n.StringProvider;
 import de.geeksfactory.opacclient.networking.HttpClientFactory;
 import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.AccountData;
 import de.geeksfactory.opacclient.objects.Copy;
@@ -73,6 +74,7 @@ import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 
 import static okhttp3.MultipartBody.Part.create;
@@ -87,6 +89,7 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
     protected JSONObject data;
     protected String opac_url;
     protected Document searchResultDoc;
+    private static final int MAX_SAVED_RESULT_PAGE = 256 * 1024;
 
     protected static HashMap<String, SearchResult.MediaType> defaulttypes = new HashMap<>();
     protected static ExecutorService threadPool = Executors.newFixedThreadPool(10);
@@ -253,6 +256,28 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
         }
     }
 
+    @Override
+    protected void saveSessionState(JSONObject state) throws JSONException {
+        super.saveSessionState(state);
+        // The result page is needed for paging and details, but we don't want to save huge ones
+        if (searchResultDoc != null) {
+            String html = searchResultDoc.outerHtml();
+            if (html.length() <= MAX_SAVED_RESULT_PAGE) {
+                state.put("searchResultHtml", html);
+                state.put("searchResultUrl", searchResultDoc.baseUri());
+            }
+        }
+    }
+
+    @Override
+    protected void restoreSessionState(JSONObject state) throws JSONException {
+        super.restoreSessionState(state);
+        if (state.has("searchResultHtml")) {
+            searchResultDoc = Jsoup.parse(state.getString("searchResultHtml"),
+                    state.getString("searchResultUrl"));
+        }
+    }
+
     @Override
     public SearchRequestResult search(List<SearchQuery> queries)
             throws IOException, OpacErrorException, JSONException {
@@ -318,33 +343,54 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
         }
     }
 
+    /**
+     * Finds the first available cover of <code>queue</code> in the background. The requests
+     * inherit the priority of the calling thread, as the caller usually waits for the result.
+     */
     protected CompletableFuture<Void> assignBestCover(final CoverHolder result,
                                                       final List<String> queue) {
+        return assignBestCover(result, queue, RequestScheduler.currentPriority());
+    }
+
+    /**
+     * Finds the first available cover of <code>queue</code> in the background, using the given
+     * request priority. Only pass {@link RequestScheduler.Priority#BACKGROUND} if nobody waits
+     * for the returned future.
+     */
+    protected CompletableFuture<Void> assignBestCover(final CoverHolder result,
+                                                      final List<String> queue,
+                                                      final RequestScheduler.Priority priority) {
         CompletableFuture<Void> future = new CompletableFuture<>();
         threadPool.submit(() -> {
-            for (String url : queue) {
-                if (url.startsWith("ajax|")) {
-                    if (assignAjaxCover(result, url)) {
-                        break;
-                    }
-                } else {
-                    try {
-                        if (httpHead(url, false).isSuccessful()) {
-                            result.setCover(url);
-                        }
-                        break;
-                    } catch (Exception e) {
-                        if (debug) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
+            try (RequestScheduler.Scope ignored = RequestScheduler.enter(priority)) {
+                findBestCover(result, queue);
             }
             future.complete(null);
         });
         return future;
     }
 
+    private void findBestCover(CoverHolder result, List<String> queue) {
+        for (String url : queue) {
+            if (url.startsWith("ajax|")) {
+                if (assignAjaxCover(result, url)) {
+                    break;
+                }
+            } else {
+                try {
+                    if (httpHead(url, false).isSuccessful()) {
+                        result.setCover(url);
+                    }
+                    break;
+                } catch (Exception e) {
+                    if (debug) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
     private boolean assignAjaxCover(CoverHolder result, String url) {
         String[] data = url.split("\\|");
         String ajaxUrl = data[1];
@@ -409,8 +455,10 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
             if (element.select("input[id$=mediumImage]").size() > 0) {
                 result.setCover(element.select("input[id$=mediumImage]").first().attr("src"));
             } else if (coverDownloadStrategy != CoverDownloadStrategy.NEVER && element.select("img[id$=CoverView_Image]").size() > 0) {
-                CompletableFuture<Void> f = assignBestCover(result, getCoverUrlList(element.select("img[id$=CoverView_Image]").first()));
-                if (coverDownloadStrategy == CoverDownloadStrategy.SYNCHRONOUS) {
+                boolean wait = coverDownloadStrategy == CoverDownloadStrategy.SYNCHRONOUS;
+                CompletableFuture<Void> f = assignBestCover(result, getCoverUrlList(element.select("img[id$=CoverView_Image]").first()),
+                        wait ? RequestScheduler.currentPriority() : RequestScheduler.Priority.BACKGROUND);
+                if (wait) {
                     futuresToWaitFor.add(f);
                 } else {
                     result.setCoverFuture(f);
@@ -537,7 +585,9 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
                     }
                     RequestBody entity = RequestBody.create(MEDIA_TYPE_JSON, data.toString());
 
-                    futuresToWaitFor.add(asyncPost(url, entity, false).handle((response, throwable) -> {
+                    // the search waits for the availability, so it keeps the search's priority
+                    CompletableFuture<Response> availability = asyncPost(url, entity, false);
+                    futuresToWaitFor.add(availability.handle((response, throwable) -> {
                         if (throwable != null) return null;
                         ResponseBody body = response.body();
                         try {
@@ -816,8 +866,10 @@ public class OpenSearch extends OkHttpBaseApi implements OpacApi {
         if (doc.select("input[id$=mediumImage]").size() > 0) {
             item.setCover(doc.select("input[id$=mediumImage]").attr("src"));
         } else if (coverDownloadStrategy != CoverDownloadStrategy.NEVER && doc.select("img[id$=CoverView_Image]").size() > 0) {
-            CompletableFuture<Void> f = assignBestCover(item, getCoverUrlList(doc.select("img[id$=CoverView_Image]").first()));
-            if (coverDownloadStrategy == CoverDownloadStrategy.SYNCHRONOUS) {
+            boolean wait = coverDownloadStrategy == CoverDownloadStrategy.SYNCHRONOUS;
+            CompletableFuture<Void> f = assignBestCover(item, getCoverUrlList(doc.select("img[id$=CoverView_Image]").first()),
+                    wait ? RequestScheduler.currentPriority() : RequestScheduler.Priority.BACKGROUND);
+            if (wait) {
                 f.join();
             } else {
                 item.setCoverFuture(f);
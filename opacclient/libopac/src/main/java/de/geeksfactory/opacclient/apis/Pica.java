@@ -24,8 +24,7 @@ package de.geeksfactory.opacclient.apis;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.message.BasicNameValuePair;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.LocalDate;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -42,7 +41,6 @@ import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -67,6 +65,7 @@ import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
+import de.geeksfactory.opacclient.utils.DateParser;
 import de.geeksfactory.opacclient.utils.ISBNTools;
 
 /**
@@ -561,6 +560,7 @@ public abstract class Pica extends OkHttpBaseApi implements OpacApi {
 
         // reservation info will be stored as JSON
         JSONArray reservationInfo = new JSONArray();
+        DateParser dateParser = new DateParser();
 
         while (line < lines.size()) {
             Element element = lines.get(line);
@@ -605,13 +605,7 @@ public abstract class Pica extends OkHttpBaseApi implements OpacApi {
                 } else if (title.contains("Link") || title.contains("Volltext")) {
                     result.addDetail(new Detail(title.replace(":", "").trim(), detail));
                 } else if (title.contains("Leihfristende") || title.contains("Expiry date")) {
-                    DateTimeFormatter fmt =
-                            DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
-                    try {
-                        copy.setReturnDate(fmt.parseLocalDate(detail.trim()));
-                    } catch (IllegalArgumentException e) {
-                        e.printStackTrace();
-                    }
+                    copy.setReturnDate(dateParser.parse(detail));
                 } else if (title.contains("Vormerkungen") || title.contains("Reservations")) {
                     copy.setReservations(detail);
                 } else if (title.contains("Status")
@@ -625,13 +619,11 @@ public abstract class Pica extends OkHttpBaseApi implements OpacApi {
                             .compile("(till|bis) (\\d{2}-\\d{2}-\\d{4})");
                     Matcher matcher = pattern.matcher(detail);
                     if (matcher.find()) {
-                        DateTimeFormatter fmt =
-                                DateTimeFormat.forPattern("dd-MM-yyyy").withLocale(Locale.GERMAN);
-                        try {
+                        LocalDate returnDate = dateParser.parse(matcher.group(2));
+                        if (returnDate != null) {
                             copy.setStatus(detail.substring(0, matcher.start() - 1).trim());
-                            copy.setReturnDate(fmt.parseLocalDate(matcher.group(2)));
-                        } catch (IllegalArgumentException e) {
-                            e.printStackTrace();
+                            copy.setReturnDate(returnDate);
+                        } else {
                             copy.setStatus(detail);
                         }
                     } else {
@@ -732,8 +724,7 @@ public abstract class Pica extends OkHttpBaseApi implements OpacApi {
                                 copy.setReservations(String.valueOf(jsonVolume.optLong("reservations", 0)));
                             }
                             if (jsonVolume.has("loanperiod")) {
-                                DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
-                                copy.setReturnDate(fmt.parseLocalDate(jsonVolume.getString("loanperiod")));
+                                copy.setReturnDate(dateParser.parse(jsonVolume.getString("loanperiod")));
                             }
                             if (jsonCopy.has("messages") && jsonCopy.getJSONObject("messages").has("message")) {
                                 try {
@@ -1003,15 +994,17 @@ public abstract class Pica extends OkHttpBaseApi implements OpacApi {
 
     @Override
     public Set<String> getSupportedLanguages() throws IOException {
-        Set<String> langs = new HashSet<>();
-        for (String lang : languageCodes.keySet()) {
-            String html = httpGet(opac_url + "/DB=" + db + "/LNG="
-                            + languageCodes.get(lang) + "/START_WELCOME",
-                    getDefaultEncoding());
-            if (!html.contains("MODE_START") && !html.contains("LABEL_")) {
-                langs.add(lang);
+        // the welcome page is the smallest one that shows whether the language is available
+        return discoverLanguages(languageCodes.keySet(), new LanguageProbe() {
+            @Override
+            public boolean isSupported(String language) throws IOException {
+                // the language is stored in the session, so every probe needs its own
+                Pica api = (Pica) createSeparateInstance();
+                String html = api.httpGet(opac_url + "/DB=" + db + "/LNG="
+                                + languageCodes.get(language) + "/START_WELCOME",
+                        getDefaultEncoding());
+                return !html.contains("MODE_START") && !html.contains("LABEL_");
             }
-        }
-        return langs;
+        });
     }
 }
@@ -42,8 +42,9 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -58,6 +59,7 @@ import de.geeksfactory.opacclient.apis.OpacApi.MultiStepResult.Status;
 import de.geeksfactory.opacclient.i18n.StringProvider;
 import de.geeksfactory.opacclient.networking.HttpClientFactory;
 import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.AccountData;
 import de.geeksfactory.opacclient.objects.AccountItem;
@@ -76,6 +78,8 @@ import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
+import de.geeksfactory.opacclient.utils.DateParser;
+import de.geeksfactory.opacclient.utils.Fingerprint;
 import java8.util.concurrent.CompletableFuture;
 import okhttp3.FormBody;
 
@@ -86,7 +90,7 @@ import static org.jsoup.parser.Parser.unescapeEntities;
  *
  * Restrictions: Bookmarks are only constantly supported if the library uses the BibTip extension.
  */
-public class SISIS extends OkHttpBaseApi implements OpacApi {
+public class SISIS extends OkHttpBaseApi implements OpacApi, AccountFingerprintApi {
     protected static HashMap<String, MediaType> defaulttypes = new HashMap<>();
 
     static {
@@ -202,6 +206,8 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
     }
 
     protected final long SESSION_LIFETIME = 1000 * 60 * 3;
+    // change this whenever the account parsing changes, so that stored data is parsed again
+    private static final String ACCOUNT_FINGERPRINT_VERSION = "1";
     protected String opac_url = "";
     protected JSONObject data;
     protected String CSId;
@@ -287,6 +293,20 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         super.start();
     }
 
+    @Override
+    protected void saveSessionState(JSONObject state) throws JSONException {
+        super.saveSessionState(state);
+        state.put("CSId", CSId);
+        state.put("identifier", identifier);
+    }
+
+    @Override
+    protected void restoreSessionState(JSONObject state) throws JSONException {
+        super.restoreSessionState(state);
+        CSId = state.optString("CSId", null);
+        identifier = state.optString("identifier", null);
+    }
+
     @Override
     public void init(Library lib, HttpClientFactory httpClientFactory, boolean debug) {
         super.init(lib, httpClientFactory, debug);
@@ -487,8 +507,10 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
             if (tr.select("script").size() > 0 && tr.select("script").html().contains("jsp/result/cover.jsp")) {
                 String url = getAjaxCoverUrl(tr.select("script").html());
                 if (url != null ) {
+                    // the search waits for these covers, so they inherit its priority
+                    final RequestScheduler.Priority priority = RequestScheduler.currentPriority();
                     futures.add(CompletableFuture.runAsync(() -> {
-                        try {
+                        try (RequestScheduler.Scope ignored = RequestScheduler.enter(priority)) {
                             String result = httpGet(url, getDefaultEncoding());
                             sr.setCover(parseCoverJs(result, opac_url));
                             if (sr.getCover() != null && !sr.getCover().contains("amazon")) {
@@ -558,46 +580,35 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
                 }
             }
 
-            StringBuilder description = null;
+            boolean described = false;
             if (tr.select("span.Z3988").size() == 1) {
                 // Sometimes there is a <span class="Z3988"> item which provides
                 // data in a standardized format.
                 List<NameValuePair> z3988data;
-                boolean hastitle = false;
                 try {
-                    description = new StringBuilder();
                     z3988data = URLEncodedUtils.parse(new URI("http://dummy/?"
                             + tr.select("span.Z3988").attr("title")), "UTF-8");
                     for (NameValuePair nv : z3988data) {
                         if (nv.getValue() != null) {
                             if (!nv.getValue().trim().equals("")) {
-                                if (nv.getName().equals("rft.btitle")
-                                        && !hastitle) {
-                                    description.append("<b>").append(nv.getValue()).append("</b>");
-                                    hastitle = true;
-                                } else if (nv.getName().equals("rft.atitle")
-                                        && !hastitle) {
-                                    description.append("<b>").append(nv.getValue()).append("</b>");
-                                    hastitle = true;
+                                if ((nv.getName().equals("rft.btitle")
+                                        || nv.getName().equals("rft.atitle"))
+                                        && sr.getTitle() == null) {
+                                    sr.setTitle(nv.getValue());
                                 } else if (nv.getName().equals("rft.au")) {
-                                    description.append("<br />").append(nv.getValue());
+                                    sr.addAuthor(nv.getValue());
                                 } else if (nv.getName().equals("rft.date")) {
-                                    description.append("<br />").append(nv.getValue());
+                                    sr.setYear(nv.getValue());
                                 }
                             }
                         }
                     }
+                    described = sr.hasStructuredFields();
                 } catch (URISyntaxException e) {
-                    description = null;
+                    described = false;
                 }
             }
-            boolean described = false;
-            if (description != null && description.length() > 0) {
-                sr.setInnerhtml(description.toString());
-                described = true;
-            } else {
-                description = new StringBuilder();
-            }
+            StringBuilder description = new StringBuilder();
             int k = 0;
             boolean yearfound = false;
             boolean titlefound = false;
@@ -1035,8 +1046,7 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         Pattern status_and_barcode = Pattern.compile("^(.*) ([0-9A-Za-z]+)$");
 
         Elements exemplartrs = table != null ? table.select("tr, .container-fluid > .row").not("#bg2") : new Elements();
-        DateTimeFormatter fmt =
-                DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
         for (Element tr : exemplartrs) {
             try {
                 Copy copy = new Copy();
@@ -1067,7 +1077,7 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
                 if (matcher.matches()) {
                     copy.setStatus(matcher.group(1));
                     copy.setReservations(matcher.group(3));
-                    copy.setReturnDate(fmt.parseLocalDate(matcher.group(2)));
+                    copy.setReturnDate(dateParser.parse(matcher.group(2)));
                 } else {
                     copy.setStatus(statustext.trim().replace(" Wegweiser", ""));
                 }
@@ -1180,6 +1190,30 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
     private String selectedCopy = null;
     private static final int ACTION_COPY = 99;
 
+    @Override
+    protected List<String> getBranchErrorPhrases() {
+        return Arrays.asList("zweigstelle nicht möglich", "zweigstelle nicht zulässig");
+    }
+
+    private static List<Map<String, String>> parseBranches(Document doc, String inputfield) {
+        List<Map<String, String>> branches = new ArrayList<>();
+        if (doc.select("input[name=" + inputfield + "]").size() == 0) return branches;
+        for (Element option : doc
+                .select("input[name=" + inputfield + "]")
+                .first().parent().parent().parent().select("td")) {
+            if (option.select("input").size() != 1) {
+                continue;
+            }
+            String value = option.text().trim();
+            String key = option.select("input").val();
+            Map<String, String> selopt = new HashMap<>();
+            selopt.put("key", key);
+            selopt.put("value", value);
+            branches.add(selopt);
+        }
+        return branches;
+    }
+
     @Override
     public ReservationResult reservation(DetailedItem item, Account acc,
             int useraction, String selection) throws IOException {
@@ -1238,6 +1272,9 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         final String branch_inputfield = "issuepoint";
 
         Document doc = null;
+        // branch chosen without asking the user, see choosePreferredBranch
+        String autoBranch = null;
+        List<Map<String, String>> autoBranches = null;
 
         String action = "reservation";
         if (reservation_info.contains("doBestellung")) {
@@ -1308,35 +1345,45 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
             }
 
             if (doc.select("input[name=expressorder]").size() > 0) {
+                String branch = selection;
+                if (branch == null) {
+                    // only choose from the branches offered by this form
+                    List<Map<String, String>> branches = parseBranches(doc, branch_inputfield);
+                    if (!branches.isEmpty()) {
+                        branch = autoBranch = choosePreferredBranch(branches);
+                        if (autoBranch != null) autoBranches = branches;
+                    }
+                }
                 FormBody.Builder fb = new FormBody.Builder(Charset.forName(getDefaultEncoding()))
-                        .add(branch_inputfield, selection)
                         .add("methodToCall", action)
                         .add("ablaufdatum", expirydate)
                         .add("CSId", CSId)
                         .add("expressorder", " ");
+                if (branch != null) {
+                    fb.add(branch_inputfield, branch);
+                }
                 html = httpPost(opac_url + "/" + action + ".do", fb.build(), ENCODING);
                 doc = Jsoup.parse(html);
             }
             if (doc.select("input[name=" + branch_inputfield + "]").size() > 0) {
-                List<Map<String, String>> branches = new ArrayList<>();
-                for (Element option : doc
-                        .select("input[name=" + branch_inputfield + "]")
-                        .first().parent().parent().parent().select("td")) {
-                    if (option.select("input").size() != 1) {
-                        continue;
-                    }
-                    String value = option.text().trim();
-                    String key = option.select("input").val();
-                    Map<String, String> selopt = new HashMap<>();
-                    selopt.put("key", key);
-                    selopt.put("value", value);
-                    branches.add(selopt);
+                List<Map<String, String>> branches = parseBranches(doc, branch_inputfield);
+                autoBranch = choosePreferredBranch(branches);
+                if (autoBranch == null) {
+                    ReservationResult result = new ReservationResult(
+                            MultiStepResult.Status.SELECTION_NEEDED);
+                    result.setActionIdentifier(ReservationResult.ACTION_BRANCH);
+                    result.setSelection(branches);
+                    return result;
                 }
-                ReservationResult result = new ReservationResult(
-                        MultiStepResult.Status.SELECTION_NEEDED);
-                result.setActionIdentifier(ReservationResult.ACTION_BRANCH);
-                result.setSelection(branches);
-                return result;
+                // the preferred branch is available, skip the selection
+                autoBranches = branches;
+                FormBody.Builder fb = new FormBody.Builder(Charset.forName(getDefaultEncoding()))
+                        .add(branch_inputfield, autoBranch)
+                        .add("ablaufdatum", expirydate)
+                        .add("methodToCall", action)
+                        .add("CSId", CSId);
+                html = httpPost(opac_url + "/" + action + ".do", fb.build(), ENCODING);
+                doc = Jsoup.parse(html);
             }
         } else if (useraction == ReservationResult.ACTION_BRANCH) {
             FormBody.Builder fb = new FormBody.Builder(Charset.forName(getDefaultEncoding()))
@@ -1354,8 +1401,18 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         }
 
         if (doc.getElementsByClass("error").size() >= 1) {
-            return new ReservationResult(MultiStepResult.Status.ERROR, doc
-                    .getElementsByClass("error").get(0).text());
+            String error = doc.getElementsByClass("error").get(0).text();
+            if (autoBranch != null && autoBranches != null
+                    && isPreferredBranchError(autoBranch, error)) {
+                // the server did not accept the preferred branch, let the user choose
+                rejectPreferredBranch(autoBranch);
+                ReservationResult result = new ReservationResult(
+                        MultiStepResult.Status.SELECTION_NEEDED, error);
+                result.setActionIdentifier(ReservationResult.ACTION_BRANCH);
+                result.setSelection(autoBranches);
+                return result;
+            }
+            return new ReservationResult(MultiStepResult.Status.ERROR, error);
         }
 
         if (doc.html().contains("jsp/error.jsp")) {
@@ -1594,6 +1651,11 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         return true;
     }
 
+    /**
+     * @deprecated account lists are now loaded with {@link #loadPages(String)} and parsed
+     * afterwards
+     */
+    @Deprecated
     @FunctionalInterface
     protected interface ParseAccountListFunction<T extends AccountItem> {
         void apply(List<T> items, Document doc, int offset, JSONObject data);
@@ -1604,7 +1666,7 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         Elements copytrs = doc.select(".data tr, .container-fluid > .row");
         doc.setBaseUri(data.optString("baseurl"));
 
-        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        DateParser dateParser = new DateParser();
 
         int trs = copytrs.size();
         if (trs == 1) {
@@ -1659,10 +1721,9 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
                 if (deadline.contains("-")) {
                     deadline = deadline.split("-")[1].trim();
                 }
-                try {
-                    item.setDeadline(fmt.parseLocalDate(deadline).toString());
-                } catch (IllegalArgumentException e1) {
-                    e1.printStackTrace();
+                LocalDate deadlineDate = dateParser.parse(deadline);
+                if (deadlineDate != null) {
+                    item.setDeadline(deadlineDate);
                 }
 
                 if (col2split.length > 1) {
@@ -1750,11 +1811,21 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         return mediaTypeOrFormat;
     }
 
+    /**
+     * @deprecated use {@link #parse_reslist(String, List, Document, int, JSONObject)} with type
+     * "6"
+     */
+    @Deprecated
     public static void parse_reslist6(List<ReservedItem> reservations, Document doc, int offset,
             JSONObject data) {
         parse_reslist("6", reservations, doc, offset, data);
     }
 
+    /**
+     * @deprecated use {@link #parse_reslist(String, List, Document, int, JSONObject)} with type
+     * "7"
+     */
+    @Deprecated
     public static void parse_reslist7(List<ReservedItem> reservations, Document doc, int offset,
             JSONObject data) {
         parse_reslist("7", reservations, doc, offset, data);
@@ -1842,6 +1913,13 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
     public AccountData account(Account acc) throws IOException,
             JSONException,
             OpacErrorException {
+        return account(acc, null);
+    }
+
+    @Override
+    public AccountData account(Account acc, String fingerprint) throws IOException,
+            JSONException,
+            OpacErrorException {
         start(); // TODO: Is this necessary?
 
         int resultNum;
@@ -1850,17 +1928,31 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
             return null;
         }
 
+        // SISIS sends no ETag or Last-Modified headers, so all pages of all lists still have to
+        // be downloaded. The fingerprint only saves parsing and storing unchanged data.
+
         // Geliehene Medien
-        String html = httpGet(opac_url
-                + "/userAccount.do?methodToCall=showAccount&typ=1", ENCODING);
-        List<LentItem> medien = new ArrayList<>();
-        Document doc = Jsoup.parse(html);
-        doc.setBaseUri(opac_url);
+        Map<Integer, Document> lentPages = loadPages(opac_url
+                + "/userAccount.do?methodToCall=showAccount&typ=1");
+        // Ordered media ("Bestellungen")
+        Map<Integer, Document> orderedPages = loadPages(opac_url
+                + "/userAccount.do?methodToCall=showAccount&typ=6");
+        // Prebooked media ("Vormerkungen")
+        Map<Integer, Document> prebookedPages = loadPages(opac_url
+                + "/userAccount.do?methodToCall=showAccount&typ=7");
 
-        parse_medialist(medien, doc, 1, data);
+        AccountData res = new AccountData(acc.getId());
+        res.setFingerprint(getAccountFingerprint(lentPages, orderedPages, prebookedPages));
+        if (res.getFingerprint().equals(fingerprint)) {
+            res.setUnchanged(true);
+            return res;
+        }
 
-        // additional pages
-        loadPages(medien, doc, SISIS::parse_medialist);
+        List<LentItem> medien = new ArrayList<>();
+        for (Map.Entry<Integer, Document> page : lentPages.entrySet()) {
+            parse_medialist(medien, page.getValue(), page.getKey(), data);
+        }
+        Document doc = lentPages.get(1);
 
         if (doc.select("#label1").size() > 0) {
             resultNum = 0;
@@ -1873,26 +1965,16 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
             assert (resultNum == medien.size());
         }
 
-        // Ordered media ("Bestellungen")
-        html = httpGet(opac_url + "/userAccount.do?methodToCall=showAccount&typ=6", ENCODING);
         List<ReservedItem> reserved = new ArrayList<>();
-        doc = Jsoup.parse(html);
-        doc.setBaseUri(opac_url);
-        parse_reslist("6", reserved, doc, 1, data);
-        Elements label6 = doc.select("#label6");
-
-        // additional pages
-        loadPages(reserved, doc, SISIS::parse_reslist6);
-
-        // Prebooked media ("Vormerkungen")
-        html = httpGet(opac_url
-                + "/userAccount.do?methodToCall=showAccount&typ=7", ENCODING);
-        doc = Jsoup.parse(html);
-        doc.setBaseUri(opac_url);
-        parse_reslist("7", reserved, doc, 1, data);
+        for (Map.Entry<Integer, Document> page : orderedPages.entrySet()) {
+            parse_reslist("6", reserved, page.getValue(), page.getKey(), data);
+        }
+        Elements label6 = orderedPages.get(1).select("#label6");
 
-        // additional pages
-        loadPages(reserved, doc, SISIS::parse_reslist7);
+        for (Map.Entry<Integer, Document> page : prebookedPages.entrySet()) {
+            parse_reslist("7", reserved, page.getValue(), page.getKey(), data);
+        }
+        doc = prebookedPages.get(1);
 
         if (label6.size() > 0 && doc.select("#label7").size() > 0) {
             resultNum = 0;
@@ -1909,7 +1991,6 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
             assert (resultNum == reserved.size());
         }
 
-        AccountData res = new AccountData(acc.getId());
         parse_fees(doc, res);
         Pattern p = Pattern.compile("[^0-9.]*", Pattern.MULTILINE);
         if (doc.select(".box3").size() > 0) {
@@ -1931,24 +2012,52 @@ public class SISIS extends OkHttpBaseApi implements OpacApi {
         return res;
     }
 
-    <I extends AccountItem> void loadPages(List<I> media, Document doc,
-            ParseAccountListFunction<I> func) throws IOException {
-        HashSet<Integer> pagesLoaded = new HashSet<>();
-        pagesLoaded.add(1);
-        loadPages(media, doc, pagesLoaded, func);
+    /**
+     * Computes a fingerprint of everything {@link #account(Account)} reads from the given pages,
+     * i.e. the list entries and the labels, fees and account expiration from the first page of
+     * each list.
+     */
+    String getAccountFingerprint(Map<Integer, Document> lentPages,
+            Map<Integer, Document> orderedPages, Map<Integer, Document> prebookedPages) {
+        // the library configuration is part of the fingerprint, as it affects the parsing
+        Fingerprint fingerprint = new Fingerprint().add(ACCOUNT_FINGERPRINT_VERSION)
+                                                   .add(data.toString());
+        for (Map<Integer, Document> pages : Arrays.asList(lentPages, orderedPages,
+                prebookedPages)) {
+            for (Map.Entry<Integer, Document> page : pages.entrySet()) {
+                fingerprint.add(String.valueOf(page.getKey()));
+                fingerprint.addHtml(page.getValue().select(".data tr, .container-fluid > .row"));
+            }
+            fingerprint.addText(pages.get(1).select("#label1, #label6, #label7, #label8, .box3"));
+        }
+        return fingerprint.build();
+    }
+
+    /**
+     * Loads the account list page at the given URL and all additional pages of the list.
+     *
+     * @return the documents of all pages, keyed by their page number and in the order they
+     * were loaded
+     */
+    Map<Integer, Document> loadPages(String url) throws IOException {
+        String html = httpGet(url, ENCODING);
+        Document doc = Jsoup.parse(html);
+        doc.setBaseUri(opac_url);
+        Map<Integer, Document> pages = new LinkedHashMap<>();
+        pages.put(1, doc);
+        loadPages(pages, doc);
+        return pages;
     }
 
-    <I extends AccountItem> void loadPages(List<I> media, Document doc, Set<Integer> pagesLoaded,
-            ParseAccountListFunction<I> func) throws IOException {
+    void loadPages(Map<Integer, Document> pages, Document doc) throws IOException {
         Map<String, Integer> links = getAccountPageLinks(doc, opac_url);
         for (Map.Entry<String, Integer> link : links.entrySet()) {
-            if (!pagesLoaded.contains(link.getValue())) {
+            if (!pages.containsKey(link.getValue())) {
                 String html = httpGet(link.getKey(), ENCODING);
                 Document page = Jsoup.parse(html);
                 page.setBaseUri(link.getKey());
-                func.apply(media, page, link.getValue(), data);
-                pagesLoaded.add(link.getValue());
-                loadPages(media, page, pagesLoaded, func);
+                pages.put(link.getValue(), page);
+                loadPages(pages, page);
             }
         }
     }
@@ -140,7 +140,7 @@ open class SLUB : OkHttpBaseApi() {
             throw OpacApi.OpacErrorException(stringProvider.getString(StringProvider.NO_CRITERIA_INPUT))
         }
         try {
-            return parseSearchResults(JSONObject(httpGet(queryUrl.toString(), ENCODING)))
+            return httpGetJson(queryUrl.toString()) { parseSearchResults(it) }
         } catch (e: JSONException) {
             throw OpacApi.OpacErrorException(stringProvider.getFormattedString(
                     StringProvider.UNKNOWN_ERROR_WITH_DESCRIPTION,
@@ -148,22 +148,70 @@ open class SLUB : OkHttpBaseApi() {
         }
     }
 
-    internal fun parseSearchResults(json: JSONObject): SearchRequestResult {
-        val searchresults = json.getJSONArray("docs").map<JSONObject, SearchResult> {
-            SearchResult().apply {
-                innerhtml = "<b>${it.getString("title")}</b><br>${it.getJSONArray("author").optString(0)}"
-                it.getString("creationDate").run {
-                    if (this != "null") {
-                        innerhtml += "<br>(${this})"
-                    }
+    internal fun parseSearchResults(reader: JsonReader): SearchRequestResult {
+        val searchresults = mutableListOf<SearchResult>()
+        var numFound: Int? = null
+        var hasDocs = false
+        reader.forEachField { name ->
+            when (name) {
+                "numFound" -> numFound = reader.nextInt()
+                "docs" -> {
+                    hasDocs = true
+                    reader.forEachElement { searchresults.add(parseSearchResult(reader)) }
                 }
-                type = mediaTypes[it.getJSONArray("format").optString(0)]
-                        ?: SearchResult.MediaType.NONE
-                id = "id/${it.getString("id")}"
+                else -> reader.skipValue()
             }
         }
+        if (numFound == null || !hasDocs) {
+            throw JSONException("search result without numFound or docs")
+        }
         //TODO: get status (one request per item!)
-        return SearchRequestResult(searchresults, json.getInt("numFound"), 1)
+        return SearchRequestResult(searchresults, numFound!!, 1)
+    }
+
+    private fun parseSearchResult(reader: JsonReader): SearchResult {
+        var title: String? = null
+        var author = ""
+        var creationDate: String? = null
+        var format = ""
+        var id: String? = null
+        reader.forEachField { name ->
+            when (name) {
+                "title" -> title = reader.nextString()
+                "author" -> author = reader.nextFirstString()
+                "creationDate" -> creationDate = reader.nextStringOrNull()
+                "format" -> format = reader.nextFirstString()
+                "id" -> id = reader.nextString()
+                else -> reader.skipValue()
+            }
+        }
+        if (title == null || id == null) {
+            throw JSONException("search result without title or id")
+        }
+        return SearchResult().apply {
+            innerhtml = "<b>$title</b><br>$author"
+            creationDate?.let {
+                innerhtml += "<br>($it)"
+            }
+            type = mediaTypes[format] ?: SearchResult.MediaType.NONE
+            this.id = "id/$id"
+        }
+    }
+
+    /**
+     * Reads an array and returns its first element as text, like JSONArray.optString(0)
+     */
+    private fun JsonReader.nextFirstString(): String {
+        var first: String? = null
+        forEachElement {
+            if (first == null && peek() != JsonReader.Token.BEGIN_OBJECT
+                    && peek() != JsonReader.Token.BEGIN_ARRAY) {
+                first = nextStringOrNull() ?: ""
+            } else {
+                skipValue()
+            }
+        }
+        return first ?: ""
     }
 
     override fun filterResults(filter: Filter, option: Filter.Option): SearchRequestResult {
@@ -462,21 +510,66 @@ open class SLUB : OkHttpBaseApi() {
     }
 
     override fun account(account: Account): AccountData {
-        val json = requestAccount(account, "account")
-        return parseAccountData(account, json)
+        return try {
+            httpPostJson("$baseurl/mein-konto/", accountRequestBody(account, "account").build()) {
+                parseAccountData(account, it)
+            }
+        } catch (e: JSONException) {
+            throw OpacApi.OpacErrorException(stringProvider.getFormattedString(
+                    StringProvider.UNKNOWN_ERROR_ACCOUNT_WITH_DESCRIPTION,
+                    "accountRequest didn't return JSON object: ${e.message}"))
+        }
     }
 
-    internal fun parseAccountData(account: Account, json: JSONObject): AccountData {
+    /**
+     * Reads the response to the "account" action. Only the scalar fields of the items are read,
+     * arrays are reduced to their first element, like JSONArray.optString(0) did before.
+     */
+    internal fun parseAccountData(account: Account, reader: JsonReader): AccountData {
         val fmt = DateTimeFormat.shortDate()
-        fun getReservations(items: JSONObject?): MutableList<ReservedItem> {
+        // not named like properties of the items below, which they would shadow
+        var accountStatus: String? = null
+        var accountMessage: String? = null
+        var fees: String? = null
+        var expires: String? = null
+        val items = mutableMapOf<String, List<Map<String, String?>>>()
+        reader.forEachField { name ->
+            when (name) {
+                "status" -> accountStatus = reader.nextStringOrNull()
+                "message" -> accountMessage = reader.nextStringOrNull()
+                "fees" -> reader.forEachField {
+                    if (it == "topay_list") fees = reader.nextString() else reader.skipValue()
+                }
+                "memberInfo" -> reader.forEachField {
+                    if (it == "expires") expires = reader.nextStringOrNull() else reader.skipValue()
+                }
+                "items" -> if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    reader.forEachField { type ->
+                        if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                            val list = mutableListOf<Map<String, String?>>()
+                            reader.forEachElement { list.add(reader.nextScalarFields()) }
+                            items[type] = list
+                        } else {
+                            reader.skipValue()
+                        }
+                    }
+                } else {
+                    reader.skipValue()
+                }
+                else -> reader.skipValue()
+            }
+        }
+        checkAccountStatus(accountStatus, accountMessage)
+
+        fun getReservations(): MutableList<ReservedItem> {
             val types = listOf("hold", "request_ready", "readingroom", "request_progress", "reserve")
             // "requests" is a copy of "request_ready" + "readingroom" + "request_progress"
             val reservationsList = mutableListOf<ReservedItem>()
             for (type in types) {
-                items?.optJSONArray(type)?.forEach<JSONObject> {
+                items[type]?.forEach {
                     reservationsList.add(ReservedItem().apply {
                         title = it.optString("about").replace("¬", "")
-                        author = it.optJSONArray("X_author")?.optString(0)
+                        author = it["X_author"]
                         format = it.optString("X_medientyp")
                         if (format != "FL"){
                             id = "bc/${it.optString("label")}"
@@ -494,14 +587,14 @@ open class SLUB : OkHttpBaseApi() {
                                     it.optInt("X_queue_number"))
                             else -> null
                         }
-                        branch = it.optString("X_pickup_desc", null)
+                        branch = it["X_pickup_desc"]
                         if (type == "reserve") {
                             cancelData = "${it.optString("label")}_${it.getInt("X_delete_number")}"
                         }
                     })
                 }
             }
-            items?.optJSONArray("ill")?.forEach<JSONObject> {
+            items["ill"]?.forEach {
                 if (it.getString("Status") !in listOf("6", "11", "13", "16")){
                     reservationsList.add(ReservedItem().apply {
                         title = it.optString("Titel").replace("¬", "")
@@ -522,14 +615,14 @@ open class SLUB : OkHttpBaseApi() {
         }
 
         return AccountData(account.id).apply {
-            pendingFees = json.getJSONObject("fees").getString("topay_list")
-            validUntil = json.getJSONObject("memberInfo").getString("expires")
-                    ?.substring(0, 10)?.let { fmt.print(LocalDate(it)) }
-            lent = json.optJSONObject("items")?.optJSONArray("loan")    // TODO: plus permanent loans? (need example)
-                    ?.map<JSONObject, LentItem> {
+            pendingFees = fees ?: throw JSONException("fees.topay_list not found")
+            validUntil = (expires ?: throw JSONException("memberInfo.expires not found"))
+                    .substring(0, 10).let { fmt.print(LocalDate(it)) }
+            lent = items["loan"]    // TODO: plus permanent loans? (need example)
+                    ?.map {
                         LentItem().apply {
                             title = it.optString("about").replace("¬", "")
-                            author = it.optJSONArray("X_author")?.optString(0)
+                            author = it["X_author"]
                             setDeadline(it.optString("X_date_due"))
                             format = it.optString("X_medientyp")
                             if (format != "FL") {
@@ -551,25 +644,61 @@ open class SLUB : OkHttpBaseApi() {
                             }
                         }
                     } ?: emptyList()
-            reservations = getReservations(json.optJSONObject("items"))
+            reservations = getReservations()
+        }
+    }
+
+    /**
+     * Reads an object of which only the scalar fields are needed. Arrays are reduced to their
+     * first scalar element, nested objects are skipped.
+     */
+    private fun JsonReader.nextScalarFields(): Map<String, String?> {
+        val fields = mutableMapOf<String, String?>()
+        forEachField { name ->
+            when (peek()) {
+                JsonReader.Token.BEGIN_ARRAY -> fields[name] = nextFirstString()
+                JsonReader.Token.BEGIN_OBJECT -> skipValue()
+                else -> fields[name] = nextStringOrNull()
+            }
         }
+        return fields
     }
 
+    // equivalents of the optional getters of JSONObject for the fields read by nextScalarFields
+    private fun Map<String, String?>.optString(name: String) = this[name] ?: ""
+
+    private fun Map<String, String?>.optInt(name: String) =
+            this[name]?.toDoubleOrNull()?.toInt() ?: 0
+
+    private fun Map<String, String?>.getString(name: String) =
+            this[name] ?: throw JSONException("$name not found")
+
+    private fun Map<String, String?>.getInt(name: String) =
+            this[name]?.toDoubleOrNull()?.toInt() ?: throw JSONException("$name is not a number")
+
+    private fun checkAccountStatus(status: String?, message: String?) {
+        // status is sent as number, string or boolean depending on the action
+        if (!(status?.toDoubleOrNull() == 1.0 || status.equals("true", ignoreCase = true))) {
+            throw OpacApi.OpacErrorException(stringProvider.getFormattedString(
+                    StringProvider.UNKNOWN_ERROR_ACCOUNT_WITH_DESCRIPTION,
+                    message ?: "error requesting account data"))
+        }
+    }
+
+    private fun accountRequestBody(account: Account, action: String): FormBody.Builder =
+            FormBody.Builder()
+                    .add("type", "1")
+                    .add("tx_slubaccount_account[controller]", "API")
+                    .add("tx_slubaccount_account[action]", action)
+                    .add("tx_slubaccount_account[username]", account.name)
+                    .add("tx_slubaccount_account[password]", account.password)
+
     internal fun requestAccount(account: Account, action: String, parameters: Map<String, String>? = null): JSONObject {
-        val formBody = FormBody.Builder()
-                .add("type", "1")
-                .add("tx_slubaccount_account[controller]", "API")
-                .add("tx_slubaccount_account[action]", action)
-                .add("tx_slubaccount_account[username]", account.name)
-                .add("tx_slubaccount_account[password]", account.password)
+        val formBody = accountRequestBody(account, action)
         parameters?.forEach { formBody.add(it.key, it.value) }
         try {
             return JSONObject(httpPost("$baseurl/mein-konto/", formBody.build(), ENCODING)).also {
-                if (!(it.optInt("status") == 1 || it.optBoolean("status"))) {
-                    throw OpacApi.OpacErrorException(stringProvider.getFormattedString(
-                            StringProvider.UNKNOWN_ERROR_ACCOUNT_WITH_DESCRIPTION,
-                            it.optString("message", "error requesting account data")))
-                }
+                checkAccountStatus(it.opt("status")?.toString(), it.optString("message", null))
             }
         } catch (e: JSONException) {
             throw OpacApi.OpacErrorException(stringProvider.getFormattedString(
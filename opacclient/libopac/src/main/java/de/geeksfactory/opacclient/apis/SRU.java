@@ -171,14 +171,21 @@ public class SRU extends ApacheBaseApi implements OpacApi {
             String mType = getDetail(record, "physicalDescription > form");
             String isbn = getDetail(record, "identifier[type=isbn]");
             String coverUrl = getDetail(record, "url[displayLabel=C Cover]");
-            String additionalInfo = firstName + " " + lastName + ", " + year;
-            sr.setInnerhtml("<b>" + title + "</b><br>" + additionalInfo);
+            sr.setTitle(title);
+            String author = (firstName + " " + lastName).trim();
+            if (!author.equals("")) {
+                sr.addAuthor(author);
+            }
+            if (!year.equals("")) {
+                sr.setYear(year);
+            }
             sr.setType(defaulttypes.get(mType));
             sr.setNr(i);
             sr.setId(getDetail(record, "recordIdentifier"));
-            if (coverUrl.equals("")) {
+            if (coverUrl.equals("") && isbn.length() > 0) {
+                // other providers are tried by CoverResolver if Amazon has no cover
                 sr.setCover(ISBNTools.getAmazonCoverURL(isbn, false));
-            } else {
+            } else if (!coverUrl.equals("")) {
                 sr.setCover(coverUrl);
             }
             results.add(sr);
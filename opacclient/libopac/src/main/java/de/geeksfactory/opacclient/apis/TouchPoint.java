@@ -43,6 +43,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -873,6 +874,12 @@ public class TouchPoint extends OkHttpBaseApi implements OpacApi {
         return cover;
     }
 
+    @Override
+    protected List<String> getBranchErrorPhrases() {
+        return Arrays.asList("zweigstelle nicht möglich", "abholort nicht möglich",
+                "abholort ist nicht zulässig");
+    }
+
     @Override
     public ReservationResult reservation(DetailedItem item, Account acc,
             int useraction, String selection) throws IOException {
@@ -905,6 +912,8 @@ public class TouchPoint extends OkHttpBaseApi implements OpacApi {
         if (doc.select("#newNeedBeforeDate").size() > 0) {
             body.add("newNeedBeforeDate", doc.select("#newNeedBeforeDate").val());
         }
+        String autoBranch = null;
+        ReservationResult branchSelection = null;
         if (doc.select("select[name=location] option").size() > 0
                 && selection == null) {
             Elements options = doc.select("select[name=location] option");
@@ -920,7 +929,13 @@ public class TouchPoint extends OkHttpBaseApi implements OpacApi {
             res.setSelection(optionsMap);
             res.setMessage(doc.select("label[for=location]").text());
             reusehtml_reservation = html;
-            return res;
+            autoBranch = choosePreferredBranch(optionsMap);
+            if (autoBranch == null) {
+                return res;
+            }
+            // the preferred branch is available, skip the selection
+            body.add("location", autoBranch);
+            branchSelection = res;
         } else if (selection != null) {
             body.add("location", selection);
             reusehtml_reservation = null;
@@ -931,7 +946,14 @@ public class TouchPoint extends OkHttpBaseApi implements OpacApi {
         html = httpPost(opac_url + "/requestItem.do", body.build(), ENCODING);
         doc = Jsoup.parse(html);
         if (doc.select(".message-confirm").size() > 0) {
+            reusehtml_reservation = null;
             return new ReservationResult(MultiStepResult.Status.OK);
+        } else if (autoBranch != null
+                && isPreferredBranchError(autoBranch, doc.select(".alert").text())) {
+            // the server did not accept the preferred branch, let the user choose
+            rejectPreferredBranch(autoBranch);
+            branchSelection.setMessage(doc.select(".alert").text());
+            return branchSelection;
         } else if (doc.select(".alert").size() > 0) {
             return new ReservationResult(MultiStepResult.Status.ERROR, doc
                     .select(".alert").text());
@@ -183,17 +183,19 @@ public class WebOpacNet extends OkHttpBaseApi implements OpacApi {
 
                     String publisher = resultJson.getString("verlag");
                     String series = resultJson.getString("reihe");
-                    StringBuilder html = new StringBuilder();
-                    html.append("<b>").append(titleAndSubtitle[0]).append("</b><br />");
+                    result.setTitle(titleAndSubtitle[0]);
                     if (titleAndSubtitle.length == 2) {
-                        html.append("<i>").append(titleAndSubtitle[1]).append("</i><br />");
+                        result.setSubtitle(titleAndSubtitle[1]);
+                    }
+                    if (!publisher.equals("")) {
+                        result.setPublisher(publisher);
+                    }
+                    if (!series.equals("")) {
+                        result.setSeries(series);
                     }
-                    html.append(publisher).append(", ").append(series);
 
                     result.setType(getMediaType(resultJson.getString("iconurl")));
 
-                    result.setInnerhtml(html.toString());
-
                     if (resultJson.getString("imageurl").length() > 0) {
                         result.setCover(resultJson.getString("imageurl"));
                     }
@@ -22,7 +22,6 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
@@ -44,6 +43,19 @@ public class AdditionalKeyStoresSSLSocketFactory {
             throws NoSuchAlgorithmException, KeyManagementException {
         SSLContext sslContext = SSLContext.getInstance("TLS");
         sslContext.init(null, new TrustManager[]{trustManager}, null);
+        return create(socketFactory, sslContext);
+    }
+
+    /**
+     * Creates a socket factory for an existing TLS context, e.g. one shared using {@link
+     * TlsContextCache}
+     *
+     * @param socketFactory The class that should be used to instantiate a new socket factory, must
+     *                      be a subclass of {@link SSLConnectionSocketFactory}.
+     * @return a new {@link SSLConnectionSocketFactory}
+     */
+    public static SSLConnectionSocketFactory create(Class<?> socketFactory,
+            SSLContext sslContext) {
         if (socketFactory != null) {
             try {
                 return (SSLConnectionSocketFactory) socketFactory
@@ -57,18 +69,6 @@ public class AdditionalKeyStoresSSLSocketFactory {
         return new SSLConnectionSocketFactory(sslContext);
     }
 
-    /**
-     * Creates a customized keystore for OkHttp
-     *
-     * @return a new {@link SSLConnectionSocketFactory}
-     */
-    public static SSLSocketFactory createForOkHttp(X509TrustManager trustManager)
-            throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, new TrustManager[]{trustManager}, null);
-        return sslContext.getSocketFactory();
-    }
-
     public static class AdditionalKeyStoresTrustManager implements
             X509TrustManager {
 
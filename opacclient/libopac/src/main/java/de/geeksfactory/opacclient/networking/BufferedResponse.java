@@ -0,0 +1,80 @@
+package de.geeksfactory.opacclient.networking;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A {@link Response} whose body has been read completely, so that it can be handed to several
+ * callers, see {@link SingleFlight}.
+ */
+public class BufferedResponse {
+    private final Response response;
+    private final byte[] body;
+    private final MediaType contentType;
+
+    /**
+     * Reads and closes the body of the given response.
+     */
+    public BufferedResponse(Response response) throws IOException {
+        ResponseBody responseBody = response.body();
+        try {
+            body = responseBody != null ? responseBody.bytes() : new byte[0];
+            contentType = responseBody != null ? responseBody.contentType() : null;
+        } finally {
+            response.close();
+        }
+        this.response = response.newBuilder().body(null).build();
+    }
+
+    private BufferedResponse(Response response, byte[] body, MediaType contentType) {
+        this.response = response;
+        this.body = body;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Closes the given response without reading its body, e.g. for a GET request standing in
+     * for a HEAD request. The body of the result is empty.
+     */
+    public static BufferedResponse withoutBody(Response response) {
+        ResponseBody responseBody = response.body();
+        MediaType contentType = responseBody != null ? responseBody.contentType() : null;
+        response.close();
+        return new BufferedResponse(response.newBuilder().body(null).build(), new byte[0],
+                contentType);
+    }
+
+    public int code() {
+        return response.code();
+    }
+
+    public String message() {
+        return response.message();
+    }
+
+    public boolean isSuccessful() {
+        return response.isSuccessful();
+    }
+
+    /**
+     * @return the response body. The array is shared and must not be modified.
+     */
+    public byte[] body() {
+        return body;
+    }
+
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    /**
+     * @return a new {@link Response} with its own copy of the body, which can be consumed and
+     * closed independently of other callers
+     */
+    public Response toResponse() {
+        return response.newBuilder().body(ResponseBody.create(body, contentType)).build();
+    }
+}
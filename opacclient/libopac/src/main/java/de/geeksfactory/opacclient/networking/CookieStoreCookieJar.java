@@ -0,0 +1,74 @@
+package de.geeksfactory.opacclient.networking;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+/**
+ * Lets OkHttp read and write cookies from an Apache HttpClient {@link CookieStore}, for APIs that
+ * keep their own cookie store for some requests.
+ */
+public class CookieStoreCookieJar implements CookieJar {
+    private final CookieStore cookieStore;
+
+    public CookieStoreCookieJar(CookieStore cookieStore) {
+        this.cookieStore = cookieStore;
+    }
+
+    @Override
+    public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+        for (Cookie cookie : cookies) {
+            BasicClientCookie apacheCookie = new BasicClientCookie(cookie.name(), cookie.value());
+            apacheCookie.setDomain(cookie.domain());
+            apacheCookie.setPath(cookie.path());
+            apacheCookie.setSecure(cookie.secure());
+            if (cookie.persistent()) {
+                apacheCookie.setExpiryDate(new Date(cookie.expiresAt()));
+            }
+            cookieStore.addCookie(apacheCookie);
+        }
+    }
+
+    @Override
+    public List<Cookie> loadForRequest(HttpUrl url) {
+        Date now = new Date();
+        List<Cookie> result = null;
+        for (org.apache.http.cookie.Cookie apacheCookie : cookieStore.getCookies()) {
+            // Apache HttpClient never sends cookies without a domain, so we don't either
+            if (apacheCookie.isExpired(now) || apacheCookie.getDomain() == null) {
+                continue;
+            }
+            String domain = apacheCookie.getDomain();
+            if (domain.startsWith(".")) domain = domain.substring(1);
+
+            Cookie cookie;
+            try {
+                Cookie.Builder builder = new Cookie.Builder()
+                        .name(apacheCookie.getName())
+                        .value(apacheCookie.getValue() != null ? apacheCookie.getValue() : "")
+                        .domain(domain)
+                        .path(apacheCookie.getPath() != null ? apacheCookie.getPath() : "/");
+                if (apacheCookie.isSecure()) builder.secure();
+                if (apacheCookie.getExpiryDate() != null) {
+                    builder.expiresAt(apacheCookie.getExpiryDate().getTime());
+                }
+                cookie = builder.build();
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (cookie.matches(url)) {
+                if (result == null) result = new ArrayList<>();
+                result.add(cookie);
+            }
+        }
+        return result != null ? result : Collections.<Cookie>emptyList();
+    }
+}
@@ -39,7 +39,7 @@ import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.KeyManagementException;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -48,10 +48,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
 import okhttp3.CipherSuite;
@@ -71,7 +68,6 @@ public class HttpClientFactory {
 
     public String user_agent;
     public String ssl_store_path = "ssl_trust_store.bks";
-    private KeyStore trust_store;
 
     /**
      * Initialize a new client factory.
@@ -93,8 +89,17 @@ public class HttpClientFactory {
         this.ssl_store_path = ssl_store_path;
     }
 
+    /**
+     * @return the additional trust store, which is only loaded once per process, see {@link
+     * TlsContextCache}
+     */
     protected KeyStore getKeyStore()
             throws KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
+        return TlsContextCache.getKeyStore(ssl_store_path, this::loadKeyStore);
+    }
+
+    protected KeyStore loadKeyStore()
+            throws KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
         final KeyStore trustStore = KeyStore.getInstance("BKS");
         InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(ssl_store_path);
         try {
@@ -117,7 +122,10 @@ public class HttpClientFactory {
      *                 We highly recommend to set this to true, if possible. This is currently a
      *                 no-op on the default implementation and only used in the Android
      *                 implementation!
+     * @deprecated All bundled APIs use OkHttp, see {@link #getNewOkHttpClient(boolean, boolean,
+     * boolean)}.
      */
+    @Deprecated
     public HttpClient getNewApacheHttpClient(boolean customssl, boolean tls_only,
             boolean allCipherSuites, boolean disguise_app) {
         HttpClientBuilder builder = HttpClientBuilder.create();
@@ -131,15 +139,10 @@ public class HttpClientFactory {
 
         if (customssl && ssl_store_path != null) {
             try {
-                if (trust_store == null) {
-                    trust_store = getKeyStore();
-                }
                 SSLConnectionSocketFactory sf =
                         AdditionalKeyStoresSSLSocketFactory.create(
                                 getSocketFactoryClass(tls_only, allCipherSuites),
-                                new AdditionalKeyStoresSSLSocketFactory
-                                        .AdditionalKeyStoresTrustManager(
-                                        trust_store)
+                                TlsContextCache.getSSLContext(ssl_store_path, this::getKeyStore)
                         );
 
                 Registry<ConnectionSocketFactory> registry =
@@ -207,21 +210,11 @@ public class HttpClientFactory {
 
         if (customssl && ssl_store_path != null) {
             try {
-                if (trust_store == null) {
-                    trust_store = getKeyStore();
-                }
+                // shared between all clients, so that TLS sessions can be resumed
                 X509TrustManager trustManager =
-                        new AdditionalKeyStoresSSLSocketFactory.AdditionalKeyStoresTrustManager(
-                                trust_store);
-
-                SSLSocketFactory sf = AdditionalKeyStoresSSLSocketFactory.createForOkHttp(
-                        trustManager
-                );
-
-                if (allCipherSuites) {
-                    sf = new AllCiphersProxySocketFactory(sf);
-                }
-                sf = new TLS12ProxySocketFactory(sf);
+                        TlsContextCache.getTrustManager(ssl_store_path, this::getKeyStore);
+                SSLSocketFactory sf = TlsContextCache.getOkHttpSocketFactory(ssl_store_path,
+                        this::getKeyStore, allCipherSuites);
 
                 builder.sslSocketFactory(sf, trustManager);
 
@@ -262,35 +255,18 @@ public class HttpClientFactory {
             }
         } else {
             try {
-                X509TrustManager trustManager = getSystemDefaultTrustManager();
-                SSLSocketFactory socketFactory = getSystemDefaultSSLSocketFactory(trustManager);
+                X509TrustManager trustManager = TlsContextCache.getTrustManager(null, null);
+                SSLSocketFactory socketFactory =
+                        TlsContextCache.getOkHttpSocketFactory(null, null, false);
 
-                builder.sslSocketFactory(new TLS12ProxySocketFactory(socketFactory), trustManager);
-            } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException
-                    ignored) {
+                builder.sslSocketFactory(socketFactory, trustManager);
+            } catch (GeneralSecurityException | IOException ignored) {
 
             }
             return builder;
         }
     }
 
-    private SSLSocketFactory getSystemDefaultSSLSocketFactory(X509TrustManager trustManager)
-            throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, new TrustManager[]{trustManager}, null);
-        return sslContext.getSocketFactory();
-    }
-
-    private X509TrustManager getSystemDefaultTrustManager()
-            throws NoSuchAlgorithmException, KeyStoreException {
-        TrustManagerFactory tmf;
-        tmf = TrustManagerFactory
-                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init((KeyStore) null);
-        return AdditionalKeyStoresSSLSocketFactory.AdditionalKeyStoresTrustManager
-                .findX509TrustManager(tmf);
-    }
-
     public static class CustomRedirectInterceptor implements Interceptor {
 
         @Override
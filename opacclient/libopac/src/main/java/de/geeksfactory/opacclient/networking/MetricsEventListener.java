@@ -0,0 +1,173 @@
+package de.geeksfactory.opacclient.networking;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
+import de.geeksfactory.opacclient.reporting.RequestMetrics;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * OkHttp {@link EventListener} that measures the phases of a call and reports them to a {@link
+ * MetricsRecorder}. If a call follows redirects, the phase durations and byte counts of all hops
+ * are summed up.
+ */
+public class MetricsEventListener extends EventListener {
+    private final MetricsRecorder recorder;
+    private final MetricsRecorder.Operation operation;
+    private final RequestMetrics metrics;
+
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestSent;
+    private long bodyStart;
+
+    MetricsEventListener(MetricsRecorder recorder, Call call) {
+        this.recorder = recorder;
+        // Factory.create() is invoked on the thread that created the call, so this is the
+        // operation the call belongs to even if it is executed asynchronously.
+        this.operation = recorder.getCurrentOperation();
+        Request request = call.request();
+        this.metrics = recorder.newRequestMetrics(operation, request.method(),
+                request.url().host());
+    }
+
+    private static long now() {
+        return System.nanoTime();
+    }
+
+    private static long add(long current, long start) {
+        long millis = (now() - start) / 1000000;
+        return current < 0 ? millis : current + millis;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = now();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = now();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.setDnsMillis(add(metrics.getDnsMillis(), dnsStart));
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = now();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = now();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics.setTlsMillis(add(metrics.getTlsMillis(), secureConnectStart));
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+            Protocol protocol) {
+        metrics.setConnectMillis(add(metrics.getConnectMillis(), connectStart));
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+            Protocol protocol, IOException ioe) {
+        metrics.setConnectMillis(add(metrics.getConnectMillis(), connectStart));
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestSent = now();
+        // the request passed to the network carries the tag added by the scheduler
+        RequestScheduler.QueueWait wait = request.tag(RequestScheduler.QueueWait.class);
+        if (wait != null && metrics.getPriority() == null) {
+            metrics.setPriority(wait.getPriority().name());
+            metrics.setQueueMillis(wait.getMillis());
+        }
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestSent = now();
+        metrics.setBytesSent(metrics.getBytesSent() + byteCount);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (requestSent > 0) {
+            metrics.setTtfbMillis(add(metrics.getTtfbMillis(), requestSent));
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        metrics.setStatusCode(response.code());
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        bodyStart = now();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        metrics.setBodyMillis(add(metrics.getBodyMillis(), bodyStart));
+        metrics.setBytesReceived(metrics.getBytesReceived() + byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.setFailed(true);
+        if (operation != null) operation.setFailed();
+        finish();
+    }
+
+    @Override
+    public void canceled(Call call) {
+        metrics.setFailed(true);
+    }
+
+    private void finish() {
+        metrics.setTotalMillis((now() - callStart) / 1000000);
+        recorder.requestFinished(operation, metrics);
+    }
+
+    public static class Factory implements EventListener.Factory {
+        private final MetricsRecorder recorder;
+
+        public Factory(MetricsRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public EventListener create(Call call) {
+            if (!recorder.isEnabled()) {
+                return EventListener.NONE;
+            }
+            return new MetricsEventListener(recorder, call);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package de.geeksfactory.opacclient.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Process-wide scheduler that keeps background requests, such as cover lookups, from delaying
+ * the requests the user is waiting for.
+ *
+ * Every request belongs to a {@link Priority} class, which has its own budget of concurrent
+ * requests per host. Lower classes also give way to higher ones: prefetch requests are not
+ * started while interactive requests for the same host are queued, and background requests are
+ * not started while interactive requests for the same host are queued or running, or prefetch
+ * requests are queued. Requests that are already running are not aborted.
+ *
+ * The priority of a request is taken from its {@link Request#tag(Class) tag}, or, if it has
+ * none, from the thread that executes it (see {@link #enter(Priority)}). Requests without any
+ * priority are interactive. A thread's priority can be raised while it runs if somebody more
+ * urgent starts waiting for it, see {@link #enter(RaisablePriority)}. A permit is held until the
+ * response headers have been received, as the body of e.g. a HEAD response is not always closed.
+ */
+public class RequestScheduler {
+    public enum Priority {
+        /**
+         * Requests the user is actively waiting for, e.g. a search or a reservation.
+         */
+        INTERACTIVE,
+        /**
+         * Requests for data that is likely to be shown soon, e.g. availability of search results.
+         */
+        PREFETCH,
+        /**
+         * Requests nobody is waiting for, e.g. covers or background synchronisation.
+         */
+        BACKGROUND
+    }
+
+    private static final int[] DEFAULT_BUDGETS = {8, 6, 4};
+    // how often waiting requests check whether their call was canceled
+    private static final long CANCEL_CHECK_INTERVAL = 250;
+    private static final ThreadLocal<RaisablePriority> currentPriority = new ThreadLocal<>();
+    private static RequestScheduler instance;
+
+    private final int[] budgets;
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final QueueStats[] stats = new QueueStats[Priority.values().length];
+
+    public static synchronized RequestScheduler getInstance() {
+        if (instance == null) instance = new RequestScheduler(DEFAULT_BUDGETS);
+        return instance;
+    }
+
+    /**
+     * @param budgets maximum number of concurrent requests per host for each {@link Priority},
+     *                in the order of their declaration
+     */
+    public RequestScheduler(int[] budgets) {
+        if (budgets.length != Priority.values().length) {
+            throw new IllegalArgumentException("one budget per priority expected");
+        }
+        this.budgets = budgets.clone();
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new QueueStats();
+        }
+    }
+
+    /**
+     * Sets the priority of requests executed on the current thread until the returned scope is
+     * closed, preferably using try-with-resources. Scopes can be nested.
+     */
+    public static Scope enter(Priority priority) {
+        return enter(new RaisablePriority(priority));
+    }
+
+    /**
+     * Like {@link #enter(Priority)}, but other threads can raise the priority while the scope is
+     * open. This affects requests that are started afterwards as well as requests of the thread
+     * that are already queued.
+     */
+    public static Scope enter(RaisablePriority priority) {
+        Scope scope = new Scope(currentPriority.get());
+        currentPriority.set(priority);
+        return scope;
+    }
+
+    /**
+     * @return the priority set for the current thread using {@link #enter(Priority)}, or {@link
+     * Priority#INTERACTIVE}
+     */
+    public static Priority currentPriority() {
+        return currentRaisablePriority().get();
+    }
+
+    /**
+     * @return a priority that starts out as the current thread's and follows it when that is
+     * raised, but can also be raised on its own without affecting the thread's priority, e.g. for
+     * work done on behalf of several threads
+     */
+    static RaisablePriority inheritCurrentPriority() {
+        RaisablePriority parent = currentPriority.get();
+        return parent != null ? new RaisablePriority(parent.get(), parent)
+                : new RaisablePriority(Priority.INTERACTIVE);
+    }
+
+    private static RaisablePriority currentRaisablePriority() {
+        RaisablePriority priority = currentPriority.get();
+        return priority != null ? priority : new RaisablePriority(Priority.INTERACTIVE);
+    }
+
+    /**
+     * @return statistics on how long requests of the given priority waited to be started
+     */
+    public QueueStats getQueueStats(Priority priority) {
+        return stats[priority.ordinal()];
+    }
+
+    /**
+     * @return an OkHttp application interceptor that runs every call through this scheduler
+     */
+    public Interceptor interceptor() {
+        return new SchedulingInterceptor(this);
+    }
+
+    /**
+     * Waits until a request of the given priority may be started.
+     *
+     * @param call the call to be started, waiting is aborted when it is canceled. May be null.
+     * @return the time spent waiting in milliseconds
+     */
+    long acquire(String host, Priority priority, Call call) throws IOException {
+        return acquire(host, new RaisablePriority(priority), call).getMillis();
+    }
+
+    /**
+     * Waits until a request may be started. If the priority is raised while the request is
+     * queued, it is moved up within {@value #CANCEL_CHECK_INTERVAL} milliseconds.
+     *
+     * @param call the call to be started, waiting is aborted when it is canceled. May be null.
+     * @return the priority the request was started with, which has to be passed to {@link
+     * #release(String, Priority)}, and the time spent waiting
+     */
+    QueueWait acquire(String host, RaisablePriority raisable, Call call) throws IOException {
+        long start = System.nanoTime();
+        boolean queued = false;
+        Priority priority = raisable.get();
+        synchronized (this) {
+            Host state = hosts.get(host);
+            if (state == null) {
+                state = new Host();
+                hosts.put(host, state);
+            }
+            try {
+                while (!canStart(state, priority)) {
+                    if (!queued) {
+                        queued = true;
+                        state.waiting[priority.ordinal()]++;
+                    }
+                    if (call != null && call.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    wait(CANCEL_CHECK_INTERVAL);
+                    Priority raised = raisable.get();
+                    if (raised != priority) {
+                        state.waiting[priority.ordinal()]--;
+                        state.waiting[raised.ordinal()]++;
+                        priority = raised;
+                    }
+                }
+                state.running[priority.ordinal()]++;
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } finally {
+                if (queued) {
+                    state.waiting[priority.ordinal()]--;
+                    // lower priorities may be able to start now
+                    notifyAll();
+                }
+                if (state.isIdle()) {
+                    hosts.remove(host);
+                }
+            }
+        }
+        long waited = (System.nanoTime() - start) / 1000000;
+        stats[priority.ordinal()].add(queued, waited);
+        return new QueueWait(priority, waited);
+    }
+
+    synchronized void release(String host, Priority priority) {
+        Host state = hosts.get(host);
+        state.running[priority.ordinal()]--;
+        if (state.isIdle()) {
+            hosts.remove(host);
+        }
+        notifyAll();
+    }
+
+    private boolean canStart(Host state, Priority priority) {
+        int interactive = Priority.INTERACTIVE.ordinal();
+        int prefetch = Priority.PREFETCH.ordinal();
+        int p = priority.ordinal();
+        if (state.running[p] >= budgets[p]) return false;
+        switch (priority) {
+            case PREFETCH:
+                return state.waiting[interactive] == 0;
+            case BACKGROUND:
+                return state.waiting[interactive] == 0 && state.running[interactive] == 0
+                        && state.waiting[prefetch] == 0;
+            default:
+                return true;
+        }
+    }
+
+    private static class Host {
+        final int[] running = new int[Priority.values().length];
+        final int[] waiting = new int[Priority.values().length];
+
+        boolean isIdle() {
+            for (int i = 0; i < running.length; i++) {
+                if (running[i] > 0 || waiting[i] > 0) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A priority that other threads can raise, e.g. when they start waiting for the work of the
+     * thread that entered it.
+     */
+    public static class RaisablePriority {
+        private final RaisablePriority parent;
+        private volatile Priority priority;
+
+        public RaisablePriority(Priority priority) {
+            this(priority, null);
+        }
+
+        private RaisablePriority(Priority priority, RaisablePriority parent) {
+            this.priority = priority;
+            this.parent = parent;
+        }
+
+        public Priority get() {
+            Priority own = priority;
+            if (parent != null) {
+                Priority inherited = parent.get();
+                if (inherited.ordinal() < own.ordinal()) return inherited;
+            }
+            return own;
+        }
+
+        /**
+         * Raises the priority to the given one, if that is more urgent than the current one.
+         */
+        public synchronized void raise(Priority priority) {
+            if (priority.ordinal() < this.priority.ordinal()) {
+                this.priority = priority;
+            }
+        }
+    }
+
+    /**
+     * Restores the previous priority of the current thread when closed.
+     */
+    public static class Scope implements AutoCloseable {
+        private final RaisablePriority previous;
+
+        private Scope(RaisablePriority previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                currentPriority.remove();
+            } else {
+                currentPriority.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Attached as a tag to requests that went through the scheduler, so that {@link
+     * MetricsEventListener} can report the queue wait.
+     */
+    public static class QueueWait {
+        private final Priority priority;
+        private final long millis;
+
+        QueueWait(Priority priority, long millis) {
+            this.priority = priority;
+            this.millis = millis;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * Running totals of the queue wait of one priority class.
+     */
+    public static class QueueStats {
+        private long requests;
+        private long queued;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+
+        synchronized void add(boolean wasQueued, long waitMillis) {
+            requests++;
+            if (wasQueued) queued++;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        }
+
+        public synchronized long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return number of requests that could not be started right away
+         */
+        public synchronized long getQueued() {
+            return queued;
+        }
+
+        public synchronized long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        public synchronized long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.US, "QueueStats{requests=%d, queued=%d, wait=%d, max=%d}",
+                    requests, queued, totalWaitMillis, maxWaitMillis);
+        }
+    }
+
+    static class SchedulingInterceptor implements Interceptor {
+        private final RequestScheduler scheduler;
+
+        SchedulingInterceptor(RequestScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            Priority tagged = request.tag(Priority.class);
+            RaisablePriority priority = tagged != null ? new RaisablePriority(tagged)
+                    : currentRaisablePriority();
+            String host = request.url().host();
+            QueueWait wait = scheduler.acquire(host, priority, chain.call());
+            try {
+                return chain.proceed(request.newBuilder()
+                                            .tag(QueueWait.class, wait)
+                                            .build());
+            } finally {
+                scheduler.release(host, wait.getPriority());
+            }
+        }
+    }
+}
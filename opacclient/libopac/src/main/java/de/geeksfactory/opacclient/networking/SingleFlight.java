@@ -0,0 +1,96 @@
+package de.geeksfactory.opacclient.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent executions of the same operation: while a call for a key is in flight,
+ * further callers for the same key wait for it and receive its result (or exception) instead of
+ * running the operation again. Nothing is cached, the next call after completion runs again.
+ *
+ * This must only be used for idempotent operations whose result can be shared between callers,
+ * e.g. buffered responses of GET and HEAD requests.
+ *
+ * The operation runs with the {@link RequestScheduler} priority of the caller that started it,
+ * raised to the priority of the most urgent caller waiting for it, so that e.g. a cover the user
+ * is waiting for does not stay queued behind background requests.
+ *
+ * @param <V> type of the shared result
+ */
+public class SingleFlight<V> {
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    private final Map<String, Flight<V>> flights = new HashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Runs the loader, unless a call with the same key is already in flight, in which case its
+     * result is awaited and returned.
+     */
+    public V execute(String key, Loader<V> loader) throws IOException {
+        Flight<V> flight;
+        boolean leader = false;
+        synchronized (flights) {
+            flight = flights.get(key);
+            if (flight == null) {
+                flight = new Flight<>(RequestScheduler.inheritCurrentPriority());
+                flights.put(key, flight);
+                leader = true;
+            }
+        }
+        if (!leader) {
+            coalesced.incrementAndGet();
+            flight.priority.raise(RequestScheduler.currentPriority());
+            return flight.await();
+        }
+        try (RequestScheduler.Scope scope = RequestScheduler.enter(flight.priority)) {
+            flight.value = loader.load();
+            return flight.value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.error = e;
+            throw e;
+        } finally {
+            synchronized (flights) {
+                flights.remove(key);
+            }
+            // happens-before for value and error
+            flight.done.countDown();
+        }
+    }
+
+    /**
+     * @return the number of calls that were answered by a call already in flight
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    private static class Flight<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        final RequestScheduler.RaisablePriority priority;
+        V value;
+        Throwable error;
+
+        Flight(RequestScheduler.RaisablePriority priority) {
+            this.priority = priority;
+        }
+
+        V await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (error instanceof IOException) throw (IOException) error;
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error instanceof Error) throw (Error) error;
+            return value;
+        }
+    }
+}
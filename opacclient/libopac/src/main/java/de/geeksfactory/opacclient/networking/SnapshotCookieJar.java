@@ -0,0 +1,102 @@
+package de.geeksfactory.opacclient.networking;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+/**
+ * Wraps another {@link CookieJar} and keeps track of all cookies stored in it, so that they can be
+ * written to a session snapshot and put back into a new cookie jar later.
+ */
+public class SnapshotCookieJar implements CookieJar {
+    private final CookieJar delegate;
+    private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+
+    public SnapshotCookieJar(CookieJar delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+        delegate.saveFromResponse(url, cookies);
+        record(cookies);
+    }
+
+    @Override
+    public List<Cookie> loadForRequest(HttpUrl url) {
+        return delegate.loadForRequest(url);
+    }
+
+    /**
+     * @return JSON representation of all cookies that have not yet expired
+     */
+    public synchronized JSONArray toJSON() throws JSONException {
+        long now = System.currentTimeMillis();
+        JSONArray array = new JSONArray();
+        for (Cookie cookie : cookies.values()) {
+            if (cookie.expiresAt() < now) continue;
+            JSONObject json = new JSONObject();
+            json.put("name", cookie.name());
+            json.put("value", cookie.value());
+            json.put("domain", cookie.domain());
+            json.put("path", cookie.path());
+            if (cookie.persistent()) json.put("expires", cookie.expiresAt());
+            json.put("secure", cookie.secure());
+            json.put("httponly", cookie.httpOnly());
+            json.put("hostonly", cookie.hostOnly());
+            array.put(json);
+        }
+        return array;
+    }
+
+    /**
+     * Put cookies previously saved with {@link #toJSON()} back into this cookie jar.
+     */
+    public void restore(JSONArray array) throws JSONException {
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject json = array.getJSONObject(i);
+            Cookie.Builder builder = new Cookie.Builder()
+                    .name(json.getString("name"))
+                    .value(json.getString("value"))
+                    .path(json.getString("path"));
+            if (json.getBoolean("hostonly")) {
+                builder.hostOnlyDomain(json.getString("domain"));
+            } else {
+                builder.domain(json.getString("domain"));
+            }
+            if (json.has("expires")) builder.expiresAt(json.getLong("expires"));
+            if (json.getBoolean("secure")) builder.secure();
+            if (json.getBoolean("httponly")) builder.httpOnly();
+            Cookie cookie = builder.build();
+
+            HttpUrl url = new HttpUrl.Builder()
+                    .scheme(cookie.secure() ? "https" : "http")
+                    .host(cookie.domain())
+                    .encodedPath(cookie.path())
+                    .build();
+            saveFromResponse(url, Collections.singletonList(cookie));
+        }
+    }
+
+    private synchronized void record(List<Cookie> newCookies) {
+        long now = System.currentTimeMillis();
+        for (Cookie cookie : newCookies) {
+            String key = cookie.name() + "\n" + cookie.domain() + "\n" + cookie.path();
+            if (cookie.expiresAt() < now) {
+                // Servers delete cookies by setting an expiry date in the past
+                cookies.remove(key);
+            } else {
+                cookies.put(key, cookie);
+            }
+        }
+    }
+}
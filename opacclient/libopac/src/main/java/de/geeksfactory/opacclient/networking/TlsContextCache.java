@@ -0,0 +1,163 @@
+package de.geeksfactory.opacclient.networking;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Process-wide cache for the TLS setup of HTTP clients. Loading and decrypting the bundled trust
+ * store and building trust managers is expensive, and as every {@link SSLContext} has its own TLS
+ * session cache, clients that each build their own context can never resume a session and need a
+ * full handshake for every new connection.
+ *
+ * Everything is created lazily on first use and then shared by all {@link HttpClientFactory}
+ * instances: one {@link KeyStore} per trust store path, one {@link SSLContext} per set of trusted
+ * certificates, and one wrapped {@link SSLSocketFactory} per client variant. Sharing the socket
+ * factory instances also lets OkHttp treat connections of different clients as equivalent.
+ */
+public class TlsContextCache {
+    private static final String SYSTEM = "";
+
+    private static final Map<String, KeyStore> keyStores = new HashMap<>();
+    private static final Map<String, Trust> trusts = new HashMap<>();
+    private static final Map<String, SSLSocketFactory> socketFactories = new HashMap<>();
+
+    public interface KeyStoreLoader {
+        KeyStore load()
+                throws KeyStoreException, IOException, CertificateException,
+                NoSuchAlgorithmException;
+    }
+
+    private TlsContextCache() {
+    }
+
+    /**
+     * @return the trust store with the given path, which is loaded using <code>loader</code> if
+     * it is not cached yet
+     */
+    public static KeyStore getKeyStore(String path, KeyStoreLoader loader)
+            throws KeyStoreException, IOException, CertificateException,
+            NoSuchAlgorithmException {
+        synchronized (keyStores) {
+            KeyStore keyStore = keyStores.get(path);
+            if (keyStore == null) {
+                keyStore = loader.load();
+                keyStores.put(path, keyStore);
+            }
+            return keyStore;
+        }
+    }
+
+    /**
+     * @param storePath path of the additional trust store, or <code>null</code> to only trust
+     *                  the system's certificates
+     * @return the trust manager for the given trust store in addition to the system's
+     * certificates
+     */
+    public static X509TrustManager getTrustManager(String storePath, KeyStoreLoader loader)
+            throws GeneralSecurityException, IOException {
+        return getTrust(storePath, loader).trustManager;
+    }
+
+    /**
+     * @return the shared TLS context using {@link #getTrustManager(String, KeyStoreLoader)}
+     */
+    public static SSLContext getSSLContext(String storePath, KeyStoreLoader loader)
+            throws GeneralSecurityException, IOException {
+        return getTrust(storePath, loader).sslContext;
+    }
+
+    /**
+     * @return the shared socket factory for OkHttp clients of the given variant. The TLS versions
+     * are chosen by the client's connection specs, so they don't need a factory of their own.
+     */
+    public static SSLSocketFactory getOkHttpSocketFactory(String storePath,
+            KeyStoreLoader loader, boolean allCipherSuites)
+            throws GeneralSecurityException, IOException {
+        String key = (storePath != null ? storePath : SYSTEM) + "|" + allCipherSuites;
+        synchronized (socketFactories) {
+            SSLSocketFactory sf = socketFactories.get(key);
+            if (sf == null) {
+                sf = getSSLContext(storePath, loader).getSocketFactory();
+                if (allCipherSuites) {
+                    sf = new AllCiphersProxySocketFactory(sf);
+                }
+                sf = new TLS12ProxySocketFactory(sf);
+                socketFactories.put(key, sf);
+            }
+            return sf;
+        }
+    }
+
+    private static Trust getTrust(String storePath, KeyStoreLoader loader)
+            throws GeneralSecurityException, IOException {
+        String key = storePath != null ? storePath : SYSTEM;
+        synchronized (trusts) {
+            Trust trust = trusts.get(key);
+            if (trust == null) {
+                X509TrustManager trustManager;
+                if (storePath != null) {
+                    trustManager =
+                            new AdditionalKeyStoresSSLSocketFactory.AdditionalKeyStoresTrustManager(
+                                    getKeyStore(storePath, loader));
+                } else {
+                    TrustManagerFactory tmf = TrustManagerFactory
+                            .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                    tmf.init((KeyStore) null);
+                    trustManager = AdditionalKeyStoresSSLSocketFactory
+                            .AdditionalKeyStoresTrustManager.findX509TrustManager(tmf);
+                    if (trustManager == null) {
+                        throw new KeyStoreException("Couldn't find X509TrustManager");
+                    }
+                }
+                trust = new Trust(trustManager, createContext(trustManager));
+                trusts.put(key, trust);
+            }
+            return trust;
+        }
+    }
+
+    private static SSLContext createContext(X509TrustManager trustManager)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[]{trustManager}, null);
+        return sslContext;
+    }
+
+    /**
+     * Drops all cached objects, e.g. after the trust store was replaced.
+     */
+    public static void clear() {
+        synchronized (socketFactories) {
+            socketFactories.clear();
+        }
+        synchronized (trusts) {
+            trusts.clear();
+        }
+        synchronized (keyStores) {
+            keyStores.clear();
+        }
+    }
+
+    private static class Trust {
+        final X509TrustManager trustManager;
+        final SSLContext sslContext;
+
+        Trust(X509TrustManager trustManager, SSLContext sslContext) {
+            this.trustManager = trustManager;
+            this.sslContext = sslContext;
+        }
+    }
+}
@@ -35,6 +35,8 @@ public class AccountData {
     private String pendingFees;
     private String validUntil;
     private String warning;
+    private String fingerprint;
+    private boolean unchanged;
 
     /**
      * Create a new AccountData object
@@ -161,6 +163,42 @@ public class AccountData {
         this.warning = warning;
     }
 
+    /**
+     * Get the fingerprint of the account pages this data was parsed from, see {@link
+     * de.geeksfactory.opacclient.apis.AccountFingerprintApi}.
+     *
+     * @return fingerprint or null, if the API does not support fingerprints.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Set the fingerprint of the account pages this data was parsed from.
+     *
+     * @param fingerprint an opaque string, e.g. a hash
+     */
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Whether the account pages did not change since the data with the same fingerprint was
+     * loaded. In this case, this object contains no items and the stored data should be kept.
+     *
+     * @return true if the account data was not parsed because it did not change
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @param unchanged whether the account data did not change, see {@link #isUnchanged()}
+     */
+    public void setUnchanged(boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
     @Override
     public String toString() {
         return "AccountData{" +
@@ -170,6 +208,8 @@ public class AccountData {
                 ", pendingFees='" + pendingFees + '\'' +
                 ", validUntil='" + validUntil + '\'' +
                 ", warning='" + warning + '\'' +
+                ", fingerprint='" + fingerprint + '\'' +
+                ", unchanged=" + unchanged +
                 '}';
     }
 }
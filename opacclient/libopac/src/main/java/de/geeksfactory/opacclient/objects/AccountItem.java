@@ -2,6 +2,8 @@ package de.geeksfactory.opacclient.objects;
 
 import java.io.Serializable;
 
+import de.geeksfactory.opacclient.utils.CoverStore;
+
 public abstract class AccountItem implements Serializable, CoverHolder {
     protected long account;
     protected String title;
@@ -12,7 +14,7 @@ public abstract class AccountItem implements Serializable, CoverHolder {
     protected String status;
     protected Long dbId;
     protected String cover;
-    protected byte[] coverBitmap;
+    protected String coverKey;
 
     /**
      * @return The ID of the account this item is associated with
@@ -151,14 +153,28 @@ public abstract class AccountItem implements Serializable, CoverHolder {
      * @return A cover Bitmap for this item. Optional.
      */
     public byte[] getCoverBitmap() {
-        return coverBitmap;
+        return CoverStore.getInstance().get(coverKey);
     }
 
     /**
      * Set a cover Bitmap for this item. Optional.
      */
-    public void setCoverBitmap(byte[] cover) {
-        this.coverBitmap = cover;
+    public void setCoverBitmap(byte[] coverBitmap) {
+        this.coverKey = coverBitmap != null ? CoverStore.getInstance().put(cover, coverBitmap) : null;
+    }
+
+    /**
+     * @return Key of the cover Bitmap in the {@link CoverStore}. Optional.
+     */
+    public String getCoverKey() {
+        return coverKey;
+    }
+
+    /**
+     * Set the key of a cover Bitmap in the {@link CoverStore}. Optional.
+     */
+    public void setCoverKey(String coverKey) {
+        this.coverKey = coverKey;
     }
 
     /**
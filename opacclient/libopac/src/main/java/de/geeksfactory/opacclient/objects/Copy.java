@@ -22,6 +22,8 @@ import org.joda.time.LocalDate;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
+import de.geeksfactory.opacclient.utils.DateParser;
+
 /**
  * Represents a copy of a medium ({@link DetailedItem}) available in a library.
  */
@@ -243,7 +245,7 @@ public class Copy {
                 setStatus(value);
                 break;
             case "returndate":
-                setReturnDate(new LocalDate(value));
+                setReturnDate(DateParser.parseIsoDate(value));
                 break;
             case "reservations":
                 setReservations(value);
@@ -289,6 +291,31 @@ public class Copy {
         }
     }
 
+    /**
+     * Set property using the following keys: barcode, location, department, branch, status,
+     * returndate, reservations, signature, resinfo, url
+     *
+     * For "returndate", the given {@link DateParser} will be used to parse the date.
+     *
+     * If you supply an invalid key or a return date that cannot be parsed, an {@link
+     * IllegalArgumentException} will be thrown.
+     *
+     * @param key    one of the keys mentioned above
+     * @param value  the value to set
+     * @param parser the {@link DateParser} to use for parsing dates
+     */
+    public void set(String key, String value, DateParser parser) {
+        if (key.equals("returndate")) {
+            if (!value.isEmpty()) {
+                LocalDate date = parser.parse(value);
+                if (date == null) throw new IllegalArgumentException("invalid date: " + value);
+                setReturnDate(date);
+            }
+        } else {
+            set(key, value);
+        }
+    }
+
     /**
      * Get property using the following keys: barcode, location, department, branch, status,
      * returndate, reservations, signature, resinfo, url
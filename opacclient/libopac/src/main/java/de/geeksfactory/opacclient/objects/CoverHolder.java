@@ -6,7 +6,9 @@ package de.geeksfactory.opacclient.objects;
  */
 public interface CoverHolder {
     /**
-     * Get the cover bitmap
+     * Get the cover bitmap. The bitmap itself is kept in the {@link
+     * de.geeksfactory.opacclient.utils.CoverStore}, so this might return null again if it has
+     * been evicted from memory there.
      */
     public byte[] getCoverBitmap();
 
@@ -15,6 +17,16 @@ public interface CoverHolder {
      */
     public void setCoverBitmap(byte[] coverBitmap);
 
+    /**
+     * Get the key of the cover bitmap in the {@link de.geeksfactory.opacclient.utils.CoverStore}
+     */
+    public String getCoverKey();
+
+    /**
+     * Set the cover bitmap by its key in the {@link de.geeksfactory.opacclient.utils.CoverStore}
+     */
+    public void setCoverKey(String coverKey);
+
     /**
      * Get the cover URL
      */
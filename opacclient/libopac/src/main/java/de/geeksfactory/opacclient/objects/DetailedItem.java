@@ -21,11 +21,19 @@
  */
 package de.geeksfactory.opacclient.objects;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java8.util.concurrent.CompletableFuture;
 
+import de.geeksfactory.opacclient.utils.CoverStore;
+import de.geeksfactory.opacclient.utils.JsonKeyIterator;
+
 /**
  * Object representing all details of a media item
  *
@@ -39,7 +47,7 @@ public class DetailedItem implements CoverHolder {
     private String cover;
     private String title;
     private SearchResult.MediaType mediaType;
-    private byte[] coverBitmap;
+    private String coverKey;
     private boolean reservable;
     private String reservation_info;
     private boolean bookable;
@@ -48,6 +56,9 @@ public class DetailedItem implements CoverHolder {
     private Map<String, String> volumesearch;
     private String collectionid;
 
+    private static final String[] COPY_KEYS = {"barcode", "location", "department", "branch",
+            "status", "returndate", "reservations", "signature", "resinfo", "url"};
+
     /**
      * Get unique media identifier
      *
@@ -85,7 +96,7 @@ public class DetailedItem implements CoverHolder {
      */
     @Override
     public byte[] getCoverBitmap() {
-        return coverBitmap;
+        return CoverStore.getInstance().get(coverKey);
     }
 
     /**
@@ -93,7 +104,17 @@ public class DetailedItem implements CoverHolder {
      */
     @Override
     public void setCoverBitmap(byte[] coverBitmap) {
-        this.coverBitmap = coverBitmap;
+        this.coverKey = coverBitmap != null ? CoverStore.getInstance().put(cover, coverBitmap) : null;
+    }
+
+    @Override
+    public String getCoverKey() {
+        return coverKey;
+    }
+
+    @Override
+    public void setCoverKey(String coverKey) {
+        this.coverKey = coverKey;
     }
 
     /**
@@ -120,7 +141,7 @@ public class DetailedItem implements CoverHolder {
     public String toString() {
         return "DetailedItem [details=" + details + ", copies=" + copies
                 + ", volumes=" + volumes + ", cover=" + cover + ", title="
-                + title + ", coverBitmap=" + coverBitmap + ", reservable="
+                + title + ", coverKey=" + coverKey + ", reservable="
                 + reservable + ", reservation_info=" + reservation_info
                 + ", id=" + id + ", volumesearch=" + volumesearch + ", mediatype=" + mediaType +
                 "]";
@@ -333,4 +354,109 @@ public class DetailedItem implements CoverHolder {
     public void setCoverFuture(CompletableFuture<Void> coverFuture) {
         this.coverFuture = coverFuture;
     }
+
+    /**
+     * Converts this item to JSON, e.g. to keep it across a restart of the app process. The cover
+     * bitmap is only referenced by its key in the {@link CoverStore}.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("title", title);
+        json.put("cover", cover);
+        json.put("cover_key", coverKey);
+        json.put("media_type", mediaType != null ? mediaType.name() : null);
+        json.put("reservable", reservable);
+        json.put("reservation_info", reservation_info);
+        json.put("bookable", bookable);
+        json.put("booking_info", booking_info);
+        json.put("collection_id", collectionid);
+        if (volumesearch != null) {
+            json.put("volumesearch", new JSONObject(volumesearch));
+        }
+        JSONArray detailsJson = new JSONArray();
+        for (Detail detail : details) {
+            JSONObject d = new JSONObject();
+            d.put("desc", detail.getDesc());
+            d.put("content", detail.getContent());
+            d.put("html", detail.isHtml());
+            detailsJson.put(d);
+        }
+        json.put("details", detailsJson);
+        JSONArray copiesJson = new JSONArray();
+        for (Copy copy : copies) {
+            JSONObject c = new JSONObject();
+            for (String key : COPY_KEYS) {
+                c.put(key, copy.get(key));
+            }
+            c.put("issue", copy.getIssue());
+            c.put("status_code",
+                    copy.getStatusCode() != null ? copy.getStatusCode().name() : null);
+            copiesJson.put(c);
+        }
+        json.put("copies", copiesJson);
+        JSONArray volumesJson = new JSONArray();
+        for (Volume volume : volumes) {
+            JSONObject v = new JSONObject();
+            v.put("id", volume.getId());
+            v.put("title", volume.getTitle());
+            volumesJson.put(v);
+        }
+        json.put("volumes", volumesJson);
+        return json;
+    }
+
+    /**
+     * Creates an item from JSON written by {@link #toJSON()}.
+     */
+    public static DetailedItem fromJSON(JSONObject json) throws JSONException {
+        DetailedItem item = new DetailedItem();
+        item.setId(json.optString("id", null));
+        item.setTitle(json.optString("title", null));
+        item.setCover(json.optString("cover", null));
+        item.setCoverKey(json.optString("cover_key", null));
+        if (json.has("media_type")) {
+            item.setMediaType(SearchResult.MediaType.valueOf(json.getString("media_type")));
+        }
+        item.setReservable(json.optBoolean("reservable"));
+        item.setReservation_info(json.optString("reservation_info", null));
+        item.setBookable(json.optBoolean("bookable"));
+        item.setBooking_info(json.optString("booking_info", null));
+        item.setCollectionId(json.optString("collection_id", null));
+        if (json.has("volumesearch")) {
+            JSONObject vs = json.getJSONObject("volumesearch");
+            Map<String, String> volumesearch = new HashMap<>();
+            JsonKeyIterator keys = new JsonKeyIterator(vs);
+            while (keys.hasNext()) {
+                String key = keys.next();
+                volumesearch.put(key, vs.getString(key));
+            }
+            item.setVolumesearch(volumesearch);
+        }
+        JSONArray detailsJson = json.getJSONArray("details");
+        for (int i = 0; i < detailsJson.length(); i++) {
+            JSONObject d = detailsJson.getJSONObject(i);
+            item.addDetail(new Detail(d.optString("desc", null), d.optString("content", null),
+                    d.optBoolean("html")));
+        }
+        JSONArray copiesJson = json.getJSONArray("copies");
+        for (int i = 0; i < copiesJson.length(); i++) {
+            JSONObject c = copiesJson.getJSONObject(i);
+            Copy copy = new Copy();
+            for (String key : COPY_KEYS) {
+                if (c.has(key)) copy.set(key, c.getString(key));
+            }
+            copy.setIssue(c.optString("issue", null));
+            if (c.has("status_code")) {
+                copy.setStatusCode(SearchResult.Status.valueOf(c.getString("status_code")));
+            }
+            item.addCopy(copy);
+        }
+        JSONArray volumesJson = json.getJSONArray("volumes");
+        for (int i = 0; i < volumesJson.length(); i++) {
+            JSONObject v = volumesJson.getJSONObject(i);
+            item.addVolume(new Volume(v.optString("id", null), v.optString("title", null)));
+        }
+        return item;
+    }
 }
@@ -4,6 +4,8 @@ import org.joda.time.LocalDate;
 
 import java.io.Serializable;
 
+import de.geeksfactory.opacclient.utils.DateParser;
+
 public class LentItem extends AccountItem implements Serializable {
     private String barcode;
     private LocalDate deadline;
@@ -40,7 +42,7 @@ public class LentItem extends AccountItem implements Serializable {
      */
     public void setDeadline(String deadline) {
         if (deadline != null) {
-            this.deadline = new LocalDate(deadline);
+            this.deadline = DateParser.parseIsoDate(deadline);
         } else {
             this.deadline = null;
         }
@@ -157,7 +159,7 @@ public class LentItem extends AccountItem implements Serializable {
                 setBarcode(value);
                 break;
             case "returndate":
-                setDeadline(new LocalDate(value));
+                setDeadline(DateParser.parseIsoDate(value));
                 break;
             case "homebranch":
                 setHomeBranch(value);
@@ -4,6 +4,8 @@ import org.joda.time.LocalDate;
 
 import java.io.Serializable;
 
+import de.geeksfactory.opacclient.utils.DateParser;
+
 public class ReservedItem extends AccountItem implements Serializable {
     private LocalDate readyDate;
     private LocalDate expirationDate;
@@ -23,7 +25,7 @@ public class ReservedItem extends AccountItem implements Serializable {
      */
     public void setReadyDate(String readyDate) {
         if (readyDate != null) {
-            this.readyDate = new LocalDate(readyDate);
+            this.readyDate = DateParser.parseIsoDate(readyDate);
         } else {
             this.readyDate = null;
         }
@@ -48,7 +50,7 @@ public class ReservedItem extends AccountItem implements Serializable {
      */
     public void setExpirationDate(String expirationDate) {
         if (expirationDate != null) {
-            this.expirationDate = new LocalDate(expirationDate);
+            this.expirationDate = DateParser.parseIsoDate(expirationDate);
         } else {
             this.expirationDate = null;
         }
@@ -124,10 +126,10 @@ public class ReservedItem extends AccountItem implements Serializable {
         }
         switch (key) {
             case "availability":
-                setReadyDate(new LocalDate(value));
+                setReadyDate(DateParser.parseIsoDate(value));
                 break;
             case "expirationdate":
-                setExpirationDate(new LocalDate(value));
+                setExpirationDate(DateParser.parseIsoDate(value));
                 break;
             case "branch":
                 setBranch(value);
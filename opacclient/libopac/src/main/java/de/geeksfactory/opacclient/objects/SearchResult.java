@@ -21,14 +21,21 @@
  */
 package de.geeksfactory.opacclient.objects;
 
+import java.util.ArrayList;
 import java.util.List;
 import java8.util.concurrent.CompletableFuture;
 
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
+import de.geeksfactory.opacclient.utils.CoverStore;
 
 /**
  * Object representing a search result
  *
+ * APIs should describe the item using the structured fields like {@link #setTitle(String)} and
+ * {@link #setAuthors(List)}, which the app renders without parsing HTML if any of them is set.
+ * Setting HTML using {@link #setInnerhtml(String)} is still supported and takes precedence for
+ * {@link #getInnerhtml()}, which otherwise returns HTML generated from the structured fields.
+ *
  * @author Raphael Michel
  */
 public class SearchResult implements CoverHolder {
@@ -36,8 +43,16 @@ public class SearchResult implements CoverHolder {
     private int nr;
     private String id;
     private String innerhtml;
+    private String generatedInnerhtml;
+    private String title;
+    private String subtitle;
+    private List<String> authors;
+    private String year;
+    private String publisher;
+    private String series;
+    private String availability;
     private Status status;
-    private byte[] coverBitmap;
+    private String coverKey;
     private String cover;
     private CompletableFuture<Void> coverFuture = null;
     private int page;
@@ -63,7 +78,6 @@ public class SearchResult implements CoverHolder {
     public SearchResult() {
         this.type = MediaType.NONE;
         this.nr = 0;
-        this.innerhtml = "";
     }
 
     /**
@@ -121,17 +135,25 @@ public class SearchResult implements CoverHolder {
     }
 
     /**
-     * Get HTML describing the item to the user in a result list.
+     * Get HTML describing the item to the user in a result list. If no HTML has been set, it is
+     * generated from the structured fields on first access.
      *
-     * @return position
+     * @return simple HTML code, never <code>null</code>
      */
     public String getInnerhtml() {
-        return innerhtml;
+        if (innerhtml != null) {
+            return innerhtml;
+        }
+        if (generatedInnerhtml == null) {
+            generatedInnerhtml = generateInnerhtml();
+        }
+        return generatedInnerhtml;
     }
 
     /**
      * Set HTML describing the item to the user in a result list. Only "simple" HTML like
-     * {@code <b>}, {@code <i>}, etc. can be used.
+     * {@code <b>}, {@code <i>}, etc. can be used. New code should prefer the structured fields
+     * like {@link #setTitle(String)}.
      *
      * @param innerhtml simple HTML code
      */
@@ -139,6 +161,184 @@ public class SearchResult implements CoverHolder {
         this.innerhtml = innerhtml;
     }
 
+    /**
+     * @return <code>true</code> if at least one of the structured fields, like the title, is set
+     */
+    public boolean hasStructuredFields() {
+        return title != null || subtitle != null || (authors != null && !authors.isEmpty())
+                || year != null || publisher != null || series != null || availability != null;
+    }
+
+    private String generateInnerhtml() {
+        if (!hasStructuredFields()) {
+            return "";
+        }
+        StringBuilder html = new StringBuilder();
+        if (title != null) {
+            html.append("<b>").append(escapeHtml(title)).append("</b>");
+        }
+        appendLine(html, subtitle, true);
+        if (authors != null && !authors.isEmpty()) {
+            StringBuilder line = new StringBuilder();
+            for (String author : authors) {
+                if (line.length() > 0) line.append("; ");
+                line.append(author);
+            }
+            appendLine(html, line.toString(), false);
+        }
+        StringBuilder line = new StringBuilder();
+        for (String part : new String[]{publisher, series, year}) {
+            if (part == null || part.isEmpty()) continue;
+            if (line.length() > 0) line.append(", ");
+            line.append(part);
+        }
+        appendLine(html, line.toString(), false);
+        appendLine(html, availability, true);
+        return html.toString();
+    }
+
+    private static void appendLine(StringBuilder html, String text, boolean italic) {
+        if (text == null || text.isEmpty()) return;
+        if (html.length() > 0) html.append("<br />");
+        if (italic) html.append("<i>");
+        html.append(escapeHtml(text));
+        if (italic) html.append("</i>");
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Get the item's title as plain text
+     *
+     * @return title or <code>null</code> if not set
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Set the item's title as plain text
+     */
+    public void setTitle(String title) {
+        this.title = title;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get the item's subtitle as plain text
+     *
+     * @return subtitle or <code>null</code> if not set
+     */
+    public String getSubtitle() {
+        return subtitle;
+    }
+
+    /**
+     * Set the item's subtitle as plain text
+     */
+    public void setSubtitle(String subtitle) {
+        this.subtitle = subtitle;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get the names of the item's authors, editors, etc.
+     *
+     * @return list of names or <code>null</code> if not set
+     */
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    /**
+     * Set the names of the item's authors, editors, etc. in the order they should be displayed
+     */
+    public void setAuthors(List<String> authors) {
+        this.authors = authors;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Add the name of an author, editor, etc.
+     */
+    public void addAuthor(String author) {
+        if (authors == null) {
+            authors = new ArrayList<>();
+        }
+        authors.add(author);
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get the year of publication as displayed by the library, e.g. "2017" or "[ca. 1900]"
+     *
+     * @return year or <code>null</code> if not set
+     */
+    public String getYear() {
+        return year;
+    }
+
+    /**
+     * Set the year of publication as displayed by the library
+     */
+    public void setYear(String year) {
+        this.year = year;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get the item's publisher
+     *
+     * @return publisher or <code>null</code> if not set
+     */
+    public String getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Set the item's publisher
+     */
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get the series the item belongs to
+     *
+     * @return series or <code>null</code> if not set
+     */
+    public String getSeries() {
+        return series;
+    }
+
+    /**
+     * Set the series the item belongs to
+     */
+    public void setSeries(String series) {
+        this.series = series;
+        generatedInnerhtml = null;
+    }
+
+    /**
+     * Get a short text describing the item's availability, complementing {@link #getStatus()}
+     *
+     * @return availability text or <code>null</code> if not set
+     */
+    public String getAvailability() {
+        return availability;
+    }
+
+    /**
+     * Set a short text describing the item's availability, e.g. "2 of 3 copies available"
+     */
+    public void setAvailability(String availability) {
+        this.availability = availability;
+        generatedInnerhtml = null;
+    }
+
     /**
      * Get item status (if known)
      *
@@ -177,7 +377,7 @@ public class SearchResult implements CoverHolder {
      */
     @Override
     public byte[] getCoverBitmap() {
-        return coverBitmap;
+        return CoverStore.getInstance().get(coverKey);
     }
 
     /**
@@ -185,7 +385,17 @@ public class SearchResult implements CoverHolder {
      */
     @Override
     public void setCoverBitmap(byte[] coverBitmap) {
-        this.coverBitmap = coverBitmap;
+        this.coverKey = coverBitmap != null ? CoverStore.getInstance().put(cover, coverBitmap) : null;
+    }
+
+    @Override
+    public String getCoverKey() {
+        return coverKey;
+    }
+
+    @Override
+    public void setCoverKey(String coverKey) {
+        this.coverKey = coverKey;
     }
 
     /**
@@ -246,7 +456,7 @@ public class SearchResult implements CoverHolder {
     @Override
     public String toString() {
         return "SearchResult [id= " + id + ", type=" + type + ", nr=" + nr
-                + ", innerhtml=" + innerhtml + "]";
+                + ", title=" + title + ", authors=" + authors + ", innerhtml=" + innerhtml + "]";
     }
 
     /**
@@ -0,0 +1,20 @@
+package de.geeksfactory.opacclient.reporting;
+
+/**
+ * Receives timing and traffic information about the HTTP requests an {@link
+ * de.geeksfactory.opacclient.apis.OpacApi} performs. Implementations are called from whatever
+ * thread the request finished on, including OkHttp's dispatcher threads, so they should return
+ * quickly and must be thread-safe.
+ */
+public interface MetricsHandler {
+    /**
+     * Called once per HTTP call after the response body has been consumed or the call failed.
+     */
+    void onRequestFinished(RequestMetrics metrics);
+
+    /**
+     * Called when a logical operation started with {@link MetricsRecorder#beginOperation(String)}
+     * is finished.
+     */
+    void onOperationFinished(OperationMetrics metrics);
+}
@@ -0,0 +1,176 @@
+package de.geeksfactory.opacclient.reporting;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.geeksfactory.opacclient.apis.BaseApi;
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.objects.Library;
+
+/**
+ * Collects {@link RequestMetrics} from the HTTP stack of an {@link OpacApi} instance, tags them
+ * with the library and the current logical operation and forwards them to a {@link
+ * MetricsHandler}. If no handler is set, nothing is recorded.
+ *
+ * Operations are tracked per thread: all requests started on a thread between {@link
+ * #beginOperation(String)} and {@link Operation#finish()} are counted towards that operation.
+ */
+public class MetricsRecorder {
+    private volatile MetricsHandler handler;
+    private String library;
+    private String api;
+    private final ThreadLocal<Operation> currentOperation = new ThreadLocal<>();
+
+    public void setLibrary(Library library) {
+        this.library = library.getIdent();
+        this.api = library.getApi();
+    }
+
+    public void setHandler(MetricsHandler handler) {
+        this.handler = handler;
+    }
+
+    public boolean isEnabled() {
+        return handler != null;
+    }
+
+    /**
+     * Starts a logical operation on the current thread. The returned operation must be finished
+     * using {@link Operation#finish()}, preferably in a {@code finally} block. If another operation
+     * is already running on this thread, requests will still be counted towards the outer one.
+     *
+     * @param name name of the operation, e.g. {@code "search"} or {@code "account"}
+     */
+    public Operation beginOperation(String name) {
+        if (handler == null || currentOperation.get() != null) {
+            return NO_OP;
+        }
+        Operation op = new Operation(this, name);
+        currentOperation.set(op);
+        return op;
+    }
+
+    /**
+     * Starts a logical operation on the given API, see {@link #beginOperation(String)}. Safe to
+     * call with any {@link OpacApi} implementation.
+     */
+    public static Operation beginOperation(OpacApi api, String name) {
+        if (api instanceof BaseApi) {
+            return ((BaseApi) api).getMetricsRecorder().beginOperation(name);
+        }
+        return NO_OP;
+    }
+
+    /**
+     * Runs <code>action</code> as a logical operation on the given API, see {@link
+     * #beginOperation(OpacApi, String)}. The operation is marked as failed if the action throws.
+     */
+    public static <T> T track(OpacApi api, String name, Callable<T> action) throws Exception {
+        Operation op = beginOperation(api, name);
+        try {
+            return action.call();
+        } catch (Exception e) {
+            op.setFailed();
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
+
+    /**
+     * @return the operation running on the current thread, or {@code null}
+     */
+    public Operation getCurrentOperation() {
+        return currentOperation.get();
+    }
+
+    /**
+     * Creates a new, empty {@link RequestMetrics} object tagged with the current library and the
+     * given operation.
+     */
+    public RequestMetrics newRequestMetrics(Operation operation, String method, String host) {
+        return new RequestMetrics(library, api, operation != null ? operation.name : null, method,
+                host);
+    }
+
+    /**
+     * Reports a finished request to the handler and adds it to the given operation.
+     */
+    public void requestFinished(Operation operation, RequestMetrics metrics) {
+        if (operation != null) {
+            operation.add(metrics);
+        }
+        MetricsHandler handler = this.handler;
+        if (handler != null) {
+            handler.onRequestFinished(metrics);
+        }
+    }
+
+    private void operationFinished(Operation op) {
+        if (currentOperation.get() == op) {
+            currentOperation.remove();
+        }
+        MetricsHandler handler = this.handler;
+        if (handler != null) {
+            handler.onOperationFinished(new OperationMetrics(library, api, op.name,
+                    op.requests.get(), (System.nanoTime() - op.start) / 1000000,
+                    op.networkMillis.get(), op.queueMillis.get(), op.bytesSent.get(),
+                    op.bytesReceived.get(), op.failed, op.skipped));
+        }
+    }
+
+    private static final Operation NO_OP = new Operation(null, null);
+
+    public static class Operation {
+        private final MetricsRecorder recorder;
+        private final String name;
+        private final long start = System.nanoTime();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicLong networkMillis = new AtomicLong();
+        private final AtomicLong queueMillis = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private volatile boolean failed;
+        private volatile boolean skipped;
+        private boolean finished;
+
+        private Operation(MetricsRecorder recorder, String name) {
+            this.recorder = recorder;
+            this.name = name;
+        }
+
+        void add(RequestMetrics metrics) {
+            requests.incrementAndGet();
+            if (metrics.getTotalMillis() > 0) networkMillis.addAndGet(metrics.getTotalMillis());
+            if (metrics.getQueueMillis() > 0) queueMillis.addAndGet(metrics.getQueueMillis());
+            bytesSent.addAndGet(metrics.getBytesSent());
+            bytesReceived.addAndGet(metrics.getBytesReceived());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Marks the operation as failed, e.g. because an exception was thrown.
+         */
+        public void setFailed() {
+            failed = true;
+        }
+
+        /**
+         * Marks the operation as skipped, e.g. because the data did not change and was not
+         * parsed again.
+         */
+        public void setSkipped() {
+            skipped = true;
+        }
+
+        public synchronized void finish() {
+            if (recorder == null || finished) return;
+            finished = true;
+            recorder.operationFinished(this);
+        }
+    }
+}
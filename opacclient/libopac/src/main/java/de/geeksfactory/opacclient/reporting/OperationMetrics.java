@@ -0,0 +1,111 @@
+package de.geeksfactory.opacclient.reporting;
+
+/**
+ * Summary of all HTTP requests performed during one logical {@link
+ * de.geeksfactory.opacclient.apis.OpacApi} operation, such as a search or an account sync.
+ */
+public class OperationMetrics {
+    private final String library;
+    private final String api;
+    private final String operation;
+    private final int requestCount;
+    private final long durationMillis;
+    private final long networkMillis;
+    private final long queueMillis;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final boolean failed;
+    private final boolean skipped;
+
+    public OperationMetrics(String library, String api, String operation, int requestCount,
+            long durationMillis, long networkMillis, long queueMillis, long bytesSent,
+            long bytesReceived, boolean failed, boolean skipped) {
+        this.library = library;
+        this.api = api;
+        this.operation = operation;
+        this.requestCount = requestCount;
+        this.durationMillis = durationMillis;
+        this.networkMillis = networkMillis;
+        this.queueMillis = queueMillis;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.failed = failed;
+        this.skipped = skipped;
+    }
+
+    public String getLibrary() {
+        return library;
+    }
+
+    public String getApi() {
+        return api;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return wall clock time between the start and the end of the operation
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return sum of the total times of all requests. May exceed {@link #getDurationMillis()} if
+     * requests ran in parallel.
+     */
+    public long getNetworkMillis() {
+        return networkMillis;
+    }
+
+    /**
+     * @return sum of the times the requests waited in the {@link
+     * de.geeksfactory.opacclient.networking.RequestScheduler} before they were started
+     */
+    public long getQueueMillis() {
+        return queueMillis;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return whether the operation finished early because the data did not change, e.g. an
+     * account sync where the fingerprint of the account pages matched the stored one
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationMetrics{" +
+                "library='" + library + '\'' +
+                ", api='" + api + '\'' +
+                ", operation='" + operation + '\'' +
+                ", requests=" + requestCount +
+                ", duration=" + durationMillis +
+                ", network=" + networkMillis +
+                ", queue=" + queueMillis +
+                ", sent=" + bytesSent +
+                ", received=" + bytesReceived +
+                ", failed=" + failed +
+                ", skipped=" + skipped +
+                '}';
+    }
+}
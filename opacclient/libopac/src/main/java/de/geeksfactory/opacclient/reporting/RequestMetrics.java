@@ -0,0 +1,197 @@
+package de.geeksfactory.opacclient.reporting;
+
+/**
+ * Timings and transferred bytes of a single HTTP call, including the redirects it followed.
+ * Durations are given in milliseconds and are {@code -1} if the phase did not happen (e.g. no DNS
+ * lookup because a pooled connection was reused) or could not be measured by the HTTP stack in
+ * use.
+ */
+public class RequestMetrics {
+    private String library;
+    private String api;
+    private String operation;
+    private String method;
+    private String host;
+    private String priority;
+    private int statusCode = -1;
+    private boolean failed;
+    private long queueMillis = -1;
+    private long dnsMillis = -1;
+    private long connectMillis = -1;
+    private long tlsMillis = -1;
+    private long ttfbMillis = -1;
+    private long bodyMillis = -1;
+    private long totalMillis = -1;
+    private long bytesSent;
+    private long bytesReceived;
+
+    public RequestMetrics(String library, String api, String operation, String method,
+            String host) {
+        this.library = library;
+        this.api = api;
+        this.operation = operation;
+        this.method = method;
+        this.host = host;
+    }
+
+    /**
+     * @return the ident of the library this request was made for
+     */
+    public String getLibrary() {
+        return library;
+    }
+
+    /**
+     * @return the API type of the library, e.g. {@code sisis}
+     */
+    public String getApi() {
+        return api;
+    }
+
+    /**
+     * @return the name of the logical operation this request belonged to, or {@code null} if it
+     * was performed outside of an operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+
+    public long getDnsMillis() {
+        return dnsMillis;
+    }
+
+    public void setDnsMillis(long dnsMillis) {
+        this.dnsMillis = dnsMillis;
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    public void setConnectMillis(long connectMillis) {
+        this.connectMillis = connectMillis;
+    }
+
+    /**
+     * @return the {@link de.geeksfactory.opacclient.networking.RequestScheduler.Priority} of
+     * this request, or {@code null} if it did not go through the scheduler
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return time the request waited in the {@link
+     * de.geeksfactory.opacclient.networking.RequestScheduler} before it was started
+     */
+    public long getQueueMillis() {
+        return queueMillis;
+    }
+
+    public void setQueueMillis(long queueMillis) {
+        this.queueMillis = queueMillis;
+    }
+
+    public long getTlsMillis() {
+        return tlsMillis;
+    }
+
+    public void setTlsMillis(long tlsMillis) {
+        this.tlsMillis = tlsMillis;
+    }
+
+    /**
+     * @return time between the request being sent completely and the response headers starting
+     * to arrive
+     */
+    public long getTtfbMillis() {
+        return ttfbMillis;
+    }
+
+    public void setTtfbMillis(long ttfbMillis) {
+        this.ttfbMillis = ttfbMillis;
+    }
+
+    public long getBodyMillis() {
+        return bodyMillis;
+    }
+
+    public void setBodyMillis(long bodyMillis) {
+        this.bodyMillis = bodyMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public void setBytesSent(long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public void setBytesReceived(long bytesReceived) {
+        this.bytesReceived = bytesReceived;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics{" +
+                "library='" + library + '\'' +
+                ", api='" + api + '\'' +
+                ", operation='" + operation + '\'' +
+                ", method='" + method + '\'' +
+                ", host='" + host + '\'' +
+                ", statusCode=" + statusCode +
+                ", failed=" + failed +
+                ", priority=" + priority +
+                ", queue=" + queueMillis +
+                ", dns=" + dnsMillis +
+                ", connect=" + connectMillis +
+                ", tls=" + tlsMillis +
+                ", ttfb=" + ttfbMillis +
+                ", body=" + bodyMillis +
+                ", total=" + totalMillis +
+                ", sent=" + bytesSent +
+                ", received=" + bytesReceived +
+                '}';
+    }
+}
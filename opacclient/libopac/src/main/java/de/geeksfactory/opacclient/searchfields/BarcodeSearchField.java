@@ -29,6 +29,17 @@ public class BarcodeSearchField extends SearchField {
         this.hint = hint;
     }
 
+    protected BarcodeSearchField(BarcodeSearchField other) {
+        super(other);
+        this.hint = other.hint;
+        this.halfWidth = other.halfWidth;
+    }
+
+    @Override
+    public BarcodeSearchField copy() {
+        return new BarcodeSearchField(this);
+    }
+
     /**
      * Gets the hint to be displayed as a placeholder inside the field.
      */
@@ -24,6 +24,15 @@ public class CheckboxSearchField extends SearchField {
         super(id, displayName, advanced);
     }
 
+    protected CheckboxSearchField(CheckboxSearchField other) {
+        super(other);
+    }
+
+    @Override
+    public CheckboxSearchField copy() {
+        return new CheckboxSearchField(this);
+    }
+
     @Override
     public JSONObject toJSON() throws JSONException {
         JSONObject json = super.toJSON();
@@ -65,6 +65,21 @@ public class DropdownSearchField extends SearchField {
         this.dropdownValues = dropdownValues;
     }
 
+    /**
+     * Copy constructor, the list of options is copied, the options themselves are immutable.
+     */
+    protected DropdownSearchField(DropdownSearchField other) {
+        super(other);
+        if (other.dropdownValues != null) {
+            this.dropdownValues = new ArrayList<>(other.dropdownValues);
+        }
+    }
+
+    @Override
+    public DropdownSearchField copy() {
+        return new DropdownSearchField(this);
+    }
+
     /**
      * Get the list of selectable values.
      */
@@ -79,6 +94,19 @@ public class DropdownSearchField extends SearchField {
         this.dropdownValues = dropdownValues;
     }
 
+    /**
+     * Get the displayed value of the option with the given key.
+     *
+     * @return the value, or <code>null</code> if there is no such option
+     */
+    public String getDropdownValue(String key) {
+        if (dropdownValues == null || key == null) return null;
+        for (Option option : dropdownValues) {
+            if (key.equals(option.getKey())) return option.getValue();
+        }
+        return null;
+    }
+
     public void addDropdownValue(String key, String value) {
         if (dropdownValues == null) {
             dropdownValues = new ArrayList<>();
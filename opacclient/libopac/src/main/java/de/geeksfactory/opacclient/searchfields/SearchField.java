@@ -5,6 +5,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.Comparator;
+import java.util.Iterator;
 
 /**
  * A SearchField is the abstract representation of a criteria input available in the search form.
@@ -36,6 +37,35 @@ public abstract class SearchField {
         this.advanced = advanced;
     }
 
+    /**
+     * Copy constructor, see {@link #copy()}. The data object is copied as well, but the values
+     * inside it are shared.
+     */
+    protected SearchField(SearchField other) {
+        this.id = other.id;
+        this.displayName = other.displayName;
+        this.advanced = other.advanced;
+        this.visible = other.visible;
+        this.meaning = other.meaning;
+        if (other.data != null) {
+            this.data = new JSONObject();
+            try {
+                for (Iterator<?> keys = other.data.keys(); keys.hasNext(); ) {
+                    String key = (String) keys.next();
+                    this.data.put(key, other.data.get(key));
+                }
+            } catch (JSONException e) {
+                // cannot happen, all keys and values come from a valid JSONObject
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of this field that can be modified without affecting this one.
+     */
+    public abstract SearchField copy();
+
     /**
      * Initialize a SearchField from its JSON-serialized counterpart
      */
@@ -37,6 +37,19 @@ public class TextSearchField extends SearchField {
         this.number = number;
     }
 
+    protected TextSearchField(TextSearchField other) {
+        super(other);
+        this.hint = other.hint;
+        this.freeSearch = other.freeSearch;
+        this.number = other.number;
+        this.halfWidth = other.halfWidth;
+    }
+
+    @Override
+    public TextSearchField copy() {
+        return new TextSearchField(this);
+    }
+
     /**
      * The hint to display inside the search field
      */
@@ -0,0 +1,95 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import de.geeksfactory.opacclient.objects.Copy;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+import de.geeksfactory.opacclient.objects.SearchResult;
+
+/**
+ * Condenses the copies of a {@link DetailedItem} into an availability state and a compact
+ * digest, so that changes can be detected without storing the copies themselves.
+ */
+public class Availability {
+    public static final int UNKNOWN = 0;
+    public static final int UNAVAILABLE = 1;
+    public static final int AVAILABLE = 2;
+
+    private static final Pattern UNAVAILABLE_KEYWORDS = keywords("nicht verfügbar",
+            "nicht verfuegbar", "verfügbar ab", "nicht ausleihbar", "nicht vorhanden",
+            "entliehen", "ausgeliehen", "verliehen", "vorgemerkt", "bestellt", "vorbestellt",
+            "unterwegs",
+            "in bearbeitung", "vermisst", "not available", "unavailable", "on loan",
+            "checked out", "lent", "missing", "in transit", "on order");
+    private static final Pattern AVAILABLE_KEYWORDS = keywords("verfügbar", "verfuegbar",
+            "ausleihbar", "vorhanden", "im regal", "available", "on shelf");
+
+    /**
+     * Matches any of the keywords as whole words, so that e.g. "lent" does not match
+     * "excellent".
+     */
+    private static Pattern keywords(String... keywords) {
+        StringBuilder regex = new StringBuilder("(?<![\\p{L}\\p{N}])(?:");
+        for (int i = 0; i < keywords.length; i++) {
+            if (i > 0) regex.append('|');
+            regex.append(Pattern.quote(keywords[i]));
+        }
+        return Pattern.compile(regex.append(")(?![\\p{L}\\p{N}])").toString());
+    }
+
+    /**
+     * Determines whether a single copy can currently be borrowed. The status code set by the API
+     * implementation is preferred, otherwise a return date or the status text is used.
+     */
+    public static int getState(Copy copy) {
+        SearchResult.Status code = copy.getStatusCode();
+        if (code == SearchResult.Status.GREEN) {
+            return AVAILABLE;
+        } else if (code == SearchResult.Status.RED || code == SearchResult.Status.YELLOW) {
+            return UNAVAILABLE;
+        }
+        if (copy.getReturnDate() != null) {
+            return UNAVAILABLE;
+        }
+        if (copy.getStatus() == null) {
+            return UNKNOWN;
+        }
+        String status = copy.getStatus().toLowerCase(Locale.GERMAN);
+        if (UNAVAILABLE_KEYWORDS.matcher(status).find()) return UNAVAILABLE;
+        if (AVAILABLE_KEYWORDS.matcher(status).find()) return AVAILABLE;
+        return UNKNOWN;
+    }
+
+    /**
+     * An item is available as soon as one of its copies is available.
+     */
+    public static int getState(List<Copy> copies) {
+        int state = UNKNOWN;
+        for (Copy copy : copies) {
+            int copyState = getState(copy);
+            if (copyState == AVAILABLE) {
+                return AVAILABLE;
+            } else if (copyState == UNAVAILABLE) {
+                state = UNAVAILABLE;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Computes a digest over the branch, state and return date of each copy. The digest is never
+     * 0, which is used for items that have not been checked yet.
+     */
+    public static int getDigest(List<Copy> copies) {
+        int digest = 1;
+        for (Copy copy : copies) {
+            digest = 31 * digest + (copy.getBranch() != null ? copy.getBranch().hashCode() : 0);
+            digest = 31 * digest + getState(copy);
+            digest = 31 * digest +
+                    (copy.getReturnDate() != null ? copy.getReturnDate().hashCode() : 0);
+        }
+        return digest != 0 ? digest : 1;
+    }
+}
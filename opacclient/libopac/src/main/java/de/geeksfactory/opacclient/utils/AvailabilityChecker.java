@@ -0,0 +1,283 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+
+/**
+ * Checks the availability of many items (e.g. all starred items) in one go. Items are grouped
+ * by library, so that every library is queried with a single {@link OpacApi} instance and
+ * session. Libraries are checked in parallel, but the number of concurrent requests to the same
+ * host is limited and consecutive requests within a library are spaced out with some jitter.
+ */
+public class AvailabilityChecker {
+
+    public interface ApiFactory {
+        /**
+         * @return A new API instance for the given library or <code>null</code> if the library
+         * is not available anymore
+         */
+        OpacApi getApi(String library);
+
+        /**
+         * @return The host the library's OPAC runs on, used to limit concurrent requests. May be
+         * <code>null</code> if unknown.
+         */
+        String getHost(String library);
+    }
+
+    public static class Item {
+        private final long id;
+        private final String library;
+        private final String mediaNr;
+        private final String title;
+        private final int state;
+        private final int digest;
+
+        /**
+         * @param id      ID of the item in the caller's storage
+         * @param library Library identifier
+         * @param mediaNr ID to pass to {@link OpacApi#getResultById(String, String)}
+         * @param title   Title to show when the availability changes
+         * @param state   Last known {@link Availability} state
+         * @param digest  Last known digest, <code>0</code> if the item was never checked
+         */
+        public Item(long id, String library, String mediaNr, String title, int state,
+                int digest) {
+            this.id = id;
+            this.library = library;
+            this.mediaNr = mediaNr;
+            this.title = title;
+            this.state = state;
+            this.digest = digest;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getLibrary() {
+            return library;
+        }
+
+        public String getMediaNr() {
+            return mediaNr;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getState() {
+            return state;
+        }
+
+        public int getDigest() {
+            return digest;
+        }
+    }
+
+    public static class Result {
+        private final Item item;
+        private final int state;
+        private final int digest;
+
+        public Result(Item item, int state, int digest) {
+            this.item = item;
+            this.state = state;
+            this.digest = digest;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public int getState() {
+            return state;
+        }
+
+        public int getDigest() {
+            return digest;
+        }
+
+        /**
+         * @return whether the stored state of the item needs to be updated
+         */
+        public boolean isChanged() {
+            return digest != item.getDigest() || state != item.getState();
+        }
+
+        /**
+         * @return whether the item was known to be unavailable before and is available now. Items
+         * checked for the first time never count as having become available.
+         */
+        public boolean becameAvailable() {
+            return item.getState() == Availability.UNAVAILABLE &&
+                    state == Availability.AVAILABLE;
+        }
+    }
+
+    private final ApiFactory factory;
+    private final int maxLibraries;
+    private final int maxPerHost;
+    private final long delay;
+    private final long jitter;
+    private final Map<String, Semaphore> hosts = new HashMap<>();
+    private final Random random = new Random();
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    /**
+     * @param factory      Creates the API instances
+     * @param maxLibraries Number of libraries to check in parallel
+     * @param maxPerHost   Number of concurrent requests allowed to the same host
+     * @param delay        Minimum time between two requests for the same library in milliseconds
+     * @param jitter       Maximum random time added to <code>delay</code> in milliseconds
+     */
+    public AvailabilityChecker(ApiFactory factory, int maxLibraries, int maxPerHost, long delay,
+            long jitter) {
+        this.factory = factory;
+        this.maxLibraries = maxLibraries;
+        this.maxPerHost = maxPerHost;
+        this.delay = delay;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Checks the given items. Items that cannot be checked, e.g. because of a parsing error or
+     * because their library is not reachable, are left out of the result. Items whose
+     * availability cannot be determined keep their last known state. Blocks until all libraries
+     * are done.
+     *
+     * @return one result per item that was checked successfully
+     */
+    public List<Result> check(List<Item> items) throws InterruptedException {
+        Map<String, List<Item>> libraries = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (item.getMediaNr() == null) continue;
+            List<Item> list = libraries.get(item.getLibrary());
+            if (list == null) {
+                list = new ArrayList<>();
+                libraries.put(item.getLibrary(), list);
+            }
+            list.add(item);
+        }
+        if (libraries.isEmpty()) return Collections.emptyList();
+
+        final List<Result> results = Collections.synchronizedList(new ArrayList<Result>());
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(maxLibraries, libraries.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final Map.Entry<String, List<Item>> entry : libraries.entrySet()) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try (RequestScheduler.Scope ignored =
+                                     RequestScheduler.enter(RequestScheduler.Priority.BACKGROUND)) {
+                            checkLibrary(entry.getKey(), entry.getValue(), results);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // an unexpected error in one library should not affect the others
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Stops a running {@link #check(List)} after the requests currently in progress. Pauses
+     * between requests are cut short.
+     */
+    public void cancel() {
+        cancelled.countDown();
+    }
+
+    private boolean isCancelled() {
+        return cancelled.getCount() == 0;
+    }
+
+    private void checkLibrary(String library, List<Item> items, List<Result> results) {
+        OpacApi api = factory.getApi(library);
+        if (api == null) return;
+        Semaphore host = getHostSemaphore(library);
+        boolean first = true;
+        for (Item item : items) {
+            if (isCancelled()) return;
+            try {
+                if (!first) {
+                    pause(delay + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0));
+                    if (isCancelled()) return;
+                }
+                first = false;
+
+                DetailedItem detail;
+                host.acquire();
+                try {
+                    detail = api.getResultById(item.getMediaNr(), null);
+                } finally {
+                    host.release();
+                }
+                if (detail == null) continue;
+                int state = Availability.getState(detail.getCopies());
+                if (state == Availability.UNKNOWN) {
+                    // e.g. a status text we don't understand, this is no reason to forget that
+                    // the item was unavailable
+                    state = item.getState();
+                }
+                results.add(new Result(item, state, Availability.getDigest(detail.getCopies())));
+            } catch (InterruptedException e) {
+                return;
+            } catch (NotReachableException e) {
+                // no need to try the remaining items of this library
+                return;
+            } catch (IOException | OpacApi.OpacErrorException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized Semaphore getHostSemaphore(String library) {
+        String host = factory.getHost(library);
+        String key = host != null ? host : "library:" + library;
+        Semaphore semaphore = hosts.get(key);
+        if (semaphore == null) {
+            semaphore = new Semaphore(maxPerHost);
+            hosts.put(key, semaphore);
+        }
+        return semaphore;
+    }
+
+    /**
+     * Waits between two requests for the same library, or until {@link #cancel()} is called.
+     * Overridden in tests.
+     */
+    void pause(long millis) throws InterruptedException {
+        cancelled.await(millis, TimeUnit.MILLISECONDS);
+    }
+}
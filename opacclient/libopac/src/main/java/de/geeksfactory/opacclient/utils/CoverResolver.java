@@ -0,0 +1,349 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Turns cover URLs into URLs for the best image size and finds covers for ISBNs.
+ *
+ * Rewrite rules are compiled once. The default rules and ISBN cover providers are loaded from
+ * <code>/covers/rules.json</code>. A library can add its own rules in the
+ * <code>cover_rules</code> array of its configuration, which take precedence over the default
+ * ones, and restrict or reorder the providers by listing their names in
+ * <code>cover_providers</code>.
+ *
+ * A rule consists of a regular expression <code>pattern</code> and a list of <code>sizes</code>.
+ * The first size whose <code>max_width</code>, <code>max_height</code> and <code>max</code> (the
+ * larger of width and height) limits are met by the requested size is used. Its
+ * <code>url</code> may refer to groups of the pattern as <code>$1</code> and to the requested size
+ * as <code>{width}</code>, <code>{height}</code> and <code>{max}</code>. If the rule sets
+ * <code>isbn</code> to a group number, matching URLs are treated as ISBN cover lookups: if they
+ * don't lead to an image, the providers are tried in order, and the outcome is remembered per
+ * ISBN. A rule's <code>provider</code> names the provider its URLs belong to, which is then not
+ * tried again. Providers that need an ISBN-10 (<code>{isbn10}</code>) are skipped for ISBN-13s
+ * starting with 979.
+ */
+public class CoverResolver {
+    private static final String RULES_RESOURCE = "/covers/rules.json";
+    private static final int MEMO_SIZE = 2000;
+    private static final String NO_COVER = "";
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$(\\d)|\\{(\\w+)\\}");
+
+    private static CoverResolver instance;
+
+    private final List<Rule> rules;
+    private final List<Provider> providers;
+    private final LibraryRules defaults;
+    private final Map<JSONObject, LibraryRules> libraryRules = new WeakHashMap<>();
+    private final LinkedHashMap<String, String> memo = new LinkedHashMap<String, String>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MEMO_SIZE;
+        }
+    };
+
+    /**
+     * Receives a candidate image URL and downloads it.
+     *
+     * @param <T> type of the downloaded image
+     */
+    public interface Loader<T> {
+        /**
+         * @return the image, or <code>null</code> if there is no usable image at this URL
+         */
+        T load(String url) throws IOException;
+    }
+
+    public static synchronized CoverResolver getInstance() {
+        if (instance == null) {
+            try {
+                instance = new CoverResolver(loadDefaultConfig());
+            } catch (IOException | JSONException e) {
+                throw new IllegalStateException("Cover rules could not be loaded", e);
+            }
+        }
+        return instance;
+    }
+
+    CoverResolver(JSONObject config) throws JSONException {
+        rules = parseRules(config.optJSONArray("rules"));
+        providers = new ArrayList<>();
+        JSONArray providersJson = config.optJSONArray("providers");
+        if (providersJson != null) {
+            for (int i = 0; i < providersJson.length(); i++) {
+                JSONObject provider = providersJson.getJSONObject(i);
+                providers.add(new Provider(provider.getString("name"),
+                        provider.getString("url")));
+            }
+        }
+        defaults = new LibraryRules(rules, providers);
+    }
+
+    private static JSONObject loadDefaultConfig() throws IOException, JSONException {
+        InputStream is = CoverResolver.class.getResourceAsStream(RULES_RESOURCE);
+        if (is == null) throw new IOException(RULES_RESOURCE + " not found");
+        try (BufferedSource source = Okio.buffer(Okio.source(is))) {
+            return new JSONObject(source.readUtf8());
+        }
+    }
+
+    private static List<Rule> parseRules(JSONArray json) throws JSONException {
+        List<Rule> rules = new ArrayList<>();
+        if (json == null) return rules;
+        for (int i = 0; i < json.length(); i++) {
+            rules.add(new Rule(json.getJSONObject(i)));
+        }
+        return rules;
+    }
+
+    /**
+     * If possible, changes a cover URL to represent the best sized image for the given display
+     * size. If no rule matches the URL, the original URL will be returned.
+     *
+     * @param libraryData the library's configuration data, may be <code>null</code>
+     */
+    public String getBestSizeUrl(String url, int width, int height, JSONObject libraryData) {
+        if (url == null) return null;
+        for (Rule rule : getRules(libraryData).rules) {
+            Matcher matcher = rule.pattern.matcher(url);
+            if (matcher.find()) {
+                return rule.rewrite(matcher, url, width, height);
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Loads the cover at <code>url</code> in the best size. If the URL is an ISBN cover lookup
+     * and there is no image at the URL, the configured providers are tried in order. Which URL
+     * worked for an ISBN, or that none did, is remembered, so later calls for the same ISBN
+     * need at most one download.
+     *
+     * Network errors are passed on and not remembered, so that the next call tries again.
+     *
+     * @param libraryData the library's configuration data, may be <code>null</code>
+     * @return the result of the loader, or <code>null</code> if no image was found
+     */
+    public <T> T load(String url, int width, int height, JSONObject libraryData,
+            Loader<T> loader) throws IOException {
+        LibraryRules config = getRules(libraryData);
+        String isbn = null;
+        Rule matched = null;
+        for (Rule rule : config.rules) {
+            if (rule.isbnGroup < 0) continue;
+            Matcher matcher = rule.pattern.matcher(url);
+            if (matcher.find()) {
+                isbn = matcher.group(rule.isbnGroup);
+                matched = rule;
+                break;
+            }
+        }
+        if (isbn == null || isbn.isEmpty()) {
+            return loader.load(getBestSizeUrl(url, width, height, libraryData));
+        }
+        boolean hasIsbn10 = ISBNTools.hasIsbn10(isbn);
+        // ISBN-13 and ISBN-10 of the same book share an entry. Without an ISBN-10, the ISBN-13
+        // is used, as isbn13to10 would map 979 ISBNs onto 978 ones.
+        String key = hasIsbn10 ? ISBNTools.isbn13to10(isbn) : isbn;
+
+        String known;
+        synchronized (memo) {
+            known = memo.get(key);
+        }
+        if (NO_COVER.equals(known)) {
+            return null;
+        } else if (known != null) {
+            T result = loader.load(getBestSizeUrl(known, width, height, libraryData));
+            if (result != null) return result;
+        }
+
+        List<String> candidates = new ArrayList<>();
+        candidates.add(url);
+        for (Provider provider : config.providers) {
+            // the URL we were given already is this provider's image
+            if (provider.name.equals(matched.provider)) continue;
+            if (provider.needsIsbn10 && !hasIsbn10) continue;
+            String candidate = provider.getUrl(isbn);
+            if (!candidates.contains(candidate)) candidates.add(candidate);
+        }
+        if (known != null) candidates.remove(known);
+
+        IOException error = null;
+        for (String candidate : candidates) {
+            try {
+                T result = loader.load(getBestSizeUrl(candidate, width, height, libraryData));
+                if (result != null) {
+                    remember(key, candidate);
+                    return result;
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) throw error;
+        remember(key, NO_COVER);
+        return null;
+    }
+
+    private void remember(String key, String url) {
+        synchronized (memo) {
+            memo.put(key, url);
+        }
+    }
+
+    private LibraryRules getRules(JSONObject libraryData) {
+        if (libraryData == null) {
+            return defaults;
+        }
+        synchronized (libraryRules) {
+            LibraryRules config = libraryRules.get(libraryData);
+            if (config == null) {
+                config = compileLibraryRules(libraryData);
+                libraryRules.put(libraryData, config);
+            }
+            return config;
+        }
+    }
+
+    private LibraryRules compileLibraryRules(JSONObject libraryData) {
+        List<Rule> combined = new ArrayList<>();
+        try {
+            combined.addAll(parseRules(libraryData.optJSONArray("cover_rules")));
+        } catch (JSONException | IllegalArgumentException e) {
+            // invalid library rules, fall back to the default ones
+            combined.clear();
+        }
+        combined.addAll(rules);
+
+        List<Provider> selected = providers;
+        JSONArray names = libraryData.optJSONArray("cover_providers");
+        if (names != null) {
+            selected = new ArrayList<>();
+            for (int i = 0; i < names.length(); i++) {
+                for (Provider provider : providers) {
+                    if (provider.name.equals(names.optString(i))) selected.add(provider);
+                }
+            }
+        }
+        return new LibraryRules(combined, selected);
+    }
+
+    private static String replacePlaceholders(String template, Matcher groups,
+            Map<String, String> values) {
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String replacement;
+            if (matcher.group(1) != null) {
+                int group = Integer.parseInt(matcher.group(1));
+                replacement = groups != null && group <= groups.groupCount() ?
+                        groups.group(group) : null;
+            } else {
+                replacement = values.get(matcher.group(2));
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(
+                    replacement != null ? replacement : matcher.group()));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static class LibraryRules {
+        final List<Rule> rules;
+        final List<Provider> providers;
+
+        LibraryRules(List<Rule> rules, List<Provider> providers) {
+            this.rules = rules;
+            this.providers = providers;
+        }
+    }
+
+    private static class Rule {
+        final Pattern pattern;
+        final int isbnGroup;
+        final String provider;
+        final List<Size> sizes;
+
+        Rule(JSONObject json) throws JSONException {
+            pattern = Pattern.compile(json.getString("pattern"));
+            isbnGroup = json.optInt("isbn", -1);
+            provider = json.optString("provider", null);
+            JSONArray sizesJson = json.optJSONArray("sizes");
+            if (sizesJson == null) {
+                sizes = Collections.emptyList();
+            } else {
+                sizes = new ArrayList<>();
+                for (int i = 0; i < sizesJson.length(); i++) {
+                    sizes.add(new Size(sizesJson.getJSONObject(i)));
+                }
+            }
+        }
+
+        String rewrite(Matcher matcher, String url, int width, int height) {
+            int max = Math.max(width, height);
+            for (Size size : sizes) {
+                if (size.matches(width, height, max)) {
+                    Map<String, String> values = new LinkedHashMap<>();
+                    values.put("width", String.valueOf(width));
+                    values.put("height", String.valueOf(height));
+                    values.put("max", String.valueOf(max));
+                    return replacePlaceholders(size.url, matcher, values);
+                }
+            }
+            return url;
+        }
+    }
+
+    private static class Size {
+        final int maxWidth;
+        final int maxHeight;
+        final int max;
+        final String url;
+
+        Size(JSONObject json) throws JSONException {
+            maxWidth = json.optInt("max_width", Integer.MAX_VALUE);
+            maxHeight = json.optInt("max_height", Integer.MAX_VALUE);
+            max = json.optInt("max", Integer.MAX_VALUE);
+            url = json.getString("url");
+        }
+
+        boolean matches(int width, int height, int max) {
+            return width <= maxWidth && height <= maxHeight && max <= this.max;
+        }
+    }
+
+    private static class Provider {
+        final String name;
+        final String url;
+        final boolean needsIsbn10;
+
+        Provider(String name, String url) {
+            this.name = name;
+            this.url = url;
+            this.needsIsbn10 = url.contains("{isbn10}");
+        }
+
+        String getUrl(String isbn) {
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("isbn", isbn);
+            values.put("isbn10", ISBNTools.isbn13to10(isbn));
+            return replacePlaceholders(url, null, values);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide store for encoded cover images. {@link de.geeksfactory.opacclient.objects
+ * .CoverHolder}s only keep the key of their image, so that long result lists and serialized
+ * account items don't keep all image data alive.
+ *
+ * Images are kept in memory up to a byte budget, least recently used images are evicted first. If
+ * a disk directory is set, evicted images are written there and kept across runs. {@link
+ * #get(String)} only looks at memory and is cheap enough for the UI thread, images on disk are
+ * read by {@link #load(String)}. All file access happens outside of the store's lock.
+ */
+public class CoverStore {
+    private static final long DEFAULT_MEMORY_BUDGET = 4 * 1024 * 1024;
+    private static final String HASH_PREFIX = "sha1:";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static CoverStore instance;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    // file names and sizes of the images on disk, including those not written yet
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    // images waiting to be written, by file name
+    private final Map<String, byte[]> pending = new HashMap<>();
+    private Executor diskExecutor;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private long memoryBytes = 0;
+    private File diskDir;
+    private long diskBudget;
+    private long diskBytes = 0;
+
+    public static synchronized CoverStore getInstance() {
+        if (instance == null) {
+            instance = new CoverStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Set the number of bytes of image data to keep in memory.
+     */
+    public synchronized void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        trimMemory();
+    }
+
+    /**
+     * Set a directory to write evicted images to. Files left in this directory from earlier runs
+     * are indexed in the background and can be loaded again.
+     *
+     * @param dir   Directory to use, or null to drop evicted images
+     * @param bytes Number of bytes to keep on disk
+     */
+    public synchronized void setDiskDirectory(final File dir, long bytes) {
+        disk.clear();
+        pending.clear();
+        diskBytes = 0;
+        diskDir = dir;
+        diskBudget = bytes;
+        if (dir != null) {
+            getDiskExecutor().execute(() -> indexDisk(dir));
+        }
+    }
+
+    /**
+     * Set the executor all file access runs on. It has to run tasks one at a time and in order.
+     */
+    synchronized void setDiskExecutor(Executor executor) {
+        diskExecutor = executor;
+    }
+
+    /**
+     * @return the key for a cover URL that was loaded for the given size, as providers return
+     * images of different sizes for the same URL depending on the requested size
+     */
+    public static String getSizedKey(String url, int width, int height) {
+        if (url == null) return null;
+        return url + "#" + width + "x" + height;
+    }
+
+    /**
+     * Store an image.
+     *
+     * @param url  The cover URL the image was loaded from, may be null
+     * @param data The encoded image
+     * @return Key to retrieve the image with, this is the URL if one was given and a hash of the
+     * image otherwise
+     */
+    public String put(String url, byte[] data) {
+        String key = url != null ? url : HASH_PREFIX + IOUtils.sha1(data);
+        String name = getFileName(key);
+        synchronized (this) {
+            // an older copy on disk might differ
+            removeFromDisk(name);
+            byte[] previous = memory.put(key, data);
+            if (previous != null) memoryBytes -= previous.length;
+            memoryBytes += data.length;
+            trimMemory();
+        }
+        return key;
+    }
+
+    /**
+     * Retrieve an image from memory.
+     *
+     * @return The encoded image, or null if it has not been stored or has been evicted from
+     * memory. Use {@link #load(String)} to read evicted images from disk.
+     */
+    public synchronized byte[] get(String key) {
+        if (key == null) return null;
+        return memory.get(key);
+    }
+
+    /**
+     * Retrieve an image from memory or disk. As this might read a file, it must not be called on
+     * the UI thread. Images read from disk are kept in memory again.
+     *
+     * @return The encoded image, or null if it has not been stored or has been dropped.
+     */
+    public byte[] load(String key) {
+        if (key == null) return null;
+        String name = getFileName(key);
+        File file;
+        synchronized (this) {
+            byte[] data = memory.get(key);
+            if (data == null && disk.get(name) != null) {
+                data = pending.get(name);
+                if (data != null) addToMemory(key, data);
+            }
+            if (data != null || !disk.containsKey(name)) return data;
+            file = new File(diskDir, name);
+        }
+
+        byte[] data = readFile(file);
+        if (data == null) return null;
+        // keeps the order of least recent use across runs
+        file.setLastModified(System.currentTimeMillis());
+        synchronized (this) {
+            byte[] current = memory.get(key);
+            if (current != null) return current;
+            addToMemory(key, data);
+        }
+        return data;
+    }
+
+    public boolean contains(String key) {
+        if (key == null) return false;
+        String name = getFileName(key);
+        synchronized (this) {
+            return memory.containsKey(key) || disk.containsKey(name);
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        for (String name : disk.keySet()) {
+            deleteFile(name);
+        }
+        disk.clear();
+        pending.clear();
+        diskBytes = 0;
+    }
+
+    private void addToMemory(String key, byte[] data) {
+        memory.put(key, data);
+        memoryBytes += data.length;
+        trimMemory();
+    }
+
+    private void trimMemory() {
+        Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+        while (memoryBytes > memoryBudget && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            it.remove();
+            memoryBytes -= eldest.getValue().length;
+            addToDisk(getFileName(eldest.getKey()), eldest.getValue());
+        }
+    }
+
+    private void addToDisk(final String name, final byte[] data) {
+        if (diskDir == null || data.length > diskBudget) return;
+        if (disk.containsKey(name)) return; // read back from disk earlier, still there
+        disk.put(name, (long) data.length);
+        diskBytes += data.length;
+        pending.put(name, data);
+        final File dir = diskDir;
+        getDiskExecutor().execute(() -> writeFile(dir, name, data));
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > diskBudget && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            diskBytes -= eldest.getValue();
+            pending.remove(eldest.getKey());
+            deleteFile(eldest.getKey());
+        }
+    }
+
+    private void removeFromDisk(String name) {
+        Long size = disk.remove(name);
+        if (size != null) {
+            diskBytes -= size;
+            pending.remove(name);
+            deleteFile(name);
+        }
+    }
+
+    private void deleteFile(String name) {
+        final File file = new File(diskDir, name);
+        getDiskExecutor().execute(file::delete);
+    }
+
+    private void indexDisk(File dir) {
+        dir.mkdirs();
+        File[] existing = dir.listFiles();
+        if (existing == null) return;
+        Arrays.sort(existing, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (this) {
+            if (dir != diskDir) return;
+            // images evicted since the directory was set are more recent than the old files
+            Map<String, Long> evicted = new LinkedHashMap<>(disk);
+            disk.clear();
+            diskBytes = 0;
+            for (File file : existing) {
+                String name = file.getName();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    deleteFile(name);
+                } else if (!evicted.containsKey(name)) {
+                    disk.put(name, file.length());
+                    diskBytes += file.length();
+                }
+            }
+            for (Map.Entry<String, Long> entry : evicted.entrySet()) {
+                disk.put(entry.getKey(), entry.getValue());
+                diskBytes += entry.getValue();
+            }
+            trimDisk();
+        }
+    }
+
+    private void writeFile(File dir, String name, byte[] data) {
+        synchronized (this) {
+            // dropped before it was written
+            if (pending.get(name) != data) return;
+        }
+        File tmp = new File(dir, name + TMP_SUFFIX);
+        boolean written = false;
+        OutputStream out = null;
+        try {
+            dir.mkdirs();
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            written = tmp.renameTo(new File(dir, name));
+        } catch (IOException e) {
+            // dropped below
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (!written) tmp.delete();
+        }
+        synchronized (this) {
+            if (pending.get(name) != data) return;
+            pending.remove(name);
+            if (!written && dir == diskDir) {
+                disk.remove(name);
+                diskBytes -= data.length;
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) return null;
+                read += n;
+            }
+            return data;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private synchronized Executor getDiskExecutor() {
+        if (diskExecutor == null) {
+            diskExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "CoverStore");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return diskExecutor;
+    }
+
+    private static String getFileName(String key) {
+        return IOUtils.sha1(key);
+    }
+}
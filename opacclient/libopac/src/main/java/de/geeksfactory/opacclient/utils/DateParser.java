@@ -0,0 +1,186 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.MutableDateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+
+/**
+ * Lenient parser for the dates found in OPAC pages, e.g. <code>24.12.2020</code>,
+ * <code>1/2/20</code> or <code>2020-12-24T23:59:00</code>.
+ *
+ * Numeric dates are parsed by hand without creating any exceptions. Dates with month names are
+ * tried against a fixed list of formatters, starting with the one that matched last, so an
+ * instance should be kept for all dates of the same library (e.g. one per API instance or
+ * account). Sharing an instance between threads is safe, the only state is the formatter that
+ * is tried first.
+ *
+ * Unlike {@link DateTimeFormatter#parseLocalDate(String)}, no exception is thrown if the text
+ * is not a date, <code>null</code> is returned instead.
+ */
+public class DateParser {
+    private static final DateTimeFormatter[] FORMATTERS = {
+            DateTimeFormat.forPattern("dd.MM.yyyy HH:mm").withZoneUTC(),
+            DateTimeFormat.forPattern("dd.MM.yyyy HH:mm:ss").withZoneUTC(),
+            DateTimeFormat.forPattern("d. MMMM yyyy").withLocale(Locale.GERMAN).withZoneUTC(),
+            DateTimeFormat.forPattern("d MMMM yyyy").withLocale(Locale.GERMAN).withZoneUTC(),
+            DateTimeFormat.forPattern("d MMMM yyyy").withLocale(Locale.ENGLISH).withZoneUTC(),
+            DateTimeFormat.forPattern("d MMM yyyy").withLocale(Locale.ENGLISH).withZoneUTC(),
+            DateTimeFormat.forPattern("MMMM d, yyyy").withLocale(Locale.ENGLISH).withZoneUTC(),
+            DateTimeFormat.forPattern("MMM d, yyyy").withLocale(Locale.ENGLISH).withZoneUTC(),
+    };
+    // longer than any text matched by FORMATTERS
+    private static final int MAX_FORMATTED_LENGTH = 24;
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private int lastFormatter = 0;
+
+    /**
+     * Parses a date.
+     *
+     * Numeric dates are read as day, month, year (separated by <code>.</code>, <code>/</code>
+     * or <code>-</code>), unless they start with a four-digit year, in which case they are read
+     * as ISO 8601 and may be followed by a time. Two-digit years are in the range 1950 to 2049.
+     *
+     * @param text The text to parse, surrounding whitespace is ignored
+     * @return The date or <code>null</code> if the text is not a valid date
+     */
+    public LocalDate parse(String text) {
+        if (text == null) return null;
+        int start = 0;
+        int end = text.length();
+        while (start < end && isWhitespace(text.charAt(start))) start++;
+        while (end > start && isWhitespace(text.charAt(end - 1))) end--;
+        if (start == end) return null;
+
+        if (isDigit(text.charAt(start))) {
+            LocalDate date = parseNumeric(text, start, end);
+            if (date != null) return date;
+        }
+        // all formatters need a four-digit year, most texts can be ruled out without trying them
+        if (end - start > MAX_FORMATTED_LENGTH || !containsYear(text, start, end)) return null;
+        return parseFormatted(text.substring(start, end));
+    }
+
+    /**
+     * Parses a date and returns it in ISO 8601 format, as expected by
+     * {@link de.geeksfactory.opacclient.objects.AccountItem#set(String, String)} and similar
+     * methods.
+     *
+     * @return The date in ISO 8601 format or <code>null</code> if the text is not a valid date
+     */
+    public String parseToIso(String text) {
+        LocalDate date = parse(text);
+        return date != null ? date.toString() : null;
+    }
+
+    /**
+     * Does the same as <code>new LocalDate(text)</code>, but does not need to go through Joda's
+     * converters and ISO parser for the common case of <code>yyyy-MM-dd</code>.
+     *
+     * @throws IllegalArgumentException if the text is not a valid ISO 8601 date
+     */
+    public static LocalDate parseIsoDate(String text) {
+        if (text != null && text.length() == 10 && text.charAt(4) == '-') {
+            LocalDate date = parseNumeric(text, 0, 10);
+            if (date != null) return date;
+        }
+        return new LocalDate(text);
+    }
+
+    private static LocalDate parseNumeric(String text, int start, int end) {
+        int[] fields = new int[3];
+        int[] digits = new int[3];
+        char separator = 0;
+        int pos = start;
+        for (int field = 0; field < 3; field++) {
+            if (field > 0) {
+                if (pos >= end) return null;
+                char c = text.charAt(pos);
+                if (field == 1) {
+                    if (c != '.' && c != '/' && c != '-') return null;
+                    separator = c;
+                } else if (c != separator) {
+                    return null;
+                }
+                pos++;
+            }
+            int value = 0;
+            int fieldStart = pos;
+            while (pos < end && pos - fieldStart < 4 && isDigit(text.charAt(pos))) {
+                value = value * 10 + (text.charAt(pos) - '0');
+                pos++;
+            }
+            if (pos == fieldStart) return null;
+            fields[field] = value;
+            digits[field] = pos - fieldStart;
+        }
+
+        int year;
+        int month;
+        int day;
+        if (digits[0] == 4) {
+            if (separator != '-' || digits[1] > 2 || digits[2] > 2) return null;
+            if (pos < end && text.charAt(pos) != 'T' && text.charAt(pos) != ' ') return null;
+            year = fields[0];
+            month = fields[1];
+            day = fields[2];
+        } else {
+            if (pos < end || digits[0] > 2 || digits[1] > 2) return null;
+            if (digits[2] == 2) {
+                year = fields[2] < 50 ? 2000 + fields[2] : 1900 + fields[2];
+            } else if (digits[2] == 4) {
+                year = fields[2];
+            } else {
+                return null;
+            }
+            month = fields[1];
+            day = fields[0];
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) return null;
+        if (month == 2 && day == 29 && !isLeapYear(year)) return null;
+        return new LocalDate(year, month, day);
+    }
+
+    private LocalDate parseFormatted(String text) {
+        MutableDateTime instant = new MutableDateTime(0, DateTimeZone.UTC);
+        for (int i = 0; i < FORMATTERS.length; i++) {
+            int index = (lastFormatter + i) % FORMATTERS.length;
+            try {
+                if (FORMATTERS[index].parseInto(instant, text, 0) == text.length()) {
+                    lastFormatter = index;
+                    return new LocalDate(instant.getYear(), instant.getMonthOfYear(),
+                            instant.getDayOfMonth());
+                }
+            } catch (IllegalArgumentException e) {
+                // the text matched the format, but is not a valid date (e.g. 31 February)
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsYear(String text, int start, int end) {
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            digits = isDigit(text.charAt(i)) ? digits + 1 : 0;
+            if (digits == 4) return true;
+        }
+        return false;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c <= ' ' || c == '\u00a0';
+    }
+}
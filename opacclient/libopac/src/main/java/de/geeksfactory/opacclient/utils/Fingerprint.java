@@ -0,0 +1,89 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * Incrementally computes a digest of the parts of a library's pages that are relevant for
+ * parsing, e.g. for {@link de.geeksfactory.opacclient.apis.AccountFingerprintApi}. Adapters
+ * should add HTTP validators (<code>ETag</code>, <code>Last-Modified</code>) where the server
+ * sends them and the relevant HTML regions otherwise.
+ *
+ * Session identifiers in links and forms are removed before hashing HTML, as they change with
+ * every login while the data does not.
+ */
+public class Fingerprint {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Pattern SESSION_PARAMS = Pattern.compile(
+            "(?i)([;?&](?:amp;)?(?:jsessionid|sessionid|csid|sid)=)[^&#\"'\\s<]*");
+    private static final Pattern SESSION_INPUTS = Pattern.compile(
+            "(?i)(<input[^>]*name=\"(?:jsessionid|sessionid|csid|sid)\"[^>]*value=\")[^\"]*");
+
+    private final MessageDigest digest;
+
+    public Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds a string, e.g. an HTTP validator or a version number of the parser. <code>null</code>
+     * is distinguished from the empty string.
+     */
+    public Fingerprint add(String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(UTF_8));
+            // separator, so that "ab" + "c" differs from "a" + "bc"
+            digest.update((byte) 0);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the HTML of the given elements, without session identifiers.
+     */
+    public Fingerprint addHtml(Elements elements) {
+        add(String.valueOf(elements.size()));
+        for (Element element : elements) {
+            String html = SESSION_PARAMS.matcher(element.outerHtml()).replaceAll("$1");
+            add(SESSION_INPUTS.matcher(html).replaceAll("$1"));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the text of the given elements. Cheaper than {@link #addHtml(Elements)} and sufficient
+     * for regions that are only read using {@link Element#text()}.
+     */
+    public Fingerprint addText(Elements elements) {
+        add(String.valueOf(elements.size()));
+        for (Element element : elements) {
+            add(element.text());
+        }
+        return this;
+    }
+
+    /**
+     * @return the digest as a hex string. The fingerprint must not be used afterwards.
+     */
+    public String build() {
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers shared by the on-device caches, e.g. {@link CoverStore} and {@link SearchResultCache}.
+ */
+public class IOUtils {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * @return the SHA-1 digest of the data as a lowercase hex string, e.g. to derive file names
+     */
+    public static String sha1(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the SHA-1 digest of the UTF-8 encoded string, see {@link #sha1(byte[])}
+     */
+    public static String sha1(String data) {
+        return sha1(data.getBytes(UTF8));
+    }
+}
@@ -1,8 +1,5 @@
 package de.geeksfactory.opacclient.utils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class ISBNTools {
     public static String isbn13to10(String isbn13) {
         isbn13 = cleanupISBN(isbn13);
@@ -40,6 +37,15 @@ public class ISBNTools {
         return a % 11 == Integer.parseInt(String.valueOf(digits[9]));
     }
 
+    /**
+     * @return whether the book has an ISBN-10, which is not the case for ISBN-13s starting with
+     * 979
+     */
+    public static boolean hasIsbn10(String isbn) {
+        String clean = cleanupISBN(isbn);
+        return clean.length() != 13 || clean.startsWith("978");
+    }
+
     private static String cleanupISBN(String isbn) {
         return isbn.replaceAll("[^\\dX]", ""); //Remove all characters that aren't digits or X
     }
@@ -60,38 +66,9 @@ public class ISBNTools {
      * @param width  Desired width
      * @param height Desired height
      * @return Improved URL
+     * @see CoverResolver#getBestSizeUrl(String, int, int, org.json.JSONObject)
      */
     public static String getBestSizeCoverUrl(String url, int width, int height) {
-        Pattern vlbRegex = Pattern.compile("^https?://(?:www.)?vlb\\.de/GetBlob\\.aspx\\?" +
-                ".*strIsbn=([0-9X]*)");
-        Pattern amazonRegex = Pattern.compile(
-                "^(https?://(:?images(?:-[^\\.]*)?\\.|[^\\.]*\\.(?:ssl-)?images-)amazon" +
-                        ".com/images/[PI]/[^\\.]*\\.?(?:\\d\\d\\.)?)[^.]*\\.jpg");
-
-        Matcher vlbMatcher = vlbRegex.matcher(url);
-        Matcher amazonMatcher = amazonRegex.matcher(url);
-
-        int max = Math.max(width, height);
-
-        if (vlbMatcher.find()) {
-            // VLB Covers, sizes accoding to documentation at page 42 of
-            // http://info.vlb.de/files/vlb_rest_api_anwenderspezifikation.pdf
-            if (height <= 90) {
-                return "https://vlb.de/GetBlob.aspx?strIsbn=" + vlbMatcher.group(1) + "&size=S";
-            } else if (height <= 200) {
-                return "https://vlb.de/GetBlob.aspx?strIsbn=" + vlbMatcher.group(1) + "&size=M";
-            } else if (width <= 599) {
-                return "https://vlb.de/GetBlob.aspx?strIsbn=" + vlbMatcher.group(1) + "&size=L";
-            } else { // Original size
-                return "https://vlb.de/GetBlob.aspx?strIsbn=" + vlbMatcher.group(1);
-            }
-        } else if (amazonMatcher.find()) {
-            // Amazon Covers, according to http://aaugh.com/imageabuse.html
-            String base = amazonMatcher.group(1);
-            if (!base.endsWith(".")) base = base + ".";
-            return base + "_SL" + max + "_SCLZZZZZZZ_.jpg";
-        } else {
-            return url;
-        }
+        return CoverResolver.getInstance().getBestSizeUrl(url, width, height, null);
     }
 }
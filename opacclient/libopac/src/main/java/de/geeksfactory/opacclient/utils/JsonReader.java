@@ -0,0 +1,451 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Reads a JSON document token by token directly from an okio source, e.g. an HTTP response body,
+ * without buffering it as a string or building a tree of {@link org.json.JSONObject}s. Values
+ * that are not needed can be skipped using {@link #skipValue()}.
+ *
+ * The API is modeled after {@code android.util.JsonReader}. Like the optional getters of
+ * org.json, it is lenient regarding the type of scalar values: {@link #nextString()} also
+ * returns numbers and booleans as text, and {@link #nextInt()} also accepts numeric strings.
+ * Malformed documents raise a {@link JSONException}. Strings are expected to be UTF-8 encoded.
+ */
+public class JsonReader implements Closeable {
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final ByteString STRING_END = ByteString.encodeUtf8("\"\\");
+    private static final ByteString STRUCTURE = ByteString.encodeUtf8("\"{}[]");
+
+    private final BufferedSource source;
+    private final Buffer buffer;
+    private int[] stack = new int[16];
+    private int stackSize = 1;
+    private Token peeked;
+    private String peekedValue;
+
+    public JsonReader(BufferedSource source) {
+        this.source = source;
+        this.buffer = source.getBuffer();
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public JsonReader(String json) {
+        this(new Buffer().writeUtf8(json));
+    }
+
+    /**
+     * @return the type of the next token without consuming it
+     */
+    public Token peek() throws IOException, JSONException {
+        if (peeked != null) return peeked;
+
+        int scope = stack[stackSize - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    buffer.skip(1);
+                    return peeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    expect(c, ',');
+                } else {
+                    stack[stackSize - 1] = NONEMPTY_ARRAY;
+                }
+                return peekValue();
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    buffer.skip(1);
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name but was " + describe(c));
+                }
+                peekedValue = readString();
+                stack[stackSize - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                expect(nextNonWhitespace(), ':');
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return peekValue();
+            case EMPTY_DOCUMENT:
+                stack[0] = NONEMPTY_DOCUMENT;
+                return peekValue();
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Unexpected data after the end of the document");
+                }
+                return peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    public void beginObject() throws IOException, JSONException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException, JSONException {
+        consume(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException, JSONException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException, JSONException {
+        consume(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    /**
+     * @return whether the current array or object has more elements
+     */
+    public boolean hasNext() throws IOException, JSONException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException, JSONException {
+        consume(Token.NAME);
+        return peekedValue;
+    }
+
+    /**
+     * @return the next string, number or boolean value as text
+     */
+    public String nextString() throws IOException, JSONException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN) {
+            throw new JSONException("Expected a string but was " + token);
+        }
+        peeked = null;
+        return peekedValue;
+    }
+
+    /**
+     * Like {@link #nextString()}, but also accepts <code>null</code>.
+     */
+    public String nextStringOrNull() throws IOException, JSONException {
+        if (peek() == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        return nextString();
+    }
+
+    public boolean nextBoolean() throws IOException, JSONException {
+        String value = nextString();
+        if (value.equalsIgnoreCase("true")) return true;
+        if (value.equalsIgnoreCase("false")) return false;
+        throw new JSONException("Expected a boolean but was " + value);
+    }
+
+    public double nextDouble() throws IOException, JSONException {
+        return parseDouble(nextString());
+    }
+
+    public long nextLong() throws IOException, JSONException {
+        String value = nextString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            double d = parseDouble(value);
+            if (d != (long) d) throw new JSONException("Expected a long but was " + value);
+            return (long) d;
+        }
+    }
+
+    public int nextInt() throws IOException, JSONException {
+        String value = nextString();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            double d = parseDouble(value);
+            if (d != (int) d) throw new JSONException("Expected an int but was " + value);
+            return (int) d;
+        }
+    }
+
+    private static double parseDouble(String value) throws JSONException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Expected a number but was " + value);
+        }
+    }
+
+    public void nextNull() throws IOException, JSONException {
+        consume(Token.NULL);
+    }
+
+    /**
+     * Skips the next value, including nested arrays and objects.
+     */
+    public void skipValue() throws IOException, JSONException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw new JSONException("Expected a value but was END_DOCUMENT");
+                default:
+                    // names are skipped along with their values
+                    peeked = null;
+            }
+        } while (depth > 0 || stack[stackSize - 1] == DANGLING_NAME);
+    }
+
+    /**
+     * Copies the next value to the given sink without decoding it. Nested arrays and objects are
+     * transferred byte by byte (including whitespace), so this is a cheap way to pass parts of a
+     * document on unchanged. Only their nesting is checked, not the syntax of their contents.
+     */
+    public void copyValue(BufferedSink sink) throws IOException, JSONException {
+        Token token = peek();
+        switch (token) {
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                // the opening bracket has already been consumed by peek()
+                sink.writeByte(token == Token.BEGIN_ARRAY ? '[' : '{');
+                peeked = null;
+                copyNested(sink);
+                break;
+            case STRING:
+                sink.writeUtf8(JSONObject.quote(peekedValue));
+                peeked = null;
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                sink.writeUtf8(peekedValue);
+                peeked = null;
+                break;
+            default:
+                throw new JSONException("Expected a value but was " + token);
+        }
+    }
+
+    private void copyNested(BufferedSink sink) throws IOException, JSONException {
+        int depth = 1;
+        while (depth > 0) {
+            long index = source.indexOfElement(STRUCTURE);
+            if (index == -1) throw syntaxError("Unexpected end of input");
+            byte b = buffer.getByte(index);
+            sink.write(buffer, index + 1);
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            } else {
+                copyString(sink);
+            }
+        }
+    }
+
+    /**
+     * Copies the rest of a string whose opening quote has already been copied
+     */
+    private void copyString(BufferedSink sink) throws IOException, JSONException {
+        while (true) {
+            long index = source.indexOfElement(STRING_END);
+            if (index == -1) throw syntaxError("Unterminated string");
+            byte b = buffer.getByte(index);
+            sink.write(buffer, index + 1);
+            if (b == '"') return;
+            // copy the escaped character, which might be a quote
+            if (!source.request(1)) throw syntaxError("Unterminated escape sequence");
+            sink.write(buffer, 1);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private void consume(Token expected) throws IOException, JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw new JSONException("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token peekValue() throws IOException, JSONException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                buffer.skip(1);
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                buffer.skip(1);
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                peekedValue = readString();
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                peekedValue = readWhile("abcdefghijklmnopqrstuvwxyz");
+                if (peekedValue.equals("null")) return peeked = Token.NULL;
+                if (peekedValue.equals("true") || peekedValue.equals("false")) {
+                    return peeked = Token.BOOLEAN;
+                }
+                throw syntaxError("Unexpected literal " + peekedValue);
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peekedValue = readWhile("0123456789+-.eE");
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character " + (char) c);
+        }
+    }
+
+    /**
+     * @return the next non-whitespace byte without consuming it, or -1 at the end of the input
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (source.request(1)) {
+            byte b = buffer.getByte(0);
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                buffer.skip(1);
+            } else {
+                return b & 0xff;
+            }
+        }
+        return -1;
+    }
+
+    private void expect(int c, char expected) throws IOException, JSONException {
+        if (c != expected) {
+            throw syntaxError("Expected " + expected + " but was " + describe(c));
+        }
+        buffer.skip(1);
+    }
+
+    private static String describe(int c) {
+        return c == -1 ? "end of input" : String.valueOf((char) c);
+    }
+
+    private String readWhile(String chars) throws IOException {
+        long i = 0;
+        while (source.request(i + 1) && chars.indexOf(buffer.getByte(i)) >= 0) {
+            i++;
+        }
+        return buffer.readUtf8(i);
+    }
+
+    /**
+     * Reads a string, starting at the opening quote
+     */
+    private String readString() throws IOException, JSONException {
+        buffer.skip(1);
+        StringBuilder builder = null;
+        while (true) {
+            long index = source.indexOfElement(STRING_END);
+            if (index == -1) throw syntaxError("Unterminated string");
+            if (buffer.getByte(index) == '"') {
+                String part = buffer.readUtf8(index);
+                buffer.skip(1);
+                return builder == null ? part : builder.append(part).toString();
+            }
+            if (builder == null) builder = new StringBuilder();
+            builder.append(buffer.readUtf8(index));
+            buffer.skip(1);
+            builder.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        if (!source.request(1)) throw syntaxError("Unterminated escape sequence");
+        char c = (char) buffer.readByte();
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                if (!source.request(4)) throw syntaxError("Unterminated escape sequence");
+                String hex = buffer.readUtf8(4);
+                try {
+                    return (char) Integer.parseInt(hex, 16);
+                } catch (NumberFormatException e) {
+                    throw syntaxError("Invalid escape sequence \\u" + hex);
+                }
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            default:
+                throw syntaxError("Invalid escape sequence \\" + c);
+        }
+    }
+
+    private static JSONException syntaxError(String message) {
+        return new JSONException(message);
+    }
+}
@@ -31,3 +31,16 @@ inline fun <reified T, R> JSONArray.map(transform: (T) -> R): List<R> =
 
 inline fun <reified T> JSONArray.forEach(function: (T) -> Unit) =
         (0.until(length())).forEach { i -> function(get(i) as T) }
+
+// JsonReader extension functions
+inline fun JsonReader.forEachField(function: (String) -> Unit) {
+    beginObject()
+    while (hasNext()) function(nextName())
+    endObject()
+}
+
+inline fun JsonReader.forEachElement(function: () -> Unit) {
+    beginArray()
+    while (hasNext()) function()
+    endArray()
+}
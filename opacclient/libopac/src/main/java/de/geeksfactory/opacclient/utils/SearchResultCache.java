@@ -0,0 +1,457 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.geeksfactory.opacclient.objects.Filter;
+import de.geeksfactory.opacclient.objects.SearchRequestResult;
+import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.searchfields.SearchQuery;
+
+/**
+ * Process-wide on-device cache for pages of search results, so that recent searches can be
+ * displayed again without waiting for the library server, e.g. after the app process has been
+ * killed in the background.
+ *
+ * Every page is stored in its own file in a compact binary form. Entries expire after a
+ * configurable time, and the least recently used entries are removed if the files exceed a byte
+ * budget.
+ */
+public class SearchResultCache {
+    private static final int MAGIC = 0x4f535232; // "OSR2"
+    private static final long DEFAULT_TTL = 24 * 60 * 60 * 1000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static SearchResultCache instance;
+
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private File dir;
+    private long budget;
+    private long bytes = 0;
+    private volatile long ttl = DEFAULT_TTL;
+
+    public static synchronized SearchResultCache getInstance() {
+        if (instance == null) {
+            instance = new SearchResultCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Set the directory to store pages in. Files from earlier runs are kept, as surviving the
+     * process is the point of this cache. Expired files are removed.
+     *
+     * @param dir   Directory to use, or null to disable the cache
+     * @param bytes Number of bytes to keep on disk
+     */
+    public synchronized void setDirectory(File dir, long bytes) {
+        this.dir = dir;
+        this.budget = bytes;
+        this.bytes = 0;
+        files.clear();
+        if (dir == null) return;
+
+        dir.mkdirs();
+        File[] existing = dir.listFiles();
+        if (existing == null) return;
+        Arrays.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (File file : existing) {
+            if (file.getName().endsWith(TMP_SUFFIX) || file.lastModified() + ttl < now) {
+                file.delete();
+            } else {
+                files.put(file.getName(), file.length());
+                this.bytes += file.length();
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Set the time after which cached pages are no longer returned.
+     */
+    public synchronized void setTimeToLive(long millis) {
+        ttl = millis;
+    }
+
+    /**
+     * Builds a cache key for a search. Empty criteria are ignored and whitespace is normalized, so
+     * that the same search entered slightly differently hits the same entry.
+     */
+    public static String getKey(String library, List<SearchQuery> query) {
+        Map<String, String> criteria = new TreeMap<>();
+        for (SearchQuery q : query) {
+            String value = normalize(q.getValue());
+            if (!value.isEmpty()) criteria.put(q.getKey(), value);
+        }
+        return getKey(library, "search", criteria);
+    }
+
+    /**
+     * Builds a cache key for a volume search, see {@link #getKey(String, List)}.
+     */
+    public static String getVolumeKey(String library, Map<String, String> query) {
+        Map<String, String> criteria = new TreeMap<>();
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            String value = normalize(entry.getValue());
+            if (!value.isEmpty()) criteria.put(entry.getKey(), value);
+        }
+        return getKey(library, "volume", criteria);
+    }
+
+    private static String getKey(String library, String type, Map<String, String> criteria) {
+        StringBuilder sb = new StringBuilder(library).append('\n').append(type);
+        for (Map.Entry<String, String> entry : criteria.entrySet()) {
+            sb.append('\n').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Store a page of results.
+     *
+     * @param key    Key built with {@link #getKey(String, List)}
+     * @param page   Page number as passed to {@link de.geeksfactory.opacclient.apis.OpacApi#searchGetPage(int)},
+     *               1 for the first page
+     * @param result The page
+     */
+    public void put(String key, int page, SearchRequestResult result) {
+        byte[] data;
+        try {
+            data = encode(result);
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            return;
+        }
+        File dir;
+        synchronized (this) {
+            if (this.dir == null || data.length > budget) return;
+            dir = this.dir;
+        }
+        // Write to a file of our own outside of the lock, only the rename and the bookkeeping need
+        // to be atomic
+        String name = getFileName(key, page);
+        File file = new File(dir, name);
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            tmp = File.createTempFile(name, TMP_SUFFIX, dir);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeUTF(key);
+            out.writeInt(page);
+            out.writeInt(data.length);
+            out.write(data);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (tmp != null) tmp.delete();
+            return;
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        synchronized (this) {
+            if (dir != this.dir || !tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            Long previous = files.put(name, file.length());
+            if (previous != null) bytes -= previous;
+            bytes += file.length();
+            trim();
+        }
+    }
+
+    /**
+     * Retrieve a page of results.
+     *
+     * @return The page, or null if it is not cached or has expired
+     */
+    public SearchRequestResult get(String key, int page) {
+        String name = getFileName(key, page);
+        File file;
+        synchronized (this) {
+            if (dir == null) return null;
+            // get() instead of containsKey() to update the access order
+            if (files.get(name) == null) return null;
+            file = new File(dir, name);
+        }
+        long lastModified = file.lastModified();
+        if (lastModified + ttl < System.currentTimeMillis()) {
+            removeFile(file, lastModified);
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key) || in.readInt() != page) {
+                return null;
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return decode(data);
+        } catch (FileNotFoundException e) {
+            // removed in the meantime
+            return null;
+        } catch (IOException | JSONException | RuntimeException e) {
+            // Corrupt or written by an incompatible version
+            e.printStackTrace();
+            removeFile(file, lastModified);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Remove all pages of a search, e.g. because the server returned a different first page and
+     * the following pages are likely outdated as well.
+     */
+    public synchronized void remove(String key) {
+        if (dir == null) return;
+        String prefix = IOUtils.sha1(key) + "-";
+        for (String name : new ArrayList<>(files.keySet())) {
+            if (name.startsWith(prefix)) removeFile(name);
+        }
+    }
+
+    public synchronized void clear() {
+        for (String name : new ArrayList<>(files.keySet())) {
+            removeFile(name);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the content of a page that can be compared to find out whether
+     * a result page loaded from the server differs from the one in the cache.
+     */
+    public static String fingerprint(SearchRequestResult result) {
+        try {
+            return IOUtils.sha1(encode(result));
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes a file found to be unusable outside of the lock, unless it has been replaced in the
+     * meantime.
+     */
+    private synchronized void removeFile(File file, long lastModified) {
+        if (!file.getParentFile().equals(dir) || file.lastModified() != lastModified) return;
+        removeFile(file.getName());
+    }
+
+    private void removeFile(String name) {
+        Long size = files.remove(name);
+        if (size != null) bytes -= size;
+        new File(dir, name).delete();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (bytes > budget && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            bytes -= eldest.getValue();
+            new File(dir, eldest.getKey()).delete();
+        }
+    }
+
+    private static String getFileName(String key, int page) {
+        return IOUtils.sha1(key) + "-" + page;
+    }
+
+    static byte[] encode(SearchRequestResult result) throws IOException, JSONException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(result.getTotal_result_count());
+        out.writeInt(result.getPage_count());
+        out.writeInt(result.getPage_index());
+
+        List<SearchResult> results =
+                result.getResults() != null ? result.getResults() :
+                        Collections.<SearchResult>emptyList();
+        out.writeInt(results.size());
+        for (SearchResult r : results) {
+            writeString(out, r.getType() != null ? r.getType().name() : null);
+            out.writeInt(r.getNr());
+            writeString(out, r.getId());
+            writeString(out, r.getInnerhtml());
+            writeString(out, r.getTitle());
+            writeString(out, r.getSubtitle());
+            List<String> authors = r.getAuthors();
+            out.writeInt(authors != null ? authors.size() : -1);
+            if (authors != null) {
+                for (String author : authors) {
+                    writeString(out, author);
+                }
+            }
+            writeString(out, r.getYear());
+            writeString(out, r.getPublisher());
+            writeString(out, r.getSeries());
+            writeString(out, r.getAvailability());
+            writeString(out, r.getStatus() != null ? r.getStatus().name() : null);
+            writeString(out, r.getCover());
+            out.writeInt(r.getPage());
+            List<SearchQuery> childQuery = r.getChildQuery();
+            out.writeInt(childQuery != null ? childQuery.size() : -1);
+            if (childQuery != null) {
+                for (SearchQuery q : childQuery) {
+                    writeString(out, q.getSearchField().toJSON().toString());
+                    writeString(out, q.getValue());
+                }
+            }
+        }
+
+        List<Filter> filters = result.getFilters();
+        out.writeInt(filters != null ? filters.size() : -1);
+        if (filters != null) {
+            for (Filter filter : filters) {
+                writeString(out, filter.getLabel());
+                writeString(out, filter.getIdentifier());
+                List<Filter.Option> options = filter.getOptions();
+                out.writeInt(options != null ? options.size() : -1);
+                if (options == null) continue;
+                for (Filter.Option option : options) {
+                    writeString(out, option.getLabel());
+                    writeString(out, option.getIdentifier());
+                    out.writeInt(option.getResults_expected());
+                    out.writeBoolean(option.isApplied());
+                    out.writeBoolean(option.getLoadnext());
+                }
+            }
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    static SearchRequestResult decode(byte[] data) throws IOException, JSONException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int totalCount = in.readInt();
+        int pageCount = in.readInt();
+        int pageIndex = in.readInt();
+
+        int count = in.readInt();
+        List<SearchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SearchResult r = new SearchResult();
+            String type = readString(in);
+            if (type != null) r.setType(SearchResult.MediaType.valueOf(type));
+            r.setNr(in.readInt());
+            r.setId(readString(in));
+            r.setInnerhtml(readString(in));
+            r.setTitle(readString(in));
+            r.setSubtitle(readString(in));
+            int authors = in.readInt();
+            if (authors >= 0) {
+                List<String> authorList = new ArrayList<>(authors);
+                for (int j = 0; j < authors; j++) {
+                    authorList.add(readString(in));
+                }
+                r.setAuthors(authorList);
+            }
+            r.setYear(readString(in));
+            r.setPublisher(readString(in));
+            r.setSeries(readString(in));
+            r.setAvailability(readString(in));
+            String status = readString(in);
+            if (status != null) r.setStatus(SearchResult.Status.valueOf(status));
+            r.setCover(readString(in));
+            r.setPage(in.readInt());
+            int queries = in.readInt();
+            if (queries >= 0) {
+                List<SearchQuery> childQuery = new ArrayList<>(queries);
+                for (int j = 0; j < queries; j++) {
+                    SearchField field = SearchField.fromJSON(new JSONObject(readString(in)));
+                    childQuery.add(new SearchQuery(field, readString(in)));
+                }
+                r.setChildQuery(childQuery);
+            }
+            results.add(r);
+        }
+
+        SearchRequestResult result =
+                new SearchRequestResult(results, totalCount, pageCount, pageIndex);
+        int filterCount = in.readInt();
+        if (filterCount >= 0) {
+            List<Filter> filters = new ArrayList<>(filterCount);
+            for (int i = 0; i < filterCount; i++) {
+                Filter filter = new Filter();
+                filter.setLabel(readString(in));
+                filter.setIdentifier(readString(in));
+                int optionCount = in.readInt();
+                if (optionCount >= 0) {
+                    List<Filter.Option> options = new ArrayList<>(optionCount);
+                    for (int j = 0; j < optionCount; j++) {
+                        Filter.Option option =
+                                filter.new Option(readString(in), readString(in));
+                        option.setResults_expected(in.readInt());
+                        option.setApplied(in.readBoolean());
+                        option.setLoadnext(in.readBoolean());
+                        options.add(option);
+                    }
+                    filter.setOptions(options);
+                }
+                filters.add(filter);
+            }
+            result.setFilters(filters);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link DataOutputStream#writeUTF(String)}, but for strings of any length and null
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
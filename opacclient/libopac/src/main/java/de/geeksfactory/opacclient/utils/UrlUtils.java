@@ -0,0 +1,294 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass implementations of URL cleaning and query string parsing. They behave exactly like
+ * the original implementations based on {@link String#split(String)}, {@link URLDecoder} and
+ * Apache's {@code URLEncodedUtils.format}, including their quirks (everything after a second
+ * {@code ?} is dropped, trailing separators are ignored, a parameter consisting only of
+ * {@code =} throws an {@link ArrayIndexOutOfBoundsException}), but avoid intermediate arrays and
+ * only decode or encode parameters that actually contain characters that need it.
+ */
+public class UrlUtils {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final boolean[] SAFE = new boolean[128];
+
+    static {
+        // characters URLEncodedUtils.format does not escape
+        for (char c = 'a'; c <= 'z'; c++) SAFE[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) SAFE[c] = true;
+        for (char c = '0'; c <= '9'; c++) SAFE[c] = true;
+        SAFE['_'] = true;
+        SAFE['-'] = true;
+        SAFE['.'] = true;
+        SAFE['*'] = true;
+    }
+
+    /**
+     * Cleans the parameters of a URL by decoding them and encoding them again the way {@code
+     * URLEncodedUtils.format(params, "UTF-8")} does. URLs that are already in this form are
+     * returned as they are.
+     *
+     * @param url the URL to clean
+     * @return cleaned URL
+     */
+    public static String cleanUrl(String url) {
+        int q = url.indexOf('?');
+        if (q < 0) return url;
+
+        int q2 = url.indexOf('?', q + 1);
+        String query = q2 < 0 ? url.substring(q + 1) : url.substring(q + 1, q2);
+        if (query.isEmpty() && (q2 < 0 || onlyConsistsOf(url, q2, '?'))) {
+            if (q == 0) {
+                // "?".split("\\?") is empty
+                throw new ArrayIndexOutOfBoundsException(0);
+            }
+            return url.substring(0, q);
+        }
+        if (q2 < 0 && isCanonicalQuery(query)) return url;
+
+        StringBuilder sb = new StringBuilder(url.length() + 16);
+        sb.append(url, 0, q).append('?');
+        int limit = pairsEnd(query);
+        if (limit < 0) return sb.toString();
+
+        int start = 0;
+        do {
+            int amp = nextPairEnd(query, start, limit);
+            if (start > 0) sb.append('&');
+            appendCleanPair(sb, query, start, amp);
+            start = amp + 1;
+        } while (start <= limit);
+        return sb.toString();
+    }
+
+    private static void appendCleanPair(StringBuilder sb, String query, int start, int end) {
+        if (start == end) {
+            sb.append('=');
+            return;
+        }
+        int eq = query.indexOf('=', start);
+        if (eq < 0 || eq >= end) {
+            appendEncoded(sb, decode(query.substring(start, end)));
+            sb.append('=');
+            return;
+        }
+        int valueEnd = end;
+        while (valueEnd > eq && query.charAt(valueEnd - 1) == '=') valueEnd--;
+        if (valueEnd == eq && eq == start) {
+            // "==".split("=") is empty
+            throw new ArrayIndexOutOfBoundsException(0);
+        }
+        String name = decode(query.substring(start, eq));
+        String value = valueEnd > eq ? decode(query.substring(eq + 1, valueEnd)) : "";
+        appendEncoded(sb, name);
+        sb.append('=');
+        appendEncoded(sb, value);
+    }
+
+    private static boolean isCanonicalQuery(String query) {
+        int len = query.length();
+        int pairStart = 0;
+        boolean seenEquals = false;
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? query.charAt(i) : '&';
+            if (c == '&') {
+                // every pair needs to be "name=value" or "name=" with a non-empty name or value
+                if (!seenEquals || i - pairStart < 2) return false;
+                pairStart = i + 1;
+                seenEquals = false;
+            } else if (c == '=') {
+                if (seenEquals) return false;
+                seenEquals = true;
+            } else if (c >= 128 || !SAFE[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets all values of all query parameters in an URL.
+     */
+    public static Map<String, List<String>> getQueryParams(String url) {
+        Map<String, List<String>> params = new HashMap<>();
+        String query = getQuery(url);
+        if (query == null) return params;
+
+        int limit = pairsEnd(query);
+        if (limit < 0) return params;
+
+        int start = 0;
+        do {
+            int amp = nextPairEnd(query, start, limit);
+            String key = decodeKey(query, start, amp);
+            String value = decodeValue(query, start, amp);
+            List<String> values = params.get(key);
+            if (values == null) {
+                values = new ArrayList<>(1);
+                params.put(key, values);
+            }
+            values.add(value);
+            start = amp + 1;
+        } while (start <= limit);
+        return params;
+    }
+
+    /**
+     * Gets the value for every query parameter in the URL. If a parameter name occurs twice or
+     * more, only the first occurrence is interpreted by this method
+     */
+    public static Map<String, String> getQueryParamsFirst(String url) {
+        Map<String, String> params = new HashMap<>();
+        String query = getQuery(url);
+        if (query == null) return params;
+
+        int limit = pairsEnd(query);
+        if (limit < 0) return params;
+
+        int start = 0;
+        do {
+            int amp = nextPairEnd(query, start, limit);
+            String key = decodeKey(query, start, amp);
+            String value = decodeValue(query, start, amp);
+            if (!params.containsKey(key)) {
+                params.put(key, value);
+            }
+            start = amp + 1;
+        } while (start <= limit);
+        return params;
+    }
+
+    /**
+     * Gets the value of the first occurrence of a single query parameter, without decoding any
+     * other parameter values. Unlike {@link #getQueryParamsFirst(String)}, this does not fail on
+     * malformed parameters other than the ones it needs to look at.
+     *
+     * @return the decoded value or null if the parameter does not exist
+     */
+    public static String getQueryParam(String url, String name) {
+        String query = getQuery(url);
+        if (query == null) return null;
+
+        int limit = pairsEnd(query);
+        if (limit < 0) return null;
+
+        int start = 0;
+        do {
+            int amp = nextPairEnd(query, start, limit);
+            if (name.equals(decodeKey(query, start, amp))) {
+                return decodeValue(query, start, amp);
+            }
+            start = amp + 1;
+        } while (start <= limit);
+        return null;
+    }
+
+    /**
+     * @return the query string as the original implementation saw it ({@code
+     * url.split("\\?")[1]}), or null if there is none
+     */
+    private static String getQuery(String url) {
+        int q = url.indexOf('?');
+        if (q < 0) return null;
+        int q2 = url.indexOf('?', q + 1);
+        if (q2 < 0) {
+            return q + 1 < url.length() ? url.substring(q + 1) : null;
+        }
+        if (q2 == q + 1 && onlyConsistsOf(url, q2, '?')) return null;
+        return url.substring(q + 1, q2);
+    }
+
+    private static String decodeKey(String query, int start, int end) {
+        if (start == end) return "";
+        int eq = query.indexOf('=', start);
+        if (eq < 0 || eq >= end) return decode(query.substring(start, end));
+        if (eq == start && lastNonSeparator(query.substring(start, end), '=') < 0) {
+            // "=".split("=") is empty
+            throw new ArrayIndexOutOfBoundsException(0);
+        }
+        return decode(query.substring(start, eq));
+    }
+
+    private static String decodeValue(String query, int start, int end) {
+        int eq = query.indexOf('=', start);
+        if (eq < 0 || eq >= end) return "";
+        int valueEnd = query.indexOf('=', eq + 1);
+        if (valueEnd < 0 || valueEnd > end) valueEnd = end;
+        return decode(query.substring(eq + 1, valueEnd));
+    }
+
+    private static String decode(String s) {
+        if (s.indexOf('%') < 0 && s.indexOf('+') < 0) return s;
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void appendEncoded(StringBuilder sb, String s) {
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c >= 128 || !SAFE[c]) break;
+            i++;
+        }
+        if (i == len) {
+            sb.append(s);
+            return;
+        }
+        sb.append(s, 0, i);
+        for (byte b : s.substring(i).getBytes(UTF8)) {
+            int v = b & 0xff;
+            if (v < 128 && SAFE[v]) {
+                sb.append((char) v);
+            } else if (v == ' ') {
+                sb.append('+');
+            } else {
+                sb.append('%');
+                sb.append(Character.toUpperCase(Character.forDigit((v >> 4) & 0xf, 16)));
+                sb.append(Character.toUpperCase(Character.forDigit(v & 0xf, 16)));
+            }
+        }
+    }
+
+    /**
+     * @return the end of the part of the query string that contains parameters, as trailing
+     * empty parameters are ignored, or -1 if there are none
+     */
+    private static int pairsEnd(String query) {
+        if (query.isEmpty()) {
+            // "".split("&") is [""], that is one empty parameter
+            return 0;
+        }
+        int last = lastNonSeparator(query, '&');
+        return last < 0 ? -1 : last + 1;
+    }
+
+    private static int nextPairEnd(String query, int start, int limit) {
+        int amp = query.indexOf('&', start);
+        return amp < 0 || amp > limit ? limit : amp;
+    }
+
+    private static int lastNonSeparator(String s, char separator) {
+        int i = s.length() - 1;
+        while (i >= 0 && s.charAt(i) == separator) i--;
+        return i;
+    }
+
+    private static boolean onlyConsistsOf(String s, int from, char c) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) != c) return false;
+        }
+        return true;
+    }
+}
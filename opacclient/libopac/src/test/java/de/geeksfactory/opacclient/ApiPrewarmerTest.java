@@ -0,0 +1,123 @@
+package de.geeksfactory.opacclient;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.geeksfactory.opacclient.apis.BaseApi;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApiPrewarmerTest {
+    @Test
+    public void connectsAndStarts() throws Exception {
+        BaseApi api = mock(BaseApi.class);
+        ApiPrewarmer.Handle handle = new ApiPrewarmer().prewarm(api);
+
+        assertTrue(handle.await(5, TimeUnit.SECONDS));
+        verify(api).prewarmConnection();
+        verify(api).start();
+    }
+
+    @Test
+    public void doesNotStartInitialisedApi() throws Exception {
+        BaseApi api = mock(BaseApi.class);
+        when(api.isInitialised()).thenReturn(true);
+        ApiPrewarmer.Handle handle = new ApiPrewarmer().prewarm(api);
+
+        assertTrue(handle.await(5, TimeUnit.SECONDS));
+        verify(api).prewarmConnection();
+        verify(api, never()).start();
+    }
+
+    @Test
+    public void cancelSkipsPendingSteps() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        BaseApi api = mock(BaseApi.class);
+        ApiPrewarmer.Handle handle = new ApiPrewarmer(executor).prewarm(api);
+        handle.cancel();
+        blocker.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertTrue(handle.isDone());
+        verify(api, never()).prewarmConnection();
+        verify(api, never()).start();
+    }
+
+    @Test
+    public void cancelInterruptsRunningConnect() throws Exception {
+        final CountDownLatch connecting = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        BaseApi api = mock(BaseApi.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                connecting.countDown();
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+        }).when(api).prewarmConnection();
+
+        ApiPrewarmer.Handle handle = new ApiPrewarmer().prewarm(api);
+        assertTrue(connecting.await(5, TimeUnit.SECONDS));
+        handle.cancel();
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(handle.await(5, TimeUnit.SECONDS));
+        verify(api, never()).start();
+    }
+
+    @Test
+    public void preparesBeforeConnecting() throws Exception {
+        BaseApi api = mock(BaseApi.class);
+        Runnable prepare = mock(Runnable.class);
+        ApiPrewarmer.Handle handle = new ApiPrewarmer().prewarm(api, prepare, true);
+
+        assertTrue(handle.await(5, TimeUnit.SECONDS));
+        InOrder order = inOrder(prepare, api);
+        order.verify(prepare).run();
+        order.verify(api).prewarmConnection();
+        order.verify(api).start();
+        verify(api).setPrewarmHandle(handle);
+    }
+
+    @Test
+    public void onlyPreparesWhenNotConnecting() throws Exception {
+        BaseApi api = mock(BaseApi.class);
+        Runnable prepare = mock(Runnable.class);
+        ApiPrewarmer.Handle handle = new ApiPrewarmer().prewarm(api, prepare, false);
+
+        assertTrue(handle.await(5, TimeUnit.SECONDS));
+        verify(prepare).run();
+        verify(api, never()).prewarmConnection();
+        verify(api, never()).start();
+    }
+}
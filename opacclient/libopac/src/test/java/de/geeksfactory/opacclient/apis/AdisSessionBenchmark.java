@@ -0,0 +1,40 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.geeksfactory.opacclient.utils.Benchmark;
+
+/**
+ * Micro benchmark comparing the request count tracking of {@link AdisSession} to the regular
+ * expressions Adis used before, on the aDIS pages from the test resources. This is not run as part
+ * of the test suite, run its main method manually.
+ */
+public class AdisSessionBenchmark extends BaseHtmlTest {
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        new AdisSessionBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        List<Document> docs = new ArrayList<>();
+        for (String file : AdisSessionTest.FILES) {
+            docs.add(Jsoup.parse(readResource(file)));
+        }
+        Benchmark benchmark = new Benchmark("page");
+        for (int round = 0; round < 3; round++) {
+            benchmark.report("legacy regex", docs, ITERATIONS,
+                    doc -> AdisSessionTest.legacyRequestCount(doc, -1));
+            benchmark.report("AdisSession.update", docs, ITERATIONS, doc -> {
+                AdisSession session = new AdisSession();
+                session.update(doc);
+                return session.getRequestCount();
+            });
+        }
+        benchmark.finish();
+    }
+}
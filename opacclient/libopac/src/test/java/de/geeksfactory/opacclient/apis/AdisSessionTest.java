@@ -0,0 +1,159 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class AdisSessionTest extends BaseHtmlTest {
+    static final String[] FILES = {
+            "/adis/medialist/tuebingen.html",
+            "/adis/reservation/muenchen_1.html",
+            "/adis/reservation/muenchen_2.html",
+            "/adis/reservation/muenchen_detail.html",
+            "/adis/reslist/muenchen.html",
+            "/adis/reslist/stuttgart.html",
+    };
+
+    static final Pattern LEGACY_REQUEST_COUNT =
+            Pattern.compile(".*requestCount=([0-9]+)[^0-9].*");
+    static final Pattern LEGACY_SESSION_ID =
+            Pattern.compile(".*;jsessionid=([0-9A-Fa-f]+)[^0-9A-Fa-f].*");
+
+    /**
+     * How Adis extracted the request count from a page before {@link AdisSession} existed
+     */
+    static int legacyRequestCount(Document doc, int requestCount) {
+        for (Element a : doc.select("a")) {
+            Matcher matcher = LEGACY_REQUEST_COUNT.matcher(a.attr("href"));
+            if (matcher.matches()) {
+                requestCount = Integer.parseInt(matcher.group(1));
+            }
+        }
+        return requestCount;
+    }
+
+    @Test
+    public void testParseLink() {
+        AdisSession.Link link = AdisSession.parseLink(
+                "/aDISWeb/app;jsessionid=CECF34F9EBDF45203531522D97221A7C?service=direct/1" +
+                        "/POOLSTPM@@@@@@@@_44008900_3106C800/navpath.intlink.directlink&sp=S%24" +
+                        "%24GFNV_2&sp=SA%2FAK&requestCount=7#main");
+        assertEquals("CECF34F9EBDF45203531522D97221A7C", link.sessionId);
+        assertEquals("direct/1/POOLSTPM@@@@@@@@_44008900_3106C800/navpath.intlink.directlink",
+                link.service);
+        assertEquals(Arrays.asList("S$$GFNV_2", "SA/AK"), link.sp);
+        assertEquals(7, link.requestCount);
+    }
+
+    @Test
+    public void testParseLinkNeedsTrailingCharacter() {
+        // the regular expressions used before required another character after the value
+        AdisSession.Link link = AdisSession.parseLink("/app;jsessionid=ABC?requestCount=5");
+        assertEquals(-1, link.requestCount);
+        assertEquals("ABC", link.sessionId);
+        assertNull(AdisSession.parseLink("/app;jsessionid=ABC").sessionId);
+        assertEquals(7, AdisSession.parseRequestCount("?requestCount=7&requestCount=8"));
+        assertEquals(-1, AdisSession.parseRequestCount("/app?sp=SS6"));
+    }
+
+    @Test
+    public void testRequestCountMatchesLegacy() {
+        for (String file : FILES) {
+            Document doc = Jsoup.parse(readResource(file));
+            AdisSession session = new AdisSession();
+            session.setRequestCount(-1);
+            session.update(doc);
+            assertEquals(file, legacyRequestCount(doc, -1), session.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testRandomLinksMatchLegacy() {
+        String[] fragments = {"requestCount=", ";jsessionid=", "service=", "sp=", "&", "?", "=",
+                "#", "7", "3", "AF", "x", "%2F", "+", "/app"};
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(10);
+            for (int j = 0; j < n; j++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            String href = sb.toString();
+            AdisSession.Link link = AdisSession.parseLink(href);
+
+            Matcher matcher = LEGACY_REQUEST_COUNT.matcher(href);
+            int count = matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+            assertEquals(href, count, link.requestCount);
+            assertEquals(href, count, AdisSession.parseRequestCount(href));
+
+            matcher = LEGACY_SESSION_ID.matcher(href);
+            assertEquals(href, matcher.matches() ? matcher.group(1) : null, link.sessionId);
+
+            List<String> sp;
+            String service;
+            try {
+                sp = BaseApi.getQueryParams(href).get("sp");
+                List<String> services = BaseApi.getQueryParams(href).get("service");
+                service = href.contains("service=") && services != null ? services.get(0) : null;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // the old implementation fails on parameters only consisting of '='
+                continue;
+            }
+            assertEquals(href, sp != null ? sp : Collections.emptyList(), link.sp);
+            assertEquals(href, service, link.service);
+        }
+    }
+
+    @Test
+    public void testSaveRestore() throws Exception {
+        AdisSession session = new AdisSession();
+        session.update("/app;jsessionid=ABC?service=direct/0/Home&sp=SS6&requestCount=3#x");
+        session.setRequestCount(3);
+        session.setExts(Arrays.asList("S1", "SS6"));
+        JSONObject state = new JSONObject();
+        session.save(state);
+
+        AdisSession restored = new AdisSession();
+        restored.restore(state);
+        assertEquals("ABC", restored.getSessionId());
+        assertEquals("direct/0/Home", restored.getService());
+        assertEquals(3, restored.getRequestCount());
+        assertEquals(Arrays.asList("S1", "SS6"), restored.getExts());
+    }
+
+    @Test
+    public void testHtmlGetUpdatesRequestCount() throws Exception {
+        Adis adis = spy(Adis.class);
+        doReturn("<a href=\"/app;jsessionid=ABC?service=direct/0/Home&requestCount=4#x\">Home</a>")
+                .when(adis).httpGet(anyString(), anyString());
+        adis.session.setRequestCount(3);
+
+        adis.htmlGet("http://opac.example.com/app?service=direct/0/Home");
+        verify(adis).httpGet(eq("http://opac.example.com/app?service=direct/0/Home&requestCount=3"),
+                anyString());
+        assertEquals(4, adis.session.getRequestCount());
+
+        // the next request sends the count from the previous page
+        adis.htmlGet("http://opac.example.com/app?service=direct/0/Search");
+        verify(adis).httpGet(
+                eq("http://opac.example.com/app?service=direct/0/Search&requestCount=4"),
+                anyString());
+    }
+}
@@ -1,17 +1,95 @@
 package de.geeksfactory.opacclient.apis;
 
+import com.sun.net.httpserver.HttpServer;
+
 import org.apache.http.NameValuePair;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicNameValuePair;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.objects.Library;
+import okio.Okio;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 
 public class ApacheBaseApiTest {
+    private HttpServer server;
+    private String url;
+    private ApacheBaseApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // /redirect/<status> redirects to /target, which echoes the method and body
+        server.createContext("/redirect/", exchange -> {
+            read(exchange.getRequestBody());
+            String path = exchange.getRequestURI().getPath();
+            int status = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            exchange.getResponseHeaders().set("Location", "/target");
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.createContext("/target", exchange -> {
+            String body = exchange.getRequestMethod() + " " +
+                    read(exchange.getRequestBody());
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(bytes);
+            os.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        Library library = new Library();
+        library.setIdent("Test");
+        library.setApi("heidi");
+        library.setData(new JSONObject().put("baseurl", url));
+        api = new Heidi();
+        api.init(library, new HttpClientFactory("test"), false);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void postRedirectsWithGet() throws Exception {
+        // Like the LaxRedirectStrategy used with Apache HttpClient, a POST answered with 301,
+        // 302 or 303 is followed with a GET without body
+        assertEquals("GET ", post(301));
+        assertEquals("GET ", post(302));
+        assertEquals("GET ", post(303));
+    }
+
+    @Test
+    public void postRedirectsWithPostOn307() throws Exception {
+        assertEquals("POST foo=bar", post(307));
+    }
+
+    private String post(int status) throws IOException {
+        return api.httpPost(url + "/redirect/" + status, new StringEntity("foo=bar"), "UTF-8");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        return Okio.buffer(Okio.source(in)).readUtf8();
+    }
+
     @Test
     public void cleanUrlShouldHandleMultipleEqualsSigns() {
         BaseApi baseApi = Mockito.mock(BaseApi.class, Mockito.CALLS_REAL_METHODS);
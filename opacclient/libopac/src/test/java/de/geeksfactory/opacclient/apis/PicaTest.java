@@ -0,0 +1,134 @@
+package de.geeksfactory.opacclient.apis;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.objects.Library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PicaTest {
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger requestsWithCookie = new AtomicInteger();
+    private volatile String failingLanguage;
+
+    @Before
+    public void setUp() throws IOException {
+        BaseApi.clearLanguageCache();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            if (exchange.getRequestHeaders().containsKey("Cookie")) {
+                requestsWithCookie.incrementAndGet();
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            running.decrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            // the French translation is missing, so the OPAC shows raw labels
+            byte[] body = (path.contains("LNG=FR") ? "LABEL_WELCOME" : "Willkommen")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            int code = failingLanguage != null && path.contains("LNG=" + failingLanguage) ?
+                    500 : 200;
+            // like the real OPACs, remember the language in the session
+            exchange.getResponseHeaders().add("Set-Cookie", "SESSION=" + path.hashCode());
+            exchange.sendResponseHeaders(code, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        BaseApi.clearLanguageCache();
+    }
+
+    private Pica createApi() throws Exception {
+        return createApi("1");
+    }
+
+    private Pica createApi(String db) throws Exception {
+        Library library = new Library();
+        library.setIdent("PicaTest");
+        library.setApi("pica");
+        library.setData(new JSONObject()
+                .put("baseurl", "http://127.0.0.1:" + server.getAddress().getPort())
+                .put("db", db));
+        Pica api = new PicaOld();
+        api.init(library, new HttpClientFactory("test"), false);
+        return api;
+    }
+
+    @Test
+    public void testSupportedLanguages() throws Exception {
+        assertEquals(new HashSet<>(Arrays.asList("de", "en", "nl")),
+                createApi().getSupportedLanguages());
+        assertEquals(4, requests.get());
+        assertTrue(maxRunning.get() > 1);
+
+        // cached for other instances of the same library
+        assertEquals(new HashSet<>(Arrays.asList("de", "en", "nl")),
+                createApi().getSupportedLanguages());
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void testSupportedLanguagesUseSeparateSessions() throws Exception {
+        Pica api = createApi();
+        api.getSupportedLanguages();
+        api.getSupportedLanguages();
+        BaseApi.clearLanguageCache();
+        api.getSupportedLanguages();
+        assertEquals(8, requests.get());
+        assertEquals(0, requestsWithCookie.get());
+    }
+
+    @Test
+    public void testSupportedLanguagesCachedPerConfiguration() throws Exception {
+        createApi("1").getSupportedLanguages();
+        createApi("2").getSupportedLanguages();
+        assertEquals(8, requests.get());
+    }
+
+    @Test
+    public void testSupportedLanguagesFailure() throws Exception {
+        failingLanguage = "NE";
+        try {
+            createApi().getSupportedLanguages();
+            fail("NotReachableException expected");
+        } catch (NotReachableException ignored) {
+        }
+
+        // failures are not cached
+        failingLanguage = null;
+        assertEquals(new HashSet<>(Arrays.asList("de", "en", "nl")),
+                createApi().getSupportedLanguages());
+    }
+}
@@ -0,0 +1,167 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+import de.geeksfactory.opacclient.objects.Library;
+import okhttp3.RequestBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+public class PreferredBranchTest {
+    private static final String NORD = "Stadtteilbibliothek Nord";
+    private List<Map<String, String>> branches;
+
+    @Before
+    public void setUp() {
+        BaseApi.clearBranchCache();
+        branches = new ArrayList<>();
+        branches.add(branch("1", "Zentralbibliothek"));
+        branches.add(branch("2", "Stadtteilbibliothek Nord"));
+    }
+
+    @After
+    public void tearDown() {
+        BaseApi.clearBranchCache();
+    }
+
+    private static Map<String, String> branch(String key, String value) {
+        Map<String, String> branch = new HashMap<>();
+        branch.put("key", key);
+        branch.put("value", value);
+        return branch;
+    }
+
+    private BaseApi createApi(String preferredBranch) throws Exception {
+        Library library = new Library();
+        library.setIdent("BranchTest");
+        library.setApi("test");
+        library.setData(new JSONObject().put("url", "http://127.0.0.1:1/"));
+        BaseApi api = new TestApi();
+        api.init(library, new HttpClientFactory("test"), false);
+        api.setPreferredBranch(preferredBranch);
+        return api;
+    }
+
+    @Test
+    public void testChoosesPreferredBranch() throws Exception {
+        assertEquals("2", createApi("Stadtteilbibliothek Nord").choosePreferredBranch(branches));
+        assertEquals("2", createApi("stadtteilbibliothek nord ").choosePreferredBranch(branches));
+        assertNull(createApi("Fahrbibliothek").choosePreferredBranch(branches));
+        assertNull(createApi(null).choosePreferredBranch(branches));
+    }
+
+    @Test
+    public void testDoesNotMatchKeys() throws Exception {
+        // keys of the search form's branch field mean something else in the reservation form
+        assertNull(createApi("2").choosePreferredBranch(branches));
+    }
+
+    @Test
+    public void testRejectedBranch() throws Exception {
+        BaseApi api = createApi(NORD);
+        assertEquals("2", api.choosePreferredBranch(branches));
+        api.rejectPreferredBranch("2");
+
+        // not chosen again as long as the branches are the same
+        assertNull(createApi(NORD).choosePreferredBranch(branches));
+
+        branches.add(branch("3", "Fahrbibliothek"));
+        assertEquals("2", createApi(NORD).choosePreferredBranch(branches));
+    }
+
+    @Test
+    public void testBranchErrors() throws Exception {
+        BaseApi api = createApi(NORD);
+        api.choosePreferredBranch(branches);
+        assertTrue(api.isPreferredBranchError("2", "Stadtteilbibliothek Nord ist geschlossen"));
+        // TestApi knows no rejection messages, so only the branch name counts
+        assertFalse(api.isPreferredBranchError("2", "Abholung in dieser Zweigstelle nicht möglich"));
+        assertFalse(api.isPreferredBranchError("2", "Sie haben das Medium bereits vorgemerkt"));
+        assertFalse(api.isPreferredBranchError("2", "Gebühren über dem Limit"));
+        assertFalse(api.isPreferredBranchError("2", null));
+    }
+
+    @Test
+    public void testApiSpecificBranchErrors() throws Exception {
+        TouchPoint touchPoint = createTouchPoint(null);
+        assertTrue(touchPoint.isPreferredBranchError("2",
+                "Abholung in dieser Zweigstelle nicht möglich"));
+        // mentioning a location is not enough
+        assertFalse(touchPoint.isPreferredBranchError("2",
+                "Das Exemplar am Standort Zentralbibliothek ist bereits vorgemerkt"));
+        assertFalse(touchPoint.isPreferredBranchError("2", "Ausgabe gesperrt: Gebühren offen"));
+    }
+
+    private TouchPoint createTouchPoint(String response) throws Exception {
+        TouchPoint touchPoint = spy(TouchPoint.class);
+        Library library = new Library();
+        library.setIdent("BranchTest");
+        touchPoint.library = library;
+        touchPoint.opac_url = "http://opac.example.com";
+        touchPoint.setPreferredBranch(NORD);
+        doReturn(null).when(touchPoint).login(any(Account.class));
+        doReturn("<select name=\"location\"><option value=\"1\">Zentralbibliothek</option>" +
+                "<option value=\"2\">Stadtteilbibliothek Nord</option></select>" +
+                "<label for=\"location\">Abholort</label>")
+                .when(touchPoint).httpGet(eq(touchPoint.opac_url + "/reserve.do"), anyString());
+        doReturn(response).when(touchPoint).httpPost(eq(touchPoint.opac_url + "/requestItem.do"),
+                any(RequestBody.class), anyString());
+        return touchPoint;
+    }
+
+    private DetailedItem reservableItem() {
+        DetailedItem item = new DetailedItem();
+        item.setReservation_info("http://opac.example.com/reserve.do");
+        return item;
+    }
+
+    @Test
+    public void testTouchPointSkipsSelection() throws Exception {
+        TouchPoint touchPoint = createTouchPoint("<div class=\"message-confirm\">OK</div>");
+        OpacApi.ReservationResult result =
+                touchPoint.reservation(reservableItem(), new Account(), 0, null);
+        assertEquals(OpacApi.MultiStepResult.Status.OK, result.getStatus());
+    }
+
+    @Test
+    public void testTouchPointKeepsBranchOnUnrelatedError() throws Exception {
+        TouchPoint touchPoint = createTouchPoint(
+                "<div class=\"alert\">Sie haben das Medium bereits vorgemerkt.</div>");
+        OpacApi.ReservationResult result =
+                touchPoint.reservation(reservableItem(), new Account(), 0, null);
+        assertEquals(OpacApi.MultiStepResult.Status.ERROR, result.getStatus());
+        assertEquals("Sie haben das Medium bereits vorgemerkt.", result.getMessage());
+        // other reservations still use the home branch
+        assertEquals("2", createApi(NORD).choosePreferredBranch(branches));
+    }
+
+    @Test
+    public void testTouchPointRejectsBranch() throws Exception {
+        TouchPoint touchPoint = createTouchPoint(
+                "<div class=\"alert\">Abholung in dieser Zweigstelle nicht möglich.</div>");
+        OpacApi.ReservationResult result =
+                touchPoint.reservation(reservableItem(), new Account(), 0, null);
+        assertEquals(OpacApi.MultiStepResult.Status.SELECTION_NEEDED, result.getStatus());
+        assertEquals(2, result.getSelection().size());
+        assertNull(createApi(NORD).choosePreferredBranch(branches));
+    }
+}
@@ -9,11 +9,14 @@ import org.junit.runners.Parameterized;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import de.geeksfactory.opacclient.objects.LentItem;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -66,4 +69,30 @@ public class SISISAccountTest extends BaseHtmlTest {
                             .equals(11));
         }
     }
+
+    @Test
+    public void testAccountFingerprint() {
+        String html = readResource("/sisis/medialist/" + file);
+        if (html == null) return; // we may not have all files for all libraries
+
+        SISIS sisis = new SISIS();
+        sisis.data = new JSONObject();
+        String fingerprint = getAccountFingerprint(sisis, html);
+        assertEquals(fingerprint, getAccountFingerprint(sisis, html));
+
+        // a new session does not change the fingerprint
+        String newSession = html.replaceAll("(CSId\"?\\s*value=\")[^\"]*", "$1123")
+                                .replaceAll("jsessionid=[^?\"]*", "jsessionid=123");
+        assertEquals(fingerprint, getAccountFingerprint(sisis, newSession));
+
+        Document doc = Jsoup.parse(html);
+        doc.select(".data tr, .container-fluid > .row").last().appendText("changed");
+        assertNotEquals(fingerprint, getAccountFingerprint(sisis, doc.outerHtml()));
+    }
+
+    private static String getAccountFingerprint(SISIS sisis, String html) {
+        Map<Integer, Document> pages = new HashMap<>();
+        pages.put(1, Jsoup.parse(html));
+        return sisis.getAccountFingerprint(pages, pages, pages);
+    }
 }
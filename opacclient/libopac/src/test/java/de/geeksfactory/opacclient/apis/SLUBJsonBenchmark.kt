@@ -0,0 +1,44 @@
+package de.geeksfactory.opacclient.apis
+
+import de.geeksfactory.opacclient.i18n.DummyStringProvider
+import de.geeksfactory.opacclient.objects.Account
+import de.geeksfactory.opacclient.utils.Benchmark
+import de.geeksfactory.opacclient.utils.JsonReader
+import okio.Buffer
+import org.json.JSONObject
+
+/**
+ * Micro benchmark comparing the streaming JSON decoding of SLUB to building an org.json tree of
+ * the same documents, which was the first step of parsing before. This is not run as part of
+ * the test suite, run its main method manually.
+ */
+object SLUBJsonBenchmark : BaseHtmlTest() {
+    private const val ITERATIONS = 5000
+    private val SEARCH_FILES = listOf("/slub/search/simple-search.json",
+            "/slub/search/search-null_creation_date.json")
+    private val ACCOUNT_FILES = listOf("/slub/account/account.json",
+            "/slub/account/account-ill.json", "/slub/account/account-status.json")
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val slub = SLUB().apply { stringProvider = DummyStringProvider() }
+        val search = SEARCH_FILES.map { readResource(it).toByteArray() }
+        val account = ACCOUNT_FILES.map { readResource(it).toByteArray() }
+        val benchmark = Benchmark("document")
+        repeat(3) {
+            benchmark.report("search: org.json tree", search, ITERATIONS) {
+                JSONObject(String(it, Charsets.UTF_8)).length()
+            }
+            benchmark.report("search: streaming", search, ITERATIONS) {
+                slub.parseSearchResults(JsonReader(Buffer().write(it))).results.size
+            }
+            benchmark.report("account: org.json tree", account, ITERATIONS) {
+                JSONObject(String(it, Charsets.UTF_8)).length()
+            }
+            benchmark.report("account: streaming", account, ITERATIONS) {
+                slub.parseAccountData(Account(), JsonReader(Buffer().write(it))).lent.size
+            }
+        }
+        benchmark.finish()
+    }
+}
@@ -28,6 +28,7 @@ import de.geeksfactory.opacclient.objects.*
 import de.geeksfactory.opacclient.searchfields.DropdownSearchField
 import de.geeksfactory.opacclient.searchfields.SearchQuery
 import de.geeksfactory.opacclient.searchfields.TextSearchField
+import de.geeksfactory.opacclient.utils.JsonReader
 import okhttp3.*
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.*
@@ -76,7 +77,7 @@ class SLUBAccountTest : BaseHtmlTest() {
 
     @Test
     fun testParseEmptyAccountData() {
-        val json = JSONObject(readResource("/slub/account/empty-account.json"))
+        val json = JsonReader(readResource("/slub/account/empty-account.json"))
 
         val accountdata = slub.parseAccountData(Account(), json)
 
@@ -88,7 +89,7 @@ class SLUBAccountTest : BaseHtmlTest() {
 
     @Test
     fun testParseAccountData() {
-        val json = JSONObject(readResource("/slub/account/account.json"))
+        val json = JsonReader(readResource("/slub/account/account.json"))
         val fmt = DateTimeFormat.shortDate()
         val lentitem1 = LentItem().apply {
             title = "Der neue Kosmos-Baumführer"
@@ -139,7 +140,7 @@ class SLUBAccountTest : BaseHtmlTest() {
     @Test
     fun testParseAccountDataIll() {
         val fmt = DateTimeFormat.shortDate()
-        val json = JSONObject(readResource("/slub/account/account-ill.json"))
+        val json = JsonReader(readResource("/slub/account/account-ill.json"))
         // hold request filed --> show ill in reservations
         val reserveditem1 = ReservedItem().apply {
             title = "Title1"
@@ -188,7 +189,7 @@ class SLUBAccountTest : BaseHtmlTest() {
 
     @Test
     fun testParseAccountDataStatus() {
-        val json = JSONObject(readResource("/slub/account/account-status.json"))
+        val json = JsonReader(readResource("/slub/account/account-status.json"))
 
         val accountdata = slub.parseAccountData(Account(), json)
 
@@ -206,7 +207,7 @@ class SLUBSearchTest : BaseHtmlTest() {
 
     @Test
     fun testParseEmptySearchResults() {
-        val json = JSONObject(readResource("/slub/search/empty-search.json"))
+        val json = JsonReader(readResource("/slub/search/empty-search.json"))
 
         val searchresults = slub.parseSearchResults(json)
 
@@ -216,7 +217,7 @@ class SLUBSearchTest : BaseHtmlTest() {
 
     @Test
     fun testParseSearchResults() {
-        val json = JSONObject(readResource("/slub/search/simple-search.json"))
+        val json = JsonReader(readResource("/slub/search/simple-search.json"))
         val result1 = SearchResult().apply {
             innerhtml = "<b>Mastering software testing with JUnit 5 comprehensive guide to develop high quality Java applications Boni García</b><br>Garcia, Boni<br>(2017)"
             type = SearchResult.MediaType.BOOK
@@ -237,7 +238,7 @@ class SLUBSearchTest : BaseHtmlTest() {
 
     @Test
     fun testParseSearchResultsWithNullCreationDate() {
-        val json = JSONObject(readResource("/slub/search/search-null_creation_date.json"))
+        val json = JsonReader(readResource("/slub/search/search-null_creation_date.json"))
         val result1 = SearchResult().apply {
             innerhtml = "<b>Tu en hagiois patros hēmōn Maximu tu homologetu Hapanta = S.P.N. Maximi Confessoris Opera omnia eruta, Latine transl., notisque ill. opera et studio Francisci Combefis. Adauxit Franciscus Oehler. Accurante et denuo recognoscente J.-P. Migne</b><br>Maximus Confessor"
             type = SearchResult.MediaType.BOOK
@@ -789,7 +790,9 @@ class SLUBSearchMockTest(@Suppress("unused") private val name: String,
 
     @Test
     fun testSearch() {
-        doReturn(response).`when`(slub).httpGet(any(), any())
+        doAnswer {
+            it.getArgument<OkHttpBaseApi.JsonHandler<*>>(1).handle(JsonReader(response!!))
+        }.`when`(slub).httpGetJson(any(), any<OkHttpBaseApi.JsonHandler<Any>>())
         if (expectedException != null) {
             val thrown = assertThrows(expectedExceptionMsg, expectedException
             ) { slub.search(query) }
@@ -797,7 +800,7 @@ class SLUBSearchMockTest(@Suppress("unused") private val name: String,
         } else {
             val actual = slub.search(query)
             assertEquals(expectedResultCount, actual.total_result_count)
-            verify(slub).httpGet(expectedQueryUrl, "UTF-8")
+            verify(slub).httpGetJson(eq(expectedQueryUrl), any<OkHttpBaseApi.JsonHandler<Any>>())
         }
     }
 
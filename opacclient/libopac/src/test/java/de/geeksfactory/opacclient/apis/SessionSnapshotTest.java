@@ -0,0 +1,73 @@
+package de.geeksfactory.opacclient.apis;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.geeksfactory.opacclient.networking.HttpClientFactory;
+import de.geeksfactory.opacclient.objects.Library;
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSnapshotTest {
+    private static final HttpUrl URL = HttpUrl.get("https://opac.example.com/webOPACClient/");
+    private Library library;
+
+    @Before
+    public void setUp() throws Exception {
+        library = new Library();
+        library.setIdent("Test");
+        library.setApi("sisis");
+        library.setData(new JSONObject().put("baseurl", "https://opac.example.com/webOPACClient"));
+    }
+
+    private SISIS newApi(Library library) {
+        SISIS api = new SISIS();
+        api.init(library, new HttpClientFactory("test"), false);
+        return api;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        SISIS api = newApi(library);
+        assertNull(api.saveSession());
+
+        api.initialised = true;
+        api.CSId = "abc";
+        api.http_client.cookieJar().saveFromResponse(URL, Collections.singletonList(
+                Cookie.parse(URL, "JSESSIONID=1234; Path=/webOPACClient")));
+        byte[] snapshot = api.saveSession();
+
+        SISIS restored = newApi(library);
+        assertTrue(restored.restoreSession(snapshot));
+        assertTrue(restored.isInitialised());
+        assertEquals("abc", restored.CSId);
+        List<Cookie> cookies = restored.http_client.cookieJar().loadForRequest(URL);
+        assertEquals(1, cookies.size());
+        assertEquals("1234", cookies.get(0).value());
+    }
+
+    @Test
+    public void testOtherLibrary() throws Exception {
+        SISIS api = newApi(library);
+        api.initialised = true;
+        byte[] snapshot = api.saveSession();
+
+        Library other = new Library();
+        other.setIdent("Other");
+        other.setApi("sisis");
+        other.setData(library.getData());
+        SISIS restored = newApi(other);
+        assertFalse(restored.restoreSession(snapshot));
+        assertFalse(restored.isInitialised());
+        assertFalse(restored.restoreSession("garbage".getBytes("UTF-8")));
+    }
+}
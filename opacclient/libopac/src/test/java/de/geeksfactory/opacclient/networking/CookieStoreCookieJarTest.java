@@ -0,0 +1,56 @@
+package de.geeksfactory.opacclient.networking;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CookieStoreCookieJarTest {
+    private static final HttpUrl URL = HttpUrl.get("https://opac.example.com/search/");
+
+    @Test
+    public void testRoundTrip() {
+        CookieStore store = new BasicCookieStore();
+        CookieStoreCookieJar jar = new CookieStoreCookieJar(store);
+        jar.saveFromResponse(URL, Collections.singletonList(
+                Cookie.parse(URL, "JSESSIONID=abc; Path=/search")));
+
+        assertEquals(1, store.getCookies().size());
+        assertEquals("abc", store.getCookies().get(0).getValue());
+
+        List<Cookie> cookies = jar.loadForRequest(URL.resolve("/search/detail"));
+        assertEquals(1, cookies.size());
+        assertEquals("JSESSIONID", cookies.get(0).name());
+        assertTrue(jar.loadForRequest(URL.resolve("/other")).isEmpty());
+    }
+
+    @Test
+    public void testSkipsForeignExpiredAndDomainless() {
+        CookieStore store = new BasicCookieStore();
+        BasicClientCookie foreign = new BasicClientCookie("a", "1");
+        foreign.setDomain("other.example.org");
+        store.addCookie(foreign);
+        BasicClientCookie expired = new BasicClientCookie("b", "2");
+        expired.setDomain("opac.example.com");
+        expired.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+        store.addCookie(expired);
+        store.addCookie(new BasicClientCookie("c", "3"));
+        BasicClientCookie valid = new BasicClientCookie("d", "4");
+        valid.setDomain(".example.com");
+        store.addCookie(valid);
+
+        List<Cookie> cookies = new CookieStoreCookieJar(store).loadForRequest(URL);
+        assertEquals(1, cookies.size());
+        assertEquals("d", cookies.get(0).name());
+    }
+}
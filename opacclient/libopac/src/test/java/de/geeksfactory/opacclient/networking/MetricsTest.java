@@ -0,0 +1,186 @@
+package de.geeksfactory.opacclient.networking;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.geeksfactory.opacclient.apis.TestApi;
+import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
+import de.geeksfactory.opacclient.reporting.OperationMetrics;
+import de.geeksfactory.opacclient.reporting.RequestMetrics;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetricsTest {
+    private static final byte[] BODY = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private String url;
+    private MetricsRecorder recorder;
+    private final List<RequestMetrics> requests = new ArrayList<>();
+    private final List<OperationMetrics> operations = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, BODY.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(BODY);
+            os.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+        Library library = new Library();
+        library.setIdent("Test");
+        library.setApi("sisis");
+        library.setData(new JSONObject());
+        recorder = new MetricsRecorder();
+        recorder.setLibrary(library);
+        recorder.setHandler(new MetricsHandler() {
+            @Override
+            public void onRequestFinished(RequestMetrics metrics) {
+                synchronized (requests) {
+                    requests.add(metrics);
+                }
+            }
+
+            @Override
+            public void onOperationFinished(OperationMetrics metrics) {
+                operations.add(metrics);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void okHttpRequestsAreCountedPerOperation() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .eventListenerFactory(new MetricsEventListener.Factory(recorder))
+                .build();
+
+        MetricsRecorder.Operation op = recorder.beginOperation("search");
+        try {
+            for (int i = 0; i < 2; i++) {
+                Response response = client.newCall(new Request.Builder().url(url).build())
+                                          .execute();
+                response.body().bytes();
+            }
+        } finally {
+            op.finish();
+        }
+        client.newCall(new Request.Builder().url(url).build()).execute().body().bytes();
+
+        assertEquals(3, requests.size());
+        RequestMetrics first = requests.get(0);
+        assertEquals("Test", first.getLibrary());
+        assertEquals("sisis", first.getApi());
+        assertEquals("search", first.getOperation());
+        assertEquals("GET", first.getMethod());
+        assertEquals(200, first.getStatusCode());
+        assertEquals(BODY.length, first.getBytesReceived());
+        assertTrue(first.getConnectMillis() >= 0);
+        assertTrue(first.getTtfbMillis() >= 0);
+        assertFalse(first.isFailed());
+        // second request reuses the pooled connection
+        assertEquals(-1, requests.get(1).getConnectMillis());
+        assertNull(requests.get(2).getOperation());
+
+        assertEquals(1, operations.size());
+        assertEquals("search", operations.get(0).getOperation());
+        assertEquals(2, operations.get(0).getRequestCount());
+        assertEquals(2 * BODY.length, operations.get(0).getBytesReceived());
+    }
+
+    @Test
+    public void trackedApiCallsAreReported() throws Exception {
+        Library library = new Library();
+        library.setIdent("Test");
+        library.setApi("test");
+        library.setData(new JSONObject().put("url", "http://127.0.0.1:1/"));
+        TestApi api = new TestApi();
+        api.init(library, new HttpClientFactory("test"), false);
+        api.setMetricsHandler(new MetricsHandler() {
+            @Override
+            public void onRequestFinished(RequestMetrics metrics) {
+            }
+
+            @Override
+            public void onOperationFinished(OperationMetrics metrics) {
+                operations.add(metrics);
+            }
+        });
+
+        assertEquals("ok", MetricsRecorder.track(api, "getResultById", () -> "ok"));
+        try {
+            MetricsRecorder.track(api, "reservation", () -> {
+                throw new IOException("offline");
+            });
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertEquals(2, operations.size());
+        assertEquals("getResultById", operations.get(0).getOperation());
+        assertFalse(operations.get(0).isFailed());
+        assertEquals("reservation", operations.get(1).getOperation());
+        assertTrue(operations.get(1).isFailed());
+    }
+
+    @Test
+    public void queueWaitIsReported() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .eventListenerFactory(new MetricsEventListener.Factory(recorder))
+                .addInterceptor(new RequestScheduler(new int[]{1, 1, 1}).interceptor())
+                .build();
+
+        client.newCall(new Request.Builder().url(url).build()).execute().body().bytes();
+        try (RequestScheduler.Scope ignored =
+                     RequestScheduler.enter(RequestScheduler.Priority.BACKGROUND)) {
+            client.newCall(new Request.Builder().url(url).build()).execute().body().bytes();
+        }
+
+        assertEquals(2, requests.size());
+        assertEquals("INTERACTIVE", requests.get(0).getPriority());
+        assertEquals("BACKGROUND", requests.get(1).getPriority());
+        assertTrue(requests.get(1).getQueueMillis() >= 0);
+    }
+
+    @Test
+    public void nothingIsRecordedWithoutHandler() throws Exception {
+        recorder.setHandler(null);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .eventListenerFactory(new MetricsEventListener.Factory(recorder))
+                .build();
+        MetricsRecorder.Operation op = recorder.beginOperation("search");
+        client.newCall(new Request.Builder().url(url).build()).execute().body().bytes();
+        op.finish();
+
+        assertTrue(requests.isEmpty());
+        assertTrue(operations.isEmpty());
+    }
+}
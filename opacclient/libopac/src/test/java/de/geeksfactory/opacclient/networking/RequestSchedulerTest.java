@@ -0,0 +1,169 @@
+package de.geeksfactory.opacclient.networking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.geeksfactory.opacclient.networking.RequestScheduler.Priority;
+import okhttp3.Call;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RequestSchedulerTest {
+    private static final String HOST = "opac.example.com";
+
+    private RequestScheduler scheduler;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        scheduler = new RequestScheduler(new int[]{2, 1, 1});
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Future<Long> acquireAsync(final String host, final Priority priority) {
+        return executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return scheduler.acquire(host, priority, null);
+            }
+        });
+    }
+
+    private static void assertBlocked(Future<?> future) throws Exception {
+        try {
+            future.get(300, TimeUnit.MILLISECONDS);
+            fail("request should have been queued");
+        } catch (TimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBudgetPerHost() throws Exception {
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        Future<Long> third = acquireAsync(HOST, Priority.INTERACTIVE);
+        assertBlocked(third);
+        // other hosts have their own budget
+        assertEquals(0, (long) acquireAsync("other.example.com", Priority.INTERACTIVE)
+                .get(1, TimeUnit.SECONDS));
+
+        scheduler.release(HOST, Priority.INTERACTIVE);
+        assertTrue(third.get(1, TimeUnit.SECONDS) > 0);
+        RequestScheduler.QueueStats stats = scheduler.getQueueStats(Priority.INTERACTIVE);
+        assertEquals(4, stats.getRequests());
+        assertEquals(1, stats.getQueued());
+        assertTrue(stats.getMaxWaitMillis() > 0);
+    }
+
+    @Test
+    public void testBackgroundYieldsToInteractive() throws Exception {
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        Future<Long> background = acquireAsync(HOST, Priority.BACKGROUND);
+        assertBlocked(background);
+        // prefetch requests only give way to queued interactive requests
+        scheduler.acquire(HOST, Priority.PREFETCH, null);
+
+        scheduler.release(HOST, Priority.INTERACTIVE);
+        background.get(1, TimeUnit.SECONDS);
+        // running background requests do not delay interactive ones
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+    }
+
+    @Test
+    public void testPrefetchYieldsToQueuedInteractive() throws Exception {
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        Future<Long> interactive = acquireAsync(HOST, Priority.INTERACTIVE);
+        assertBlocked(interactive);
+        Future<Long> prefetch = acquireAsync(HOST, Priority.PREFETCH);
+        assertBlocked(prefetch);
+
+        scheduler.release(HOST, Priority.INTERACTIVE);
+        interactive.get(1, TimeUnit.SECONDS);
+        prefetch.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCanceledWhileQueued() throws Exception {
+        scheduler.acquire(HOST, Priority.BACKGROUND, null);
+        Call call = mock(Call.class);
+        when(call.isCanceled()).thenReturn(true);
+        try {
+            scheduler.acquire(HOST, Priority.BACKGROUND, call);
+            fail("canceled call should not be started");
+        } catch (IOException e) {
+            assertEquals("Canceled", e.getMessage());
+        }
+        scheduler.release(HOST, Priority.BACKGROUND);
+        scheduler.acquire(HOST, Priority.BACKGROUND, call);
+    }
+
+    @Test
+    public void testRaisedWhileQueued() throws Exception {
+        scheduler.acquire(HOST, Priority.INTERACTIVE, null);
+        final RequestScheduler.RaisablePriority priority =
+                new RequestScheduler.RaisablePriority(Priority.BACKGROUND);
+        Future<RequestScheduler.QueueWait> raised = executor.submit(
+                new Callable<RequestScheduler.QueueWait>() {
+                    @Override
+                    public RequestScheduler.QueueWait call() throws Exception {
+                        return scheduler.acquire(HOST, priority, null);
+                    }
+                });
+        assertBlocked(raised);
+
+        priority.raise(Priority.INTERACTIVE);
+        assertEquals(Priority.INTERACTIVE, raised.get(1, TimeUnit.SECONDS).getPriority());
+        // lowering is not possible
+        priority.raise(Priority.BACKGROUND);
+        assertEquals(Priority.INTERACTIVE, priority.get());
+    }
+
+    @Test
+    public void testRaisedScope() throws Exception {
+        final RequestScheduler.RaisablePriority priority =
+                new RequestScheduler.RaisablePriority(Priority.BACKGROUND);
+        try (RequestScheduler.Scope ignored = RequestScheduler.enter(priority)) {
+            assertEquals(Priority.BACKGROUND, RequestScheduler.currentPriority());
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    priority.raise(Priority.PREFETCH);
+                }
+            }).get(1, TimeUnit.SECONDS);
+            assertEquals(Priority.PREFETCH, RequestScheduler.currentPriority());
+        }
+        assertEquals(Priority.INTERACTIVE, RequestScheduler.currentPriority());
+    }
+
+    @Test
+    public void testScope() {
+        assertEquals(Priority.INTERACTIVE, RequestScheduler.currentPriority());
+        try (RequestScheduler.Scope outer = RequestScheduler.enter(Priority.BACKGROUND)) {
+            try (RequestScheduler.Scope inner = RequestScheduler.enter(Priority.PREFETCH)) {
+                assertEquals(Priority.PREFETCH, RequestScheduler.currentPriority());
+            }
+            assertEquals(Priority.BACKGROUND, RequestScheduler.currentPriority());
+        }
+        assertEquals(Priority.INTERACTIVE, RequestScheduler.currentPriority());
+    }
+}
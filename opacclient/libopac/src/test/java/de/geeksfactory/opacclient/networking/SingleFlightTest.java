@@ -0,0 +1,275 @@
+package de.geeksfactory.opacclient.networking;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.geeksfactory.opacclient.apis.SISIS;
+import de.geeksfactory.opacclient.networking.RequestScheduler.Priority;
+import de.geeksfactory.opacclient.objects.Library;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private <V> Future<V> executeAsync(final SingleFlight<V> flight, final String key,
+            final SingleFlight.Loader<V> loader) {
+        return executor.submit(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return flight.execute(key, loader);
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentCallsShareResult() throws Exception {
+        final SingleFlight<String> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Loader<String> loader = new SingleFlight.Loader<String>() {
+            @Override
+            public String load() throws IOException {
+                loads.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return "result";
+            }
+        };
+
+        Future<String> first = executeAsync(flight, "a", loader);
+        started.await(1, TimeUnit.SECONDS);
+        Future<String> second = executeAsync(flight, "a", loader);
+        Future<String> other = executeAsync(flight, "b", new SingleFlight.Loader<String>() {
+            @Override
+            public String load() {
+                return "other";
+            }
+        });
+        assertEquals("other", other.get(1, TimeUnit.SECONDS));
+        // wait until the second call is waiting for the first one
+        while (flight.getCoalescedCount() == 0) Thread.sleep(5);
+        release.countDown();
+
+        assertSame(first.get(1, TimeUnit.SECONDS), second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getCoalescedCount());
+
+        // completed calls are not cached
+        assertEquals("result", flight.execute("a", loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testExceptionIsShared() throws Exception {
+        final SingleFlight<String> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<String> first = executeAsync(flight, "a", new SingleFlight.Loader<String>() {
+            @Override
+            public String load() throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                throw new NotReachableException("down");
+            }
+        });
+        started.await(1, TimeUnit.SECONDS);
+        Future<String> second = executeAsync(flight, "a", null);
+        while (flight.getCoalescedCount() == 0) Thread.sleep(5);
+        release.countDown();
+
+        for (Future<String> future : new Future[]{first, second}) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("exception expected");
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertEquals(NotReachableException.class, e.getCause().getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testWaiterRaisesPriority() throws Exception {
+        final SingleFlight<Priority> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Priority> first = executor.submit(new Callable<Priority>() {
+            @Override
+            public Priority call() throws Exception {
+                try (RequestScheduler.Scope scope = RequestScheduler.enter(Priority.BACKGROUND)) {
+                    return flight.execute("a", new SingleFlight.Loader<Priority>() {
+                        @Override
+                        public Priority load() throws IOException {
+                            started.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                            return RequestScheduler.currentPriority();
+                        }
+                    });
+                }
+            }
+        });
+        started.await(1, TimeUnit.SECONDS);
+        Future<Priority> second = executeAsync(flight, "a", null);
+        while (flight.getCoalescedCount() == 0) Thread.sleep(5);
+        release.countDown();
+
+        assertEquals(Priority.INTERACTIVE, first.get(1, TimeUnit.SECONDS));
+        assertEquals(Priority.INTERACTIVE, second.get(1, TimeUnit.SECONDS));
+        // without waiters, the flight keeps the priority of its caller
+        try (RequestScheduler.Scope scope = RequestScheduler.enter(Priority.BACKGROUND)) {
+            Priority priority = flight.execute("b", new SingleFlight.Loader<Priority>() {
+                @Override
+                public Priority load() {
+                    return RequestScheduler.currentPriority();
+                }
+            });
+            assertEquals(Priority.BACKGROUND, priority);
+        }
+    }
+
+    @Test
+    public void testHeadFallbackDoesNotReadBody() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+            } else {
+                byte[] body = new byte[1024 * 1024];
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                try {
+                    os.write(body);
+                } catch (IOException ignored) {
+                    // the client stops reading
+                }
+                os.close();
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+            Library library = new Library();
+            library.setIdent("Test");
+            library.setApi("sisis");
+            library.setData(new JSONObject().put("baseurl", url));
+            SISIS api = new SISIS();
+            api.init(library, new HttpClientFactory("test"), false);
+
+            Response response = api.httpHead(url, false);
+            assertEquals(200, response.code());
+            assertEquals("GET", response.request().method());
+            assertEquals(0, response.body().bytes().length);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testApiCoalescesGets() throws Exception {
+        assertEquals(1, countRequests(true));
+    }
+
+    @Test
+    public void testApiDoesNotCoalesceSessionGets() throws Exception {
+        // OPAC pages usually depend on the session, so plain GETs are never shared
+        assertEquals(2, countRequests(false));
+    }
+
+    /**
+     * Runs two identical concurrent GETs and returns how many of them reached the server
+     */
+    private int countRequests(final boolean coalesce) throws Exception {
+        final AtomicInteger hits = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final byte[] body = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            try {
+                release.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        });
+        server.start();
+        try {
+            final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/cover";
+            Library library = new Library();
+            library.setIdent("Test");
+            library.setApi("sisis");
+            library.setData(new JSONObject().put("baseurl", url));
+            final SISIS api = new SISIS();
+            api.init(library, new HttpClientFactory("test"), false);
+
+            Callable<String> get = new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return api.httpGet(url, "UTF-8", false, null, coalesce);
+                }
+            };
+            Future<String> first = executor.submit(get);
+            while (hits.get() == 0) Thread.sleep(5);
+            Future<String> second = executor.submit(get);
+            if (coalesce) {
+                while (api.getCoalescedRequestCount() == 0) Thread.sleep(5);
+            } else {
+                while (hits.get() < 2) Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals("<html>hello</html>", first.get(2, TimeUnit.SECONDS));
+            assertEquals("<html>hello</html>", second.get(2, TimeUnit.SECONDS));
+            return hits.get();
+        } finally {
+            server.stop(0);
+        }
+    }
+}
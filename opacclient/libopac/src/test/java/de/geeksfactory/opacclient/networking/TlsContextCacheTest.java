@@ -0,0 +1,55 @@
+package de.geeksfactory.opacclient.networking;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TlsContextCacheTest {
+    @After
+    public void tearDown() {
+        TlsContextCache.clear();
+    }
+
+    @Test
+    public void testSystemContextShared() throws Exception {
+        assertSame(TlsContextCache.getSSLContext(null, null),
+                TlsContextCache.getSSLContext(null, null));
+        assertSame(TlsContextCache.getTrustManager(null, null),
+                TlsContextCache.getTrustManager(null, null));
+    }
+
+    @Test
+    public void testSocketFactoryPerVariant() throws Exception {
+        SSLSocketFactory sf = TlsContextCache.getOkHttpSocketFactory(null, null, false);
+        assertSame(sf, TlsContextCache.getOkHttpSocketFactory(null, null, false));
+        assertNotSame(sf, TlsContextCache.getOkHttpSocketFactory(null, null, true));
+    }
+
+    @Test
+    public void testKeyStoreLoadedOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TlsContextCache.KeyStoreLoader loader = () -> {
+            loads.incrementAndGet();
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null, null);
+            return keyStore;
+        };
+        KeyStore first = TlsContextCache.getKeyStore("test.bks", loader);
+        TlsContextCache.getSSLContext("test.bks", loader);
+        TlsContextCache.getOkHttpSocketFactory("test.bks", loader, true);
+        assertSame(first, TlsContextCache.getKeyStore("test.bks", loader));
+        assertEquals(1, loads.get());
+
+        TlsContextCache.clear();
+        TlsContextCache.getKeyStore("test.bks", loader);
+        assertEquals(2, loads.get());
+    }
+}
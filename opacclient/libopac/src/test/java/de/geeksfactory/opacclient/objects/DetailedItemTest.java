@@ -0,0 +1,56 @@
+package de.geeksfactory.opacclient.objects;
+
+import org.joda.time.LocalDate;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetailedItemTest {
+    @Test
+    public void testJsonRoundTrip() throws Exception {
+        DetailedItem item = new DetailedItem();
+        item.setId("123");
+        item.setTitle("Faust");
+        item.setCover("http://example.com/cover.jpg");
+        item.setMediaType(SearchResult.MediaType.BOOK);
+        item.setReservable(true);
+        item.setReservation_info("res");
+        item.addDetail(new Detail("Autor", "Goethe"));
+        item.addDetail(new Detail("Inhalt", "<b>Tragödie</b>", true));
+        Copy copy = new Copy();
+        copy.setBranch("Zentrale");
+        copy.setReturnDate(new LocalDate(2026, 10, 19));
+        copy.setStatusCode(SearchResult.Status.RED);
+        copy.setIssue("2026/1");
+        item.addCopy(copy);
+        item.addVolume(new Volume("v1", "Band 1"));
+        Map<String, String> volumesearch = new HashMap<>();
+        volumesearch.put("id", "123");
+        item.setVolumesearch(volumesearch);
+
+        DetailedItem restored = DetailedItem.fromJSON(
+                new JSONObject(item.toJSON().toString()));
+        assertEquals("123", restored.getId());
+        assertEquals("Faust", restored.getTitle());
+        assertEquals("http://example.com/cover.jpg", restored.getCover());
+        assertEquals(SearchResult.MediaType.BOOK, restored.getMediaType());
+        assertTrue(restored.isReservable());
+        assertEquals("res", restored.getReservation_info());
+        assertEquals(item.getDetails(), restored.getDetails());
+        assertEquals(1, restored.getCopies().size());
+        Copy restoredCopy = restored.getCopies().get(0);
+        assertEquals("Zentrale", restoredCopy.getBranch());
+        assertEquals(new LocalDate(2026, 10, 19), restoredCopy.getReturnDate());
+        assertEquals(SearchResult.Status.RED, restoredCopy.getStatusCode());
+        assertEquals("2026/1", restoredCopy.getIssue());
+        assertNull(restoredCopy.getBarcode());
+        assertEquals("Band 1", restored.getVolumes().get(0).getTitle());
+        assertEquals(volumesearch, restored.getVolumesearch());
+    }
+}
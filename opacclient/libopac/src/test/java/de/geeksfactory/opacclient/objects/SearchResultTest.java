@@ -0,0 +1,42 @@
+package de.geeksfactory.opacclient.objects;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchResultTest {
+    @Test
+    public void testGeneratedInnerhtml() {
+        SearchResult result = new SearchResult();
+        assertFalse(result.hasStructuredFields());
+        assertEquals("", result.getInnerhtml());
+
+        result.setTitle("Faust & Mephisto");
+        result.setSubtitle("Der Tragödie <erster> Teil");
+        result.setAuthors(Arrays.asList("Goethe, Johann Wolfgang", "Schöne, Albrecht"));
+        result.setPublisher("Reclam");
+        result.setYear("1986");
+        assertTrue(result.hasStructuredFields());
+        assertEquals("<b>Faust &amp; Mephisto</b><br /><i>Der Tragödie &lt;erster&gt; Teil</i>"
+                + "<br />Goethe, Johann Wolfgang; Schöne, Albrecht<br />Reclam, 1986",
+                result.getInnerhtml());
+
+        // regenerated after changes
+        result.setAvailability("verfügbar");
+        assertEquals("<b>Faust &amp; Mephisto</b><br /><i>Der Tragödie &lt;erster&gt; Teil</i>"
+                + "<br />Goethe, Johann Wolfgang; Schöne, Albrecht<br />Reclam, 1986"
+                + "<br /><i>verfügbar</i>", result.getInnerhtml());
+    }
+
+    @Test
+    public void testExplicitInnerhtmlTakesPrecedence() {
+        SearchResult result = new SearchResult();
+        result.setTitle("Faust");
+        result.setInnerhtml("<b>Faust</b><br>Goethe");
+        assertEquals("<b>Faust</b><br>Goethe", result.getInnerhtml());
+    }
+}
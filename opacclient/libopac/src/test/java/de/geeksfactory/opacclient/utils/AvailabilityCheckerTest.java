@@ -0,0 +1,246 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.networking.NotReachableException;
+import de.geeksfactory.opacclient.objects.Copy;
+import de.geeksfactory.opacclient.objects.DetailedItem;
+import de.geeksfactory.opacclient.objects.SearchResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AvailabilityCheckerTest {
+    private OpacApi api;
+    private List<Long> pauses;
+    private AvailabilityChecker checker;
+
+    @Before
+    public void setUp() {
+        api = mock(OpacApi.class);
+        pauses = Collections.synchronizedList(new ArrayList<Long>());
+        checker = new AvailabilityChecker(new AvailabilityChecker.ApiFactory() {
+            @Override
+            public OpacApi getApi(String library) {
+                return "Removed".equals(library) ? null : api;
+            }
+
+            @Override
+            public String getHost(String library) {
+                return "opac.example.com";
+            }
+        }, 2, 1, 1000, 500) {
+            @Override
+            void pause(long millis) {
+                pauses.add(millis);
+            }
+        };
+    }
+
+    private static Copy copy(String branch, String status) {
+        Copy copy = new Copy();
+        copy.setBranch(branch);
+        copy.setStatus(status);
+        return copy;
+    }
+
+    private static DetailedItem item(Copy... copies) {
+        DetailedItem item = new DetailedItem();
+        for (Copy copy : copies) item.addCopy(copy);
+        return item;
+    }
+
+    @Test
+    public void testCopyState() {
+        assertEquals(Availability.AVAILABLE, Availability.getState(copy(null, "Verfügbar")));
+        assertEquals(Availability.UNAVAILABLE,
+                Availability.getState(copy(null, "nicht verfügbar")));
+        assertEquals(Availability.UNAVAILABLE, Availability.getState(copy(null, "Entliehen")));
+        assertEquals(Availability.UNKNOWN, Availability.getState(copy(null, "Präsenzbestand")));
+        assertEquals(Availability.UNKNOWN, Availability.getState(copy(null, null)));
+        // keywords only match whole words
+        assertEquals(Availability.UNAVAILABLE, Availability.getState(copy(null, "Lent")));
+        assertEquals(Availability.UNKNOWN,
+                Availability.getState(copy(null, "Excellent condition")));
+        assertEquals(Availability.UNAVAILABLE,
+                Availability.getState(copy(null, "Vorbestellt (2)")));
+
+        Copy lent = copy(null, "Verfügbar");
+        lent.setReturnDate(new LocalDate(2020, 1, 1));
+        assertEquals(Availability.UNAVAILABLE, Availability.getState(lent));
+        lent.setStatusCode(SearchResult.Status.GREEN);
+        assertEquals(Availability.AVAILABLE, Availability.getState(lent));
+    }
+
+    @Test
+    public void testItemStateAndDigest() {
+        List<Copy> copies = Arrays.asList(copy("A", "entliehen"), copy("B", "ausleihbar"));
+        assertEquals(Availability.AVAILABLE, Availability.getState(copies));
+        assertEquals(Availability.UNAVAILABLE,
+                Availability.getState(Collections.singletonList(copies.get(0))));
+        assertEquals(Availability.UNKNOWN, Availability.getState(Collections.<Copy>emptyList()));
+
+        int digest = Availability.getDigest(copies);
+        assertEquals(digest, Availability.getDigest(
+                Arrays.asList(copy("A", "Entliehen bis"), copy("B", "vorhanden"))));
+        assertNotEquals(digest, Availability.getDigest(
+                Arrays.asList(copy("A", "entliehen"), copy("B", "entliehen"))));
+        assertNotEquals(0, Availability.getDigest(Collections.<Copy>emptyList()));
+    }
+
+    @Test
+    public void testCheck() throws Exception {
+        when(api.getResultById("1", null)).thenReturn(item(copy("A", "verfügbar")));
+        when(api.getResultById("2", null)).thenReturn(item(copy("A", "entliehen")));
+        when(api.getResultById("3", null)).thenThrow(new OpacApi.OpacErrorException("gone"));
+        when(api.getResultById("4", null)).thenReturn(item(copy("A", "verfügbar")));
+        int availableDigest =
+                Availability.getDigest(Collections.singletonList(copy("A", "verfügbar")));
+
+        List<AvailabilityChecker.Result> results = checker.check(Arrays.asList(
+                new AvailabilityChecker.Item(1, "Lib", "1", "One", Availability.UNAVAILABLE, 5),
+                new AvailabilityChecker.Item(2, "Lib", "2", "Two", Availability.UNKNOWN, 0),
+                new AvailabilityChecker.Item(3, "Lib", "3", "Three", Availability.UNKNOWN, 0),
+                new AvailabilityChecker.Item(4, "Lib", "4", "Four", Availability.AVAILABLE,
+                        availableDigest),
+                new AvailabilityChecker.Item(5, "Lib", null, "No ID", Availability.UNKNOWN, 0),
+                new AvailabilityChecker.Item(6, "Removed", "6", "Six", Availability.UNKNOWN,
+                        0)));
+
+        assertEquals(3, results.size());
+        AvailabilityChecker.Result one = results.get(0);
+        assertEquals(1, one.getItem().getId());
+        assertTrue(one.isChanged());
+        assertTrue(one.becameAvailable());
+        AvailabilityChecker.Result two = results.get(1);
+        assertEquals(Availability.UNAVAILABLE, two.getState());
+        assertTrue(two.isChanged());
+        assertFalse(two.becameAvailable());
+        AvailabilityChecker.Result four = results.get(2);
+        assertEquals(4, four.getItem().getId());
+        assertFalse(four.isChanged());
+
+        // one pause between each of the four requests to "Lib"
+        assertEquals(3, pauses.size());
+        for (long pause : pauses) {
+            assertTrue(pause >= 1000 && pause < 1500);
+        }
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        when(api.getResultById("1", null)).thenReturn(item(copy("A", "verfügbar")));
+        int digest = Availability.getDigest(Collections.singletonList(copy("A", "verfügbar")));
+        List<AvailabilityChecker.Result> results = checker.check(Collections.singletonList(
+                new AvailabilityChecker.Item(1, "Lib", "1", "One", Availability.AVAILABLE,
+                        digest)));
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isChanged());
+        assertFalse(results.get(0).becameAvailable());
+    }
+
+    @Test
+    public void testUnknownKeepsState() throws Exception {
+        when(api.getResultById("1", null)).thenReturn(item(copy("A", "Präsenzbestand")));
+        when(api.getResultById("2", null)).thenReturn(item(copy("A", "verfügbar")));
+        List<AvailabilityChecker.Result> results = checker.check(Collections.singletonList(
+                new AvailabilityChecker.Item(1, "Lib", "1", "One", Availability.UNAVAILABLE, 5)));
+        assertEquals(Availability.UNAVAILABLE, results.get(0).getState());
+        assertFalse(results.get(0).becameAvailable());
+
+        // the next check still notices that the item became available
+        results = checker.check(Collections.singletonList(
+                new AvailabilityChecker.Item(1, "Lib", "2", "One", results.get(0).getState(),
+                        results.get(0).getDigest())));
+        assertTrue(results.get(0).becameAvailable());
+    }
+
+    @Test
+    public void testCancelInterruptsPause() throws Exception {
+        when(api.getResultById(anyString(), isNull())).thenReturn(item(copy("A", "verfügbar")));
+        final AvailabilityChecker slowChecker =
+                new AvailabilityChecker(new AvailabilityChecker.ApiFactory() {
+                    @Override
+                    public OpacApi getApi(String library) {
+                        return api;
+                    }
+
+                    @Override
+                    public String getHost(String library) {
+                        return null;
+                    }
+                }, 1, 1, 60000, 0);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                slowChecker.cancel();
+            }
+        }).start();
+
+        long start = System.currentTimeMillis();
+        List<AvailabilityChecker.Result> results = slowChecker.check(Arrays.asList(
+                new AvailabilityChecker.Item(1, "Lib", "1", "One", Availability.UNKNOWN, 0),
+                new AvailabilityChecker.Item(2, "Lib", "2", "Two", Availability.UNKNOWN, 0)));
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(1, results.size());
+        verify(api, never()).getResultById("2", null);
+    }
+
+    @Test
+    public void testNotReachableSkipsLibrary() throws Exception {
+        when(api.getResultById("1", null)).thenThrow(new NotReachableException("down"));
+        List<AvailabilityChecker.Result> results = checker.check(Arrays.asList(
+                new AvailabilityChecker.Item(1, "Lib", "1", "One", Availability.UNKNOWN, 0),
+                new AvailabilityChecker.Item(2, "Lib", "2", "Two", Availability.UNKNOWN, 0)));
+        assertEquals(0, results.size());
+        verify(api, never()).getResultById("2", null);
+    }
+
+    @Test
+    public void testHostLimit() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        when(api.getResultById(anyString(), isNull())).thenAnswer(
+                new Answer<DetailedItem>() {
+                    @Override
+                    public DetailedItem answer(InvocationOnMock invocation) throws Exception {
+                        int current = running.incrementAndGet();
+                        maxRunning.set(Math.max(maxRunning.get(), current));
+                        Thread.sleep(20);
+                        running.decrementAndGet();
+                        return item(copy("A", "verfügbar"));
+                    }
+                });
+        List<AvailabilityChecker.Item> items = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            items.add(new AvailabilityChecker.Item(i, "Lib" + (i % 3), String.valueOf(i),
+                    "Item", Availability.UNKNOWN, 0));
+        }
+        assertEquals(6, checker.check(items).size());
+        // all libraries share the same host, which allows a single request at a time
+        assertEquals(1, maxRunning.get());
+    }
+}
@@ -0,0 +1,49 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scaffold for the micro benchmarks in the test sources, e.g. {@link UrlUtilsBenchmark}. JMH is
+ * not part of the build, so these are plain classes whose main methods are run manually.
+ */
+public class Benchmark {
+    private final String unit;
+    private int sink;
+
+    public interface Task<T> {
+        /**
+         * @return any number derived from the result, so that the work cannot be optimized away
+         */
+        int run(T input) throws Exception;
+    }
+
+    /**
+     * @param unit what one run of a task processes, used in the output, e.g. "op" or "page"
+     */
+    public Benchmark(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Runs the task <code>iterations</code> times, cycling through the inputs, and prints the
+     * average time per run.
+     */
+    public <T> void report(String name, List<T> inputs, int iterations, Task<T> task)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += task.run(inputs.get(i % inputs.size()));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format(Locale.US, "%-30s %10.1f ns/%s", name,
+                (double) elapsed / iterations, unit));
+    }
+
+    /**
+     * Prints the accumulated results of all tasks, call this once after the last report.
+     */
+    public void finish() {
+        System.out.println(sink);
+    }
+}
@@ -0,0 +1,160 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CoverResolverTest {
+    private static final String AMAZON_ISBN = "http://images.amazon.com/images/P/3423214120.01.L";
+    private static final String OPENLIBRARY_ISBN =
+            "https://covers.openlibrary.org/b/isbn/3423214120-L.jpg?default=false";
+
+    @Test
+    public void testBestSize() {
+        CoverResolver resolver = CoverResolver.getInstance();
+        assertEquals("https://vlb.de/GetBlob.aspx?strIsbn=9783423214124&size=S",
+                resolver.getBestSizeUrl("http://vlb.de/GetBlob.aspx?strIsbn=9783423214124", 50,
+                        80, null));
+        assertEquals("https://vlb.de/GetBlob.aspx?strIsbn=9783423214124&size=L",
+                resolver.getBestSizeUrl("http://vlb.de/GetBlob.aspx?strIsbn=9783423214124", 300,
+                        400, null));
+        assertEquals(
+                "https://images-eu.ssl-images-amazon.com/images/I/51abc._SL112_SCLZZZZZZZ_.jpg",
+                resolver.getBestSizeUrl(
+                        "https://images-eu.ssl-images-amazon.com/images/I/51abc._SX75_.jpg", 112,
+                        100, null));
+        assertEquals("http://images.amazon.com/images/P/3423214120.01._SL56_SCLZZZZZZZ_.jpg",
+                resolver.getBestSizeUrl(
+                        "http://images.amazon.com/images/P/3423214120.01.MZZZZZZZ.jpg", 56, 56,
+                        null));
+        assertEquals(AMAZON_ISBN, resolver.getBestSizeUrl(AMAZON_ISBN, 56, 56, null));
+        assertEquals("http://example.com/cover.jpg",
+                resolver.getBestSizeUrl("http://example.com/cover.jpg", 56, 56, null));
+    }
+
+    @Test
+    public void testLibraryRules() throws Exception {
+        JSONObject data = new JSONObject("{\"cover_rules\": [{\"pattern\": " +
+                "\"^http://example\\\\.com/cover/(\\\\d+)\", \"sizes\": [" +
+                "{\"max\": 100, \"url\": \"http://example.com/cover/$1?size=small\"}, " +
+                "{\"url\": \"http://example.com/cover/$1?w={width}\"}]}]}");
+        CoverResolver resolver = CoverResolver.getInstance();
+        assertEquals("http://example.com/cover/42?size=small",
+                resolver.getBestSizeUrl("http://example.com/cover/42", 56, 56, data));
+        assertEquals("http://example.com/cover/42?w=300",
+                resolver.getBestSizeUrl("http://example.com/cover/42", 300, 400, data));
+    }
+
+    @Test
+    public void testProviderFallback() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        List<String> requested = new ArrayList<>();
+        CoverResolver.Loader<String> loader = url -> {
+            requested.add(url);
+            return url.contains("openlibrary") ? url : null;
+        };
+
+        assertEquals(OPENLIBRARY_ISBN.replace("-L.jpg", "-M.jpg"),
+                resolver.load(AMAZON_ISBN, 100, 150, null, loader));
+        assertEquals(2, requested.size());
+
+        // the provider that worked is remembered, also for the ISBN-13
+        requested.clear();
+        resolver.load("http://vlb.de/GetBlob.aspx?strIsbn=9783423214124", 100, 150, null,
+                loader);
+        assertEquals(Collections.singletonList(OPENLIBRARY_ISBN.replace("-L.jpg", "-M.jpg")),
+                requested);
+    }
+
+    @Test
+    public void testNegativeResultsAreRemembered() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        List<String> requested = new ArrayList<>();
+        CoverResolver.Loader<String> loader = url -> {
+            requested.add(url);
+            return null;
+        };
+
+        assertNull(resolver.load(AMAZON_ISBN, 56, 56, null, loader));
+        assertEquals(Arrays.asList(AMAZON_ISBN,
+                OPENLIBRARY_ISBN.replace("-L.jpg", "-S.jpg")), requested);
+        requested.clear();
+        assertNull(resolver.load(AMAZON_ISBN, 56, 56, null, loader));
+        assertEquals(0, requested.size());
+    }
+
+    @Test
+    public void testAmazonIsNotAskedTwice() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        List<String> requested = new ArrayList<>();
+        assertNull(resolver.load("http://images.amazon.com/images/P/3423214120.01.THUMBZZZ", 56,
+                56, null, url -> {
+                    requested.add(url);
+                    return null;
+                }));
+        assertEquals(Arrays.asList("http://images.amazon.com/images/P/3423214120.01.THUMBZZZ",
+                OPENLIBRARY_ISBN.replace("-L.jpg", "-S.jpg")), requested);
+    }
+
+    @Test
+    public void testIsbn979() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        List<String> requested = new ArrayList<>();
+        CoverResolver.Loader<String> loader = url -> {
+            requested.add(url);
+            return null;
+        };
+        assertNull(resolver.load("http://vlb.de/GetBlob.aspx?strIsbn=9783423214124", 56, 56,
+                null, loader));
+
+        // shares the digits with the 978 ISBN above, but is a different book without ISBN-10
+        requested.clear();
+        assertNull(resolver.load("http://vlb.de/GetBlob.aspx?strIsbn=9793423214124", 56, 56,
+                null, loader));
+        assertEquals(Arrays.asList("https://vlb.de/GetBlob.aspx?strIsbn=9793423214124&size=S",
+                "https://covers.openlibrary.org/b/isbn/9793423214124-S.jpg?default=false"),
+                requested);
+    }
+
+    @Test
+    public void testNetworkErrorsAreNotRemembered() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        try {
+            resolver.load(AMAZON_ISBN, 56, 56, null, url -> {
+                throw new IOException();
+            });
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("ok", resolver.load(AMAZON_ISBN, 56, 56, null, url -> "ok"));
+    }
+
+    @Test
+    public void testLibraryProviders() throws Exception {
+        CoverResolver resolver = new CoverResolver(defaultConfig());
+        JSONObject data = new JSONObject("{\"cover_providers\": []}");
+        List<String> requested = new ArrayList<>();
+        assertNull(resolver.load(AMAZON_ISBN, 56, 56, data, url -> {
+            requested.add(url);
+            return null;
+        }));
+        assertEquals(Collections.singletonList(AMAZON_ISBN), requested);
+    }
+
+    private static JSONObject defaultConfig() throws Exception {
+        return new JSONObject(Okio.buffer(Okio.source(
+                CoverResolverTest.class.getResourceAsStream("/covers/rules.json"))).readUtf8());
+    }
+}
@@ -0,0 +1,101 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoverStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeys() {
+        CoverStore store = new CoverStore();
+        byte[] data = new byte[]{1, 2, 3};
+        assertEquals("http://example.com/cover.jpg", store.put("http://example.com/cover.jpg", data));
+        String key = store.put(null, data);
+        assertTrue(key.startsWith("sha1:"));
+        assertEquals(key, store.put(null, new byte[]{1, 2, 3}));
+        assertArrayEquals(data, store.get(key));
+    }
+
+    @Test
+    public void testSizedKeys() {
+        CoverStore store = new CoverStore();
+        String url = "http://example.com/cover.jpg";
+        store.put(CoverStore.getSizedKey(url, 56, 56), new byte[]{1});
+        store.put(CoverStore.getSizedKey(url, 400, 300), new byte[]{2, 3});
+        assertArrayEquals(new byte[]{1}, store.get(CoverStore.getSizedKey(url, 56, 56)));
+        assertArrayEquals(new byte[]{2, 3}, store.get(CoverStore.getSizedKey(url, 400, 300)));
+        assertFalse(store.contains(CoverStore.getSizedKey(url, 100, 100)));
+        assertNull(CoverStore.getSizedKey(null, 56, 56));
+    }
+
+    @Test
+    public void testEvictionWithoutDisk() {
+        CoverStore store = new CoverStore();
+        store.setMemoryBudget(10);
+        String a = store.put("a", new byte[6]);
+        String b = store.put("b", new byte[6]);
+        assertNull(store.get(a));
+        assertFalse(store.contains(a));
+        assertEquals(6, store.get(b).length);
+    }
+
+    private CoverStore createStore(File dir) {
+        CoverStore store = new CoverStore();
+        store.setDiskExecutor(Runnable::run);
+        store.setMemoryBudget(10);
+        store.setDiskDirectory(dir, 100);
+        return store;
+    }
+
+    @Test
+    public void testSpillToDisk() throws Exception {
+        CoverStore store = createStore(folder.newFolder());
+        byte[] first = new byte[]{1, 2, 3, 4, 5, 6};
+        store.put("a", first);
+        store.put("b", new byte[6]);
+        assertTrue(store.contains("a"));
+        // get() does not read files
+        assertNull(store.get("a"));
+        assertArrayEquals(first, store.load("a"));
+        // reading "a" back evicted "b" to disk
+        assertNull(store.get("b"));
+        assertEquals(6, store.load("b").length);
+    }
+
+    @Test
+    public void testDiskSurvivesRestart() throws Exception {
+        File dir = folder.newFolder();
+        byte[] first = new byte[]{1, 2, 3, 4, 5, 6};
+        CoverStore store = createStore(dir);
+        store.put("a", first);
+        store.put("b", new byte[6]);
+
+        CoverStore restarted = createStore(dir);
+        assertTrue(restarted.contains("a"));
+        assertArrayEquals(first, restarted.load("a"));
+        assertNull(restarted.load("b"));
+    }
+
+    @Test
+    public void testPutReplacesDiskCopy() throws Exception {
+        File dir = folder.newFolder();
+        CoverStore store = createStore(dir);
+        store.put("a", new byte[]{1, 2, 3, 4, 5, 6});
+        store.put("b", new byte[6]);
+        store.put("a", new byte[]{6, 5, 4});
+        assertArrayEquals(new byte[]{6, 5, 4}, store.get("a"));
+        // the old image is not found after a restart
+        assertFalse(createStore(dir).contains("a"));
+    }
+}
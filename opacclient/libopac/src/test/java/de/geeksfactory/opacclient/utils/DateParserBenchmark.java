@@ -0,0 +1,74 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import de.geeksfactory.opacclient.apis.BaseHtmlTest;
+
+/**
+ * Micro benchmark comparing {@link DateParser} to trying several {@link DateTimeFormatter}s in
+ * turn, as the account parsers did before. The input are the texts of all table cells in the
+ * account fixtures from the test resources, so most of them are not dates. This is not run as
+ * part of the test suite, run its main method manually.
+ */
+public class DateParserBenchmark extends BaseHtmlTest {
+    private static final String[] DIRECTORIES = {"/adis/medialist", "/adis/reslist",
+            "/biber1992/medialist", "/biber1992/reslist", "/pica_lbs/medialist",
+            "/pica_old/medialist", "/pica_old/reslist", "/sisis/medialist", "/touchpoint/medialist",
+            "/touchpoint/reslist", "/vufind/medialist", "/vufind/reslist", "/winbiap/medialist",
+            "/winbiap/reslist", "/zones/medialist", "/zones/reslist"};
+    private static final DateTimeFormatter[] LEGACY_FORMATTERS = {
+            DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN),
+            DateTimeFormat.forPattern("dd/MM/yyyy").withLocale(Locale.GERMAN),
+            DateTimeFormat.forPattern("dd-MM-yyyy").withLocale(Locale.GERMAN),
+    };
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        new DateParserBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        List<String> texts = new ArrayList<>();
+        int dates = 0;
+        for (String directory : DIRECTORIES) {
+            for (String file : getResourceFiles(directory)) {
+                String html = readResource(directory + "/" + file);
+                if (html == null) continue;
+                for (Element td : Jsoup.parse(html).select("td")) {
+                    texts.add(td.text().trim());
+                    if (new DateParser().parse(td.text()) != null) dates++;
+                }
+            }
+        }
+        System.out.println(texts.size() + " cells, " + dates + " dates");
+
+        Benchmark benchmark = new Benchmark("cell");
+        int iterations = ITERATIONS * texts.size();
+        for (int round = 0; round < 3; round++) {
+            benchmark.report("legacy formatters", texts, iterations, text -> {
+                for (DateTimeFormatter fmt : LEGACY_FORMATTERS) {
+                    try {
+                        return fmt.parseLocalDate(text).getDayOfMonth();
+                    } catch (IllegalArgumentException e) {
+                        // try the next one
+                    }
+                }
+                return 0;
+            });
+            final DateParser parser = new DateParser();
+            benchmark.report("DateParser", texts, iterations, text -> {
+                LocalDate date = parser.parse(text);
+                return date != null ? date.getDayOfMonth() : 0;
+            });
+        }
+        benchmark.finish();
+    }
+}
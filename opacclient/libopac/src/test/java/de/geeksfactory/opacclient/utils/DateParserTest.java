@@ -0,0 +1,88 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DateParserTest {
+    private final DateParser parser = new DateParser();
+
+    @Test
+    public void testNumeric() {
+        LocalDate expected = new LocalDate(2020, 12, 24);
+        assertEquals(expected, parser.parse("24.12.2020"));
+        assertEquals(expected, parser.parse(" 24.12.2020 "));
+        assertEquals(expected, parser.parse("24/12/2020"));
+        assertEquals(expected, parser.parse("24-12-2020"));
+        assertEquals(expected, parser.parse("24.12.20"));
+        assertEquals(new LocalDate(1999, 2, 1), parser.parse("1.2.99"));
+        assertEquals(new LocalDate(2020, 2, 29), parser.parse("29.02.2020"));
+    }
+
+    @Test
+    public void testIso() {
+        LocalDate expected = new LocalDate(2018, 11, 2);
+        assertEquals(expected, parser.parse("2018-11-02"));
+        assertEquals(expected, parser.parse("2018-11-02T23:59:00"));
+        assertEquals(expected, parser.parse("2018-11-02 23:59:00"));
+        assertEquals(expected, DateParser.parseIsoDate("2018-11-02"));
+        assertEquals(new LocalDate("2018-W01-1"), DateParser.parseIsoDate("2018-W01-1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIso() {
+        DateParser.parseIsoDate("02.11.2018");
+    }
+
+    @Test
+    public void testFormatted() {
+        assertEquals(new LocalDate(2020, 12, 24), parser.parse("24.12.2020 10:00"));
+        assertEquals(new LocalDate(2020, 3, 1), parser.parse("1. März 2020"));
+        assertEquals(new LocalDate(2020, 3, 1), parser.parse("1 Mar 2020"));
+        assertEquals(new LocalDate(2020, 3, 1), parser.parse("March 1, 2020"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(parser.parse(null));
+        assertNull(parser.parse(""));
+        assertNull(parser.parse("  "));
+        assertNull(parser.parse("entliehen"));
+        assertNull(parser.parse("31.02.2020"));
+        assertNull(parser.parse("29.02.2021"));
+        assertNull(parser.parse("24.13.2020"));
+        assertNull(parser.parse("0000-00-00T00:00:00"));
+        assertNull(parser.parse("24.12-2020"));
+        assertNull(parser.parse("24.12.2020 bis"));
+        assertNull(parser.parse("2020.12.24"));
+        assertNull(parser.parse("24.12.202"));
+        assertNull(parser.parse("31 February 2020"));
+    }
+
+    @Test
+    public void testMatchesFormatter() {
+        DateTimeFormatter fmt = DateTimeFormat.forPattern("dd.MM.yyyy").withLocale(Locale.GERMAN);
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            int day = random.nextInt(33);
+            int month = random.nextInt(14);
+            int year = 1990 + random.nextInt(40);
+            String text = String.format(Locale.US, random.nextBoolean() ? "%02d.%02d.%d" :
+                    "%d.%d.%d", day, month, year);
+            LocalDate expected;
+            try {
+                expected = fmt.parseLocalDate(text);
+            } catch (IllegalArgumentException e) {
+                expected = null;
+            }
+            assertEquals(text, expected, parser.parse(text));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.select.Elements;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FingerprintTest {
+    private static String html(String html) {
+        Elements elements = Jsoup.parse(html).select("tr");
+        return new Fingerprint().addHtml(elements).build();
+    }
+
+    @Test
+    public void testStrings() {
+        assertEquals(new Fingerprint().add("a").add("bc").build(),
+                new Fingerprint().add("a").add("bc").build());
+        assertNotEquals(new Fingerprint().add("a").add("bc").build(),
+                new Fingerprint().add("ab").add("c").build());
+        assertNotEquals(new Fingerprint().add(null).build(), new Fingerprint().add("").build());
+    }
+
+    @Test
+    public void testSessionIgnored() {
+        String row = "<table><tr><td><a href=\"/konto.do;jsessionid=%s?methodToCall=pos&CSId=%s" +
+                "&actPos=1\">Titel</a><input type=\"hidden\" name=\"CSId\" value=\"%s\"></td>" +
+                "</tr></table>";
+        assertEquals(html(String.format(row, "A1", "B1", "C1")),
+                html(String.format(row, "A2", "B2", "C2")));
+        assertNotEquals(html(String.format(row, "A1", "B1", "C1")),
+                html(String.format(row, "A1", "B1", "C1").replace("actPos=1", "actPos=2")));
+    }
+
+    @Test
+    public void testText() {
+        Elements a = Jsoup.parse("<p><b>Gebühren</b> 1,00 €</p>").select("p");
+        Elements b = Jsoup.parse("<p>Gebühren <i>1,00 €</i></p>").select("p");
+        assertEquals(new Fingerprint().addText(a).build(), new Fingerprint().addText(b).build());
+        assertNotEquals(new Fingerprint().addHtml(a).build(), new Fingerprint().addHtml(b).build());
+    }
+}
@@ -0,0 +1,27 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class IOUtilsTest {
+    @Test
+    public void testSha1() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", IOUtils.sha1("abc"));
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", IOUtils.sha1(new byte[0]));
+    }
+
+    @Test
+    public void testCloseQuietly() {
+        IOUtils.closeQuietly(null);
+        IOUtils.closeQuietly(new Closeable() {
+            @Override
+            public void close() throws IOException {
+                throw new IOException();
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonReaderTest {
+    @Test
+    public void testDocument() throws Exception {
+        JsonReader reader = new JsonReader(
+                "{\"a\": [1, -2.5e1, \"x\\\"y\\u00e4\\n\", true, null], \"b\" : {}, \"c\":[]}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(JsonReader.Token.NUMBER, reader.peek());
+        assertEquals(1, reader.nextInt());
+        assertEquals(-25.0, reader.nextDouble(), 0);
+        assertEquals("x\"yä\n", reader.nextString());
+        assertTrue(reader.nextBoolean());
+        assertEquals(JsonReader.Token.NULL, reader.peek());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        reader.beginObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals("c", reader.nextName());
+        reader.beginArray();
+        reader.endArray();
+        reader.endObject();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testLenientScalars() throws Exception {
+        JsonReader reader = new JsonReader("[\"12\", 3, false, \"1.0\", null]");
+        reader.beginArray();
+        assertEquals(12, reader.nextInt());
+        assertEquals("3", reader.nextString());
+        assertEquals("false", reader.nextString());
+        assertEquals(1L, reader.nextLong());
+        assertNull(reader.nextStringOrNull());
+        reader.endArray();
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        JsonReader reader = new JsonReader(
+                "{\"skip\": {\"x\": [1, {\"y\": \"]}\"}], \"z\": null}, \"keep\": \"ok\"}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals("ok", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test
+    public void testCopyValue() throws Exception {
+        String nested = "{ \"a\": [1, {\"b\": \"]\\\"}\"}],\n\"c\": {} }";
+        JsonReader reader = new JsonReader("[" + nested + ", \"x\\ny\", 2.5, null]");
+        reader.beginArray();
+        Buffer buffer = new Buffer();
+        reader.copyValue(buffer);
+        assertEquals(nested, buffer.readUtf8());
+        reader.copyValue(buffer);
+        assertEquals("\"x\\ny\"", buffer.readUtf8());
+        reader.copyValue(buffer);
+        assertEquals("2.5", buffer.readUtf8());
+        reader.copyValue(buffer);
+        assertEquals("null", buffer.readUtf8());
+        reader.endArray();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        String[] documents = {"<!doctype html>", "{\"a\" 1}", "[1,]", "{\"a\": \"b", "[1] 2"};
+        for (String document : documents) {
+            JsonReader reader = new JsonReader(document);
+            try {
+                reader.skipValue();
+                reader.peek();
+                fail("JSONException expected for " + document);
+            } catch (JSONException ignored) {
+            }
+        }
+    }
+}
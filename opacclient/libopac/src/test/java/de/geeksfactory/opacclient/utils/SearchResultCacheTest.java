@@ -0,0 +1,164 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.geeksfactory.opacclient.objects.Filter;
+import de.geeksfactory.opacclient.objects.SearchRequestResult;
+import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.searchfields.SearchQuery;
+import de.geeksfactory.opacclient.searchfields.TextSearchField;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SearchResultCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SearchField title;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        title = new TextSearchField("title", "Title", false, false, "", false, false);
+        dir = folder.newFolder();
+    }
+
+    private SearchRequestResult page(String... titles) {
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            SearchResult result = new SearchResult(SearchResult.MediaType.BOOK, i + 1,
+                    "<b>" + titles[i] + "</b>");
+            result.setId("id" + i);
+            result.setStatus(SearchResult.Status.GREEN);
+            result.setCover("https://example.com/" + i + ".jpg");
+            results.add(result);
+        }
+        return new SearchRequestResult(results, 42, 5, 1);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SearchRequestResult page = page("Faust", "Die Räuber");
+        SearchResult child = page.getResults().get(1);
+        child.setChildQuery(Collections.singletonList(new SearchQuery(title, "Räuber")));
+        child.setTitle("Die Räuber");
+        child.addAuthor("Schiller, Friedrich");
+        child.setYear("1781");
+        Filter filter = new Filter();
+        filter.setLabel("Year");
+        filter.setIdentifier("year");
+        Filter.Option option = filter.new Option("2020", "y2020");
+        option.setResults_expected(7);
+        option.setApplied(true);
+        filter.setOptions(Collections.singletonList(option));
+        page.setFilters(Collections.singletonList(filter));
+
+        SearchRequestResult decoded =
+                SearchResultCache.decode(SearchResultCache.encode(page));
+        assertEquals(42, decoded.getTotal_result_count());
+        assertEquals(5, decoded.getPage_count());
+        assertEquals(1, decoded.getPage_index());
+        assertEquals(2, decoded.getResults().size());
+        SearchResult first = decoded.getResults().get(0);
+        assertEquals(SearchResult.MediaType.BOOK, first.getType());
+        assertEquals(1, first.getNr());
+        assertEquals("id0", first.getId());
+        assertEquals("<b>Faust</b>", first.getInnerhtml());
+        assertEquals(SearchResult.Status.GREEN, first.getStatus());
+        assertEquals("https://example.com/0.jpg", first.getCover());
+        assertNull(first.getChildQuery());
+        assertNull(first.getTitle());
+        assertEquals("Die Räuber", decoded.getResults().get(1).getTitle());
+        assertEquals(Collections.singletonList("Schiller, Friedrich"),
+                decoded.getResults().get(1).getAuthors());
+        assertEquals("1781", decoded.getResults().get(1).getYear());
+        SearchQuery query = decoded.getResults().get(1).getChildQuery().get(0);
+        assertEquals("title", query.getKey());
+        assertEquals("Räuber", query.getValue());
+        Filter.Option decodedOption = decoded.getFilters().get(0).getOptions().get(0);
+        assertEquals("y2020", decodedOption.getIdentifier());
+        assertEquals(7, decodedOption.getResults_expected());
+        assertEquals(true, decodedOption.isApplied());
+        assertEquals(SearchResultCache.fingerprint(page), SearchResultCache.fingerprint(decoded));
+    }
+
+    @Test
+    public void testKeyNormalization() {
+        SearchField author = new TextSearchField("author", "Author", false, false, "", false,
+                false);
+        String key = SearchResultCache.getKey("Lib", Arrays.asList(
+                new SearchQuery(title, " harry   potter "), new SearchQuery(author, "")));
+        assertEquals(key, SearchResultCache.getKey("Lib",
+                Collections.singletonList(new SearchQuery(title, "harry potter"))));
+        assertNotEquals(key, SearchResultCache.getKey("Other",
+                Collections.singletonList(new SearchQuery(title, "harry potter"))));
+    }
+
+    @Test
+    public void testPersistsAcrossInstances() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.setDirectory(dir, 100000);
+        cache.put("key", 1, page("Faust"));
+        cache.put("key", 2, page("Faust II"));
+
+        SearchResultCache restarted = new SearchResultCache();
+        restarted.setDirectory(dir, 100000);
+        assertEquals("<b>Faust II</b>",
+                restarted.get("key", 2).getResults().get(0).getInnerhtml());
+        assertNull(restarted.get("key", 3));
+        assertNull(restarted.get("other", 1));
+
+        restarted.remove("key");
+        assertNull(restarted.get("key", 1));
+        assertNull(restarted.get("key", 2));
+    }
+
+    @Test
+    public void testTimeToLive() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.setDirectory(dir, 100000);
+        cache.put("key", 1, page("Faust"));
+        cache.setTimeToLive(-1);
+        assertNull(cache.get("key", 1));
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testBudget() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.setDirectory(dir, 100000);
+        cache.put("a", 1, page("Faust"));
+        long size = dir.listFiles()[0].length();
+
+        cache.setDirectory(dir, size * 2 + size / 2);
+        cache.put("b", 1, page("Faust"));
+        cache.get("a", 1);
+        cache.put("c", 1, page("Faust"));
+        // "b" was the least recently used entry
+        assertNull(cache.get("b", 1));
+        assertEquals(1, cache.get("a", 1).getResults().size());
+        assertEquals(1, cache.get("c", 1).getResults().size());
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals(SearchResultCache.fingerprint(page("Faust")),
+                SearchResultCache.fingerprint(page("Faust")));
+        SearchRequestResult changed = page("Faust");
+        changed.getResults().get(0).setStatus(SearchResult.Status.RED);
+        assertNotEquals(SearchResultCache.fingerprint(page("Faust")),
+                SearchResultCache.fingerprint(changed));
+    }
+}
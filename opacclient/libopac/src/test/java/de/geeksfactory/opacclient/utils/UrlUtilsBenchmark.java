@@ -0,0 +1,38 @@
+package de.geeksfactory.opacclient.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Micro benchmark comparing {@link UrlUtils} to the implementations it replaced. This is not run
+ * as part of the test suite, run its main method manually.
+ */
+public class UrlUtilsBenchmark {
+    private static final List<String> URLS = Arrays.asList(
+            "https://opac.example.com/webOPACClient/start.do",
+            "https://opac.example.com/webOPACClient/hitList.do?methodToCall=pos&identifier=2_FAST_123&curPos=1",
+            "https://opac.example.com/aDISWeb/app;jsessionid=ABC?service=direct/0/Home/$DirectLink&sp=SOPAC&requestCount=3",
+            "https://opac.example.com/search?q=harry+potter&title=Der%20Stein%20der%20Weisen",
+            "https://opac.example.com/cover.jsp?isbns=+%5B978-3-8317-3282-1%5D&size=medium"
+    );
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        Benchmark benchmark = new Benchmark("op");
+        for (int round = 0; round < 3; round++) {
+            benchmark.report("legacy cleanUrl", URLS, ITERATIONS,
+                    url -> UrlUtilsTest.legacyCleanUrl(url).length());
+            benchmark.report("UrlUtils.cleanUrl", URLS, ITERATIONS,
+                    url -> UrlUtils.cleanUrl(url).length());
+            benchmark.report("legacy getQueryParamsFirst", URLS, ITERATIONS,
+                    url -> UrlUtilsTest.legacyGetQueryParamsFirst(url).size());
+            benchmark.report("UrlUtils.getQueryParamsFirst", URLS, ITERATIONS,
+                    url -> UrlUtils.getQueryParamsFirst(url).size());
+            benchmark.report("UrlUtils.getQueryParam", URLS, ITERATIONS, url -> {
+                String value = UrlUtils.getQueryParam(url, "identifier");
+                return value != null ? value.length() : 0;
+            });
+        }
+        benchmark.finish();
+    }
+}
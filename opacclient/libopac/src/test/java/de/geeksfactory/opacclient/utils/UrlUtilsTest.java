@@ -0,0 +1,175 @@
+package de.geeksfactory.opacclient.utils;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares {@link UrlUtils} against the split-based implementations it replaced.
+ */
+public class UrlUtilsTest {
+    private static final String[] FRAGMENTS = {
+            "?", "?", "&", "&", "=", "=", "%", "%2", "%20", "%3D", "%C3%A4", "%zz", "%-1", "%+1",
+            "+", " ", "a", "b", "key", "value", "0", "9", "F", "_", "-", ".", "*", "~", "!", "/",
+            "http://example.com/path", "ä", "€", "😀", "\ud800", "#", ";", ","
+    };
+
+    @Test
+    public void testExamples() {
+        assertSame("http://example.com/a?b=c&d=e",
+                UrlUtils.cleanUrl("http://example.com/a?b=c&d=e"));
+        assertEquals("http://example.com/a?b=c+d&e=%C3%A4",
+                UrlUtils.cleanUrl("http://example.com/a?b=c%20d&e=ä"));
+        assertEquals("http://example.com/a?b=", UrlUtils.cleanUrl("http://example.com/a?b"));
+        assertEquals("1", UrlUtils.getQueryParam("x?a=1&a=2", "a"));
+        assertNull(UrlUtils.getQueryParam("x?a=1", "b"));
+    }
+
+    @Test
+    public void testDifferential() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            final String url = sb.toString();
+            compare(url, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return legacyCleanUrl(url);
+                }
+            }, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return UrlUtils.cleanUrl(url);
+                }
+            });
+            compare(url, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return legacyGetQueryParams(url);
+                }
+            }, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return UrlUtils.getQueryParams(url);
+                }
+            });
+            compare(url, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return legacyGetQueryParamsFirst(url);
+                }
+            }, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return UrlUtils.getQueryParamsFirst(url);
+                }
+            });
+        }
+    }
+
+    private static void compare(String url, Callable<Object> expected, Callable<Object> actual) {
+        assertEquals("Input: " + url, outcome(expected), outcome(actual));
+    }
+
+    private static Object outcome(Callable<Object> callable) {
+        try {
+            return callable.call();
+        } catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    static String legacyCleanUrl(String myURL) throws UnsupportedEncodingException {
+        String[] parts = myURL.split("\\?");
+        String url = parts[0];
+        if (parts.length > 1) {
+            url += "?";
+            List<NameValuePair> params = new ArrayList<>();
+            String[] pairs = parts[1].split("&");
+            for (String pair : pairs) {
+                String[] kv = pair.split("=");
+                if (kv.length > 1) {
+                    StringBuilder join = new StringBuilder();
+                    for (int i = 1; i < kv.length; i++) {
+                        if (i > 1) join.append("=");
+                        join.append(kv[i]);
+                    }
+                    params.add(new BasicNameValuePair(URLDecoder.decode(
+                            kv[0], "UTF-8"), URLDecoder.decode(join.toString(),
+                            "UTF-8")));
+                } else {
+                    params.add(new BasicNameValuePair(URLDecoder.decode(
+                            kv[0], "UTF-8"), ""));
+                }
+            }
+            url += URLEncodedUtils.format(params, "UTF-8");
+        }
+        return url;
+    }
+
+    static Map<String, List<String>> legacyGetQueryParams(String url)
+            throws UnsupportedEncodingException {
+        Map<String, List<String>> params = new HashMap<>();
+        String[] urlParts = url.split("\\?");
+        if (urlParts.length > 1) {
+            String query = urlParts[1];
+            for (String param : query.split("&")) {
+                String[] pair = param.split("=");
+                String key = URLDecoder.decode(pair[0], "UTF-8");
+                String value = "";
+                if (pair.length > 1) {
+                    value = URLDecoder.decode(pair[1], "UTF-8");
+                }
+
+                List<String> values = params.get(key);
+                if (values == null) {
+                    values = new ArrayList<>();
+                    params.put(key, values);
+                }
+                values.add(value);
+            }
+        }
+        return params;
+    }
+
+    static Map<String, String> legacyGetQueryParamsFirst(String url)
+            throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String[] urlParts = url.split("\\?");
+        if (urlParts.length > 1) {
+            String query = urlParts[1];
+            for (String param : query.split("&")) {
+                String[] pair = param.split("=");
+                String key = URLDecoder.decode(pair[0], "UTF-8");
+                String value = "";
+                if (pair.length > 1) {
+                    value = URLDecoder.decode(pair[1], "UTF-8");
+                }
+
+                String values = params.get(key);
+                if (values == null) {
+                    params.put(key, value);
+                }
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,120 @@
+package de.geeksfactory.opacclient.meanings;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.utils.JsonKeyIterator;
+
+/**
+ * On-disk cache of the raw search fields of each library, one JSON file per library. An entry
+ * is only valid for the library configuration it was fetched with, which is identified by the
+ * hash of the configuration file.
+ */
+public class FieldCache {
+    private final File dir;
+
+    public static class Entry {
+        public final String configHash;
+        public final long fetched;
+        public final Map<String, List<SearchField>> fields;
+
+        Entry(String configHash, long fetched, Map<String, List<SearchField>> fields) {
+            this.configHash = configHash;
+            this.fetched = fetched;
+            this.fields = fields;
+        }
+    }
+
+    public FieldCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the SHA-256 hash of a library configuration file
+     */
+    public static String hash(byte[] config) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(config);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the cached fields of a library, or <code>null</code> if there are none or they were
+     * fetched for a different configuration
+     */
+    public Entry get(String ident, String configHash) {
+        File file = file(ident);
+        if (!file.exists()) return null;
+        try {
+            JSONObject json = new JSONObject(
+                    new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (!configHash.equals(json.getString("config_hash"))) return null;
+
+            Map<String, List<SearchField>> fields = new HashMap<>();
+            JSONObject langs = json.getJSONObject("fields");
+            JsonKeyIterator iter = new JsonKeyIterator(langs);
+            while (iter.hasNext()) {
+                String lang = iter.next();
+                JSONArray array = langs.getJSONArray(lang);
+                List<SearchField> list = new ArrayList<>();
+                for (int i = 0; i < array.length(); i++) {
+                    list.add(SearchField.fromJSON(array.getJSONObject(i)));
+                }
+                fields.put(lang, list);
+            }
+            return new Entry(configHash, json.getLong("fetched"), fields);
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            // unreadable entries are fetched again
+            return null;
+        }
+    }
+
+    public void put(String ident, String configHash, Map<String, List<SearchField>> fields)
+            throws IOException, JSONException {
+        JSONObject langs = new JSONObject();
+        for (Map.Entry<String, List<SearchField>> lang : fields.entrySet()) {
+            JSONArray array = new JSONArray();
+            for (SearchField field : lang.getValue()) {
+                array.put(field.toJSON());
+            }
+            langs.put(lang.getKey(), array);
+        }
+        JSONObject json = new JSONObject();
+        json.put("config_hash", configHash);
+        json.put("fetched", System.currentTimeMillis());
+        json.put("fields", langs);
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        // write to a temporary file first, so that aborted crawls don't leave broken entries
+        File tmp = new File(dir, ident + ".json.tmp");
+        Files.write(tmp.toPath(), json.toString(2).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file(ident).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private File file(String ident) {
+        return new File(dir, ident + ".json");
+    }
+}
@@ -3,11 +3,15 @@ package de.geeksfactory.opacclient.meanings;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import de.geeksfactory.opacclient.OpacApiFactory;
 import de.geeksfactory.opacclient.apis.ApacheBaseApi;
@@ -16,47 +20,102 @@ import de.geeksfactory.opacclient.apis.OpacApi.OpacErrorException;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 
+/**
+ * Fetches the search fields of a library in all of its languages. The languages are fetched in
+ * parallel on <code>langExecutor</code>, each using its own API instance, as the language is part
+ * of the API's state. All requests are subject to the {@link HostLimiter}.
+ */
 public class GetSearchFieldsCallable implements Callable<Map<String, List<SearchField>>> {
     private Library lib;
+    private HostLimiter limiter;
+    private ExecutorService langExecutor;
+    private String host;
+    private volatile boolean complete;
 
-    public GetSearchFieldsCallable(Library lib) {
+    public GetSearchFieldsCallable(Library lib, HostLimiter limiter,
+            ExecutorService langExecutor) {
         this.lib = lib;
+        this.limiter = limiter;
+        this.langExecutor = langExecutor;
+        this.host = HostLimiter.hostOf(lib.getData().optString("baseurl", lib.getIdent()));
     }
 
     @Override
-    public Map<String, List<SearchField>> call() {
-        OpacApi api = OpacApiFactory.create(lib, "OpacApp/Test");
-
-        if (api instanceof ApacheBaseApi) {
-            ((ApacheBaseApi) api).setHttpLoggingEnabled(false);
-        }
+    public Map<String, List<SearchField>> call() throws InterruptedException {
+        OpacApi api = createApi();
 
         Set<String> langs = null;
+        limiter.acquire(host);
         try {
             langs = api.getSupportedLanguages();
         } catch (IOException e) {
+        } finally {
+            limiter.release(host);
         }
 
         if (langs == null) {
             // Use default language
-            try {
+            List<SearchField> fields = fetch(api);
+            if (fields != null) {
                 Map<String, List<SearchField>> map = new HashMap<>();
-                map.put("default", api.getSearchFields());
+                map.put("default", fields);
+                complete = true;
                 return map;
-            } catch (IOException | OpacErrorException | JSONException e) {
             }
         } else {
+            List<String> langList = new ArrayList<>(langs);
+            List<Future<List<SearchField>>> futures = new ArrayList<>();
+            for (final String lang : langList) {
+                futures.add(langExecutor.submit(() -> {
+                    OpacApi langApi = createApi();
+                    langApi.setLanguage(lang);
+                    return fetch(langApi);
+                }));
+            }
             Map<String, List<SearchField>> map = new HashMap<>();
-            for (String lang : langs) {
-                api.setLanguage(lang);
+            boolean allFetched = true;
+            for (int i = 0; i < langList.size(); i++) {
+                List<SearchField> fields = null;
                 try {
-                    map.put(lang, api.getSearchFields());
-                } catch (IOException | OpacErrorException | JSONException e) {
+                    fields = futures.get(i).get();
+                } catch (ExecutionException e) {
+                }
+                if (fields != null) {
+                    map.put(langList.get(i), fields);
+                } else {
+                    allFetched = false;
                 }
             }
+            complete = allFetched;
             return map;
         }
         return null;
     }
 
+    /**
+     * @return whether the fields could be fetched in all languages, only valid after {@link
+     * #call()} has returned
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private OpacApi createApi() {
+        OpacApi api = OpacApiFactory.create(lib, "OpacApp/Test");
+        if (api instanceof ApacheBaseApi) {
+            ((ApacheBaseApi) api).setHttpLoggingEnabled(false);
+        }
+        return api;
+    }
+
+    private List<SearchField> fetch(OpacApi api) throws InterruptedException {
+        limiter.acquire(host);
+        try {
+            return api.getSearchFields();
+        } catch (IOException | OpacErrorException | JSONException e) {
+            return null;
+        } finally {
+            limiter.release(host);
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package de.geeksfactory.opacclient.meanings;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps the crawler polite: many libraries share an OPAC server with other libraries, so at most
+ * <code>maxPerHost</code> fetches run against the same host at a time, and consecutive fetches
+ * start at least <code>minInterval</code> milliseconds apart.
+ */
+public class HostLimiter {
+    private final int maxPerHost;
+    private final long minInterval;
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    public HostLimiter(int maxPerHost, long minInterval) {
+        this.maxPerHost = maxPerHost;
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * @return the host name of an URL, or the URL itself if it can't be parsed
+     */
+    public static String hostOf(String url) {
+        if (url == null) return "";
+        try {
+            String host = new URI(url).getHost();
+            return host != null ? host.toLowerCase() : url;
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Waits until a fetch from <code>host</code> may be started. Every call must be followed by
+     * a call to {@link #release(String)}.
+     */
+    public void acquire(String host) throws InterruptedException {
+        Host h = getHost(host);
+        h.permits.acquire();
+        try {
+            synchronized (h) {
+                long wait = h.lastStart + minInterval - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+                h.lastStart = System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            h.permits.release();
+            throw e;
+        }
+    }
+
+    public void release(String host) {
+        getHost(host).permits.release();
+    }
+
+    private Host getHost(String host) {
+        synchronized (hosts) {
+            Host h = hosts.get(host);
+            if (h == null) {
+                h = new Host(maxPerHost);
+                hosts.put(host, h);
+            }
+            return h;
+        }
+    }
+
+    private static class Host {
+        final Semaphore permits;
+        long lastStart;
+
+        Host(int maxPerHost) {
+            permits = new Semaphore(maxPerHost, true);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.Security;
@@ -19,10 +20,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.searchfields.MeaningDetectorImpl;
@@ -34,104 +37,187 @@ public class Main {
 
     public static final String BIBS_DIR = "../opacapp/src/main/assets/bibs/";
     public static final String MEANINGS_DIR = "../libopac/src/main/resources/meanings/";
+    public static final String CACHE_DIR = "build/meanings-cache/";
+    private static final long DEFAULT_MAX_AGE_DAYS = 7;
+    private static final int DEFAULT_PER_HOST = 2;
+    private static final long MIN_HOST_INTERVAL = 500;
 
+    /**
+     * Usage: <code>[--crawl] [--refresh] [--max-age-days=N] [--per-host=N] [library ...]</code>
+     *
+     * With <code>--crawl</code>, the search fields of all libraries are fetched into the cache
+     * without any interaction. Only libraries whose configuration changed since they were cached,
+     * or whose cached fields are older than <code>--max-age-days</code>, are fetched again.
+     *
+     * Without it, unknown fields are classified interactively, starting with the libraries that
+     * are already cached. Libraries that are not cached yet are fetched in the background.
+     * <code>--refresh</code> ignores the cache in both modes.
+     */
     public static void main(String[] args) throws IOException, JSONException {
         Security.addProvider(new BouncyCastleProvider());
-        Collection<String[]> libraries;
-        if (args.length > 0) {
-            libraries = new ArrayList<>();
-            for (String arg : args) {
+        boolean crawl = false;
+        boolean refresh = false;
+        long maxAge = TimeUnit.DAYS.toMillis(DEFAULT_MAX_AGE_DAYS);
+        int perHost = DEFAULT_PER_HOST;
+        Collection<String[]> libraries = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--crawl")) {
+                crawl = true;
+            } else if (arg.equals("--refresh")) {
+                refresh = true;
+            } else if (arg.startsWith("--max-age-days=")) {
+                maxAge = TimeUnit.DAYS.toMillis(Long.parseLong(arg.substring(15)));
+            } else if (arg.startsWith("--per-host=")) {
+                perHost = Integer.parseInt(arg.substring(11));
+            } else {
                 libraries.add(new String[]{arg});
             }
-        } else {
+        }
+        if (libraries.isEmpty()) {
             libraries = libraries();
         }
 
-        Set<String> ignored = new MeaningDetectorImpl(null).getIgnoredFields();
-        Scanner in = new Scanner(System.in);
+        FieldCache cache = new FieldCache(new File(CACHE_DIR));
+        HostLimiter limiter = new HostLimiter(perHost, MIN_HOST_INTERVAL);
         final ExecutorService service = Executors.newFixedThreadPool(25);
-        List<TaskInfo> tasks = new ArrayList<>();
+        final ExecutorService langService = Executors.newCachedThreadPool();
+        List<TaskInfo> cached = new ArrayList<>();
+        List<TaskInfo> fetched = new ArrayList<>();
         for (String[] libraryNameArray : libraries) {
             String libraryName = libraryNameArray[0];
-            Library library;
             try {
-                library = Library.fromJSON(
-                        libraryName,
-                        new JSONObject(readFile(BIBS_DIR + libraryName + ".json")));
-                Future<Map<String, List<SearchField>>> future = service
-                        .submit(new GetSearchFieldsCallable(library));
-                tasks.add(new TaskInfo(library, future));
+                byte[] config = Files.readAllBytes(Paths.get(BIBS_DIR + libraryName + ".json"));
+                Library library = Library.fromJSON(libraryName,
+                        new JSONObject(new String(config, StandardCharsets.UTF_8)));
+                String hash = FieldCache.hash(config);
+                FieldCache.Entry entry = refresh ? null : cache.get(libraryName, hash);
+                if (entry != null && (!crawl
+                        || System.currentTimeMillis() - entry.fetched < maxAge)) {
+                    cached.add(new TaskInfo(library, hash, null,
+                            CompletableFuture.completedFuture(entry.fields)));
+                } else {
+                    GetSearchFieldsCallable callable =
+                            new GetSearchFieldsCallable(library, limiter, langService);
+                    fetched.add(new TaskInfo(library, hash, callable,
+                            service.submit(callable)));
+                }
             } catch (JSONException | IOException e) {
                 // e.printStackTrace();
             }
         }
 
-        for (TaskInfo entry : tasks) {
-            Library library = entry.lib;
-            try {
-                Map<String, List<SearchField>> fields = entry.future.get();
-                if (fields == null)
-                    continue;
-                for (String lang : fields.keySet()) {
-                    System.out.println("Bibliothek: " + library.getIdent()
-                            + ", Sprache: " + lang);
-                    MeaningDetectorImpl detector = new MeaningDetectorImpl(library);
-                    for (int i = 0; i < fields.get(lang).size(); i++) {
-                        fields.get(lang)
-                              .set(i,
-                                      detector.detectMeaning(fields.get(lang)
-                                                                   .get(i)));
+        if (crawl) {
+            System.out.println(cached.size() + " Bibliotheken aktuell, " + fetched.size()
+                    + " werden abgerufen");
+            int failed = 0;
+            for (TaskInfo entry : fetched) {
+                if (!store(cache, entry)) {
+                    failed++;
+                    System.out.println("Fehler: " + entry.lib.getIdent());
+                }
+            }
+            System.out.println((fetched.size() - failed) + " Bibliotheken aktualisiert, "
+                    + failed + " fehlgeschlagen");
+        } else {
+            Set<String> ignored = new MeaningDetectorImpl(null).getIgnoredFields();
+            Scanner in = new Scanner(System.in);
+            List<TaskInfo> tasks = new ArrayList<>(cached);
+            tasks.addAll(fetched);
+            for (TaskInfo entry : tasks) {
+                try {
+                    if (entry.callable != null) {
+                        store(cache, entry);
                     }
-                    for (SearchField field : fields.get(lang)) {
-                        if (field.getMeaning() != null
-                                || ignored.contains(field.getDisplayName())
-                                || field.getData() != null
-                                && field.getData().has("meaning")
-                                && ignored.contains(field.getData().getString(
-                                "meaning")))
-                            continue;
-                        String name;
-                        if (field.getData() != null
-                                && field.getData().has("meaning")) {
-                            name = field.getData().getString("meaning");
-                            System.out.print("Unbekanntes Feld: '" + name
-                                    + "' (Anzeigename: "
-                                    + field.getDisplayName() + ") ");
-                        } else {
-                            name = field.getDisplayName();
-                            System.out.print("Unbekanntes Feld: '" + name
-                                    + "' ");
-                        }
-                        Meaning meaning = null;
-                        boolean ignoredField = false;
-                        while (meaning == null && !ignoredField) {
-                            String str = in.nextLine();
-                            if (str.equals("")
-                                    || str.toLowerCase().equals("ignore")) {
-                                ignoredField = true;
-                                addIgnoredField(name);
-                                ignored.add(name);
-                            } else {
-                                try {
-                                    meaning = Meaning
-                                            .valueOf(str.toUpperCase());
-                                } catch (IllegalArgumentException e) {
-                                    meaning = null;
-                                }
-                            }
-                        }
-                        if (meaning != null) {
-                            detector.addMeaning(name, meaning);
-                            saveMeaning(name, meaning);
+                    Map<String, List<SearchField>> fields = entry.future.get();
+                    if (fields == null)
+                        continue;
+                    classify(entry.lib, fields, ignored, in);
+                } catch (JSONException | IOException | ExecutionException |
+                        InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            in.close();
+        }
+        service.shutdown();
+        langService.shutdown();
+    }
+
+    /**
+     * Waits for a fetch and stores its result in the cache, unless some languages failed.
+     *
+     * @return whether the result was stored
+     */
+    private static boolean store(FieldCache cache, TaskInfo entry) {
+        try {
+            Map<String, List<SearchField>> fields = entry.future.get();
+            if (fields == null || fields.isEmpty() || !entry.callable.isComplete()) {
+                return false;
+            }
+            cache.put(entry.lib.getIdent(), entry.configHash, fields);
+            return true;
+        } catch (JSONException | IOException | ExecutionException | InterruptedException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static void classify(Library library, Map<String, List<SearchField>> fields,
+            Set<String> ignored, Scanner in) throws JSONException, IOException {
+        for (String lang : fields.keySet()) {
+            System.out.println("Bibliothek: " + library.getIdent()
+                    + ", Sprache: " + lang);
+            MeaningDetectorImpl detector = new MeaningDetectorImpl(library);
+            for (int i = 0; i < fields.get(lang).size(); i++) {
+                fields.get(lang)
+                      .set(i,
+                              detector.detectMeaning(fields.get(lang)
+                                                           .get(i)));
+            }
+            for (SearchField field : fields.get(lang)) {
+                if (field.getMeaning() != null
+                        || ignored.contains(field.getDisplayName())
+                        || field.getData() != null
+                        && field.getData().has("meaning")
+                        && ignored.contains(field.getData().getString(
+                        "meaning")))
+                    continue;
+                String name;
+                if (field.getData() != null
+                        && field.getData().has("meaning")) {
+                    name = field.getData().getString("meaning");
+                    System.out.print("Unbekanntes Feld: '" + name
+                            + "' (Anzeigename: "
+                            + field.getDisplayName() + ") ");
+                } else {
+                    name = field.getDisplayName();
+                    System.out.print("Unbekanntes Feld: '" + name
+                            + "' ");
+                }
+                Meaning meaning = null;
+                boolean ignoredField = false;
+                while (meaning == null && !ignoredField) {
+                    String str = in.nextLine();
+                    if (str.equals("")
+                            || str.toLowerCase().equals("ignore")) {
+                        ignoredField = true;
+                        addIgnoredField(name);
+                        ignored.add(name);
+                    } else {
+                        try {
+                            meaning = Meaning
+                                    .valueOf(str.toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            meaning = null;
                         }
                     }
                 }
-            } catch (JSONException | IOException | ExecutionException | InterruptedException e) {
-                e.printStackTrace();
+                if (meaning != null) {
+                    detector.addMeaning(name, meaning);
+                    saveMeaning(name, meaning);
+                }
             }
         }
-        in.close();
-        service.shutdown();
     }
 
     private static Collection<String[]> libraries() {
@@ -155,11 +241,15 @@ public class Main {
     private static class TaskInfo {
         public Future<Map<String, List<SearchField>>> future;
         public Library lib;
+        public String configHash;
+        public GetSearchFieldsCallable callable;
 
-        public TaskInfo(Library lib,
+        public TaskInfo(Library lib, String configHash, GetSearchFieldsCallable callable,
                 Future<Map<String, List<SearchField>>> future) {
             this.future = future;
             this.lib = lib;
+            this.configHash = configHash;
+            this.callable = callable;
         }
     }
 
@@ -48,6 +48,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
@@ -63,21 +67,30 @@ import de.geeksfactory.opacclient.i18n.AndroidStringProvider;
 import de.geeksfactory.opacclient.networking.AndroidHttpClientFactory;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
+import de.geeksfactory.opacclient.reminder.StarredAvailabilityJob;
 import de.geeksfactory.opacclient.reminder.SyncAccountJob;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.StarContentProvider;
+import de.geeksfactory.opacclient.utils.CoverStore;
 import de.geeksfactory.opacclient.utils.DebugTools;
 import de.geeksfactory.opacclient.utils.ErrorReporter;
 import de.geeksfactory.opacclient.utils.GooglePlayTools;
+import de.geeksfactory.opacclient.utils.IOUtils;
+import de.geeksfactory.opacclient.utils.LogMetricsHandler;
+import de.geeksfactory.opacclient.utils.SearchResultCache;
 import de.geeksfactory.opacclient.utils.Utils;
 import de.geeksfactory.opacclient.webservice.LibraryConfigUpdateService;
 import de.geeksfactory.opacclient.webservice.UpdateHandler;
 import de.geeksfactory.opacclient.webservice.WebserviceReportHandler;
 import io.sentry.android.core.SentryAndroid;
 import io.sentry.core.Sentry;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 
 public class OpacClient extends Application {
 
@@ -87,6 +100,9 @@ public class OpacClient extends Application {
     public static final String SENTRY_LIBRARY = "library";
     public static final String SENTRY_DATA_VERSION = "data_version";
     public static final String SENTRY_PACKAGE = "package";
+    private static final long COVER_DISK_BUDGET = 20 * 1024 * 1024;
+    private static final long SEARCH_RESULT_DISK_BUDGET = 2 * 1024 * 1024;
+    private static final String SESSION_SNAPSHOT_PREFIX = "session_";
     public static int NOTIF_ID = 1;
     public static int BROADCAST_REMINDER = 2;
     public static Context context;
@@ -99,6 +115,12 @@ public class OpacClient extends Application {
     protected Library library;
     protected String currentLang;
     private SharedPreferences sp;
+    private final ApiPrewarmer prewarmer = new ApiPrewarmer();
+    private ApiPrewarmer.Handle prewarm;
+    private final ExecutorService sessionExecutor = Executors.newSingleThreadExecutor();
+    private Future<?> sessionSave;
+    private volatile OpacApi restoredApi;
+    private File apiSessionFile;
 
     public OpacClient() {
         super();
@@ -207,15 +229,124 @@ public class OpacClient extends Application {
         return OpacApiFactory
                 .create(lib, new AndroidStringProvider(), new AndroidHttpClientFactory(),
                         currentLang, new WebserviceReportHandler(getApplicationContext()),
-                        BuildConfig.DEBUG, CoverDownloadStrategy.ASYNCHRONOUS);
+                        BuildConfig.DEBUG, CoverDownloadStrategy.ASYNCHRONOUS,
+                        getMetricsHandler());
+    }
+
+    /**
+     * @return the handler to pass HTTP request metrics of all {@link OpacApi} instances to, or
+     * null to disable metrics
+     */
+    public MetricsHandler getMetricsHandler() {
+        return BuildConfig.DEBUG ? new LogMetricsHandler() : null;
     }
 
     private OpacApi initApi(Library lib) throws LibraryRemovedException {
-        api = getNewApi(lib);
+        final OpacApi api = getNewApi(lib);
+        final File file = getSessionSnapshotFile(getAccount(), lib);
+        apiSessionFile = file;
+        restoredApi = null;
+        // Restoring the session reads from disk, so it runs on the pre-warm thread. The API holds
+        // back its requests until the pre-warm has finished.
+        synchronized (this) {
+            prewarm = prewarmer.prewarm(api, () -> {
+                if (restoreApiSession(api, file)) restoredApi = api;
+            }, isOnline());
+        }
+        this.api = api;
         return api;
     }
 
+    /**
+     * @return the file the session of an API instance for the given account and library is
+     * saved to, so that it is never restored for another account or library
+     */
+    private File getSessionSnapshotFile(Account account, Library lib) {
+        if (account == null || lib == null) return null;
+        return new File(getCacheDir(), SESSION_SNAPSHOT_PREFIX + account.getId() + "_"
+                + IOUtils.sha1(lib.getIdent()));
+    }
+
+    /**
+     * @return whether the server session of the given API instance has been restored from a
+     * snapshot saved using {@link #saveApiSession()} before the process was restarted. While the
+     * snapshot is still being read, this returns false.
+     */
+    public boolean isApiSessionRestored(OpacApi api) {
+        return api != null && api == restoredApi;
+    }
+
+    /**
+     * Saves the session of the current API instance, so that it can be continued if the process
+     * is killed in the background. Should be called when the UI state is saved. The snapshot is
+     * taken and written in the background.
+     */
+    public synchronized void saveApiSession() {
+        final OpacApi api = this.api;
+        final File file = apiSessionFile;
+        sessionSave = sessionExecutor.submit(() -> writeApiSession(api, file));
+    }
+
+    private void writeApiSession(OpacApi api, File file) {
+        // only the session of the current account is kept
+        File[] files = getCacheDir().listFiles();
+        if (files != null) {
+            for (File other : files) {
+                if (other.getName().startsWith(SESSION_SNAPSHOT_PREFIX) && !other.equals(file)) {
+                    other.delete();
+                }
+            }
+        }
+        if (file == null) return;
+        byte[] snapshot = api != null ? api.saveSession() : null;
+        if (snapshot == null) {
+            file.delete();
+            return;
+        }
+        try {
+            BufferedSink sink = Okio.buffer(Okio.sink(file));
+            try {
+                sink.write(snapshot);
+            } finally {
+                sink.close();
+            }
+        } catch (IOException e) {
+            file.delete();
+        }
+    }
+
+    private boolean restoreApiSession(OpacApi api, File file) {
+        if (file == null) return false;
+        Future<?> pending;
+        synchronized (this) {
+            pending = sessionSave;
+        }
+        if (pending != null) {
+            try {
+                pending.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        if (!file.exists()) return false;
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(file));
+            try {
+                return api.restoreSession(source.readByteArray());
+            } finally {
+                source.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            // A snapshot is only used once, afterwards the running instance holds the session
+            file.delete();
+        }
+    }
+
     public void resetCache() {
+        cancelPrewarm();
         account = null;
         api = null;
         library = null;
@@ -229,10 +360,31 @@ public class OpacClient extends Application {
                 return api;
             }
         }
+        cancelPrewarm();
         api = initApi(getLibrary());
         return api;
     }
 
+    /**
+     * Creates the API for the selected library, which connects to the OPAC in the background, so
+     * that the first search does not have to wait for connection setup and session
+     * initialization.
+     */
+    public void prewarmApi() {
+        if (getLibrary() == null) return;
+        try {
+            getApi();
+        } catch (LibraryRemovedException ignored) {
+        }
+    }
+
+    private synchronized void cancelPrewarm() {
+        if (prewarm != null) {
+            prewarm.cancel();
+            prewarm = null;
+        }
+    }
+
     public long createAccountForLibrary(Context activity, String libraryIdent) {
         AccountDataSource data = new AccountDataSource(activity);
 
@@ -271,6 +423,7 @@ public class OpacClient extends Application {
         if (getLibrary() != null && !BuildConfig.DEBUG) {
             Sentry.setTag(SENTRY_LIBRARY, getLibrary().getIdent());
         }
+        prewarmApi();
     }
 
     public Library getLibrary(String ident) throws IOException, JSONException {
@@ -415,6 +568,12 @@ public class OpacClient extends Application {
 
         OpacClient.context = getApplicationContext();
 
+        CoverStore coverStore = CoverStore.getInstance();
+        coverStore.setMemoryBudget(Runtime.getRuntime().maxMemory() / 16);
+        coverStore.setDiskDirectory(new File(getCacheDir(), "covers"), COVER_DISK_BUDGET);
+        SearchResultCache.getInstance().setDirectory(new File(getCacheDir(), "searchresults"),
+                SEARCH_RESULT_DISK_BUDGET);
+
         try {
             OpacClient.versionName = getPackageManager().getPackageInfo(
                     getPackageName(), 0).versionName;
@@ -424,6 +583,9 @@ public class OpacClient extends Application {
 
         // Schedule alarms
         SyncAccountJob.scheduleJob(this);
+        StarredAvailabilityJob.scheduleJob(this);
+
+        prewarmApi();
     }
 
     public boolean getSlidingMenuEnabled() {
@@ -103,8 +103,10 @@ import de.geeksfactory.opacclient.objects.DetailedItem;
 import de.geeksfactory.opacclient.objects.LentItem;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.objects.ReservedItem;
+import de.geeksfactory.opacclient.reminder.AccountSyncCoordinator;
 import de.geeksfactory.opacclient.reminder.ReminderHelper;
 import de.geeksfactory.opacclient.reminder.SyncAccountJob;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.ui.AccountDividerItemDecoration;
@@ -1681,7 +1683,10 @@ public class AccountFragment extends Fragment implements
         protected AccountData doInBackground(Void... voids) {
             AccountData data;
             try {
-                data = app.getApi().account(account);
+                AccountDataSource adatasource = getAccountDataSource();
+                // a background sync might be loading the same account right now
+                data = AccountSyncCoordinator.getInstance().sync(account, adatasource,
+                        AccountSyncCoordinator.MAX_AGE_INTERACTIVE, () -> load(adatasource));
 
                 if (data == null) {
                     return null;
@@ -1714,25 +1719,46 @@ public class AccountFragment extends Fragment implements
                 return null;
             }
 
+            return data;
+        }
+
+        private AccountData load(AccountDataSource adatasource)
+                throws IOException, JSONException, OpacErrorException,
+                OpacClient.LibraryRemovedException {
+            OpacApi api = app.getApi();
+            AccountData data;
+            MetricsRecorder.Operation op = MetricsRecorder.beginOperation(api, "account");
             try {
-                // save data
-                AccountDataSource adatasource;
-                if (getActivity() == null && OpacClient.getEmergencyContext() != null) {
-                    adatasource = new AccountDataSource(OpacClient.getEmergencyContext());
-                } else {
-                    adatasource = new AccountDataSource(getActivity());
-                }
+                data = api.account(account);
+            } catch (IOException | OpacErrorException | JSONException e) {
+                op.setFailed();
+                throw e;
+            } finally {
+                op.finish();
+            }
+            if (data == null) {
+                return null;
+            }
 
+            try {
+                // save data
                 account.setPasswordKnownValid(true);
                 adatasource.update(account);
                 adatasource.storeCachedAccountData(adatasource.getAccount(data.getAccount()), data);
             } finally {
                 new ReminderHelper(app).generateAlarms();
             }
-
             return data;
         }
 
+        private AccountDataSource getAccountDataSource() {
+            if (getActivity() == null && OpacClient.getEmergencyContext() != null) {
+                return new AccountDataSource(OpacClient.getEmergencyContext());
+            } else {
+                return new AccountDataSource(getActivity());
+            }
+        }
+
         @Override
         protected void onPostExecute(AccountData result) {
             if (exception == null && result != null) {
@@ -1757,7 +1783,9 @@ public class AccountFragment extends Fragment implements
         @Override
         protected CancelResult doInBackground(Void... voids) {
             try {
-                return app.getApi().cancel(itemId, account, useraction, selection);
+                final OpacApi api = app.getApi();
+                return MetricsRecorder.track(api, "cancel",
+                        () -> api.cancel(itemId, account, useraction, selection));
             } catch (java.net.UnknownHostException | NoHttpResponseException | java.net
                     .SocketException e) {
                 e.printStackTrace();
@@ -1842,8 +1870,9 @@ public class AccountFragment extends Fragment implements
         @Override
         protected ProlongResult doInBackground(Void... voids) {
             try {
-                ProlongResult res = app.getApi().prolong(itemId, account,
-                        useraction, selection);
+                final OpacApi api = app.getApi();
+                ProlongResult res = MetricsRecorder.track(api, "prolong",
+                        () -> api.prolong(itemId, account, useraction, selection));
                 success = true;
                 return res;
             } catch (java.net.UnknownHostException | NoHttpResponseException e) {
@@ -1895,8 +1924,9 @@ public class AccountFragment extends Fragment implements
         @Override
         protected ProlongAllResult doInBackground(Void... voids) {
             try {
-                return app.getApi().prolongAll(account,
-                        useraction, selection);
+                final OpacApi api = app.getApi();
+                return MetricsRecorder.track(api, "prolongAll",
+                        () -> api.prolongAll(account, useraction, selection));
             } catch (IOException e) {
                 e.printStackTrace();
             } catch (Exception e) {
@@ -61,7 +61,7 @@ import de.geeksfactory.opacclient.R;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.ui.AppCompatProgressDialog;
 import de.geeksfactory.opacclient.utils.ErrorReporter;
@@ -806,7 +806,7 @@ public class LibraryListActivity extends AppCompatActivity
                     int count = ((OpacClient) getApplication()).getUpdateHandler().updateConfig(
                             service, prefs,
                             new LibraryConfigUpdateService.FileOutput(filesDir),
-                            new JsonSearchFieldDataSource(LibraryListActivity.this));
+                            new CompactSearchFieldDataSource(LibraryListActivity.this));
                     Log.d("LibraryListActivity",
                             "updated config for " + String.valueOf(count) + " libraries");
                     ((OpacClient) getApplication()).resetCache();
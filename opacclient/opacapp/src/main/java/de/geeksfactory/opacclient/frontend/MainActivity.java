@@ -58,8 +58,8 @@ import de.geeksfactory.opacclient.reminder.ReminderBroadcastReceiver;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.DataIntegrityException;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
 import de.geeksfactory.opacclient.webservice.LibraryConfigUpdateService;
@@ -542,7 +542,7 @@ public class MainActivity extends OpacActivity
             String scanResult = readPageToString(tag);
             if (scanResult != null) {
                 if (scanResult.length() > 5) {
-                    SearchFieldDataSource source = new JsonSearchFieldDataSource(this);
+                    SearchFieldDataSource source = new CompactSearchFieldDataSource(this);
                     if (source.hasSearchFields(app.getLibrary().getIdent())) {
                         List<SearchField> fields = source
                                 .getSearchFields(app.getLibrary().getIdent());
@@ -48,9 +48,10 @@ import androidx.preference.PreferenceManager;
 import de.geeksfactory.opacclient.OpacClient;
 import de.geeksfactory.opacclient.R;
 import de.geeksfactory.opacclient.reminder.ReminderHelper;
+import de.geeksfactory.opacclient.reminder.StarredAvailabilityJob;
 import de.geeksfactory.opacclient.reminder.SyncAccountJob;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
 import de.geeksfactory.opacclient.webservice.LibraryConfigUpdateService;
@@ -105,23 +106,31 @@ public class MainPreferenceFragment extends PreferenceFragmentCompat {
                     new ReminderHelper((OpacClient) getActivity().getApplication())
                             .updateAlarms(enabled);
                     if (enabled) {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                            if (ActivityCompat.checkSelfPermission(getActivity(),
-                                    Manifest.permission.POST_NOTIFICATIONS) !=
-                                    PackageManager.PERMISSION_GRANTED) {
-                                ActivityCompat.requestPermissions(
-                                        requireActivity(),
-                                        new String[]{Manifest.permission.POST_NOTIFICATIONS},
-                                        PERM_NOTIF
-                                );
-                            }
-                        }
+                        requestNotificationPermission();
                     }
                     return true;
                 }
             });
         }
 
+        CheckBoxPreference starredNotification =
+                (CheckBoxPreference) findPreference(StarredAvailabilityJob.PREF_STARRED_SERVICE);
+        if (starredNotification != null) {
+            starredNotification.setOnPreferenceChangeListener(
+                    new Preference.OnPreferenceChangeListener() {
+                        @Override
+                        public boolean onPreferenceChange(Preference preference,
+                                Object newValue) {
+                            boolean enabled = (Boolean) newValue;
+                            StarredAvailabilityJob.scheduleJob(getActivity(), enabled);
+                            if (enabled) {
+                                requestNotificationPermission();
+                            }
+                            return true;
+                        }
+                    });
+        }
+
         ListPreference warning = (ListPreference) findPreference("notification_warning");
         if (warning != null) {
             warning.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
@@ -160,7 +169,7 @@ public class MainPreferenceFragment extends PreferenceFragmentCompat {
                     adata.invalidateCachedData();
                     new ReminderHelper((OpacClient) context.getApplication()).updateAlarms(-1);
 
-                    SearchFieldDataSource sfdata = new JsonSearchFieldDataSource(context);
+                    SearchFieldDataSource sfdata = new CompactSearchFieldDataSource(context);
                     sfdata.clearAll();
 
                     SharedPreferences sp =
@@ -261,6 +270,20 @@ public class MainPreferenceFragment extends PreferenceFragmentCompat {
         }
     }
 
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            if (ActivityCompat.checkSelfPermission(getActivity(),
+                    Manifest.permission.POST_NOTIFICATIONS) !=
+                    PackageManager.PERMISSION_GRANTED) {
+                ActivityCompat.requestPermissions(
+                        requireActivity(),
+                        new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                        PERM_NOTIF
+                );
+            }
+        }
+    }
+
     private class LibraryConfigServiceReceiver extends BroadcastReceiver {
         private final Preference updateLibraryConfig;
 
@@ -692,6 +692,7 @@ public abstract class OpacActivity extends AppCompatActivity
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
+        app.saveApiSession();
         outState.putBoolean("twoPane", twoPane);
         outState.putBoolean("fabVisible", fabVisible);
         outState.putInt("selectedItemId", selectedItemId);
@@ -22,8 +22,14 @@
 package de.geeksfactory.opacclient.frontend;
 
 import android.content.Context;
+import android.graphics.Typeface;
 import android.net.ConnectivityManager;
 import android.text.Html;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.StyleSpan;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -43,8 +49,11 @@ import de.geeksfactory.opacclient.objects.SearchResult;
 import de.geeksfactory.opacclient.objects.SearchResult.MediaType;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.utils.BitmapUtils;
+import de.geeksfactory.opacclient.utils.CoverStore;
 
 public class ResultsAdapter extends ArrayAdapter<SearchResult> {
+    // rendered texts of recently bound results, so that scrolling does not create new spans
+    private final LruCache<SearchResult, CharSequence> textCache = new LruCache<>(200);
     private List<SearchResult> objects;
 
     public ResultsAdapter(Context context, List<SearchResult> objects, OpacApi api) {
@@ -149,7 +158,7 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
             view = contentView;
         }
 
-        return bindSearchResultToView(item, view, getContext());
+        return bindSearchResultToView(item, getText(item), view, getContext());
     }
 
     private static void setCover(SearchResult item, View view, Context context) {
@@ -160,8 +169,9 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
         ConnectivityManager connMgr =
                 (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
 
-        if (item.getCoverBitmap() != null) {
-            ivCover.setImageBitmap(BitmapUtils.bitmapFromBytes(item.getCoverBitmap()));
+        byte[] coverBitmap = item.getCoverBitmap();
+        if (coverBitmap != null) {
+            ivCover.setImageBitmap(BitmapUtils.thumbnailFromBytes(context, coverBitmap));
             ivCover.setVisibility(View.VISIBLE);
             ivCover.setPadding(0, 0, 0, 0);
             if (item.getType() != null && item.getType() != MediaType.NONE
@@ -172,7 +182,10 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
                 ivType.setVisibility(View.GONE);
             }
         } else if ((pds.isLoadCoversOnDataPreferenceSet()
-                || !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr))
+                || !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr)
+                || CoverStore.getInstance().contains(CoverStore.getSizedKey(item.getCover(),
+                CoverDownloadTask.getDefaultSize(context),
+                CoverDownloadTask.getDefaultSize(context))))
                 && item.getCover() != null) {
             LoadCoverTask lct = new LoadCoverTask(ivCover, ivType, item, context);
             lct.execute();
@@ -198,9 +211,10 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
         }
     }
 
-    public static View bindSearchResultToView(SearchResult item, View view, Context context) {
+    public static View bindSearchResultToView(SearchResult item, CharSequence text, View view,
+            Context context) {
         TextView tv = (TextView) view.findViewById(R.id.tvResult);
-        tv.setText(Html.fromHtml(item.getInnerhtml()));
+        tv.setText(text);
 
         setCover(item, view, context);
         if (item.getCoverFuture() != null) {
@@ -236,6 +250,56 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
         return view;
     }
 
+    /**
+     * @return the text describing a search result, cached as long as this adapter is used
+     */
+    public CharSequence getText(SearchResult item) {
+        // SearchResult does not override equals(), so the cache is keyed by identity
+        CharSequence text = textCache.get(item);
+        if (text == null) {
+            text = renderText(item);
+            textCache.put(item, text);
+        }
+        return text;
+    }
+
+    /**
+     * @return the text describing a search result, built from its structured fields if it has
+     * any and from its HTML otherwise
+     */
+    public static CharSequence renderText(SearchResult item) {
+        return item.hasStructuredFields() ? buildText(item) : Html.fromHtml(item.getInnerhtml());
+    }
+
+    private static CharSequence buildText(SearchResult item) {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        appendLine(builder, item.getTitle(), Typeface.BOLD);
+        appendLine(builder, item.getSubtitle(), Typeface.ITALIC);
+        if (item.getAuthors() != null && !item.getAuthors().isEmpty()) {
+            appendLine(builder, TextUtils.join("; ", item.getAuthors()), Typeface.NORMAL);
+        }
+        StringBuilder line = new StringBuilder();
+        for (String part : new String[]{item.getPublisher(), item.getSeries(), item.getYear()}) {
+            if (part == null || part.isEmpty()) continue;
+            if (line.length() > 0) line.append(", ");
+            line.append(part);
+        }
+        appendLine(builder, line.toString(), Typeface.NORMAL);
+        appendLine(builder, item.getAvailability(), Typeface.ITALIC);
+        return builder;
+    }
+
+    private static void appendLine(SpannableStringBuilder builder, String text, int style) {
+        if (text == null || text.isEmpty()) return;
+        if (builder.length() > 0) builder.append("\n");
+        int start = builder.length();
+        builder.append(text);
+        if (style != Typeface.NORMAL) {
+            builder.setSpan(new StyleSpan(style), start, builder.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
     private static int calculatedPadding = -1;
     private static int getPadding(Context context) {
         if(calculatedPadding == -1) {
@@ -256,8 +320,9 @@ public class ResultsAdapter extends ArrayAdapter<SearchResult> {
 
         @Override
         protected void onPostExecute(CoverHolder result) {
-            if (item.getCover() != null && item.getCoverBitmap() != null) {
-                ivCover.setImageBitmap(BitmapUtils.bitmapFromBytes(item.getCoverBitmap()));
+            byte[] coverBitmap = item.getCoverBitmap();
+            if (item.getCover() != null && coverBitmap != null) {
+                ivCover.setImageBitmap(BitmapUtils.thumbnailFromBytes(context, coverBitmap));
                 ivCover.setVisibility(View.VISIBLE);
             } else if (item instanceof SearchResult && ((SearchResult) item).getType() != null
                     && ((SearchResult) item).getType() != MediaType.NONE) {
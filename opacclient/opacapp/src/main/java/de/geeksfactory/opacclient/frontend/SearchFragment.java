@@ -54,7 +54,7 @@ import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField.Meaning;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.searchfields.TextSearchField;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
 
 public class SearchFragment extends Fragment implements AccountSelectedListener {
@@ -415,7 +415,7 @@ public class SearchFragment extends Fragment implements AccountSelectedListener
             return;
         }
 
-        SearchFieldDataSource dataSource = new JsonSearchFieldDataSource(app);
+        SearchFieldDataSource dataSource = new CompactSearchFieldDataSource(app);
         int versionCode = 0;
         try {
             versionCode = getActivity().getPackageManager().getPackageInfo(getActivity().getPackageName(), 0).versionCode;
@@ -483,7 +483,7 @@ public class SearchFragment extends Fragment implements AccountSelectedListener
     }
 
     public void saveFields(List<SearchField> fields) {
-        SearchFieldDataSource dataSource = new JsonSearchFieldDataSource(app);
+        SearchFieldDataSource dataSource = new CompactSearchFieldDataSource(app);
         dataSource.saveSearchFields(app.getLibrary().getIdent(), fields);
     }
 
@@ -512,7 +512,7 @@ public class SearchFragment extends Fragment implements AccountSelectedListener
         Map<String, String> query = new HashMap<>();
 
         if (fields == null) {
-            SearchFieldDataSource dataSource = new JsonSearchFieldDataSource(
+            SearchFieldDataSource dataSource = new CompactSearchFieldDataSource(
                     app);
             int versionCode = 0;
             try {
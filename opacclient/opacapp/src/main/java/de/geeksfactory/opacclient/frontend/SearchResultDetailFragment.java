@@ -15,6 +15,7 @@ import android.os.Bundle;
 import android.print.PrintAttributes;
 import android.print.PrintDocumentAdapter;
 import android.print.PrintManager;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -42,6 +43,7 @@ import com.google.android.material.appbar.CollapsingToolbarLayout;
 import org.joda.time.LocalDate;
 import org.joda.time.format.DateTimeFormat;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -72,9 +74,15 @@ import de.geeksfactory.opacclient.objects.Detail;
 import de.geeksfactory.opacclient.objects.DetailedItem;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
+import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.searchfields.SearchField.Meaning;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.StarDataSource;
+import de.geeksfactory.opacclient.storage.Starred;
 import de.geeksfactory.opacclient.ui.AppCompatProgressDialog;
 import de.geeksfactory.opacclient.ui.WhitenessUtils;
 import de.geeksfactory.opacclient.utils.BitmapUtils;
@@ -103,6 +111,8 @@ public class SearchResultDetailFragment extends Fragment
     public static final String ARG_ITEM_COVER_BITMAP = "item_cover_bitmap";
     public static final String ARG_ITEM_MEDIATYPE = "item_mediatype";
 
+    private static final String STATE_ITEM = "item";
+
     /**
      * A dummy implementation of the {@link Callbacks} interface that does nothing. Used only when
      * this fragment is not attached to an activity.
@@ -144,6 +154,7 @@ public class SearchResultDetailFragment extends Fragment
     private AlertDialog adialog;
     private boolean account_switched = false;
     private boolean invalidated = false;
+    private boolean restoredFromState = false;
     private boolean progress = false;
     private Boolean[] cardAnimations;
 
@@ -159,6 +170,35 @@ public class SearchResultDetailFragment extends Fragment
         super.onCreate(savedInstanceState);
 
         setRetainInstance(true);
+        if (item == null && savedInstanceState != null
+                && savedInstanceState.containsKey(STATE_ITEM)) {
+            // The process has been restarted, show the item we had without loading it again
+            try {
+                item = DetailedItem.fromJSON(
+                        new JSONObject(savedInstanceState.getString(STATE_ITEM)));
+                libraryIdent = getLibraryIdent();
+                id = argumentIdAvailable() ? getArgumentId() : item.getId();
+                nr = argumentNrAvailable() ? getArgumentNr() : null;
+                // the new API instance only knows this item if its session could be restored
+                invalidated = true;
+                restoredFromState = true;
+            } catch (JSONException | IllegalArgumentException e) {
+                e.printStackTrace();
+                item = null;
+            }
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (item != null) {
+            try {
+                outState.putString(STATE_ITEM, item.toJSON().toString());
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     public void setProgress(boolean show, boolean animate) {
@@ -263,6 +303,10 @@ public class SearchResultDetailFragment extends Fragment
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         if (item != null) {
+            if (restoredFromState) {
+                restoredFromState = false;
+                loadCover();
+            }
             display();
         } else if (argumentLibraryIdentAvailable() && (argumentIdAvailable() || argumentNrAvailable())) {
             load(getLibraryIdent(), getArgumentNr(), getArgumentId());
@@ -465,9 +509,12 @@ public class SearchResultDetailFragment extends Fragment
     }
 
     private void displayCover() {
-        if (getItem().getCoverBitmap() != null) {
+        byte[] coverBitmap = getItem().getCoverBitmap();
+        if (coverBitmap != null) {
             coverWrapper.setVisibility(View.VISIBLE);
-            Bitmap bm = BitmapUtils.bitmapFromBytes(getItem().getCoverBitmap());
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            Bitmap bm = BitmapUtils.bitmapFromBytes(coverBitmap, metrics.widthPixels / 2,
+                    metrics.heightPixels / 2);
             ivCover.setImageBitmap(bm);
             if (!image_analyzed) {
                 analyzeCover(bm);
@@ -846,7 +893,8 @@ public class SearchResultDetailFragment extends Fragment
                     toast.show();
                 } else {
                     if (star.isStarredTitle(bib, title)) {
-                        star.remove(star.getItemByTitle(bib, title));
+                        Starred starred = star.getItemByTitle(bib, title);
+                        if (starred != null) star.remove(starred);
                         item.setIcon(R.drawable.ic_star_0_white_24dp);
                     } else {
                         star.star(null, title, bib, getItem().getMediaType());
@@ -860,7 +908,8 @@ public class SearchResultDetailFragment extends Fragment
                 final String title = getItem().getTitle();
                 final String id = getItem().getId();
                 if (star.isStarred(bib, id)) {
-                    star.remove(star.getItem(bib, id));
+                    Starred starred = star.getItem(bib, id);
+                    if (starred != null) star.remove(starred);
                     item.setIcon(R.drawable.ic_star_0_white_24dp);
                 } else {
                     star.star(id, title, bib, getItem().getMediaType());
@@ -944,15 +993,20 @@ public class SearchResultDetailFragment extends Fragment
     }
 
     protected void reservationStart() {
-        if (invalidated) {
-            new RestoreSessionTask(false).execute();
-        }
         OpacApi api = null;
         try {
             api = getCurrentApi();
         } catch (OpacClient.LibraryRemovedException e) {
             return;
         }
+        if (invalidated) {
+            invalidated = false;
+            if (!app.isApiSessionRestored(api)) {
+                // the server session has to know the item before it can be reserved
+                new RestoreSessionTask(true).execute();
+                return;
+            }
+        }
         if (api instanceof EbookServiceApi) {
             SharedPreferences sp = PreferenceManager
                     .getDefaultSharedPreferences(getActivity());
@@ -1273,6 +1327,24 @@ public class SearchResultDetailFragment extends Fragment
         }
     }
 
+    /**
+     * The home branch is stored as a key of the search form's branch field, but reservation forms
+     * use different keys for the same branches, so they can only be matched by name.
+     */
+    private String getHomeBranchName(String key) {
+        if (key == null) return null;
+        String ident = isMetaSearch() ? getLibraryIdent() : getCurrentAccount().getLibrary();
+        List<SearchField> fields = new CompactSearchFieldDataSource(app).getSearchFields(ident);
+        if (fields == null) return null;
+        for (SearchField field : fields) {
+            if (field.getMeaning() == Meaning.HOME_BRANCH
+                    && field instanceof DropdownSearchField) {
+                return ((DropdownSearchField) field).getDropdownValue(key);
+            }
+        }
+        return null;
+    }
+
     private Account getCurrentAccount() {
         if(!isMetaSearch()) {
             // if we come from the normal 1-library search
@@ -1365,10 +1437,12 @@ public class SearchResultDetailFragment extends Fragment
                         apiToUse.start();
                     }
 
-                    res = apiToUse.getResultById(id, homebranch);
+                    res = MetricsRecorder.track(apiToUse, "getResultById",
+                            () -> apiToUse.getResultById(id, homebranch));
                     if (res.getId() == null) res.setId(id);
                 } else {
-                    res = apiToUse.getResult(nr);
+                    res = MetricsRecorder.track(apiToUse, "getResult",
+                            () -> apiToUse.getResult(nr));
                 }
                 if (res.getMediaType() == null && getArguments().containsKey(ARG_ITEM_MEDIATYPE)) {
                     res.setMediaType(SearchResult.MediaType
@@ -1396,22 +1470,7 @@ public class SearchResultDetailFragment extends Fragment
             }
 
             item = result;
-
-            PreferenceDataSource pds = new PreferenceDataSource(getContext());
-            ConnectivityManager connMgr =
-                    (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-
-            if (item.getCover() != null && item.getCoverBitmap() == null) {
-                if ((pds.isLoadCoversOnDataPreferenceSet()
-                        || !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr))) {
-                    new LoadCoverTask(item, collapsingToolbar.getWidth(),
-                            collapsingToolbar.getHeight()).execute();
-                }
-
-            } else {
-                displayCover();
-            }
-
+            loadCover();
             display();
 
             if (getActivity().getIntent().hasExtra("reservation")
@@ -1422,6 +1481,23 @@ public class SearchResultDetailFragment extends Fragment
         }
     }
 
+    private void loadCover() {
+        PreferenceDataSource pds = new PreferenceDataSource(getContext());
+        ConnectivityManager connMgr =
+                (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        if (item.getCover() != null && item.getCoverBitmap() == null) {
+            if ((pds.isLoadCoversOnDataPreferenceSet()
+                    || !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr))) {
+                new LoadCoverTask(item, collapsingToolbar.getWidth(),
+                        collapsingToolbar.getHeight()).execute();
+            }
+
+        } else {
+            displayCover();
+        }
+    }
+
     private class AnalyzeWhitenessTask extends AsyncTask<Bitmap, Void, Boolean> {
         @Override
         protected Boolean doInBackground(Bitmap... params) {
@@ -1438,18 +1514,26 @@ public class SearchResultDetailFragment extends Fragment
 
     public class ResTask extends StepTask<ReservationResult> {
         private DetailedItem item;
+        private String homebranch;
 
         public ResTask(MultiStepResultHelper helper, int useraction, String selection,
                        DetailedItem item) {
             super(helper, useraction, selection);
             this.item = item;
+            SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(getActivity());
+            this.homebranch = sp.getString(
+                    OpacClient.PREF_HOME_BRANCH_PREFIX + getCurrentAccount().getId(), null);
         }
 
         @Override
         protected ReservationResult doInBackground(Void... voids) {
             try {
-                return getCurrentApi().reservation(item,
-                        getCurrentAccount(), useraction, selection);
+                // lets the API skip the branch selection if the home branch is available
+                getCurrentApi().setPreferredBranch(getHomeBranchName(homebranch));
+                final OpacApi api = getCurrentApi();
+                final Account account = getCurrentAccount();
+                return MetricsRecorder.track(api, "reservation",
+                        () -> api.reservation(item, account, useraction, selection));
             } catch (IOException e) {
                 publishProgress(e, "ioerror");
             } catch (Exception e) {
@@ -1573,7 +1657,7 @@ public class SearchResultDetailFragment extends Fragment
                 return;
             }
             if (reservation) {
-                reservationDo();
+                reservationStart();
             }
         }
 
@@ -23,6 +23,7 @@ import de.geeksfactory.opacclient.networking.NotReachableException;
 import de.geeksfactory.opacclient.networking.SSLSecurityException;
 import de.geeksfactory.opacclient.objects.SearchRequestResult;
 import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
 import de.geeksfactory.opacclient.utils.BitmapUtils;
 import de.geeksfactory.opacclient.utils.ErrorReporter;
 
@@ -143,7 +144,7 @@ public class SearchResultListActivity extends OpacActivity implements
     }
 
     public void showDetail(SearchResult res, View coverView, int touchX, int touchY) {
-        Bitmap cover = BitmapUtils.bitmapFromBytes(res.getCoverBitmap());
+        Bitmap cover = BitmapUtils.bitmapFromBytes(res.getCoverBitmap(), 300, 300);
         Bitmap smallCover;
         if (cover != null && cover.getWidth() * cover.getHeight() > 300 * 300) {
             // Android's Parcelable implementation doesn't like huge images
@@ -268,7 +269,9 @@ public class SearchResultListActivity extends OpacActivity implements
         @Override
         protected SearchRequestResult doInBackground(Void... voids) {
             try {
-                return app.getApi().searchGetPage(searchResult.getPage());
+                final OpacApi api = app.getApi();
+                return MetricsRecorder.track(api, "searchGetPage",
+                        () -> api.searchGetPage(searchResult.getPage()));
             } catch (IOException | OpacErrorException e) {
                 exception = e;
                 e.printStackTrace();
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
@@ -38,13 +40,15 @@ import de.geeksfactory.opacclient.networking.SSLSecurityException;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.SearchRequestResult;
 import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField.Meaning;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
 import de.geeksfactory.opacclient.utils.ErrorReporter;
+import de.geeksfactory.opacclient.utils.SearchResultCache;
 
 /**
  * A list fragment representing a list of SearchResults. This fragment also supports tablet devices
@@ -90,6 +94,23 @@ public class SearchResultListFragment extends CustomListFragment {
     protected OpacClient app;
     protected int lastLoadedPage;
     protected SearchStartTask st;
+    /**
+     * Key of the current search in the {@link SearchResultCache}
+     */
+    protected String cacheKey;
+    /**
+     * Set while results from the cache are displayed and the search is still running on the
+     * server. Clicks are delayed until then, as the API is not ready to load details yet.
+     */
+    protected boolean refreshingCachedResult;
+    /**
+     * Set while results from the cache are displayed because the server could not be reached.
+     * The API does not know about the search then, so it has to be repeated before pages or
+     * details can be loaded.
+     */
+    protected volatile boolean offlineResult;
+    protected SearchResult pendingClick;
+    protected View pendingClickView;
     protected LinearLayout progressContainer;
     protected FrameLayout errorView;
     protected int touchPositionX = 0;
@@ -201,7 +222,8 @@ public class SearchResultListFragment extends CustomListFragment {
                     .getInt(STATE_ACTIVATED_POSITION));
         }
 
-        if (savedInstanceState == null && wasSearchAlreadyPerformed()) {
+        // st is null if the fragment was recreated after the process was killed
+        if (wasSearchAlreadyPerformed() && (savedInstanceState == null || st == null)) {
             performsearch();
         } else if (searchresult != null) {
             showTotalCountOfPreviousSearchIfAvailable();
@@ -255,7 +277,19 @@ public class SearchResultListFragment extends CustomListFragment {
         listItemClicked(position, view, searchresult.getResults().get(position));
     }
 
-    protected void listItemClicked(int position, View clickedView, SearchResult searchResult) {
+    protected void listItemClicked(final int position, final View clickedView,
+            final SearchResult searchResult) {
+        if (offlineResult && searchResult.getChildQuery() == null) {
+            // try again, the click is handled when the search has finished
+            offlineResult = false;
+            refreshingCachedResult = true;
+            performsearch();
+        }
+        if (refreshingCachedResult) {
+            pendingClick = searchResult;
+            pendingClickView = clickedView;
+            return;
+        }
         setActivatedPosition(position);
         // Notify the active callbacks interface (the activity, if the
         // fragment is attached to one) that an item has been selected.
@@ -319,8 +353,21 @@ public class SearchResultListFragment extends CustomListFragment {
                     @Override
                     public SearchRequestResult onLoadMore(int page)
                             throws Exception {
-                        SearchRequestResult res = app.getApi().searchGetPage(
-                                page);
+                        SearchRequestResult res;
+                        waitForSearch();
+                        try {
+                            final OpacApi api = app.getApi();
+                            if (offlineResult) repeatSearch(api);
+                            res = MetricsRecorder.track(api, "searchGetPage",
+                                    () -> api.searchGetPage(page));
+                            if (cacheKey != null) {
+                                SearchResultCache.getInstance().put(cacheKey, page, res);
+                            }
+                        } catch (NotReachableException e) {
+                            res = cacheKey != null ?
+                                    SearchResultCache.getInstance().get(cacheKey, page) : null;
+                            if (res == null) throw e;
+                        }
                         for (SearchResult result : res.getResults()) {
                             result.setLibraryIdent(app.getLibrary().getIdent());
                         }
@@ -419,6 +466,58 @@ public class SearchResultListFragment extends CustomListFragment {
         return lastLoadedPage;
     }
 
+    /**
+     * Blocks until the initial search has been sent, as the API keeps the state of one search
+     * only. Must not be called on the UI thread.
+     */
+    protected void waitForSearch() throws InterruptedException {
+        SearchStartTask task = st;
+        if (task == null || task.getStatus() == AsyncTask.Status.FINISHED) return;
+        try {
+            task.get();
+        } catch (ExecutionException | CancellationException e) {
+            // the search failed, paging will fail as well and show the error
+        }
+    }
+
+    /**
+     * Sends the search to the server again after the results were taken from the cache because
+     * it could not be reached. Must not be called on the UI thread.
+     */
+    protected void repeatSearch(final OpacApi api) throws Exception {
+        SearchStartTask task = st;
+        if (task == null) return;
+        if (task.volumeQuery != null) {
+            MetricsRecorder.track(api, "volumeSearch", () -> api.volumeSearch(task.volumeQuery));
+        } else if (task.query != null) {
+            MetricsRecorder.track(api, "search", () -> api.search(task.query));
+        }
+        offlineResult = false;
+    }
+
+    /**
+     * Opens the item clicked while the results were refreshed, if it is still there.
+     */
+    protected void openPendingClick(SearchResult clicked, View clickedView) {
+        if (clicked == null || searchresult == null) return;
+        List<SearchResult> results = searchresult.getResults();
+        int position = results.indexOf(clicked);
+        if (position < 0 && clicked.getId() != null) {
+            for (int i = 0; i < results.size(); i++) {
+                if (clicked.getId().equals(results.get(i).getId())) {
+                    position = i;
+                    break;
+                }
+            }
+        }
+        if (position >= 0) {
+            listItemClicked(position, clickedView, results.get(position));
+        } else if (getActivity() != null) {
+            Toast.makeText(getActivity(), R.string.search_results_changed, Toast.LENGTH_LONG)
+                 .show();
+        }
+    }
+
     public void setLastLoadedPage(int lastLoadedPage) {
         this.lastLoadedPage = lastLoadedPage;
     }
@@ -453,10 +552,13 @@ public class SearchResultListFragment extends CustomListFragment {
         public boolean isTwoPane();
     }
 
-    public class SearchStartTask extends AsyncTask<Void, Void, SearchRequestResult> {
+    public class SearchStartTask
+            extends AsyncTask<Void, SearchRequestResult, SearchRequestResult> {
         protected Exception exception;
         protected Map<String, String> volumeQuery = null;
         protected List<SearchQuery> query = null;
+        protected boolean cachedResultShown = false;
+        protected boolean unchanged = false;
 
         public SearchStartTask(Map<String, String> volumeQuery) {
             this.volumeQuery = volumeQuery;
@@ -475,9 +577,40 @@ public class SearchResultListFragment extends CustomListFragment {
                 exception = e;
                 return null;
             }
+
+            SearchResultCache cache = SearchResultCache.getInstance();
+            String ident = app.getLibrary().getIdent();
+            String key = volumeQuery != null ? SearchResultCache.getVolumeKey(ident, volumeQuery)
+                    : SearchResultCache.getKey(ident, query);
+            cacheKey = key;
+            SearchRequestResult cached = cache.get(key, 1);
+            String cachedFingerprint = null;
+            if (cached != null) {
+                // before publishing, as the UI thread modifies the results
+                cachedFingerprint = SearchResultCache.fingerprint(cached);
+                publishProgress(cached);
+            }
+
+            SearchRequestResult result = search(api);
+            if (result != null) {
+                String fingerprint = SearchResultCache.fingerprint(result);
+                unchanged = fingerprint != null && fingerprint.equals(cachedFingerprint);
+                if (!unchanged) {
+                    // following pages are probably outdated as well
+                    cache.remove(key);
+                    cache.put(key, 1, result);
+                }
+            } else if (exception instanceof OpacErrorException) {
+                cache.remove(key);
+            }
+            return result;
+        }
+
+        private SearchRequestResult search(OpacApi api) {
             if (volumeQuery != null) {
                 try {
-                    return api.volumeSearch(volumeQuery);
+                    return MetricsRecorder.track(api, "volumeSearch",
+                            () -> api.volumeSearch(volumeQuery));
                 } catch (IOException | OpacErrorException e) {
                     exception = e;
                     e.printStackTrace();
@@ -488,7 +621,7 @@ public class SearchResultListFragment extends CustomListFragment {
             } else if (query != null) {
                 try {
                     // Load cover images, if search worked and covers available
-                    return api.search(query);
+                    return MetricsRecorder.track(api, "search", () -> api.search(query));
                 } catch (IOException | OpacErrorException e) {
                     exception = e;
                     e.printStackTrace();
@@ -500,9 +633,31 @@ public class SearchResultListFragment extends CustomListFragment {
             return null;
         }
 
+        @Override
+        protected void onProgressUpdate(SearchRequestResult... cached) {
+            cachedResultShown = true;
+            refreshingCachedResult = true;
+            loaded(cached[0]);
+        }
+
         @Override
         protected void onPostExecute(SearchRequestResult result) {
-            if (result == null) {
+            refreshingCachedResult = false;
+            offlineResult = false;
+            SearchResult click = pendingClick;
+            View clickView = pendingClickView;
+            pendingClick = null;
+            pendingClickView = null;
+
+            if (result == null && cachedResultShown && exception instanceof IOException) {
+                // the server is not reachable, keep showing the cached results. Details can not
+                // be loaded without it, so a click is dropped and repeats the search next time.
+                offlineResult = true;
+                if (getActivity() != null) {
+                    Toast.makeText(getActivity(), R.string.search_results_cached,
+                            Toast.LENGTH_LONG).show();
+                }
+            } else if (result == null) {
 
                 if (exception instanceof OpacErrorException) {
                     showConnectivityError(exception.getMessage());
@@ -524,8 +679,12 @@ public class SearchResultListFragment extends CustomListFragment {
                 } else {
                     showConnectivityError();
                 }
+            } else if (unchanged && cachedResultShown) {
+                // the server returned what we are already showing
+                openPendingClick(click, clickView);
             } else {
                 loaded(result);
+                openPendingClick(click, clickView);
             }
         }
     }
@@ -538,7 +697,7 @@ public class SearchResultListFragment extends CustomListFragment {
         @Override
         protected List<SearchField> doInBackground(String... arg0) {
             queryString = arg0[0];
-            SearchFieldDataSource dataSource = new JsonSearchFieldDataSource(
+            SearchFieldDataSource dataSource = new CompactSearchFieldDataSource(
                     app);
             if (dataSource.hasSearchFields(app.getLibrary().getIdent())) {
                 return dataSource.getSearchFields(app.getLibrary().getIdent());
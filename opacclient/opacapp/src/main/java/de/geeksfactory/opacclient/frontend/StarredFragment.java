@@ -75,7 +75,7 @@ import de.geeksfactory.opacclient.objects.SearchResult;
 import de.geeksfactory.opacclient.searchfields.SearchField;
 import de.geeksfactory.opacclient.searchfields.SearchField.Meaning;
 import de.geeksfactory.opacclient.searchfields.SearchQuery;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.StarDataSource;
 import de.geeksfactory.opacclient.storage.StarDatabase;
 import de.geeksfactory.opacclient.storage.Starred;
@@ -128,7 +128,7 @@ public class StarredFragment extends Fragment implements
                     SharedPreferences sp = PreferenceManager
                             .getDefaultSharedPreferences(getActivity());
                     List<SearchQuery> query = new ArrayList<>();
-                    List<SearchField> fields = new JsonSearchFieldDataSource(
+                    List<SearchField> fields = new CompactSearchFieldDataSource(
                             app).getSearchFields(app.getLibrary().getIdent());
                     if (fields != null) {
                         SearchField title_field = null, free_field = null;
@@ -428,19 +428,19 @@ public class StarredFragment extends Fragment implements
                         return;
                     }
                     JSONArray items = savedList.getJSONArray(JSON_STARRED_LIST);
+                    List<Starred> starred = new ArrayList<>();
                     for (int i = 0; i < items.length(); i++) {
                         JSONObject entry = items.getJSONObject(i);
-                        if (entry.has(JSON_ITEM_MNR) &&
-                                !dataSource.isStarred(bib, entry.getString(JSON_ITEM_MNR)) ||
-                                !entry.has(JSON_ITEM_MNR) && !dataSource.isStarredTitle(bib,
-                                        entry.getString(JSON_ITEM_TITLE))) { //disallow dupes
-                            String mediatype = entry.optString(JSON_ITEM_MEDIATYPE, null);
-                            dataSource.star(entry.optString(JSON_ITEM_MNR),
-                                    entry.getString(JSON_ITEM_TITLE), bib,
-                                    mediatype != null ? SearchResult.MediaType.valueOf(mediatype) :
-                                            null);
-                        }
+                        Starred item = new Starred();
+                        item.setMNr(entry.has(JSON_ITEM_MNR) ?
+                                entry.getString(JSON_ITEM_MNR) : null);
+                        item.setTitle(entry.getString(JSON_ITEM_TITLE));
+                        String mediatype = entry.optString(JSON_ITEM_MEDIATYPE, null);
+                        item.setMediaType(mediatype != null ?
+                                SearchResult.MediaType.valueOf(mediatype) : null);
+                        starred.add(item);
                     }
+                    dataSource.starAll(bib, starred); // skips dupes
                     adapter.notifyDataSetChanged();
                     Snackbar.make(getView(), R.string.info_starred_updated,
                             Snackbar.LENGTH_SHORT).show();
@@ -138,8 +138,9 @@ public abstract class AccountAdapter<I extends AccountItem, VH extends AccountAd
             ivCover.setVisibility(View.VISIBLE);
             ivMediaType.setVisibility(View.GONE);
 
-            if (item.getCoverBitmap() != null) {
-                ivCover.setImageBitmap(BitmapUtils.bitmapFromBytes(item.getCoverBitmap()));
+            byte[] coverBitmap = item.getCoverBitmap();
+            if (coverBitmap != null) {
+                ivCover.setImageBitmap(BitmapUtils.thumbnailFromBytes(context, coverBitmap));
             } else {
                 Drawable loading = VectorDrawableCompat
                         .create(context.getResources(), R.drawable.ic_loading, null);
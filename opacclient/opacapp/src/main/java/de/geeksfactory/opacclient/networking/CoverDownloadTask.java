@@ -4,23 +4,18 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.util.EntityUtils;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.HashSet;
 
 import de.geeksfactory.opacclient.OpacClient;
-import de.geeksfactory.opacclient.apis.ApacheBaseApi;
 import de.geeksfactory.opacclient.apis.OkHttpBaseApi;
 import de.geeksfactory.opacclient.apis.OpacApi;
 import de.geeksfactory.opacclient.objects.CoverHolder;
 import de.geeksfactory.opacclient.utils.Base64;
-import de.geeksfactory.opacclient.utils.ISBNTools;
+import de.geeksfactory.opacclient.utils.CoverResolver;
+import de.geeksfactory.opacclient.utils.CoverStore;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -83,25 +78,10 @@ public abstract class CoverDownloadTask extends AsyncTask<Void, Integer, CoverHo
         this.context = context;
     }
 
-    protected byte[] getImageApacheClient(HttpClient httpClient) throws IOException {
-        HttpGet httpget = new HttpGet(ISBNTools.getBestSizeCoverUrl(item.getCover(),
-                width, height));
-        HttpResponse response;
-
-        response = httpClient.execute(httpget);
-
-        HttpEntity entity = response.getEntity();
-        if (response.getStatusLine().getStatusCode() >= 400) {
-            HttpUtils.consume(entity);
-            return null;
-        }
-        return EntityUtils.toByteArray(entity);
-    }
-
-
-    protected byte[] getImageOkHttpClient(OkHttpClient httpClient) throws IOException {
+    protected byte[] getImageOkHttpClient(OkHttpClient httpClient, String url)
+            throws IOException {
         Request request = new Request.Builder()
-                .url(ISBNTools.getBestSizeCoverUrl(item.getCover(), width, height))
+                .url(url)
                 .header("Accept", "*/*")
                 .build();
         Response response = httpClient.newCall(request).execute();
@@ -111,10 +91,34 @@ public abstract class CoverDownloadTask extends AsyncTask<Void, Integer, CoverHo
             return null;
         }
 
-        return response.body().bytes();
+        byte[] bytes = response.body().bytes();
+        if (rejectImages.contains(Base64.encodeBytes(bytes))) {
+            // OPACs like VuFind have a 'cover proxy' that returns a simple GIF with
+            // the text 'no image available' if no cover was found. We don't want to
+            // display this image but the media type,
+            // so we detect it. We do this here
+            // instead of in the API implementation because only this way it can be
+            // done asynchronously.
+            return null;
+        } else if (bytes.length <= 64) {
+            // When images embedded from Amazon aren't available, a
+            // 1x1
+            // pixel image is returned (iOPAC)
+            return null;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the width and height covers are loaded in if the task is not given a size, e.g. in
+     * result lists
+     */
+    public static int getDefaultSize(Context context) {
+        float density = context.getResources().getDisplayMetrics().density;
+        return (int) density * 56;
     }
 
-    protected byte[] getImage() throws IOException {
+    protected OkHttpClient getHttpClient() {
         if (item.getCover().contains(".ekz.de/")) {
             /*
             This is a workaround after the cyber-attack on EKZ in 2022. Lots of libraries include
@@ -126,26 +130,45 @@ public abstract class CoverDownloadTask extends AsyncTask<Void, Integer, CoverHo
             for the general case, we need to use the same client as the API class since *some*
             systems require us to send proper cookies for covers.
              */
-            return getImageOkHttpClient(new AndroidHttpClientFactory().getNewOkHttpClient(false, false, false, 3));
+            return new AndroidHttpClientFactory().getNewOkHttpClient(false, false, false, 3);
         }
         try {
             OpacApi api = ((OpacClient) context.getApplicationContext()).getApi();
-            if (api instanceof ApacheBaseApi) {
-                return getImageApacheClient(((ApacheBaseApi) api).http_client);
-            } else if (api instanceof OkHttpBaseApi) {
-                return getImageOkHttpClient(((OkHttpBaseApi) api).http_client);
+            if (api instanceof OkHttpBaseApi) {
+                return ((OkHttpBaseApi) api).http_client;
             }
         } catch (OpacClient.LibraryRemovedException e) {
         }
-        HttpClient httpClient;
-        httpClient =
-                new AndroidHttpClientFactory().getNewApacheHttpClient(false, true, false, false);
-        return getImageApacheClient(httpClient);
+        return new AndroidHttpClientFactory().getNewOkHttpClient(false, true, false);
+    }
+
+    /**
+     * @return the image, or null if there is none. If the cover is looked up by ISBN, other
+     * providers are tried as well, see {@link CoverResolver}.
+     */
+    protected byte[] getImage(JSONObject libraryData) throws IOException {
+        OkHttpClient httpClient = getHttpClient();
+        return CoverResolver.getInstance().load(item.getCover(), width, height, libraryData,
+                url -> getImageOkHttpClient(httpClient, url));
     }
 
     @Override
     protected CoverHolder doInBackground(Void... voids) {
 
+        if (item.getCoverKey() != null && item.getCoverBitmap() == null) {
+            // The image might have been evicted to disk
+            CoverStore.getInstance().load(item.getCoverKey());
+        }
+        if (width == 0 && height == 0) {
+            // Use default
+            width = height = getDefaultSize(context);
+        }
+        String sizedKey = CoverStore.getSizedKey(item.getCover(), width, height);
+        if (item.getCover() != null && item.getCoverBitmap() == null
+                && CoverStore.getInstance().load(sizedKey) != null) {
+            // Another item with the same cover URL has already loaded it in this size
+            item.setCoverKey(sizedKey);
+        }
         if (item.getCover() != null && item.getCoverBitmap() == null) {
             JSONObject data = ((OpacClient) context.getApplicationContext()).getLibrary().getData();
             if (data.optBoolean("disable_covers", false)) {
@@ -154,32 +177,12 @@ public abstract class CoverDownloadTask extends AsyncTask<Void, Integer, CoverHo
                 return item;
             }
             try {
-                if (width == 0 && height == 0) {
-                    // Use default
-                    float density = context.getResources().getDisplayMetrics().density;
-                    width = height = (int) density * 56;
-                }
-
-
                 try {
-                    byte[] bytes = getImage();
-                    if (bytes == null || rejectImages.contains(Base64.encodeBytes(bytes))) {
-                        // OPACs like VuFind have a 'cover proxy' that returns a simple GIF with
-                        // the text 'no image available' if no cover was found. We don't want to
-                        // display this image but the media type,
-                        // so we detect it. We do this here
-                        // instead of in the API implementation because only this way it can be
-                        // done asynchronously.
+                    byte[] bytes = getImage(data);
+                    if (bytes == null) {
                         item.setCover(null);
                     } else {
-                        if (bytes.length > 64) {
-                            item.setCoverBitmap(bytes);
-                        } else {
-                            // When images embedded from Amazon aren't available, a
-                            // 1x1
-                            // pixel image is returned (iOPAC)
-                            item.setCover(null);
-                        }
+                        item.setCoverKey(CoverStore.getInstance().put(sizedKey, bytes));
                     }
                 } catch (IOException e) {
                     e.printStackTrace();
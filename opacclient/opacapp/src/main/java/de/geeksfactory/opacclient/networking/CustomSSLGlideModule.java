@@ -10,14 +10,10 @@ import com.bumptech.glide.module.GlideModule;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
+import java.security.GeneralSecurityException;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
 
 import okhttp3.OkHttpClient;
 
@@ -30,22 +26,18 @@ public class CustomSSLGlideModule implements GlideModule {
     @Override
     public void registerComponents(Context context, Glide glide) {
         try {
-            KeyStore keyStore = new AndroidHttpClientFactory().getKeyStore();
-
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            AdditionalKeyStoresSSLSocketFactory.AdditionalKeyStoresTrustManager
-                    trustManager =
-                    new AdditionalKeyStoresSSLSocketFactory.AdditionalKeyStoresTrustManager(
-                            keyStore);
-            sslContext.init(null, new TrustManager[]{trustManager}, null);
+            AndroidHttpClientFactory hcf = new AndroidHttpClientFactory();
+            X509TrustManager trustManager =
+                    TlsContextCache.getTrustManager(hcf.ssl_store_path, hcf::getKeyStore);
+            SSLContext sslContext =
+                    TlsContextCache.getSSLContext(hcf.ssl_store_path, hcf::getKeyStore);
 
             OkHttpClient client = new OkHttpClient.Builder()
                     .sslSocketFactory(sslContext.getSocketFactory(), trustManager)
                     .build();
             OkHttpUrlLoader.Factory factory = new OkHttpUrlLoader.Factory(client);
             glide.register(GlideUrl.class, InputStream.class, factory);
-        } catch (KeyStoreException | IOException | NoSuchAlgorithmException |
-                CertificateException | KeyManagementException e) {
+        } catch (GeneralSecurityException | IOException e) {
             throw new RuntimeException(e);
         }
 
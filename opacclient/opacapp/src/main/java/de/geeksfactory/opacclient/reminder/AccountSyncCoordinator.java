@@ -0,0 +1,146 @@
+package de.geeksfactory.opacclient.reminder;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import de.geeksfactory.opacclient.OpacClient;
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.AccountData;
+import de.geeksfactory.opacclient.storage.AccountDataSource;
+
+/**
+ * Makes sure an account is only loaded from the library once at a time, even if the account view,
+ * {@link SyncAccountJob} and other places want to refresh it at the same moment. Apart from
+ * saving work, this prevents two logins in parallel, which some OPACs answer by invalidating one
+ * of the sessions.
+ *
+ * All callers for the same account share a single in-flight fetch. If the stored account data is
+ * younger than the freshness window the caller passes, it is returned without a network call.
+ * The fetch runs at the {@link RequestScheduler} priority of the most urgent caller waiting for
+ * it, so a refresh by the user that joins a background sync is not queued behind other
+ * background requests.
+ */
+public class AccountSyncCoordinator {
+    /**
+     * Freshness window for refreshes requested by the user. Just long enough to catch
+     * accidental double refreshes and a background sync that has just finished, stored data is
+     * invalidated anyway after the user changes something in their account.
+     */
+    public static final long MAX_AGE_INTERACTIVE = 30 * 1000;
+
+    /**
+     * Freshness window for background syncs, which do not need to run again if the user has just
+     * looked at their account.
+     */
+    public static final long MAX_AGE_BACKGROUND = 30 * 60 * 1000;
+
+    private static AccountSyncCoordinator instance;
+
+    private final Map<Long, Fetch> inFlight = new HashMap<>();
+
+    /**
+     * Loads account data from the library and stores it using the {@link AccountDataSource}.
+     */
+    public interface Fetcher {
+        AccountData fetch() throws IOException, JSONException, OpacApi.OpacErrorException,
+                OpacClient.LibraryRemovedException;
+    }
+
+    private static class Fetch {
+        final FutureTask<AccountData> task;
+        final RequestScheduler.RaisablePriority priority;
+
+        Fetch(FutureTask<AccountData> task, RequestScheduler.Priority priority) {
+            this.task = task;
+            this.priority = new RequestScheduler.RaisablePriority(priority);
+        }
+    }
+
+    AccountSyncCoordinator() {
+    }
+
+    public static synchronized AccountSyncCoordinator getInstance() {
+        if (instance == null) {
+            instance = new AccountSyncCoordinator();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns up-to-date account data. If data stored less than <code>maxAge</code> milliseconds
+     * ago is available, it is read from <code>data</code>. Otherwise, if the account is already
+     * being loaded, this waits for that fetch and returns its result. Only if neither is the case,
+     * <code>fetcher</code> is run on the calling thread.
+     *
+     * As the fetcher's result is shared, it has to store the data itself before returning, and
+     * callers must not store the result again. Callers that did not run the fetch themselves
+     * never receive data marked as {@link AccountData#isUnchanged() unchanged}, they get the
+     * stored data instead.
+     *
+     * @return the account data, or <code>null</code> if the fetcher returned <code>null</code>
+     */
+    public AccountData sync(Account account, AccountDataSource data, long maxAge,
+            Fetcher fetcher) throws IOException, JSONException, OpacApi.OpacErrorException,
+            OpacClient.LibraryRemovedException {
+        Fetch fetch;
+        boolean leader = false;
+        synchronized (inFlight) {
+            fetch = inFlight.get(account.getId());
+            if (fetch == null) {
+                long cached = data.getCachedAccountDataTime(account);
+                if (cached > 0 && System.currentTimeMillis() - cached < maxAge) {
+                    return data.getCachedAccountData(account);
+                }
+                fetch = new Fetch(new FutureTask<>(fetcher::fetch),
+                        RequestScheduler.currentPriority());
+                inFlight.put(account.getId(), fetch);
+                leader = true;
+            } else {
+                fetch.priority.raise(RequestScheduler.currentPriority());
+            }
+        }
+
+        FutureTask<AccountData> task = fetch.task;
+        if (leader) {
+            try (RequestScheduler.Scope ignored = RequestScheduler.enter(fetch.priority)) {
+                task.run();
+            } finally {
+                synchronized (inFlight) {
+                    inFlight.remove(account.getId());
+                }
+            }
+        }
+
+        AccountData result;
+        try {
+            result = task.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof JSONException) throw (JSONException) cause;
+            if (cause instanceof OpacApi.OpacErrorException) {
+                throw (OpacApi.OpacErrorException) cause;
+            }
+            if (cause instanceof OpacClient.LibraryRemovedException) {
+                throw (OpacClient.LibraryRemovedException) cause;
+            }
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        if (!leader && result != null && result.isUnchanged()) {
+            return data.getCachedAccountData(account);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,229 @@
+package de.geeksfactory.opacclient.reminder;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.preference.PreferenceManager;
+import androidx.work.Constraints;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.WorkRequest;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import de.geeksfactory.opacclient.BuildConfig;
+import de.geeksfactory.opacclient.OpacClient;
+import de.geeksfactory.opacclient.R;
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.frontend.MainActivity;
+import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.storage.StarDataSource;
+import de.geeksfactory.opacclient.utils.AvailabilityChecker;
+import okhttp3.HttpUrl;
+
+/**
+ * Periodically checks whether starred items that were lent have become available and shows a
+ * notification if so. Only items whose availability changed are written back to the database.
+ */
+public class StarredAvailabilityJob extends Worker {
+
+    static final String TAG = "StarredAvailabilityJob";
+
+    public static final String PREF_STARRED_SERVICE = "notification_starred";
+    public static final String NOTIFICATION_CHANNEL_STARRED = "starred";
+    private static final String NOTIFICATION_TAG = "starred";
+
+    private static final int MAX_LIBRARIES = 4;
+    private static final int MAX_PER_HOST = 2;
+    private static final long DELAY = 2000;
+    private static final long JITTER = 3000;
+
+    private AvailabilityChecker checker;
+
+    public StarredAvailabilityJob(@NonNull Context context,
+            @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    public static void scheduleJob(Context ctx) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(ctx);
+        scheduleJob(ctx, sp.getBoolean(PREF_STARRED_SERVICE, false));
+    }
+
+    /**
+     * Schedules the job if <code>enabled</code> is true and cancels it otherwise. Use this when
+     * the preference is about to change and has not been saved yet.
+     */
+    public static void scheduleJob(Context ctx, boolean enabled) {
+        WorkManager wm = WorkManager.getInstance(ctx);
+        wm.cancelAllWorkByTag(TAG);
+        if (!enabled) {
+            return;
+        }
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(ctx);
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(
+                        sp.getBoolean("notification_service_wifionly", false) ?
+                                NetworkType.UNMETERED : NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        WorkRequest wr =
+                new PeriodicWorkRequest.Builder(StarredAvailabilityJob.class, 12, TimeUnit.HOURS)
+                        .addTag(TAG)
+                        .setConstraints(constraints)
+                        .build();
+        wm.enqueue(wr);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SharedPreferences sp =
+                PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        if (!sp.getBoolean(PREF_STARRED_SERVICE, false)) {
+            return Result.success();
+        }
+
+        final OpacClient app = (OpacClient) getApplicationContext();
+        StarDataSource data = new StarDataSource(app);
+        checker = new AvailabilityChecker(new AvailabilityChecker.ApiFactory() {
+            @Override
+            public OpacApi getApi(String library) {
+                try {
+                    return app.getNewApi(app.getLibrary(library));
+                } catch (IOException | JSONException | OpacClient.LibraryRemovedException e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public String getHost(String library) {
+                try {
+                    Library lib = app.getLibrary(library);
+                    HttpUrl url = HttpUrl.parse(lib.getData().optString("baseurl"));
+                    return url != null ? url.host() : null;
+                } catch (IOException | JSONException e) {
+                    return null;
+                }
+            }
+        }, MAX_LIBRARIES, MAX_PER_HOST, DELAY, JITTER);
+
+        List<AvailabilityChecker.Result> results;
+        try {
+            results = checker.check(data.getItemsForAvailabilityCheck());
+        } catch (InterruptedException e) {
+            return Result.success();
+        }
+
+        List<String> available = new ArrayList<>();
+        int changed = 0;
+        for (AvailabilityChecker.Result result : results) {
+            if (!result.isChanged()) continue;
+            data.updateAvailability(result.getItem().getId(), result.getState(),
+                    result.getDigest());
+            changed++;
+            if (result.becameAvailable()) {
+                available.add(result.getItem().getTitle());
+            }
+        }
+        if (BuildConfig.DEBUG) {
+            Log.i(TAG, "checked " + results.size() + " items, " + changed + " changed, " +
+                    available.size() + " became available");
+        }
+
+        if (!available.isEmpty()) {
+            showNotification(available);
+        }
+        return Result.success();
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        if (checker != null) checker.cancel();
+    }
+
+    private void setUpChannel(Context context) {
+        if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.O) {
+            return;
+        }
+        NotificationChannel channel = new NotificationChannel(
+                NOTIFICATION_CHANNEL_STARRED,
+                context.getString(R.string.notification_channel_starred),
+                NotificationManager.IMPORTANCE_DEFAULT
+        );
+        channel.enableLights(true);
+        channel.setLightColor(Color.RED);
+        channel.enableVibration(false);
+        channel.setSound(null, null);
+
+        NotificationManager notificationManager = (NotificationManager) context
+                .getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.createNotificationChannel(channel);
+    }
+
+    private void showNotification(List<String> titles) {
+        Context context = getApplicationContext();
+        setUpChannel(context);
+
+        String notificationText = context.getResources().getQuantityString(
+                R.plurals.notif_starred_ticker, titles.size(), titles.size());
+        String notificationTitle = context.getString(R.string.notif_title_starred);
+
+        NotificationCompat.Builder builder =
+                new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_STARRED)
+                        .setContentTitle(notificationTitle)
+                        .setContentText(notificationText).setTicker(notificationText);
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (int i = 0; i < 5 && i < titles.size(); i++) {
+            style.addLine(titles.get(i));
+        }
+        if (titles.size() > 5) {
+            style.setSummaryText(context.getString(R.string.notif_plus_more, titles.size() - 5));
+        }
+        style.setBigContentTitle(notificationText);
+
+        builder.setStyle(style).setSmallIcon(R.drawable.ic_stat_notification)
+               .setNumber(titles.size())
+               .setColor(context.getResources().getColor(R.color.primary_red)).setSound(null)
+               .setAutoCancel(true)
+               .setVisibility(NotificationCompat.VISIBILITY_PRIVATE);
+
+        Intent clickIntent =
+                new Intent(context, ((OpacClient) context.getApplicationContext())
+                        .getMainActivity());
+        clickIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        clickIntent.putExtra(MainActivity.EXTRA_FRAGMENT, "starred");
+
+        PendingIntent clickPendingIntent;
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
+            clickPendingIntent = PendingIntent.getActivity(context, 0, clickIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        } else {
+            clickPendingIntent = PendingIntent.getActivity(context, 0, clickIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        builder.setContentIntent(clickPendingIntent);
+
+        NotificationManager notificationManager = (NotificationManager) context
+                .getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(NOTIFICATION_TAG, 0, builder.build());
+    }
+}
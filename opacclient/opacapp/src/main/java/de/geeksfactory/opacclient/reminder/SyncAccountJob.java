@@ -45,12 +45,15 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 import de.geeksfactory.opacclient.BuildConfig;
 import de.geeksfactory.opacclient.OpacClient;
+import de.geeksfactory.opacclient.apis.AccountFingerprintApi;
 import de.geeksfactory.opacclient.apis.OpacApi;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.AccountData;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
 import de.geeksfactory.opacclient.objects.Library;
+import de.geeksfactory.opacclient.reporting.MetricsRecorder;
 import de.geeksfactory.opacclient.storage.AccountDataSource;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.webservice.LibraryConfigUpdateService;
 import de.geeksfactory.opacclient.webservice.WebService;
@@ -64,6 +67,11 @@ public class SyncAccountJob extends Worker {
     static final String TAG_IMMEDIATE = "SyncAccountJob_immediate";
 
     public static final String PREF_SYNC_SERVICE = "notification_service";
+    static final String PREF_FINGERPRINT_CHECKED = "sync_fingerprint_checked";
+    static final String PREF_FINGERPRINT_SKIPPED = "sync_fingerprint_skipped";
+
+    private int checked;
+    private int skipped;
 
     public SyncAccountJob(@NonNull Context context,
             @NonNull WorkerParameters workerParams) {
@@ -139,7 +147,11 @@ public class SyncAccountJob extends Worker {
         OpacClient app = getApp();
         AccountDataSource data = new AccountDataSource(getApplicationContext());
         ReminderHelper helper = new ReminderHelper(app);
-        boolean failed = syncAccounts(app, data, sp, helper);
+        boolean failed;
+        try (RequestScheduler.Scope ignored =
+                     RequestScheduler.enter(RequestScheduler.Priority.BACKGROUND)) {
+            failed = syncAccounts(app, data, sp, helper);
+        }
 
         if (BuildConfig.DEBUG) {
             Log.i(TAG, "SyncAccountJob finished " +
@@ -186,7 +198,7 @@ public class SyncAccountJob extends Worker {
             int count = getApp().getUpdateHandler().updateConfig(
                     service, prefs,
                     new LibraryConfigUpdateService.FileOutput(filesDir),
-                    new JsonSearchFieldDataSource(getApplicationContext()));
+                    new CompactSearchFieldDataSource(getApplicationContext()));
             Log.d(TAG, "updated config for " + String.valueOf(count) + " libraries");
             getApp().resetCache();
             if (!BuildConfig.DEBUG) {
@@ -201,6 +213,8 @@ public class SyncAccountJob extends Worker {
     boolean syncAccounts(OpacClient app, AccountDataSource data, SharedPreferences sp,
             ReminderHelper helper) {
         boolean failed = false;
+        checked = 0;
+        skipped = 0;
         List<Account> accounts = data.getAccountsWithPassword();
 
         if (!sp.contains("update_151_clear_cache")) {
@@ -208,41 +222,97 @@ public class SyncAccountJob extends Worker {
             sp.edit().putBoolean("update_151_clear_cache", true).apply();
         }
 
+        AccountSyncCoordinator coordinator = AccountSyncCoordinator.getInstance();
         for (Account account : accounts) {
             if (BuildConfig.DEBUG) {
                 Log.i(TAG, "Loading data for Account " + account.toString());
             }
 
-            AccountData res;
             try {
                 Library library = app.getLibrary(account.getLibrary());
                 if (!library.isAccountSupported()) {
                     data.deleteAccountData(account);
                     continue;
                 }
-                OpacApi api = app.getNewApi(library);
-                res = api.account(account);
+                // the account view might be loading the same account right now
+                AccountData res = coordinator.sync(account, data,
+                        AccountSyncCoordinator.MAX_AGE_BACKGROUND,
+                        () -> syncAccount(app, library, account, data, helper));
                 if (res == null) {
                     failed = true;
-                    continue;
                 }
             } catch (JSONException | IOException | OpacApi.OpacErrorException e) {
                 e.printStackTrace();
                 failed = true;
-                continue;
             } catch (OpacClient.LibraryRemovedException e) {
-                continue;
+                // skip this account
             }
+        }
 
-            account.setPasswordKnownValid(true);
-            try {
-                data.update(account);
-                data.storeCachedAccountData(account, res);
-            } finally {
-                helper.generateAlarms();
-            }
+        if (checked > 0) {
+            recordSkipRate(sp, checked, skipped);
         }
         return failed;
     }
 
+    private AccountData syncAccount(OpacClient app, Library library, Account account,
+            AccountDataSource data, ReminderHelper helper)
+            throws IOException, JSONException, OpacApi.OpacErrorException,
+            OpacClient.LibraryRemovedException {
+        AccountData res;
+        OpacApi api = app.getNewApi(library);
+        MetricsRecorder.Operation op = MetricsRecorder.beginOperation(api, "sync");
+        try {
+            if (api instanceof AccountFingerprintApi) {
+                res = ((AccountFingerprintApi) api).account(account,
+                        data.getCachedAccountFingerprint(account));
+                checked++;
+                if (res != null && res.isUnchanged()) op.setSkipped();
+            } else {
+                res = api.account(account);
+            }
+        } catch (IOException | OpacApi.OpacErrorException | JSONException e) {
+            op.setFailed();
+            throw e;
+        } finally {
+            op.finish();
+        }
+        if (res == null) {
+            return null;
+        }
+
+        account.setPasswordKnownValid(true);
+        if (res.isUnchanged()) {
+            // nothing to parse, store or generate alarms for
+            skipped++;
+            data.update(account);
+            data.touchCachedAccountData(account);
+            return res;
+        }
+        try {
+            data.update(account);
+            data.storeCachedAccountData(account, res);
+        } finally {
+            helper.generateAlarms();
+        }
+        return res;
+    }
+
+    /**
+     * Keeps a running count of account syncs that could have been skipped using a fingerprint
+     * and of those that actually were, to see how much parsing and database work is saved.
+     */
+    private void recordSkipRate(SharedPreferences sp, int checked, int skipped) {
+        int totalChecked = sp.getInt(PREF_FINGERPRINT_CHECKED, 0) + checked;
+        int totalSkipped = sp.getInt(PREF_FINGERPRINT_SKIPPED, 0) + skipped;
+        sp.edit()
+          .putInt(PREF_FINGERPRINT_CHECKED, totalChecked)
+          .putInt(PREF_FINGERPRINT_SKIPPED, totalSkipped)
+          .apply();
+        if (BuildConfig.DEBUG) {
+            Log.i(TAG, "skipped " + skipped + " of " + checked + " accounts as unchanged, " +
+                    totalSkipped + " of " + totalChecked + " in total");
+        }
+    }
+
 }
@@ -36,6 +36,7 @@ import de.geeksfactory.opacclient.objects.LentItem;
 import de.geeksfactory.opacclient.objects.ReservedItem;
 import de.geeksfactory.opacclient.objects.SearchResult;
 import de.geeksfactory.opacclient.reminder.Alarm;
+import de.geeksfactory.opacclient.utils.CoverStore;
 
 public class AccountDataSource {
     // Database fields
@@ -292,7 +293,8 @@ public class AccountDataSource {
         putOrNull(cv, "itemid", item.getId());
         putOrNull(cv, "status", item.getStatus());
         putOrNull(cv, "cover", item.getCover());
-        putOrNull(cv, "coverBitmap", item.getCoverBitmap());
+        // the image might have been evicted from memory, getCoverBitmap() would return null then
+        putOrNull(cv, "coverBitmap", CoverStore.getInstance().load(item.getCoverKey()));
         putOrNull(cv, "mediatype",
                 item.getMediaType() != null ? item.getMediaType().toString() : null);
     }
@@ -330,6 +332,7 @@ public class AccountDataSource {
         update.put("pendingFees", (String) null);
         update.put("validUntil", (String) null);
         update.put("warning", (String) null);
+        update.put("fingerprint", (String) null);
         database.update(AccountDatabase.TABLENAME_ACCOUNTS, update, null, null);
     }
 
@@ -344,6 +347,7 @@ public class AccountDataSource {
     public void invalidateCachedAccountData(Account account) {
         ContentValues update = new ContentValues();
         update.put("cached", 0);
+        update.put("fingerprint", (String) null);
         database.update(AccountDatabase.TABLENAME_ACCOUNTS, update, "id = ?",
                 new String[]{"" + account.getId()});
     }
@@ -352,9 +356,40 @@ public class AccountDataSource {
         return getAccount(account.getId()).getCached();
     }
 
+    /**
+     * @return the fingerprint of the account data stored using {@link
+     * #storeCachedAccountData(Account, AccountData)}, or <code>null</code> if the API does not
+     * support fingerprints or the cache was invalidated
+     */
+    public String getCachedAccountFingerprint(Account account) {
+        Cursor cursor = database.query(AccountDatabase.TABLENAME_ACCOUNTS,
+                new String[]{"fingerprint"}, "id = ?", new String[]{"" + account.getId()}, null,
+                null, null);
+        String fingerprint = null;
+        if (cursor.moveToFirst()) {
+            fingerprint = cursor.getString(0);
+        }
+        cursor.close();
+        return fingerprint;
+    }
+
+    /**
+     * Marks the stored account data as up to date without rewriting it, to be used if the
+     * account data was found to be unchanged.
+     */
+    public void touchCachedAccountData(Account account) {
+        ContentValues update = new ContentValues();
+        update.put("cached", System.currentTimeMillis());
+        database.update(AccountDatabase.TABLENAME_ACCOUNTS, update, "id = ?",
+                new String[]{"" + account.getId()});
+    }
+
     public void storeCachedAccountData(Account account, AccountData adata) {
         if (adata == null) {
             return;
+        } else if (adata.isUnchanged()) {
+            touchCachedAccountData(account);
+            return;
         }
 
         long time = System.currentTimeMillis();
@@ -363,6 +398,7 @@ public class AccountDataSource {
         update.put("pendingFees", adata.getPendingFees());
         update.put("validUntil", adata.getValidUntil());
         update.put("warning", adata.getWarning());
+        update.put("fingerprint", adata.getFingerprint());
         database.update(AccountDatabase.TABLENAME_ACCOUNTS, update, "id = ?",
                 new String[]{"" + account.getId()});
 
@@ -31,7 +31,7 @@ public class AccountDatabase extends SQLiteOpenHelper {
     private static AccountDatabase instance;
     public static final String[] COLUMNS = {"id", "bib", "label", "name",
             "password", "cached", "pendingFees", "validUntil", "warning", "passwordValid",
-            "supportPolicyHintSeen"};
+            "supportPolicyHintSeen", "fingerprint"};
     public static final String[] COLUMNS_ALARMS = {"id", "deadline", "media", "alarm",
             "notified", "finished"};
     // CHANGE THIS
@@ -47,7 +47,7 @@ public class AccountDatabase extends SQLiteOpenHelper {
     public static final String TABLENAME_RESERVATION = "accountdata_reservations";
     public static final String TABLENAME_ALARMS = "alarms";
     private static final String DATABASE_NAME = "accounts.db";
-    private static final int DATABASE_VERSION = 29; // REPLACE ONUPGRADE IF YOU
+    private static final int DATABASE_VERSION = 30; // REPLACE ONUPGRADE IF YOU
 
     private AccountDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -65,7 +65,7 @@ public class AccountDatabase extends SQLiteOpenHelper {
                 + " bib text," + " label text," + " name text,"
                 + " password text," + " cached integer," + " pendingFees text,"
                 + " validUntil text," + " warning text," + " passwordValid integer," +
-                " supportPolicyHintSeen integer" + ");");
+                " supportPolicyHintSeen integer," + " fingerprint text" + ");");
         db.execSQL(
                 "create table " + "accountdata_lent (" + "id integer primary key autoincrement," +
                         "account integer," + "title text," + "author text," + "format text," +
@@ -225,6 +225,9 @@ public class AccountDatabase extends SQLiteOpenHelper {
             db.execSQL("alter table accountdata_lent add column coverBitmap blob");
             db.execSQL("alter table accountdata_reservations add column coverBitmap blob");
         }
+        if (oldVersion < 30) {
+            db.execSQL("alter table accounts add column fingerprint text");
+        }
     }
 
 }
@@ -0,0 +1,345 @@
+package de.geeksfactory.opacclient.storage;
+
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.utils.IOUtils;
+
+/**
+ * Stores search fields in one file per library, starting with a small header (update time, app
+ * version, content hash and language) that can be read without parsing the fields themselves.
+ * Headers and parsed field lists are kept in memory for the lifetime of the process, callers get
+ * copies of the fields as they modify them. Files are replaced atomically by writing to a
+ * temporary file first. If the fields did not change, only the update time and version in the
+ * header are overwritten.
+ *
+ * Data saved by {@link JsonSearchFieldDataSource} is migrated on first access.
+ */
+public class CompactSearchFieldDataSource implements SearchFieldDataSource {
+
+    private static final int MAGIC = 0x4f534632; // "OSF2"
+    // files without the content hash
+    private static final int MAGIC_V1 = 0x4f534631; // "OSF1"
+    // offset of the update time, which is followed by the version
+    private static final int TIME_OFFSET = 4;
+    private static final String EXTENSION = ".fields";
+    private static final String LEGACY_EXTENSION = ".json";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Map<String, Header> headers = new ConcurrentHashMap<>();
+    private static final Map<String, List<SearchField>> fieldCache = new ConcurrentHashMap<>();
+    private static final Object writeLock = new Object();
+
+    private File dir;
+    private Context context;
+
+    public CompactSearchFieldDataSource(Context context) {
+        this.dir = new File(context.getFilesDir(), "fields");
+        dir.mkdirs();
+        this.context = context;
+    }
+
+    private static class Header {
+        long time;
+        int version;
+        String hash;
+        String language;
+    }
+
+    @Override
+    public void saveSearchFields(String libraryId, List<SearchField> fields) {
+        List<SearchField> saved = new ArrayList<>();
+        JSONArray array = new JSONArray();
+        try {
+            for (SearchField field : fields) {
+                if (field.getId().length() > 0) {
+                    array.put(field.toJSON());
+                    saved.add(field);
+                }
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+
+        byte[] data = array.toString().getBytes(UTF8);
+        Header header = new Header();
+        header.time = System.currentTimeMillis();
+        header.hash = IOUtils.sha1(data);
+        header.language = context.getResources().getConfiguration().locale.getLanguage();
+        try {
+            header.version = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), 0).versionCode;
+        } catch (NameNotFoundException e) {
+            // should never happen
+            e.printStackTrace();
+        }
+        synchronized (writeLock) {
+            Header old = getHeader(libraryId);
+            if (old != null && header.hash.equals(old.hash)
+                    && header.language.equals(old.language) && updateHeader(libraryId, header)) {
+                return;
+            }
+            write(libraryId, header, data, saved);
+        }
+    }
+
+    @Override
+    public List<SearchField> getSearchFields(String libraryId) {
+        List<SearchField> cached = fieldCache.get(libraryId);
+        if (cached == null) {
+            cached = readFields(libraryId);
+            if (cached == null) return null;
+        }
+        return copy(cached);
+    }
+
+    @Override
+    public boolean hasSearchFields(String libraryId) {
+        return headers.containsKey(libraryId) || getFile(libraryId).exists() ||
+                getLegacyFile(libraryId).exists();
+    }
+
+    @Override
+    public void clearSearchFields(String libraryId) {
+        synchronized (writeLock) {
+            getFile(libraryId).delete();
+            getLegacyFile(libraryId).delete();
+            headers.remove(libraryId);
+            fieldCache.remove(libraryId);
+        }
+    }
+
+    @Override
+    public void clearAll() {
+        synchronized (writeLock) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            headers.clear();
+            fieldCache.clear();
+        }
+    }
+
+    @Override
+    public long getLastSearchFieldUpdateTime(String libraryId) {
+        Header header = getHeader(libraryId);
+        return header != null ? header.time : 0;
+    }
+
+    @Override
+    public int getLastSearchFieldUpdateVersion(String libraryId) {
+        Header header = getHeader(libraryId);
+        return header != null ? header.version : 0;
+    }
+
+    @Override
+    public String getSearchFieldLanguage(String libraryId) {
+        Header header = getHeader(libraryId);
+        return header != null ? header.language : null;
+    }
+
+    private Header getHeader(String libraryId) {
+        Header header = headers.get(libraryId);
+        if (header != null) return header;
+
+        // reading under the lock, so that a concurrent write cannot be overwritten with the
+        // header read before it
+        synchronized (writeLock) {
+            header = headers.get(libraryId);
+            if (header != null) return header;
+
+            File file = getFile(libraryId);
+            if (!file.exists()) {
+                migrateLegacy(libraryId);
+                return headers.get(libraryId);
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 256));
+                header = readHeader(in);
+                headers.put(libraryId, header);
+                return header;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    private List<SearchField> readFields(String libraryId) {
+        synchronized (writeLock) {
+            List<SearchField> cached = fieldCache.get(libraryId);
+            if (cached != null) return cached;
+
+            File file = getFile(libraryId);
+            if (!file.exists()) {
+                migrateLegacy(libraryId);
+                return fieldCache.get(libraryId);
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                Header header = readHeader(in);
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                List<SearchField> fields = Collections.unmodifiableList(parseFields(data));
+                headers.put(libraryId, header);
+                fieldCache.put(libraryId, fields);
+                return fields;
+            } catch (IOException | JSONException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC && magic != MAGIC_V1) {
+            throw new IOException("Unknown search field file format");
+        }
+        Header header = new Header();
+        header.time = in.readLong();
+        header.version = in.readInt();
+        header.hash = magic == MAGIC ? in.readUTF() : null;
+        header.language = in.readBoolean() ? in.readUTF() : null;
+        return header;
+    }
+
+    /**
+     * Overwrites update time and version of an existing file whose fields did not change.
+     *
+     * @return false if the file could not be updated and needs to be written again
+     */
+    private boolean updateHeader(String libraryId, Header header) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(getFile(libraryId), "rw");
+            if (file.readInt() != MAGIC) return false;
+            file.seek(TIME_OFFSET);
+            file.writeLong(header.time);
+            file.writeInt(header.version);
+            file.getFD().sync();
+            headers.put(libraryId, header);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    private static List<SearchField> parseFields(byte[] data) throws JSONException {
+        JSONArray array = new JSONArray(new String(data, UTF8));
+        List<SearchField> fields = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            fields.add(SearchField.fromJSON(array.getJSONObject(i)));
+        }
+        return fields;
+    }
+
+    private static List<SearchField> copy(List<SearchField> fields) {
+        List<SearchField> copies = new ArrayList<>(fields.size());
+        for (SearchField field : fields) {
+            copies.add(field.copy());
+        }
+        return copies;
+    }
+
+    private void write(String libraryId, Header header, byte[] data, List<SearchField> fields) {
+        synchronized (writeLock) {
+            File file = getFile(libraryId);
+            File tmp = new File(dir, libraryId + EXTENSION + ".tmp");
+            DataOutputStream out = null;
+            try {
+                FileOutputStream fos = new FileOutputStream(tmp);
+                out = new DataOutputStream(new BufferedOutputStream(fos));
+                out.writeInt(MAGIC);
+                out.writeLong(header.time);
+                out.writeInt(header.version);
+                out.writeUTF(header.hash);
+                out.writeBoolean(header.language != null);
+                if (header.language != null) out.writeUTF(header.language);
+                out.writeInt(data.length);
+                out.write(data);
+                out.flush();
+                fos.getFD().sync();
+                out.close();
+                out = null;
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Could not rename " + tmp + " to " + file);
+                }
+                getLegacyFile(libraryId).delete();
+                headers.put(libraryId, header);
+                fieldCache.put(libraryId, Collections.unmodifiableList(copy(fields)));
+            } catch (IOException e) {
+                e.printStackTrace();
+                tmp.delete();
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+        }
+    }
+
+    /**
+     * Converts a file written by {@link JsonSearchFieldDataSource}, keeping its header values.
+     */
+    private void migrateLegacy(String libraryId) {
+        if (!getLegacyFile(libraryId).exists()) return;
+        JsonSearchFieldDataSource legacy = new JsonSearchFieldDataSource(context);
+        List<SearchField> fields = legacy.getSearchFields(libraryId);
+        if (fields == null) return;
+        JSONArray array = new JSONArray();
+        try {
+            for (SearchField field : fields) {
+                array.put(field.toJSON());
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return;
+        }
+        byte[] data = array.toString().getBytes(UTF8);
+        Header header = new Header();
+        header.time = legacy.getLastSearchFieldUpdateTime(libraryId);
+        header.version = legacy.getLastSearchFieldUpdateVersion(libraryId);
+        header.hash = IOUtils.sha1(data);
+        header.language = legacy.getSearchFieldLanguage(libraryId);
+        write(libraryId, header, data, fields);
+    }
+
+    private File getFile(String libraryId) {
+        return new File(dir, libraryId + EXTENSION);
+    }
+
+    private File getLegacyFile(String libraryId) {
+        return new File(dir, libraryId + LEGACY_EXTENSION);
+    }
+}
@@ -25,6 +25,7 @@ import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 
 import java.util.List;
@@ -142,6 +143,27 @@ public class StarContentProvider extends ContentProvider {
         return itemUri;
     }
 
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if (getTypeMime(uri) != Mime.STAR_DIR) {
+            return 0;
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                db.insertOrThrow(StarDatabase.STAR_TABLE, null, value);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (values.length > 0) {
+            notifyUri(uri);
+        }
+        return values.length;
+    }
+
     private Cursor queryDatabase(String table, String[] projection,
             String selection, String[] selectionArgs, String groupBy,
             String having, String orderBy) {
@@ -21,23 +21,27 @@
  */
 package de.geeksfactory.opacclient.storage;
 
-import android.app.Activity;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import de.geeksfactory.opacclient.OpacClient;
 import de.geeksfactory.opacclient.objects.SearchResult;
+import de.geeksfactory.opacclient.utils.AvailabilityChecker;
 
 public class StarDataSource {
 
-    private Activity context;
+    private Context context;
 
-    public StarDataSource(Activity context) {
+    public StarDataSource(Context context) {
         this.context = context;
     }
 
@@ -57,14 +61,61 @@ public class StarDataSource {
         return item;
     }
 
-    public void star(String nr, String title, String bib, SearchResult.MediaType mediaType) {
+    private StarredIndex getIndex() {
+        return StarredIndex.getInstance(context.getContentResolver(),
+                ((OpacClient) context.getApplicationContext()).getStarProviderStarUri());
+    }
+
+    private static ContentValues toContentValues(String nr, String title, String bib,
+            SearchResult.MediaType mediaType) {
         ContentValues values = new ContentValues();
         values.put("medianr", nr);
         values.put("title", title);
         values.put("bib", bib);
         values.put("mediatype", mediaType != null ? mediaType.toString() : null);
+        return values;
+    }
+
+    public void star(String nr, String title, String bib, SearchResult.MediaType mediaType) {
         context.getContentResolver()
-               .insert(((OpacClient) context.getApplication()).getStarProviderStarUri(), values);
+               .insert(((OpacClient) context.getApplicationContext()).getStarProviderStarUri(),
+                       toContentValues(nr, title, bib, mediaType));
+        getIndex().add(bib, nr, title);
+    }
+
+    /**
+     * Stars all given items that are not starred yet, using a single transaction.
+     *
+     * @param bib   The library the items belong to
+     * @param items The items to star. Items without an ID (media number) are identified by their
+     *              title.
+     * @return The number of items that were starred
+     */
+    public int starAll(String bib, List<Starred> items) {
+        StarredIndex index = getIndex();
+        Set<String> ids = new HashSet<>();
+        Set<String> titles = new HashSet<>();
+        List<ContentValues> values = new ArrayList<>();
+        for (Starred item : items) {
+            if (item.getMNr() != null) {
+                if (index.containsId(bib, item.getMNr()) || !ids.add(item.getMNr())) continue;
+            } else {
+                if (item.getTitle() == null || index.containsTitle(bib, item.getTitle()) ||
+                        !titles.add(item.getTitle())) {
+                    continue;
+                }
+            }
+            values.add(toContentValues(item.getMNr(), item.getTitle(), bib, item.getMediaType()));
+        }
+        if (values.isEmpty()) return 0;
+        int inserted = context.getContentResolver()
+                              .bulkInsert(((OpacClient) context.getApplicationContext())
+                                              .getStarProviderStarUri(),
+                                      values.toArray(new ContentValues[values.size()]));
+        for (ContentValues value : values) {
+            index.add(bib, value.getAsString("medianr"), value.getAsString("title"));
+        }
+        return inserted;
     }
 
     public List<Starred> getAllItems(String bib) {
@@ -72,7 +123,7 @@ public class StarDataSource {
         String[] selA = {bib};
         Cursor cursor = context
                 .getContentResolver()
-                .query(((OpacClient) context.getApplication())
+                .query(((OpacClient) context.getApplicationContext())
                                 .getStarProviderStarUri(),
                         StarDatabase.COLUMNS, StarDatabase.STAR_WHERE_LIB,
                         selA, null);
@@ -92,7 +143,7 @@ public class StarDataSource {
         String[] selA = {bib, title};
         Cursor cursor = context
                 .getContentResolver()
-                .query(((OpacClient) context.getApplication())
+                .query(((OpacClient) context.getApplicationContext())
                                 .getStarProviderStarUri(),
                         StarDatabase.COLUMNS,
                         StarDatabase.STAR_WHERE_TITLE_LIB, selA, null);
@@ -112,7 +163,7 @@ public class StarDataSource {
         String[] selA = {bib, id};
         Cursor cursor = context
                 .getContentResolver()
-                .query(((OpacClient) context.getApplication())
+                .query(((OpacClient) context.getApplicationContext())
                                 .getStarProviderStarUri(),
                         StarDatabase.COLUMNS, StarDatabase.STAR_WHERE_NR_LIB,
                         selA, null);
@@ -132,7 +183,7 @@ public class StarDataSource {
         String[] selA = {String.valueOf(id)};
         Cursor cursor = context
                 .getContentResolver()
-                .query(((OpacClient) context.getApplication())
+                .query(((OpacClient) context.getApplicationContext())
                                 .getStarProviderStarUri(),
                         StarDatabase.COLUMNS, StarDatabase.STAR_WHERE_ID, selA,
                         null);
@@ -152,40 +203,66 @@ public class StarDataSource {
         if (id == null) {
             return false;
         }
-        String[] selA = {bib, id};
-        Cursor cursor = context
-                .getContentResolver()
-                .query(((OpacClient) context.getApplication())
-                                .getStarProviderStarUri(),
-                        StarDatabase.COLUMNS, StarDatabase.STAR_WHERE_NR_LIB,
-                        selA, null);
-        int c = cursor.getCount();
-        cursor.close();
-        return (c > 0);
+        return getIndex().containsId(bib, id);
     }
 
     public boolean isStarredTitle(String bib, String title) {
         if (title == null) {
             return false;
         }
-        String[] selA = {bib, title};
+        return getIndex().containsTitle(bib, title);
+    }
+
+    /**
+     * @return All starred items (of all libraries) that have an ID and whose availability can
+     * therefore be checked, together with their last known availability
+     */
+    public List<AvailabilityChecker.Item> getItemsForAvailabilityCheck() {
+        List<AvailabilityChecker.Item> items = new ArrayList<>();
         Cursor cursor = context
                 .getContentResolver()
-                .query(((OpacClient) context.getApplication())
+                .query(((OpacClient) context.getApplicationContext())
                                 .getStarProviderStarUri(),
-                        StarDatabase.COLUMNS,
-                        StarDatabase.STAR_WHERE_TITLE_LIB, selA, null);
-        int c = cursor.getCount();
+                        StarDatabase.AVAILABILITY_COLUMNS, StarDatabase.STAR_WHERE_HAS_NR,
+                        null, null);
+        if (cursor == null) return items;
+
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            items.add(new AvailabilityChecker.Item(cursor.getLong(0), cursor.getString(2),
+                    cursor.getString(1), cursor.getString(3), cursor.getInt(4),
+                    cursor.getInt(5)));
+            cursor.moveToNext();
+        }
+        // Make sure to close the cursor
         cursor.close();
-        return (c > 0);
+        return items;
+    }
+
+    public void updateAvailability(long id, int state, int digest) {
+        ContentValues cv = new ContentValues();
+        cv.put("availability", state);
+        cv.put("availability_digest", digest);
+        // update the item URI, so that the provider only reports a change of this item
+        context.getContentResolver()
+               .update(ContentUris.withAppendedId(
+                       ((OpacClient) context.getApplicationContext()).getStarProviderStarUri(),
+                       id), cv, null, null);
     }
 
+    /**
+     * @param item The item to remove, may be null if it has already been removed
+     */
     public void remove(Starred item) {
+        if (item == null) return;
         String[] selA = {"" + item.getId()};
         context.getContentResolver()
-               .delete(((OpacClient) context.getApplication())
+               .delete(((OpacClient) context.getApplicationContext())
                                .getStarProviderStarUri(),
                        StarDatabase.STAR_WHERE_ID, selA);
+        // the library of the item is not known here, so the index is loaded again when it is
+        // used next, instead of waiting for the provider's change notification
+        getIndex().invalidate();
     }
 
     public void renameLibraries(Map<String, String> map) {
@@ -194,7 +271,7 @@ public class StarDataSource {
             cv.put("bib", entry.getValue());
 
             context.getContentResolver()
-                   .update(((OpacClient) context.getApplication())
+                   .update(((OpacClient) context.getApplicationContext())
                                    .getStarProviderStarUri(),
                            cv, StarDatabase.STAR_WHERE_LIB,
                            new String[]{entry.getKey()});
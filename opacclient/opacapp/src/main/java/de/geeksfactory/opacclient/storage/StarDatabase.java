@@ -31,16 +31,21 @@ public class StarDatabase extends SQLiteOpenHelper {
     public static final String STAR_TABLE = "starred";
     private static final String DATABASE_CREATE = "create table " + STAR_TABLE
             + " ( id integer primary key autoincrement," + " medianr text,"
-            + " bib text," + " title text," + " mediatype text" + ");";
+            + " bib text," + " title text," + " mediatype text,"
+            + " availability integer default 0," + " availability_digest integer default 0"
+            + ");";
     // CHANGE THIS
     public static final String STAR_WHERE_ID = "id = ?";
     public static final String STAR_WHERE_LIB = "bib = ?";
     public static final String STAR_WHERE_TITLE_LIB = "bib = ? AND medianr IS NULL AND title = ?";
     public static final String STAR_WHERE_NR_LIB = "bib = ? AND medianr = ?";
+    public static final String STAR_WHERE_HAS_NR = "medianr IS NOT NULL";
     public static final String[] COLUMNS = {"id AS _id", "medianr", "bib",
             "title", "mediatype"};
+    public static final String[] AVAILABILITY_COLUMNS = {"id AS _id", "medianr", "bib",
+            "title", "availability", "availability_digest"};
     private static final String DATABASE_NAME = "starred.db";
-    private static final int DATABASE_VERSION = 6; // REPLACE ONUPGRADE IF YOU
+    private static final int DATABASE_VERSION = 7; // REPLACE ONUPGRADE IF YOU
 
     public StarDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -59,6 +64,13 @@ public class StarDatabase extends SQLiteOpenHelper {
                 // Add column for media type
                 db.execSQL("alter table " + STAR_TABLE + " add column mediatype text");
             }
+            if (oldVersion < 7) {
+                // Add columns for the last known availability
+                db.execSQL("alter table " + STAR_TABLE +
+                        " add column availability integer default 0");
+                db.execSQL("alter table " + STAR_TABLE +
+                        " add column availability_digest integer default 0");
+            }
         } else {
             Log.w(StarDatabase.class.getName(), "Upgrading database from version "
                     + oldVersion + " to " + newVersion
@@ -70,7 +82,8 @@ public class StarDatabase extends SQLiteOpenHelper {
             db.execSQL("insert into temp select * from starred;");
             db.execSQL("drop table starred;");
             onCreate(db);
-            db.execSQL("insert into starred select * from temp;");
+            db.execSQL("insert into starred (id, medianr, bib, title) " +
+                    "select id, medianr, bib, title from temp;");
             db.execSQL("drop table temp;");
         }
     }
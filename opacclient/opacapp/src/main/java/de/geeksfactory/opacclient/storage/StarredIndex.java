@@ -0,0 +1,187 @@
+package de.geeksfactory.opacclient.storage;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide index of starred items, so that checking whether an item is starred does not need
+ * a query to the {@link StarContentProvider}. The index is loaded with a single query when it is
+ * first needed and loaded again after the provider reports a change. Changes reported for a
+ * single item, like updates of its availability, only update the affected row.
+ */
+public class StarredIndex {
+    private static final String[] PROJECTION = {"medianr", "bib", "title", "id"};
+
+    private static StarredIndex instance;
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final Set<String> ids = new HashSet<>();
+    private final Set<String> titles = new HashSet<>();
+    private final Map<Long, String> idRows = new HashMap<>();
+    private final Map<Long, String> titleRows = new HashMap<>();
+    private boolean loaded = false;
+
+    StarredIndex(ContentResolver resolver, Uri uri) {
+        this.resolver = resolver;
+        this.uri = uri;
+        resolver.registerContentObserver(uri, true, new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                invalidate();
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri changed) {
+                Long row = changed != null ? parseRow(changed) : null;
+                if (row != null) {
+                    updateRow(row);
+                } else {
+                    invalidate();
+                }
+            }
+        });
+    }
+
+    /**
+     * @param resolver ContentResolver of the application context, as the index is never
+     *                 unregistered
+     * @param uri      URI of the starred items in the {@link StarContentProvider}
+     */
+    public static synchronized StarredIndex getInstance(ContentResolver resolver, Uri uri) {
+        if (instance == null) {
+            instance = new StarredIndex(resolver, uri);
+        }
+        return instance;
+    }
+
+    /**
+     * @see StarDatabase#STAR_WHERE_NR_LIB
+     */
+    public synchronized boolean containsId(String bib, String id) {
+        load();
+        return ids.contains(key(bib, id));
+    }
+
+    /**
+     * Only matches items starred without an ID, like {@link StarDatabase#STAR_WHERE_TITLE_LIB}.
+     */
+    public synchronized boolean containsTitle(String bib, String title) {
+        load();
+        return titles.contains(key(bib, title));
+    }
+
+    /**
+     * Add an item that has just been inserted, so that it is found even before the provider's
+     * change notification arrived.
+     */
+    public synchronized void add(String bib, String id, String title) {
+        if (!loaded) return;
+        if (id != null) {
+            ids.add(key(bib, id));
+        } else if (title != null) {
+            titles.add(key(bib, title));
+        }
+    }
+
+    /**
+     * Remove an item that has just been deleted, so that it is not found anymore even before the
+     * provider's change notification arrived.
+     */
+    public synchronized void remove(String bib, String id, String title) {
+        if (!loaded) return;
+        if (id != null) {
+            ids.remove(key(bib, id));
+        } else if (title != null) {
+            titles.remove(key(bib, title));
+        }
+    }
+
+    public synchronized void invalidate() {
+        loaded = false;
+        ids.clear();
+        titles.clear();
+        idRows.clear();
+        titleRows.clear();
+    }
+
+    /**
+     * Load a single row of the provider again after it has changed or has been deleted.
+     */
+    synchronized void updateRow(long row) {
+        if (!loaded) return;
+        Cursor cursor = resolver.query(uri, PROJECTION, StarDatabase.STAR_WHERE_ID,
+                new String[]{String.valueOf(row)}, null);
+        if (cursor == null) {
+            invalidate();
+            return;
+        }
+        try {
+            removeRow(row);
+            if (cursor.moveToNext()) addRow(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void load() {
+        if (loaded) return;
+        Cursor cursor = resolver.query(uri, PROJECTION, null, null, null);
+        if (cursor == null) return;
+        try {
+            while (cursor.moveToNext()) {
+                addRow(cursor);
+            }
+        } finally {
+            cursor.close();
+        }
+        loaded = true;
+    }
+
+    private void addRow(Cursor cursor) {
+        String id = cursor.getString(0);
+        String bib = cursor.getString(1);
+        String title = cursor.getString(2);
+        long row = cursor.getLong(3);
+        if (id != null) {
+            ids.add(key(bib, id));
+            idRows.put(row, key(bib, id));
+        } else if (title != null) {
+            titles.add(key(bib, title));
+            titleRows.put(row, key(bib, title));
+        }
+    }
+
+    private void removeRow(long row) {
+        // the same item might be starred more than once
+        String key = idRows.remove(row);
+        if (key != null && !idRows.containsValue(key)) ids.remove(key);
+        key = titleRows.remove(row);
+        if (key != null && !titleRows.containsValue(key)) titles.remove(key);
+    }
+
+    /**
+     * @return the row of an item URI below {@link #uri}, or null for other URIs
+     */
+    private Long parseRow(Uri changed) {
+        List<String> segments = changed.getPathSegments();
+        if (segments.size() != uri.getPathSegments().size() + 1) return null;
+        try {
+            return Long.parseLong(changed.getLastPathSegment());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String key(String bib, String value) {
+        return bib + "\n" + value;
+    }
+}
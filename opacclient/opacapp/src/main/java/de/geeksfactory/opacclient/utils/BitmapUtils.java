@@ -1,9 +1,15 @@
 package de.geeksfactory.opacclient.utils;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 public class BitmapUtils {
+    /**
+     * Size of the cover thumbnails in result and account lists, in dp
+     */
+    public static final int THUMBNAIL_SIZE = 56;
+
     public static Bitmap bitmapFromBytes(byte[] b) {
         try {
             if (b == null) {
@@ -14,4 +20,40 @@ public class BitmapUtils {
             return null;
         }
     }
+
+    /**
+     * Decode an image, subsampling it so that it is not much larger than needed to fill the
+     * given size. The result is at least as large as the requested size, unless the image itself
+     * is smaller.
+     */
+    public static Bitmap bitmapFromBytes(byte[] b, int reqWidth, int reqHeight) {
+        try {
+            if (b == null) {
+                return null;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(b, 0, b.length, options);
+
+            options.inSampleSize = 1;
+            if (reqWidth > 0 && reqHeight > 0) {
+                while (options.outWidth / (options.inSampleSize * 2) >= reqWidth
+                        && options.outHeight / (options.inSampleSize * 2) >= reqHeight) {
+                    options.inSampleSize *= 2;
+                }
+            }
+            options.inJustDecodeBounds = false;
+            return BitmapFactory.decodeByteArray(b, 0, b.length, options);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decode an image for display as a list thumbnail.
+     */
+    public static Bitmap thumbnailFromBytes(Context context, byte[] b) {
+        int size = (int) (context.getResources().getDisplayMetrics().density * THUMBNAIL_SIZE);
+        return bitmapFromBytes(b, size, size);
+    }
 }
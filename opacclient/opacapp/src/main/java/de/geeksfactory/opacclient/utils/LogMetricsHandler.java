@@ -0,0 +1,25 @@
+package de.geeksfactory.opacclient.utils;
+
+import android.util.Log;
+
+import de.geeksfactory.opacclient.reporting.MetricsHandler;
+import de.geeksfactory.opacclient.reporting.OperationMetrics;
+import de.geeksfactory.opacclient.reporting.RequestMetrics;
+
+/**
+ * Writes HTTP request metrics to the log. Used in debug builds to find out which requests of a
+ * library system are slow.
+ */
+public class LogMetricsHandler implements MetricsHandler {
+    private static final String TAG = "OpacMetrics";
+
+    @Override
+    public void onRequestFinished(RequestMetrics metrics) {
+        Log.d(TAG, metrics.toString());
+    }
+
+    @Override
+    public void onOperationFinished(OperationMetrics metrics) {
+        Log.i(TAG, metrics.toString());
+    }
+}
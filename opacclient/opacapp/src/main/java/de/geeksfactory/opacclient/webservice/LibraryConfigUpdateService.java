@@ -27,16 +27,21 @@ import org.joda.time.DateTime;
 import org.json.JSONException;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import de.geeksfactory.opacclient.BuildConfig;
 import de.geeksfactory.opacclient.OpacClient;
-import de.geeksfactory.opacclient.storage.JsonSearchFieldDataSource;
+import de.geeksfactory.opacclient.storage.CompactSearchFieldDataSource;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.utils.ErrorReporter;
 import io.sentry.core.Sentry;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
 
 public class LibraryConfigUpdateService extends IntentService {
     private static final String NAME = "LibraryConfigUpdateService";
@@ -57,7 +62,7 @@ public class LibraryConfigUpdateService extends IntentService {
         filesDir.mkdirs();
         try {
             int count = ((OpacClient) getApplication()).getUpdateHandler().updateConfig(
-                    service, prefs, new FileOutput(filesDir), new JsonSearchFieldDataSource(this));
+                    service, prefs, new FileOutput(filesDir), new CompactSearchFieldDataSource(this));
             if (!BuildConfig.DEBUG) {
                 DateTime lastUpdate = prefs.getLastLibraryConfigUpdate();
                 Sentry.setExtra(OpacClient.SENTRY_DATA_VERSION, lastUpdate != null ?
@@ -80,28 +85,94 @@ public class LibraryConfigUpdateService extends IntentService {
         }
     }
 
+    /**
+     * Writes library configuration files. Files are first written to a staging directory next to
+     * the target directory and moved into place by {@link #commit(boolean)}. Every file is
+     * replaced with a single rename, so readers see either the old or the new version of a
+     * library's configuration, and an interrupted update leaves the installed files untouched.
+     */
     public static class FileOutput {
+        private static final String STAGING_SUFFIX = ".staging";
+
         private final File dir;
+        private final File stagingDir;
+        private final Set<String> written = new HashSet<>();
 
         public FileOutput(File dir) {
             this.dir = dir;
+            this.stagingDir = new File(dir.getParentFile(), dir.getName() + STAGING_SUFFIX);
         }
 
-        public void writeFile(String filename, String data) throws IOException {
-            File file = new File(dir, filename);
-            FileWriter writer = null;
+        /**
+         * Stages a file, unless it has the same content as the installed one.
+         *
+         * @return whether the content of the file changed
+         */
+        public boolean writeFile(String filename, ByteString data) throws IOException {
+            written.add(filename);
+            File installed = new File(dir, filename);
+            if (installed.length() == data.size() && hash(installed).equals(data.sha256())) {
+                return false;
+            }
+            if (!stagingDir.isDirectory() && !stagingDir.mkdirs()) {
+                throw new IOException("Could not create " + stagingDir);
+            }
+            BufferedSink sink = Okio.buffer(Okio.sink(new File(stagingDir, filename)));
             try {
-                writer = new FileWriter(file);
-                writer.write(data);
+                sink.write(data);
             } finally {
-                if (writer != null) writer.close();
+                sink.close();
+            }
+            return true;
+        }
+
+        /**
+         * Moves the staged files into place. Files are only removed once all staged files have
+         * been installed, so a failed commit never leaves a library without its configuration.
+         *
+         * @param replaceAll whether installed files that were not written during this update
+         *                   should be removed
+         */
+        public void commit(boolean replaceAll) throws IOException {
+            File[] staged = stagingDir.listFiles();
+            if (staged != null) {
+                for (File file : staged) {
+                    if (!file.renameTo(new File(dir, file.getName()))) {
+                        throw new IOException("Could not install " + file.getName());
+                    }
+                }
             }
+            if (replaceAll) {
+                File[] installed = dir.listFiles();
+                if (installed != null) {
+                    for (File file : installed) {
+                        if (!written.contains(file.getName())) file.delete();
+                    }
+                }
+            }
+            discard();
+        }
+
+        /**
+         * Removes all staged files.
+         */
+        public void discard() {
+            written.clear();
+            File[] staged = stagingDir.listFiles();
+            if (staged != null) {
+                for (File file : staged) {
+                    file.delete();
+                }
+            }
+            stagingDir.delete();
         }
 
-        public void clearFiles() {
-            File[] files = dir.listFiles();
-            for (File file : files) {
-                file.delete();
+        private static ByteString hash(File file) throws IOException {
+            BufferedSource source = Okio.buffer(Okio.source(file));
+            try {
+                return source.readByteString().sha256();
+            } finally {
+                source.close();
             }
         }
     }
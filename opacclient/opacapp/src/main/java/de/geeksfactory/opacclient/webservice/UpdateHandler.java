@@ -6,61 +6,165 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.geeksfactory.opacclient.BuildConfig;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
+import de.geeksfactory.opacclient.utils.JsonReader;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
 import retrofit2.Response;
 
 public class UpdateHandler {
+    private static final Object UPDATE_LOCK = new Object();
+    // keys without which Library.fromJSON() fails
+    private static final List<String> REQUIRED_KEYS = Arrays.asList("_id", "api", "city",
+            "title", "country", "state", "data", "account_supported");
 
-    protected Response<List<Library>> getServerResponse(WebService service, DateTime last_update)
+    protected Response<ResponseBody> getServerResponse(WebService service, DateTime last_update)
             throws IOException {
-        return service.getLibraryConfigs(last_update, BuildConfig.VERSION_CODE, 0, null)
+        return service.getLibraryConfigsRaw(last_update, BuildConfig.VERSION_CODE, 0, null)
                       .execute();
     }
 
+    /**
+     * Downloads the library configurations that changed since the last update. The response is
+     * read while it is being downloaded and each library's JSON is written to its file as it was
+     * received. Configurations that {@link Library#fromJSON(String, JSONObject)} could not load
+     * are skipped, as they would take precedence over a working bundled configuration. They are
+     * validated while streaming, without building the JSON tree. Files are
+     * staged and only installed once the whole response has been read, and search fields are only
+     * invalidated for libraries whose configuration actually changed.
+     *
+     * @return the number of library configurations received
+     */
     public int updateConfig(WebService service, PreferenceDataSource prefs,
             LibraryConfigUpdateService.FileOutput output,
             SearchFieldDataSource searchFields)
             throws IOException, JSONException {
-        DateTime last_update = prefs.getLastLibraryConfigUpdate();
-        if (prefs.getLastLibraryConfigUpdateVersion() != BuildConfig.VERSION_CODE) {
-            last_update = prefs.getBundledConfigUpdateTime();
-        }
-
-        Response<List<Library>> response = getServerResponse(service, last_update);
-        if (!response.isSuccessful()) {
-            throw new IOException(String.valueOf(response.code()));
-        }
+        synchronized (UPDATE_LOCK) {
+            boolean versionChanged =
+                    prefs.getLastLibraryConfigUpdateVersion() != BuildConfig.VERSION_CODE;
+            DateTime last_update = versionChanged ? prefs.getBundledConfigUpdateTime()
+                    : prefs.getLastLibraryConfigUpdate();
 
-        if (prefs.getLastLibraryConfigUpdateVersion() != BuildConfig.VERSION_CODE) {
-            output.clearFiles();
-        }
-
-        List<Library> updatedLibraries = response.body();
+            Response<ResponseBody> response = getServerResponse(service, last_update);
+            if (!response.isSuccessful()) {
+                if (response.errorBody() != null) response.errorBody().close();
+                throw new IOException(String.valueOf(response.code()));
+            }
 
-        for (Library lib : updatedLibraries) {
-            if (lib == null) {
-                continue;
+            int count = 0;
+            List<String> changed = new ArrayList<>();
+            // leftovers of an interrupted update
+            output.discard();
+            boolean committed = false;
+            JsonReader reader = new JsonReader(response.body().source());
+            try {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Buffer json = new Buffer();
+                    reader.copyValue(json);
+                    count++;
+                    String ident = readIdent(json.peek());
+                    if (ident == null) {
+                        continue;
+                    }
+                    if (output.writeFile(ident + ".json", json.readByteString())) {
+                        changed.add(ident);
+                    }
+                }
+                reader.endArray();
+                // After an app update, files that were not sent again are older than the
+                // configurations bundled with the app.
+                output.commit(versionChanged);
+                committed = true;
+            } finally {
+                reader.close();
+                if (!committed) output.discard();
             }
-            String filename = lib.getIdent() + ".json";
-            JSONObject json = lib.toJSON();
-            output.writeFile(filename, json.toString());
 
-            if (searchFields.hasSearchFields(lib.getIdent())) {
-                // clear cached search fields when configuration was updated
-                searchFields.clearSearchFields(lib.getIdent());
+            for (String ident : changed) {
+                if (searchFields.hasSearchFields(ident)) {
+                    // clear cached search fields when configuration was updated
+                    searchFields.clearSearchFields(ident);
+                }
             }
-        }
 
-        DateTime lastUpdate = new DateTime(response.headers().get("X-Page-Generated"));
-        prefs.setLastLibraryConfigUpdate(lastUpdate);
-        prefs.setLastLibraryConfigUpdateVersion(BuildConfig.VERSION_CODE);
-        prefs.setLastLibraryConfigUpdateTry(System.currentTimeMillis());
+            DateTime lastUpdate = new DateTime(response.headers().get("X-Page-Generated"));
+            prefs.setLastLibraryConfigUpdate(lastUpdate);
+            prefs.setLastLibraryConfigUpdateVersion(BuildConfig.VERSION_CODE);
+            prefs.setLastLibraryConfigUpdateTry(System.currentTimeMillis());
+
+            return count;
+        }
+    }
 
-        return updatedLibraries.size();
+    /**
+     * @return the identifier of the library configuration read from the given source, or
+     * <code>null</code> if it lacks a value {@link Library#fromJSON(String, JSONObject)} requires
+     * or has a value of the wrong type
+     */
+    static String readIdent(BufferedSource source) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        String ident = null;
+        Set<String> missing = new HashSet<>(REQUIRED_KEYS);
+        try {
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                missing.remove(name);
+                switch (name) {
+                    case "_id":
+                        ident = reader.nextStringOrNull();
+                        break;
+                    case "api":
+                    case "city":
+                    case "title":
+                    case "country":
+                    case "state":
+                    case "displayname":
+                    case "_notice_text":
+                    case "_plus_store_url":
+                        // fails for objects and arrays
+                        reader.nextStringOrNull();
+                        break;
+                    case "data":
+                        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return null;
+                        reader.skipValue();
+                        break;
+                    case "account_supported":
+                    case "_active":
+                    case "_support_contract":
+                        reader.nextBoolean();
+                        break;
+                    case "geo":
+                        if (reader.peek() == JsonReader.Token.NULL) {
+                            reader.nextNull();
+                            break;
+                        }
+                        reader.beginArray();
+                        reader.nextDouble();
+                        reader.nextDouble();
+                        while (reader.hasNext()) reader.skipValue();
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (JSONException e) {
+            return null;
+        }
+        return missing.isEmpty() ? ident : null;
     }
 }
@@ -6,11 +6,13 @@ import java.util.List;
 
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.reporting.Report;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface WebService {
     @POST("reports/")
@@ -21,6 +23,16 @@ public interface WebService {
             @Query("app_version") int appVersion, @Query("plus_app") Integer plusApp,
             @Query("library_id") String libraryId);
 
+    /**
+     * Same as {@link #getLibraryConfigs(DateTime, int, Integer, String)}, but returns the
+     * unparsed response so that it can be read while it is still being downloaded.
+     */
+    @Streaming
+    @GET("androidconfigs/")
+    Call<ResponseBody> getLibraryConfigsRaw(@Query("modified_since") DateTime modifiedSince,
+            @Query("app_version") int appVersion, @Query("plus_app") Integer plusApp,
+            @Query("library_id") String libraryId);
+
     @GET("androidconfigs/")
     Call<List<Library>> getLibraryConfigsForGroup(@Query("modified_since") DateTime modifiedSince,
             @Query("app_version") int appVersion, @Query("plus_app") Integer plusApp,
@@ -0,0 +1,159 @@
+package de.geeksfactory.opacclient.reminder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.geeksfactory.opacclient.apis.OpacApi;
+import de.geeksfactory.opacclient.networking.RequestScheduler;
+import de.geeksfactory.opacclient.objects.Account;
+import de.geeksfactory.opacclient.objects.AccountData;
+import de.geeksfactory.opacclient.storage.AccountDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AccountSyncCoordinatorTest {
+    private AccountSyncCoordinator coordinator;
+    private AccountDataSource data;
+    private Account account;
+
+    @Before
+    public void setUp() {
+        coordinator = new AccountSyncCoordinator();
+        data = mock(AccountDataSource.class);
+        account = new Account();
+        account.setId(1);
+    }
+
+    @Test
+    public void freshDataIsServedFromCache() throws Exception {
+        AccountData cached = new AccountData(1);
+        when(data.getCachedAccountDataTime(account)).thenReturn(System.currentTimeMillis());
+        when(data.getCachedAccountData(account)).thenReturn(cached);
+
+        assertSame(cached, coordinator.sync(account, data, 60000, () -> {
+            fail();
+            return null;
+        }));
+    }
+
+    @Test
+    public void staleDataIsFetched() throws Exception {
+        AccountData fetched = new AccountData(1);
+        when(data.getCachedAccountDataTime(account))
+                .thenReturn(System.currentTimeMillis() - 120000);
+
+        assertSame(fetched, coordinator.sync(account, data, 60000, () -> fetched));
+    }
+
+    @Test
+    public void concurrentCallsShareOneFetch() throws Exception {
+        AccountData fetched = new AccountData(1);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<AccountData> first = executor.submit(
+                    () -> coordinator.sync(account, data, 0, () -> {
+                        fetches.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                        return fetched;
+                    }));
+            started.await(5, TimeUnit.SECONDS);
+
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                release.countDown();
+            });
+            releaser.start();
+            AccountData second = coordinator.sync(account, data, 0, () -> {
+                fetches.incrementAndGet();
+                return new AccountData(1);
+            });
+
+            assertSame(fetched, second);
+            assertSame(fetched, first.get(5, TimeUnit.SECONDS));
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waitersRaiseThePriority() throws Exception {
+        AtomicReference<RequestScheduler.Priority> priority = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<AccountData> background = executor.submit(() -> {
+                try (RequestScheduler.Scope ignored =
+                             RequestScheduler.enter(RequestScheduler.Priority.BACKGROUND)) {
+                    return coordinator.sync(account, data, 0, () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                        priority.set(RequestScheduler.currentPriority());
+                        return new AccountData(1);
+                    });
+                }
+            });
+            started.await(5, TimeUnit.SECONDS);
+
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                release.countDown();
+            });
+            releaser.start();
+            // the test thread has no priority set, so it is interactive
+            coordinator.sync(account, data, 0, () -> new AccountData(1));
+
+            background.get(5, TimeUnit.SECONDS);
+            assertEquals(RequestScheduler.Priority.INTERACTIVE, priority.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void exceptionsArePassedOn() throws Exception {
+        try {
+            coordinator.sync(account, data, 0, () -> {
+                throw new OpacApi.OpacErrorException("wrong password");
+            });
+            fail();
+        } catch (OpacApi.OpacErrorException e) {
+            assertEquals("wrong password", e.getMessage());
+        }
+        // the failed fetch must not block the next one
+        AccountData fetched = new AccountData(1);
+        assertSame(fetched, coordinator.sync(account, data, 0, () -> fetched));
+    }
+}
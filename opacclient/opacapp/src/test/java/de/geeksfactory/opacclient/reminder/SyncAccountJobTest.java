@@ -14,6 +14,7 @@ import java.util.List;
 
 import androidx.work.WorkerParameters;
 import de.geeksfactory.opacclient.OpacClient;
+import de.geeksfactory.opacclient.apis.AccountFingerprintApi;
 import de.geeksfactory.opacclient.apis.OpacApi;
 import de.geeksfactory.opacclient.objects.Account;
 import de.geeksfactory.opacclient.objects.AccountData;
@@ -23,13 +24,16 @@ import de.geeksfactory.opacclient.storage.AccountDataSource;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class SyncAccountJobTest {
     private SyncAccountJob service;
@@ -117,6 +121,39 @@ public class SyncAccountJobTest {
         verify(helper).generateAlarms();
     }
 
+    @Test
+    public void unchangedAccountShouldBeSkipped()
+            throws IOException, JSONException, OpacApi.OpacErrorException,
+            OpacClient.LibraryRemovedException {
+        OpacApi api = mock(OpacApi.class,
+                withSettings().extraInterfaces(AccountFingerprintApi.class));
+        AccountFingerprintApi fingerprintApi = (AccountFingerprintApi) api;
+        SharedPreferences.Editor editor = mock(SharedPreferences.Editor.class);
+        when(sp.edit()).thenReturn(editor);
+        when(editor.putInt(anyString(), anyInt())).thenReturn(editor);
+        when(data.getAccountsWithPassword()).thenReturn(accounts);
+        when(app.getLibrary(anyString())).thenReturn(library);
+        when(app.getNewApi(library)).thenReturn(api);
+        when(data.getCachedAccountFingerprint(account1)).thenReturn("a");
+        when(data.getCachedAccountFingerprint(account2)).thenReturn("b");
+        AccountData unchanged = new AccountData(0);
+        unchanged.setUnchanged(true);
+        AccountData changed = new AccountData(1);
+        changed.setFingerprint("c");
+        when(fingerprintApi.account(account1, "a")).thenReturn(unchanged);
+        when(fingerprintApi.account(account2, "b")).thenReturn(changed);
+
+        assertFalse(service.syncAccounts(app, data, sp, helper));
+
+        verify(api, never()).account(any(Account.class));
+        verify(data, never()).storeCachedAccountData(eq(account1), any(AccountData.class));
+        verify(data).touchCachedAccountData(account1);
+        verify(data).storeCachedAccountData(account2, changed);
+        verify(helper, times(1)).generateAlarms();
+        verify(editor).putInt(SyncAccountJob.PREF_FINGERPRINT_CHECKED, 2);
+        verify(editor).putInt(SyncAccountJob.PREF_FINGERPRINT_SKIPPED, 1);
+    }
+
     private void setUpAccountsAndTwoApis()
             throws IOException, JSONException, OpacClient.LibraryRemovedException {
         when(data.getAccountsWithPassword()).thenReturn(accounts);
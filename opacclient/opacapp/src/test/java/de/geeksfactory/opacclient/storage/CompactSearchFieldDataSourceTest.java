@@ -0,0 +1,164 @@
+package de.geeksfactory.opacclient.storage;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import de.geeksfactory.opacclient.searchfields.DropdownSearchField;
+import de.geeksfactory.opacclient.searchfields.SearchField;
+import de.geeksfactory.opacclient.searchfields.TextSearchField;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompactSearchFieldDataSourceTest {
+    private static final String IDENT = "Test_Library";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private File filesDir;
+    private CompactSearchFieldDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.locale = Locale.GERMAN;
+        Resources resources = mock(Resources.class);
+        when(resources.getConfiguration()).thenReturn(configuration);
+        PackageInfo info = new PackageInfo();
+        info.versionCode = 42;
+        PackageManager packageManager = mock(PackageManager.class);
+        when(packageManager.getPackageInfo(anyString(), anyInt())).thenReturn(info);
+
+        context = mock(Context.class);
+        filesDir = folder.newFolder();
+        when(context.getFilesDir()).thenReturn(filesDir);
+        when(context.getResources()).thenReturn(resources);
+        when(context.getPackageManager()).thenReturn(packageManager);
+        when(context.getPackageName()).thenReturn("de.geeksfactory.opacclient");
+
+        dataSource = new CompactSearchFieldDataSource(context);
+        // the caches are shared by all instances
+        dataSource.clearAll();
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.clearAll();
+    }
+
+    private static List<SearchField> createFields() throws Exception {
+        List<SearchField> fields = new ArrayList<>();
+        fields.add(new TextSearchField("title", "Titel", false, false, "", false, false));
+        DropdownSearchField branch = new DropdownSearchField("branch", "Zweigstelle", false, null);
+        branch.addDropdownValue("1", "Zentralbibliothek");
+        branch.setMeaning(SearchField.Meaning.HOME_BRANCH);
+        branch.setData(new JSONObject().put("param", "zweig"));
+        fields.add(branch);
+        // fields without an id are not saved
+        fields.add(new TextSearchField("", "Leer", false, false, "", false, false));
+        return fields;
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        assertFalse(dataSource.hasSearchFields(IDENT));
+        assertNull(dataSource.getSearchFields(IDENT));
+
+        dataSource.saveSearchFields(IDENT, createFields());
+        CompactSearchFieldDataSource other = new CompactSearchFieldDataSource(context);
+        assertTrue(other.hasSearchFields(IDENT));
+        List<SearchField> fields = other.getSearchFields(IDENT);
+        assertEquals(2, fields.size());
+        assertEquals("title", fields.get(0).getId());
+        DropdownSearchField branch = (DropdownSearchField) fields.get(1);
+        assertEquals(SearchField.Meaning.HOME_BRANCH, branch.getMeaning());
+        assertEquals("Zentralbibliothek", branch.getDropdownValue("1"));
+        assertEquals("zweig", branch.getData().getString("param"));
+
+        assertEquals("de", other.getSearchFieldLanguage(IDENT));
+        assertEquals(42, other.getLastSearchFieldUpdateVersion(IDENT));
+        assertTrue(other.getLastSearchFieldUpdateTime(IDENT) > 0);
+    }
+
+    @Test
+    public void testReturnsCopies() throws Exception {
+        List<SearchField> saved = createFields();
+        dataSource.saveSearchFields(IDENT, saved);
+        saved.get(0).setVisible(false);
+
+        List<SearchField> fields = dataSource.getSearchFields(IDENT);
+        assertTrue(fields.get(0).isVisible());
+        fields.get(0).setVisible(false);
+        DropdownSearchField branch = (DropdownSearchField) fields.get(1);
+        branch.addDropdownValue("2", "Stadtteilbibliothek Nord");
+        branch.getData().put("param", "changed");
+        fields.remove(0);
+
+        fields = dataSource.getSearchFields(IDENT);
+        assertEquals(2, fields.size());
+        assertTrue(fields.get(0).isVisible());
+        branch = (DropdownSearchField) fields.get(1);
+        assertNull(branch.getDropdownValue("2"));
+        assertEquals("zweig", branch.getData().getString("param"));
+    }
+
+    @Test
+    public void testUnchangedFieldsOnlyUpdateHeader() throws Exception {
+        dataSource.saveSearchFields(IDENT, createFields());
+        long time = dataSource.getLastSearchFieldUpdateTime(IDENT);
+        Object file = getFileKey();
+
+        Thread.sleep(5);
+        dataSource.saveSearchFields(IDENT, createFields());
+        // updated in place instead of being replaced
+        assertEquals(file, getFileKey());
+        assertTrue(dataSource.getLastSearchFieldUpdateTime(IDENT) > time);
+
+        List<SearchField> fields = createFields();
+        fields.remove(0);
+        dataSource.saveSearchFields(IDENT, fields);
+        assertNotEquals(file, getFileKey());
+        assertEquals(1, dataSource.getSearchFields(IDENT).size());
+    }
+
+    private Object getFileKey() throws Exception {
+        Path path = new File(filesDir, "fields/" + IDENT + ".fields").toPath();
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        dataSource.saveSearchFields(IDENT, createFields());
+        dataSource.clearSearchFields(IDENT);
+        assertFalse(dataSource.hasSearchFields(IDENT));
+        assertNull(dataSource.getSearchFields(IDENT));
+        assertEquals(0, dataSource.getLastSearchFieldUpdateTime(IDENT));
+    }
+}
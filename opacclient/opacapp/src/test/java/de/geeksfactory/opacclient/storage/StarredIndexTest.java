@@ -0,0 +1,107 @@
+package de.geeksfactory.opacclient.storage;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StarredIndexTest {
+    private ContentResolver resolver;
+    private Uri uri;
+    private List<String[]> rows;
+    private StarredIndex index;
+
+    @Before
+    public void setUp() {
+        resolver = mock(ContentResolver.class);
+        uri = mock(Uri.class);
+        rows = new ArrayList<>();
+        rows.add(new String[]{"1", "Bib", "Faust", "10"});
+        rows.add(new String[]{null, "Bib", "Ohne Nummer", "11"});
+        when(resolver.query(any(Uri.class), any(String[].class), isNull(), isNull(), isNull()))
+                .thenAnswer(invocation -> cursor(new ArrayList<>(rows)));
+        index = new StarredIndex(resolver, uri);
+    }
+
+    private static Cursor cursor(final List<String[]> rows) {
+        Cursor cursor = mock(Cursor.class);
+        final int[] position = {-1};
+        when(cursor.moveToNext()).thenAnswer(invocation -> ++position[0] < rows.size());
+        when(cursor.getString(anyInt())).thenAnswer(
+                invocation -> rows.get(position[0])[(int) invocation.getArgument(0)]);
+        when(cursor.getLong(anyInt())).thenAnswer(invocation -> Long.parseLong(
+                rows.get(position[0])[(int) invocation.getArgument(0)]));
+        return cursor;
+    }
+
+    @Test
+    public void loadsOnce() {
+        assertTrue(index.containsId("Bib", "1"));
+        assertTrue(index.containsTitle("Bib", "Ohne Nummer"));
+        assertFalse(index.containsId("Other", "1"));
+        assertFalse(index.containsTitle("Bib", "Faust"));
+        verify(resolver, times(1)).query(any(Uri.class), any(String[].class), isNull(),
+                isNull(), isNull());
+    }
+
+    @Test
+    public void addAndRemoveTakeEffectImmediately() {
+        assertFalse(index.containsId("Bib", "2"));
+        index.add("Bib", "2", "Neu");
+        assertTrue(index.containsId("Bib", "2"));
+
+        index.remove("Bib", "1", "Faust");
+        assertFalse(index.containsId("Bib", "1"));
+        index.remove("Bib", null, "Ohne Nummer");
+        assertFalse(index.containsTitle("Bib", "Ohne Nummer"));
+    }
+
+    @Test
+    public void updatesSingleRows() {
+        assertTrue(index.containsId("Bib", "1"));
+        rows.set(0, new String[]{"2", "Bib", "Faust", "10"});
+        when(resolver.query(any(Uri.class), any(String[].class), eq(StarDatabase.STAR_WHERE_ID),
+                eq(new String[]{"10"}), isNull()))
+                .thenAnswer(invocation -> cursor(rows.subList(0, 1)));
+        index.updateRow(10);
+        assertFalse(index.containsId("Bib", "1"));
+        assertTrue(index.containsId("Bib", "2"));
+        assertTrue(index.containsTitle("Bib", "Ohne Nummer"));
+
+        rows.remove(0);
+        when(resolver.query(any(Uri.class), any(String[].class), eq(StarDatabase.STAR_WHERE_ID),
+                eq(new String[]{"10"}), isNull()))
+                .thenAnswer(invocation -> cursor(Collections.<String[]>emptyList()));
+        index.updateRow(10);
+        assertFalse(index.containsId("Bib", "2"));
+        verify(resolver, times(1)).query(any(Uri.class), any(String[].class), isNull(),
+                isNull(), isNull());
+    }
+
+    @Test
+    public void reloadsAfterInvalidation() {
+        assertTrue(index.containsId("Bib", "1"));
+        rows.remove(0);
+        index.invalidate();
+        assertFalse(index.containsId("Bib", "1"));
+        verify(resolver, times(2)).query(any(Uri.class), any(String[].class), isNull(),
+                isNull(), isNull());
+    }
+}
@@ -2,21 +2,37 @@ package de.geeksfactory.opacclient.webservice;
 
 import org.joda.time.DateTime;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import de.geeksfactory.opacclient.BuildConfig;
 import de.geeksfactory.opacclient.objects.Library;
 import de.geeksfactory.opacclient.storage.PreferenceDataSource;
 import de.geeksfactory.opacclient.storage.SearchFieldDataSource;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
 import retrofit2.mock.Calls;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -31,6 +47,9 @@ public class LibraryConfigUpdateServiceTest {
     private Library library;
     private SearchFieldDataSource searchFields;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() {
         service = mock(WebService.class);
@@ -41,15 +60,33 @@ public class LibraryConfigUpdateServiceTest {
         when(prefs.getLastLibraryConfigUpdateVersion()).thenReturn(BuildConfig.VERSION_CODE);
         library = new Library();
         library.setIdent(IDENT);
+        library.setApi("sisis");
+        library.setCity("Test");
+        library.setTitle("Test Library");
+        library.setCountry("Deutschland");
+        library.setState("Bayern");
+        library.setData(new JSONObject());
+    }
+
+    private String libraryJson() throws JSONException {
+        JSONObject json = library.toJSON();
+        json.put("_id", IDENT);
+        return json.toString();
+    }
+
+    private void respond(DateTime lastUpdate, String body) {
+        when(service.getLibraryConfigsRaw(lastUpdate, BuildConfig.VERSION_CODE, 0, null))
+                .thenReturn(Calls.response(
+                        ResponseBody.create(body, MediaType.get("application/json"))));
     }
 
     @Test
     public void shouldSetLastUpdate() throws IOException, JSONException {
-        List<Library> libraries = new ArrayList<>();
-        when(service.getLibraryConfigs(LAST_UPDATE, BuildConfig.VERSION_CODE, 0, null))
-                .thenReturn(Calls.response(libraries));
+        respond(LAST_UPDATE, "[]");
 
         new UpdateHandler().updateConfig(service, prefs, output, searchFields);
+        verify(output).discard();
+        verify(output).commit(false);
         verifyNoMoreInteractions(output);
         verify(prefs).setLastLibraryConfigUpdate(any(DateTime.class));
         verify(prefs).setLastLibraryConfigUpdateVersion(BuildConfig.VERSION_CODE);
@@ -57,37 +94,158 @@ public class LibraryConfigUpdateServiceTest {
 
     @Test
     public void shouldUpdateLibrary() throws IOException, JSONException {
-        List<Library> libraries = new ArrayList<>();
-        libraries.add(library);
-        when(service.getLibraryConfigs(LAST_UPDATE, BuildConfig.VERSION_CODE, 0, null))
-                .thenReturn(Calls.response(libraries));
+        String json = libraryJson();
+        respond(LAST_UPDATE, "[" + json + "]");
 
-        new UpdateHandler().updateConfig(service, prefs, output, searchFields);
-        verify(output).writeFile(IDENT + ".json", library.toJSON().toString());
-        verifyNoMoreInteractions(output);
+        assertEquals(1, new UpdateHandler().updateConfig(service, prefs, output, searchFields));
+        verify(output).writeFile(IDENT + ".json", ByteString.encodeUtf8(json));
+        verify(output).commit(false);
     }
 
     @Test
-    public void shouldClearWhenLastUpdateFromOldVersion() throws IOException, JSONException {
-        when(prefs.getLastLibraryConfigUpdateVersion()).thenReturn(BuildConfig.VERSION_CODE - 1);
+    public void shouldSkipIncompleteLibrary() throws IOException, JSONException {
+        respond(LAST_UPDATE, "[{\"_id\": \"" + IDENT + "\", \"api\": \"sisis\"}, null]");
 
-        List<Library> libraries = new ArrayList<>();
-        when(service.getLibraryConfigs(null, BuildConfig.VERSION_CODE, 0, null))
-                .thenReturn(Calls.response(libraries));
+        assertEquals(2, new UpdateHandler().updateConfig(service, prefs, output, searchFields));
+        verify(output, never()).writeFile(anyString(), any(ByteString.class));
+    }
+
+    @Test
+    public void shouldSkipLibraryWithInvalidData() throws IOException, JSONException {
+        JSONObject json = new JSONObject(libraryJson());
+        json.put("data", JSONObject.NULL);
+        respond(LAST_UPDATE, "[" + json + "]");
+
+        assertEquals(1, new UpdateHandler().updateConfig(service, prefs, output, searchFields));
+        verify(output, never()).writeFile(anyString(), any(ByteString.class));
+        verify(output).commit(false);
+    }
+
+    @Test
+    public void shouldSkipLibraryWithWrongTypes() throws IOException, JSONException {
+        JSONObject data = new JSONObject(libraryJson());
+        data.put("data", "baseurl");
+        JSONObject geo = new JSONObject(libraryJson());
+        geo.put("geo", "49.0,11.0");
+        JSONObject city = new JSONObject(libraryJson());
+        city.put("city", new JSONObject());
+        respond(LAST_UPDATE, "[" + data + "," + geo + "," + city + "]");
+
+        assertEquals(3, new UpdateHandler().updateConfig(service, prefs, output, searchFields));
+        verify(output, never()).writeFile(anyString(), any(ByteString.class));
+    }
+
+    @Test
+    public void shouldReplaceAllWhenLastUpdateFromOldVersion() throws IOException, JSONException {
+        when(prefs.getLastLibraryConfigUpdateVersion()).thenReturn(BuildConfig.VERSION_CODE - 1);
+        respond(null, "[]");
 
         new UpdateHandler().updateConfig(service, prefs, output, searchFields);
-        verify(output).clearFiles();
+        verify(output).commit(true);
     }
 
     @Test
     public void shouldClearSearchFields() throws IOException, JSONException {
-        List<Library> libraries = new ArrayList<>();
-        libraries.add(library);
-        when(service.getLibraryConfigs(LAST_UPDATE, BuildConfig.VERSION_CODE, 0, null))
-                .thenReturn(Calls.response(libraries));
+        respond(LAST_UPDATE, "[" + libraryJson() + "]");
+        when(output.writeFile(anyString(), any(ByteString.class))).thenReturn(true);
         when(searchFields.hasSearchFields(IDENT)).thenReturn(true);
 
         new UpdateHandler().updateConfig(service, prefs, output, searchFields);
         verify(searchFields).clearSearchFields(IDENT);
     }
+
+    @Test
+    public void shouldKeepSearchFieldsOfUnchangedLibrary() throws IOException, JSONException {
+        respond(LAST_UPDATE, "[" + libraryJson() + "]");
+        when(searchFields.hasSearchFields(IDENT)).thenReturn(true);
+
+        new UpdateHandler().updateConfig(service, prefs, output, searchFields);
+        verify(searchFields, never()).clearSearchFields(IDENT);
+    }
+
+    @Test
+    public void shouldNotCommitIncompleteResponse() throws IOException {
+        respond(LAST_UPDATE, "[" + "{\"_id\": \"" + IDENT + "\"");
+
+        try {
+            new UpdateHandler().updateConfig(service, prefs, output, searchFields);
+            fail("JSONException expected");
+        } catch (JSONException expected) {
+        }
+        verify(output, never()).commit(anyBoolean());
+        verify(prefs, never()).setLastLibraryConfigUpdate(any(DateTime.class));
+    }
+
+    @Test
+    public void fileOutputShouldStageAndCommit() throws IOException {
+        File dir = folder.newFolder(LibraryConfigUpdateService.LIBRARIES_DIR);
+        File staging = new File(folder.getRoot(), dir.getName() + ".staging");
+        writeString(new File(dir, "a.json"), "{\"a\": 1}");
+        writeString(new File(dir, "b.json"), "{\"b\": 1}");
+        writeString(new File(dir, "c.json"), "{\"c\": 1}");
+
+        LibraryConfigUpdateService.FileOutput output =
+                new LibraryConfigUpdateService.FileOutput(dir);
+        assertFalse(output.writeFile("a.json", ByteString.encodeUtf8("{\"a\": 1}")));
+        assertTrue(output.writeFile("b.json", ByteString.encodeUtf8("{\"b\": 2}")));
+        assertEquals("{\"b\": 1}", readString(new File(dir, "b.json")));
+        assertTrue(new File(staging, "b.json").exists());
+
+        output.commit(true);
+        assertArrayEquals(new String[]{"a.json", "b.json"}, sortedNames(dir));
+        assertEquals("{\"b\": 2}", readString(new File(dir, "b.json")));
+        assertFalse(staging.exists());
+    }
+
+    @Test
+    public void fileOutputShouldKeepFilesIfCommitFails() throws IOException {
+        File dir = folder.newFolder(LibraryConfigUpdateService.LIBRARIES_DIR);
+        writeString(new File(dir, "a.json"), "{\"a\": 1}");
+        // a non-empty directory cannot be replaced by the staged file
+        File blocked = new File(dir, "b.json");
+        assertTrue(blocked.mkdir());
+        writeString(new File(blocked, "x"), "x");
+
+        LibraryConfigUpdateService.FileOutput output =
+                new LibraryConfigUpdateService.FileOutput(dir);
+        assertTrue(output.writeFile("b.json", ByteString.encodeUtf8("{\"b\": 1}")));
+        try {
+            output.commit(true);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        assertEquals("{\"a\": 1}", readString(new File(dir, "a.json")));
+    }
+
+    @Test
+    public void fileOutputShouldDiscard() throws IOException {
+        File dir = folder.newFolder(LibraryConfigUpdateService.LIBRARIES_DIR);
+        writeString(new File(dir, "a.json"), "{\"a\": 1}");
+
+        LibraryConfigUpdateService.FileOutput output =
+                new LibraryConfigUpdateService.FileOutput(dir);
+        assertTrue(output.writeFile("a.json", ByteString.encodeUtf8("{\"a\": 2}")));
+        output.discard();
+        output.commit(false);
+        assertEquals("{\"a\": 1}", readString(new File(dir, "a.json")));
+    }
+
+    private static String[] sortedNames(File dir) {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    private static void writeString(File file, String data) throws IOException {
+        Okio.buffer(Okio.sink(file)).writeUtf8(data).close();
+    }
+
+    private static String readString(File file) throws IOException {
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            return source.readUtf8();
+        } finally {
+            source.close();
+        }
+    }
 }